@@ -27,9 +27,11 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Wrapper for the ResourceStore that makes sure the user can only access stuff
@@ -41,6 +43,7 @@ public class SessionResourceStoreImpl extends HttpServlet implements SessionReso
 
     public static final String BEAN_NAME = "sessionResourceStore";
     private static final String UUID_ARG = "UUID";
+    private static final String GZIP = "gzip";
 
     private final ResourceStore resourceStore;
     private final Provider<SessionResourceMap> sessionResourceMapProvider;
@@ -97,12 +100,30 @@ public class SessionResourceStoreImpl extends HttpServlet implements SessionReso
             try {
                 final Path file = getTempFile(resourceKey);
                 if (file != null && Files.isRegularFile(file)) {
-                    if (file.toAbsolutePath().toString().toLowerCase().endsWith(".zip")) {
+                    final String fileName = file.toAbsolutePath().toString().toLowerCase();
+                    if (fileName.endsWith(".zip")) {
                         resp.setContentType("application/zip");
                     } else {
                         resp.setContentType("application/octet-stream");
                     }
-                    resp.getOutputStream().write(Files.readAllBytes(file));
+
+                    // Stream the file rather than reading it into memory as
+                    // it could be very large, e.g. downloaded search results.
+                    final boolean compressible = isCompressible(fileName);
+                    if (compressible) {
+                        // Let caches know the content depends on whether the
+                        // client accepts gzip.
+                        resp.setHeader("Vary", "Accept-Encoding");
+                    }
+                    if (compressible && acceptsGzip(req)) {
+                        resp.setHeader("Content-Encoding", GZIP);
+                        try (final OutputStream outputStream = new GZIPOutputStream(resp.getOutputStream())) {
+                            Files.copy(file, outputStream);
+                        }
+                    } else {
+                        resp.setHeader("Content-Length", String.valueOf(Files.size(file)));
+                        Files.copy(file, resp.getOutputStream());
+                    }
                     found = true;
                 }
             } finally {
@@ -114,4 +135,14 @@ public class SessionResourceStoreImpl extends HttpServlet implements SessionReso
             resp.sendError(HttpServletResponse.SC_NOT_FOUND, "Resource not found");
         }
     }
+
+    private boolean isCompressible(final String fileName) {
+        // Zip based files are already compressed.
+        return !fileName.endsWith(".zip") && !fileName.endsWith(".xlsx");
+    }
+
+    private boolean acceptsGzip(final HttpServletRequest req) {
+        final String acceptEncoding = req.getHeader("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains(GZIP);
+    }
 }
\ No newline at end of file
@@ -33,10 +33,12 @@ import stroom.task.cluster.ClusterDispatchAsyncHelper;
 import stroom.task.cluster.DefaultClusterResultCollector;
 import stroom.task.cluster.TargetNodeSetFactory.TargetType;
 import stroom.task.server.GenericServerTask;
+import stroom.task.server.IoThreadPool;
 import stroom.task.server.TaskCallbackAdaptor;
 import stroom.task.server.TaskManager;
 import stroom.util.logging.StroomLogger;
 import stroom.util.shared.Task;
+import stroom.util.shared.ThreadPool;
 import stroom.util.shared.VoidResult;
 import stroom.util.spring.StroomFrequencySchedule;
 import stroom.util.spring.StroomShutdown;
@@ -68,6 +70,8 @@ public class DistributedTaskFetcher implements BeanFactoryAware {
     private static final long ONE_MINUTE = 60 * 1000;
     // Wait time for master to return tasks (5 minutes)
     private static final long WAIT_TIME = 5;
+    // Fetching spends nearly all of its time waiting on the master node.
+    private static final ThreadPool FETCH_THREAD_POOL = new IoThreadPool("Fetch Tasks", 2);
 
     @Resource
     private TaskManager taskManager;
@@ -218,7 +222,7 @@ public class DistributedTaskFetcher implements BeanFactoryAware {
                             public void onFailure(final Throwable t) {
                                 afterFetch();
                             }
-                        });
+                        }, FETCH_THREAD_POOL);
                     } else {
                         stopped.set(true);
                     }
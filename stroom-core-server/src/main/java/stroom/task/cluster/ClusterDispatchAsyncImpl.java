@@ -21,12 +21,12 @@ import org.springframework.stereotype.Component;
 import stroom.cluster.server.ClusterCallService;
 import stroom.node.shared.Node;
 import stroom.task.server.GenericServerTask;
+import stroom.task.server.IoThreadPool;
 import stroom.task.server.TaskManager;
 import stroom.util.logging.LogExecutionTime;
 import stroom.util.logging.StroomLogger;
 import stroom.util.shared.ModelStringUtil;
 import stroom.util.shared.SharedObject;
-import stroom.util.shared.SimpleThreadPool;
 import stroom.util.shared.Task;
 import stroom.util.shared.TaskId;
 import stroom.util.shared.ThreadPool;
@@ -50,7 +50,7 @@ public class ClusterDispatchAsyncImpl implements ClusterDispatchAsync {
     static final Class<?>[] RECEIVE_RESULT_METHOD_ARGS = {ClusterTask.class, Node.class, TaskId.class,
             CollectorId.class, SharedObject.class, Throwable.class, Boolean.class};
 
-    public static final ThreadPool THREAD_POOL = new SimpleThreadPool(5);
+    public static final ThreadPool THREAD_POOL = new IoThreadPool("Cluster Dispatch", 5);
     private static final String RECEIVE_RESULT = "receiveResult";
     private static final Long DEBUG_REQUEST_DELAY = null;
 
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.task.server;
+
+/**
+ * A thread pool for tasks that spend most of their time waiting on remote
+ * calls, I/O or polling rather than using CPU. When virtual threads are enabled
+ * tasks in these pools are each run on their own virtual thread rather than on
+ * a platform thread.
+ */
+public class IoThreadPool extends ThreadPoolImpl {
+    public IoThreadPool(final String name, final int priority) {
+        super(name, priority, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return obj instanceof IoThreadPool && super.equals(obj);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
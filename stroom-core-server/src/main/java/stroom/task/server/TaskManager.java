@@ -25,6 +25,7 @@ import stroom.util.shared.Task;
 import stroom.util.shared.TaskId;
 import stroom.util.shared.ThreadPool;
 
+import java.util.List;
 import java.util.concurrent.Executor;
 
 public interface TaskManager extends FindService<TaskProgress, FindTaskProgressCriteria> {
@@ -92,5 +93,11 @@ public interface TaskManager extends FindService<TaskProgress, FindTaskProgressC
 
     BaseResultList<TaskProgress> terminate(FindTaskCriteria criteria, boolean kill);
 
+    /**
+     * Get queue and run time statistics for each thread pool that has been
+     * used to execute tasks.
+     */
+    List<ThreadPoolStatistics> getThreadPoolStatistics();
+
     int getCurrentTaskCount();
 }
@@ -17,6 +17,7 @@
 package stroom.task.server;
 
 import event.logging.BaseAdvancedQueryItem;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import stroom.entity.server.CriteriaLoggingUtil;
 import stroom.entity.server.SupportsCriteriaLogging;
@@ -26,6 +27,7 @@ import stroom.security.SecurityContext;
 import stroom.task.shared.FindTaskCriteria;
 import stroom.task.shared.FindTaskProgressCriteria;
 import stroom.task.shared.TaskProgress;
+import stroom.util.config.PropertyUtil;
 import stroom.util.logging.LogExecutionTime;
 import stroom.util.logging.StroomLogger;
 import stroom.util.shared.Monitor;
@@ -40,22 +42,19 @@ import stroom.util.task.HasMonitor;
 import stroom.util.task.MonitorInfoUtil;
 import stroom.util.task.TaskScopeContextHolder;
 import stroom.util.task.TaskScopeRunnable;
-import stroom.util.thread.CustomThreadFactory;
 import stroom.util.thread.ThreadScopeRunnable;
 import stroom.util.thread.ThreadUtil;
+import stroom.util.thread.VirtualThreadUtil;
 
 import javax.inject.Inject;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
@@ -77,16 +76,25 @@ public class TaskManagerImpl implements TaskManager, SupportsCriteriaLogging<Fin
     private final AtomicInteger currentAsyncTaskCount = new AtomicInteger();
     private final Map<TaskId, TaskThread<?>> currentTasks = new ConcurrentHashMap<>(1024, 0.75F, 1024);
     private final AtomicBoolean stop = new AtomicBoolean();
-    // The thread pools that will be used to execute tasks.
-    private final ConcurrentHashMap<ThreadPool, ThreadPoolExecutor> threadPoolMap = new ConcurrentHashMap<>();
+    // The scheduler that all thread pools share to execute tasks.
+    private volatile TaskScheduler scheduler;
     private final ReentrantLock poolCreationLock = new ReentrantLock();
+    private final int maxConcurrentTasks;
+    private final int maxThreads;
+    private final boolean useVirtualThreads;
 
     @Inject
-    TaskManagerImpl(final TaskHandlerBeanRegistry taskHandlerBeanRegistry, final NodeCache nodeCache, final StroomBeanStore beanStore, final SecurityContext securityContext) {
+    TaskManagerImpl(final TaskHandlerBeanRegistry taskHandlerBeanRegistry, final NodeCache nodeCache, final StroomBeanStore beanStore, final SecurityContext securityContext,
+                    @Value("#{propertyConfigurer.getProperty('stroom.task.maxConcurrentTasks')}") final String maxConcurrentTasks,
+                    @Value("#{propertyConfigurer.getProperty('stroom.task.maxThreads')}") final String maxThreads,
+                    @Value("#{propertyConfigurer.getProperty('stroom.task.useVirtualThreads')}") final String useVirtualThreads) {
         this.taskHandlerBeanRegistry = taskHandlerBeanRegistry;
         this.nodeCache = nodeCache;
         this.beanStore = beanStore;
         this.securityContext = securityContext;
+        this.maxConcurrentTasks = PropertyUtil.toInt(maxConcurrentTasks, 0);
+        this.maxThreads = PropertyUtil.toInt(maxThreads, 1000);
+        this.useVirtualThreads = PropertyUtil.toBoolean(useVirtualThreads, false);
 
         // When we are running unit tests we need to make sure that all Stroom
         // threads complete and are shutdown between tests.
@@ -98,56 +106,47 @@ public class TaskManagerImpl implements TaskManager, SupportsCriteriaLogging<Fin
     }
 
     private Executor getExecutor(final ThreadPool threadPool) {
-        ThreadPoolExecutor executor = threadPoolMap.get(threadPool);
-        if (executor == null) {
+        TaskScheduler taskScheduler = scheduler;
+        if (taskScheduler == null) {
             poolCreationLock.lock();
             try {
-                // Don't create a thread pool if we are supposed to be stopping
+                // Don't create a scheduler if we are supposed to be stopping
                 if (!stop.get()) {
-                    executor = threadPoolMap.get(threadPool);
-                    if (executor == null) {
-                        // Create a thread factory for the thread pool
-                        final ThreadGroup poolThreadGroup = new ThreadGroup(StroomThreadGroup.instance(),
-                                threadPool.getName());
-                        final CustomThreadFactory taskThreadFactory = new CustomThreadFactory(
-                                threadPool.getName() + " #", poolThreadGroup, threadPool.getPriority());
-
-                        //Use a LinkedBlockingQueue for any bounded pools (where bounded is any
-                        //thread count below Integer.MAX_VALUE)
-                        final BlockingQueue<Runnable> executorQueue = threadPool.getMaxPoolSize() == Integer.MAX_VALUE
-                                ? new SynchronousQueue<>()
-                                : new LinkedBlockingQueue<>();
-
-                        // Create the new thread pool for this priority
-                        executor = new ThreadPoolExecutor(
-                                threadPool.getCorePoolSize(),
-                                threadPool.getMaxPoolSize(),
-                                60L,
-                                TimeUnit.SECONDS,
-                                executorQueue,
-                                taskThreadFactory);
-
-                        threadPoolMap.put(threadPool, executor);
+                    taskScheduler = scheduler;
+                    if (taskScheduler == null) {
+                        ThreadFactory virtualThreadFactory = null;
+                        if (useVirtualThreads) {
+                            virtualThreadFactory = VirtualThreadUtil.createThreadFactory("Stroom IO Task #");
+                            if (virtualThreadFactory == null) {
+                                LOGGER.warn("Virtual threads are not supported by this JVM so I/O bound tasks will use the shared task scheduler");
+                            }
+                        }
+
+                        taskScheduler = new TaskScheduler(Runtime.getRuntime().availableProcessors(),
+                                maxConcurrentTasks, maxThreads, virtualThreadFactory);
+                        scheduler = taskScheduler;
                     }
                 }
             } finally {
                 poolCreationLock.unlock();
             }
         }
-        return executor;
+
+        if (taskScheduler == null) {
+            return null;
+        }
+
+        final TaskScheduler executingScheduler = taskScheduler;
+        return runnable -> executingScheduler.execute(threadPool, runnable);
     }
 
     private void shutdownExecutors() {
         poolCreationLock.lock();
         try {
-            final Iterator<ThreadPool> iter = threadPoolMap.keySet().iterator();
-            while (iter.hasNext()) {
-                final ThreadPool threadPool = iter.next();
-                final ThreadPoolExecutor executor = threadPoolMap.get(threadPool);
-                if (executor != null) {
-                    executor.shutdown();
-                    threadPoolMap.remove(threadPool);
-                }
+            final TaskScheduler taskScheduler = scheduler;
+            if (taskScheduler != null) {
+                taskScheduler.shutdown();
+                scheduler = null;
             }
         } finally {
             poolCreationLock.unlock();
@@ -522,6 +521,15 @@ public class TaskManagerImpl implements TaskManager, SupportsCriteriaLogging<Fin
         return taskProgress;
     }
 
+    @Override
+    public List<ThreadPoolStatistics> getThreadPoolStatistics() {
+        final TaskScheduler taskScheduler = scheduler;
+        if (taskScheduler == null) {
+            return Collections.emptyList();
+        }
+        return taskScheduler.getStatistics();
+    }
+
     @Override
     public Task<?> getTaskById(final TaskId taskId) {
         final TaskThread<?> taskThread = currentTasks.get(taskId);
@@ -567,6 +575,15 @@ public class TaskManagerImpl implements TaskManager, SupportsCriteriaLogging<Fin
             sb.append("\n");
         }
 
+        final List<ThreadPoolStatistics> threadPoolStatistics = getThreadPoolStatistics();
+        if (threadPoolStatistics.size() > 0) {
+            sb.append("Thread Pools:\n");
+            for (final ThreadPoolStatistics statistics : threadPoolStatistics) {
+                sb.append(statistics);
+                sb.append("\n");
+            }
+        }
+
         return sb.toString();
     }
 
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.task.server;
+
+import stroom.util.concurrent.DurationHistogram;
+import stroom.util.logging.StroomLogger;
+import stroom.util.shared.ThreadPool;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A single scheduler that all task thread pools share. Each {@link ThreadPool}
+ * becomes a logical queue within the scheduler rather than a separate set of
+ * threads so that idle threads can be used by whichever pool has work.
+ * <p>
+ * Tasks are executed on a work stealing {@link ForkJoinPool}. Tasks dispatched
+ * from a worker are pushed onto that worker's own deque and idle workers steal
+ * from busy ones. Any task may block, e.g. while waiting for the tasks it
+ * started to complete, so every task is run as a managed block and the pool
+ * adds compensating threads. The number of tasks that run on the pool at once
+ * is capped so the number of threads the pool creates is bounded.
+ * <p>
+ * Each logical pool keeps the concurrency that it had when it was backed by
+ * its own thread pool executor. Pools with an unbounded maximum size run any
+ * number of tasks, other pools queue tasks and run up to their core size (at
+ * least one) at once. If a maximum number of concurrent tasks is set for the
+ * whole scheduler then queued tasks are released using weighted fair (stride)
+ * scheduling where the weight of a pool is its priority. Tasks that are
+ * submitted by other running tasks are not subject to this limit as the parent
+ * task is often waiting for its children to complete. They are still subject
+ * to the thread cap.
+ * <p>
+ * If a virtual thread factory is supplied then tasks belonging to an
+ * {@link IoThreadPool} are each run on a new virtual thread instead of on the
+ * fork join pool. They are still subject to the same limits and statistics.
+ */
+class TaskScheduler {
+    private static final StroomLogger LOGGER = StroomLogger.getLogger(TaskScheduler.class);
+
+    private static final long STRIDE = 1L << 20;
+    private static final ThreadLocal<Integer> RUNNING_DEPTH = new ThreadLocal<>();
+
+    private final ForkJoinPool forkJoinPool;
+    private final ThreadFactory virtualThreadFactory;
+    private final int maxConcurrentTasks;
+    private final int maxThreads;
+    private final Map<ThreadPool, PoolQueue> poolQueues = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // The following are guarded by the lock.
+    private int runningRootTasks;
+    private int runningPoolTasks;
+    private long globalPass;
+
+    /**
+     * @param parallelism          The number of worker threads that the scheduler
+     *                             aims to keep busy.
+     * @param maxConcurrentTasks   The maximum number of top level tasks that can
+     *                             run at once across all pools or 0 for no limit.
+     * @param maxThreads           The maximum number of tasks, including child
+     *                             tasks, that can run on the fork join pool at
+     *                             once or 0 for no limit.
+     * @param virtualThreadFactory A factory for virtual threads to run I/O bound
+     *                             tasks on or null to run all tasks on the fork
+     *                             join pool.
+     */
+    TaskScheduler(final int parallelism, final int maxConcurrentTasks, final int maxThreads,
+                  final ThreadFactory virtualThreadFactory) {
+        this.virtualThreadFactory = virtualThreadFactory;
+        this.maxConcurrentTasks = maxConcurrentTasks <= 0 ? Integer.MAX_VALUE : maxConcurrentTasks;
+        this.maxThreads = maxThreads <= 0 ? Integer.MAX_VALUE : maxThreads;
+        this.forkJoinPool = new ForkJoinPool(Math.max(1, parallelism), new WorkerThreadFactory(),
+                (thread, throwable) -> LOGGER.error(throwable.getMessage(), throwable), true);
+    }
+
+    void execute(final ThreadPool threadPool, final Runnable runnable) {
+        final PoolQueue poolQueue = poolQueues.computeIfAbsent(threadPool, this::createPoolQueue);
+        final ScheduledTask scheduledTask = new ScheduledTask(poolQueue, runnable, isRunningTask());
+
+        lock.lock();
+        try {
+            if (forkJoinPool.isShutdown()) {
+                throw new RejectedExecutionException("Task scheduler has been shut down");
+            }
+            if (poolQueue.queue.isEmpty() && poolQueue.active == 0) {
+                // Stop a pool that has been idle from claiming more than its
+                // share by catching up on the passes it missed.
+                poolQueue.pass = Math.max(poolQueue.pass, globalPass);
+            }
+            poolQueue.queue.add(scheduledTask);
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release as many queued tasks as the pool and scheduler limits allow,
+     * always choosing the eligible pool with the lowest pass value next.
+     * Must be called while holding the lock.
+     */
+    private void dispatch() {
+        while (true) {
+            PoolQueue next = null;
+            for (final PoolQueue poolQueue : poolQueues.values()) {
+                final ScheduledTask head = poolQueue.queue.peek();
+                if (head != null &&
+                        poolQueue.active < poolQueue.maxConcurrency &&
+                        (head.child || runningRootTasks < maxConcurrentTasks) &&
+                        (poolQueue.virtual || runningPoolTasks < maxThreads) &&
+                        (next == null || poolQueue.pass < next.pass)) {
+                    next = poolQueue;
+                }
+            }
+
+            if (next == null) {
+                return;
+            }
+
+            final ScheduledTask scheduledTask = next.queue.poll();
+            next.active++;
+            next.pass += next.stride;
+            globalPass = next.pass;
+            if (!scheduledTask.child) {
+                runningRootTasks++;
+            }
+            if (!next.virtual) {
+                runningPoolTasks++;
+            }
+
+            submit(scheduledTask);
+        }
+    }
+
+    private void submit(final ScheduledTask scheduledTask) {
+        if (scheduledTask.poolQueue.virtual) {
+            virtualThreadFactory.newThread(scheduledTask).start();
+            return;
+        }
+
+        final ForkJoinTask<?> forkJoinTask = ForkJoinTask.adapt(scheduledTask);
+        final Thread thread = Thread.currentThread();
+        if (thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == forkJoinPool) {
+            // Push onto the local deque of this worker so that idle workers
+            // can steal it.
+            forkJoinTask.fork();
+        } else {
+            forkJoinPool.execute(forkJoinTask);
+        }
+    }
+
+    private void complete(final ScheduledTask scheduledTask) {
+        lock.lock();
+        try {
+            scheduledTask.poolQueue.active--;
+            if (!scheduledTask.child) {
+                runningRootTasks--;
+            }
+            if (!scheduledTask.poolQueue.virtual) {
+                runningPoolTasks--;
+            }
+            if (!forkJoinPool.isShutdown()) {
+                dispatch();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private PoolQueue createPoolQueue(final ThreadPool threadPool) {
+        return new PoolQueue(threadPool, virtualThreadFactory != null && threadPool instanceof IoThreadPool);
+    }
+
+    private static boolean isRunningTask() {
+        final Integer depth = RUNNING_DEPTH.get();
+        return depth != null && depth > 0;
+    }
+
+    List<ThreadPoolStatistics> getStatistics() {
+        final List<ThreadPoolStatistics> list = new ArrayList<>();
+        lock.lock();
+        try {
+            for (final PoolQueue poolQueue : poolQueues.values()) {
+                list.add(new ThreadPoolStatistics(poolQueue.threadPool.getName(), poolQueue.weight,
+                        poolQueue.maxConcurrency, poolQueue.queue.size(), poolQueue.active, poolQueue.queueWait,
+                        poolQueue.runTime));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return list;
+    }
+
+    /**
+     * Stop accepting new tasks. Any tasks that are still queued are discarded.
+     */
+    void shutdown() {
+        lock.lock();
+        try {
+            forkJoinPool.shutdown();
+            for (final PoolQueue poolQueue : poolQueues.values()) {
+                if (poolQueue.queue.size() > 0) {
+                    LOGGER.warn("shutdown() - Discarding %s queued tasks from '%s'", poolQueue.queue.size(),
+                            poolQueue.threadPool.getName());
+                    poolQueue.queue.clear();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return forkJoinPool.awaitTermination(timeout, unit);
+    }
+
+    private static class PoolQueue {
+        private final ThreadPool threadPool;
+        private final int weight;
+        private final long stride;
+        private final int maxConcurrency;
+        private final boolean virtual;
+        private final ArrayDeque<ScheduledTask> queue = new ArrayDeque<>();
+        private final DurationHistogram queueWait = new DurationHistogram();
+        private final DurationHistogram runTime = new DurationHistogram();
+
+        // The following are guarded by the scheduler lock.
+        private int active;
+        private long pass;
+
+        PoolQueue(final ThreadPool threadPool, final boolean virtual) {
+            this.threadPool = threadPool;
+            this.virtual = virtual;
+            this.weight = Math.max(Thread.MIN_PRIORITY, Math.min(Thread.MAX_PRIORITY, threadPool.getPriority()));
+            this.stride = STRIDE / weight;
+
+            // A thread pool executor with an unbounded maximum size hands tasks
+            // straight to new threads whereas a bounded one queues tasks for
+            // its core threads, starting one thread if it has no core threads.
+            if (threadPool.getMaxPoolSize() == Integer.MAX_VALUE) {
+                this.maxConcurrency = Integer.MAX_VALUE;
+            } else {
+                this.maxConcurrency = Math.max(1, threadPool.getCorePoolSize());
+            }
+        }
+    }
+
+    private class ScheduledTask implements Runnable {
+        private final PoolQueue poolQueue;
+        private final Runnable runnable;
+        private final boolean child;
+        private final long queueTimeMs = System.currentTimeMillis();
+
+        ScheduledTask(final PoolQueue poolQueue, final Runnable runnable, final boolean child) {
+            this.poolQueue = poolQueue;
+            this.runnable = runnable;
+            this.child = child;
+        }
+
+        @Override
+        public void run() {
+            final long startTimeMs = System.currentTimeMillis();
+            poolQueue.queueWait.record(startTimeMs - queueTimeMs);
+
+            final Thread thread = Thread.currentThread();
+            final int originalPriority = thread.getPriority();
+            final Integer originalDepth = RUNNING_DEPTH.get();
+            try {
+                RUNNING_DEPTH.set(originalDepth == null ? 1 : originalDepth + 1);
+                thread.setPriority(poolQueue.weight);
+
+                // Run the task as a managed block so that the fork join pool
+                // will compensate with another thread if this one blocks. The
+                // number of threads is bounded by the cap on running tasks.
+                ForkJoinPool.managedBlock(new TaskBlocker(runnable));
+
+            } catch (final InterruptedException e) {
+                LOGGER.debug(e.getMessage(), e);
+                Thread.currentThread().interrupt();
+            } catch (final Throwable t) {
+                // Tasks adapted for the fork join pool keep any exception in
+                // the task, which nothing joins, so log it here or it is lost.
+                LOGGER.error(t.getMessage(), t);
+            } finally {
+                thread.setPriority(originalPriority);
+                RUNNING_DEPTH.set(originalDepth);
+                poolQueue.runTime.record(System.currentTimeMillis() - startTimeMs);
+                complete(this);
+            }
+        }
+    }
+
+    private static class TaskBlocker implements ForkJoinPool.ManagedBlocker {
+        private final Runnable runnable;
+        private boolean done;
+
+        TaskBlocker(final Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        @Override
+        public boolean block() {
+            try {
+                runnable.run();
+            } finally {
+                done = true;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return done;
+        }
+    }
+
+    /**
+     * Creates workers with Stroom names rather than the fork join pool
+     * defaults. Fork join worker threads can't be given a thread group so they
+     * join the group of the thread that causes them to be created.
+     */
+    private static class WorkerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+        private final AtomicInteger threadNo = new AtomicInteger();
+
+        @Override
+        public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+            final ForkJoinWorkerThread thread = new WorkerThread(pool);
+            // The pool names workers as it registers them so name the thread
+            // afterwards.
+            thread.setName("Stroom Task #" + threadNo.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static class WorkerThread extends ForkJoinWorkerThread {
+        WorkerThread(final ForkJoinPool pool) {
+            super(pool);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.task.server;
+
+import stroom.util.concurrent.DurationHistogram;
+
+/**
+ * A view of the state of a single logical thread pool within the task
+ * scheduler.
+ */
+public class ThreadPoolStatistics {
+    private final String name;
+    private final int weight;
+    private final int maxConcurrency;
+    private final int queued;
+    private final int active;
+    private final DurationHistogram queueWait;
+    private final DurationHistogram runTime;
+
+    ThreadPoolStatistics(final String name, final int weight, final int maxConcurrency, final int queued,
+                         final int active, final DurationHistogram queueWait, final DurationHistogram runTime) {
+        this.name = name;
+        this.weight = weight;
+        this.maxConcurrency = maxConcurrency;
+        this.queued = queued;
+        this.active = active;
+        this.queueWait = queueWait;
+        this.runTime = runTime;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public DurationHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    public DurationHistogram getRunTime() {
+        return runTime;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(name);
+        sb.append(" (weight=");
+        sb.append(weight);
+        sb.append(", max=");
+        sb.append(maxConcurrency == Integer.MAX_VALUE ? "unbounded" : String.valueOf(maxConcurrency));
+        sb.append(", active=");
+        sb.append(active);
+        sb.append(", queued=");
+        sb.append(queued);
+        sb.append(")\n    queue wait: ");
+        sb.append(queueWait);
+        sb.append("\n    run time:   ");
+        sb.append(runTime);
+        return sb.toString();
+    }
+}
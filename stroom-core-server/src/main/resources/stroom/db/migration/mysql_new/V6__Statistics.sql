@@ -51,10 +51,35 @@ CREATE TABLE SQL_STAT_KEY (
   ID 				    bigint(20) NOT NULL AUTO_INCREMENT,
   VER 				    tinyint(4) NOT NULL,
   NAME 				    varchar(766) NOT NULL,
+  NAME_ID               int(11) DEFAULT NULL,
+  MASK                  smallint(6) DEFAULT NULL,
   PRIMARY KEY           (ID),
   UNIQUE 			    (NAME)
 ) ENGINE=InnoDB DEFAULT CHARSET=latin1;
 
+CREATE INDEX SQL_STAT_KEY_NAME_ID_MASK ON SQL_STAT_KEY (NAME_ID, MASK);
+
+--
+-- Table structure for table sql_stat_dict
+--
+CREATE TABLE SQL_STAT_DICT (
+  ID 				    int(11) NOT NULL AUTO_INCREMENT,
+  VAL 				    varchar(766) NOT NULL,
+  PRIMARY KEY           (ID),
+  UNIQUE 			    (VAL)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
+--
+-- Table structure for table sql_stat_key_tag
+--
+CREATE TABLE SQL_STAT_KEY_TAG (
+  FK_SQL_STAT_KEY_ID	bigint(20) NOT NULL,
+  TAG_ID				int(11) NOT NULL,
+  VAL_ID				int(11) NOT NULL,
+  PRIMARY KEY           (TAG_ID, VAL_ID, FK_SQL_STAT_KEY_ID),
+  CONSTRAINT            SQL_STAT_KEY_TAG_FK_STAT_KEY_ID FOREIGN KEY (FK_SQL_STAT_KEY_ID) REFERENCES SQL_STAT_KEY (ID) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
 --
 -- Table structure for table sql_stat_val
 --
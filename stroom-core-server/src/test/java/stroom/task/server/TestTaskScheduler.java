@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.task.server;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import stroom.util.shared.ThreadPool;
+import stroom.util.test.StroomJUnit4ClassRunner;
+import stroom.util.test.StroomUnitTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(StroomJUnit4ClassRunner.class)
+public class TestTaskScheduler extends StroomUnitTest {
+    private TaskScheduler taskScheduler;
+
+    @After
+    public void after() throws InterruptedException {
+        if (taskScheduler != null) {
+            taskScheduler.shutdown();
+            taskScheduler.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testPoolLimit() throws InterruptedException {
+        taskScheduler = new TaskScheduler(4, 0, 0, null);
+
+        final ThreadPool bounded = new ThreadPoolImpl("Bounded", 5, 2, 10);
+        final ThreadPool noCoreThreads = new ThreadPoolImpl("No Core Threads", 5, 0, 10);
+        final ThreadPool unbounded = new ThreadPoolImpl("Unbounded", 5, 0, Integer.MAX_VALUE);
+
+        Assert.assertEquals(2, runBlocked(bounded, 10));
+        Assert.assertEquals(1, runBlocked(noCoreThreads, 10));
+        Assert.assertEquals(10, runBlocked(unbounded, 10));
+    }
+
+    @Test
+    public void testThreadLimit() throws InterruptedException {
+        taskScheduler = new TaskScheduler(2, 0, 3, null);
+
+        final ThreadPool unbounded = new ThreadPoolImpl("Unbounded", 5, 0, Integer.MAX_VALUE);
+        Assert.assertEquals(3, runBlocked(unbounded, 10));
+    }
+
+    @Test
+    public void testWeightedFairness() throws InterruptedException {
+        taskScheduler = new TaskScheduler(2, 1, 0, null);
+
+        final ThreadPool blocker = new ThreadPoolImpl("Blocker", 5, 1, 1);
+        final ThreadPool high = new ThreadPoolImpl("High", 10, 0, Integer.MAX_VALUE);
+        final ThreadPool low = new ThreadPoolImpl("Low", 5, 0, Integer.MAX_VALUE);
+
+        // Occupy the only slot so that all of the following tasks are queued.
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        taskScheduler.execute(blocker, () -> {
+            blocked.countDown();
+            await(release);
+        });
+        Assert.assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+        final int count = 30;
+        final List<String> order = new ArrayList<>();
+        final CountDownLatch complete = new CountDownLatch(count * 2);
+        for (int i = 0; i < count; i++) {
+            taskScheduler.execute(high, () -> record(order, "High", complete));
+            taskScheduler.execute(low, () -> record(order, "Low", complete));
+        }
+        release.countDown();
+        Assert.assertTrue(complete.await(10, TimeUnit.SECONDS));
+
+        // While both pools have queued tasks the higher priority pool should
+        // get twice as many turns as the lower priority pool.
+        int highCount = 0;
+        for (final String name : order.subList(0, 30)) {
+            if ("High".equals(name)) {
+                highCount++;
+            }
+        }
+        Assert.assertTrue("High priority pool ran " + highCount + " of the first 30 tasks",
+                highCount >= 19 && highCount <= 21);
+    }
+
+    @Test
+    public void testChildTasksNotLimited() throws InterruptedException {
+        taskScheduler = new TaskScheduler(2, 1, 0, null);
+
+        final ThreadPool threadPool = new ThreadPoolImpl("Test", 5, 0, Integer.MAX_VALUE);
+        final AtomicInteger childCount = new AtomicInteger();
+        final CountDownLatch complete = new CountDownLatch(1);
+        taskScheduler.execute(threadPool, () -> {
+            // The parent holds the only slot for top level tasks while it
+            // waits for its children.
+            final CountDownLatch children = new CountDownLatch(3);
+            for (int i = 0; i < 3; i++) {
+                taskScheduler.execute(threadPool, () -> {
+                    childCount.incrementAndGet();
+                    children.countDown();
+                });
+            }
+            await(children);
+            complete.countDown();
+        });
+
+        Assert.assertTrue(complete.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(3, childCount.get());
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testRejectAfterShutdown() {
+        taskScheduler = new TaskScheduler(2, 0, 0, null);
+        taskScheduler.shutdown();
+        taskScheduler.execute(new ThreadPoolImpl("Test", 5, 0, Integer.MAX_VALUE), () -> {
+        });
+    }
+
+    /**
+     * Submits tasks that block until released and returns how many of them
+     * were running at once.
+     */
+    private int runBlocked(final ThreadPool threadPool, final int count) throws InterruptedException {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch complete = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            taskScheduler.execute(threadPool, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                await(release);
+                running.decrementAndGet();
+                complete.countDown();
+            });
+        }
+
+        // Give the scheduler time to start as many tasks as it is going to.
+        Thread.sleep(500);
+        release.countDown();
+        Assert.assertTrue(complete.await(10, TimeUnit.SECONDS));
+        return maxRunning.get();
+    }
+
+    private void record(final List<String> order, final String name, final CountDownLatch complete) {
+        synchronized (order) {
+            order.add(name);
+        }
+        complete.countDown();
+    }
+
+    private void await(final CountDownLatch latch) {
+        try {
+            Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
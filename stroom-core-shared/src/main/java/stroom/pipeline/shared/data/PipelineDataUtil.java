@@ -59,6 +59,15 @@ public class PipelineDataUtil {
         return property;
     }
 
+    public static PipelineProperty createProperty(final String element, final String name, final int i) {
+        final PipelinePropertyValue value = new PipelinePropertyValue(i);
+        final PipelineProperty property = new PipelineProperty();
+        property.setElement(element);
+        property.setName(name);
+        property.setValue(value);
+        return property;
+    }
+
     public static PipelineProperty createProperty(final String element, final String name, final boolean b) {
         final PipelinePropertyValue value = new PipelinePropertyValue(b);
         final PipelineProperty property = new PipelineProperty();
@@ -41,9 +41,8 @@ public class SearchBus {
 
     private final Map<QueryKey, SearchModel> activeSearchMap = new HashMap<>();
     private final Timer pollingTimer;
-    private int delayMillis = DEFAULT_POLL_INTERVAL;
-    private boolean forcePoll;
     private boolean polling;
+    private int pollCount;
 
     @Inject
     public SearchBus(final EventBus eventBus, final ClientDispatchAsync dispatcher) {
@@ -61,9 +60,8 @@ public class SearchBus {
 
     private void reset() {
         activeSearchMap.clear();
-        delayMillis = DEFAULT_POLL_INTERVAL;
-        forcePoll = false;
         polling = false;
+        pollCount++;
         pollingTimer.cancel();
     }
 
@@ -76,9 +74,12 @@ public class SearchBus {
     }
 
     public void poll() {
+        // The server holds on to a poll until results change so if we are
+        // already polling then poll again now rather than wait for it. The
+        // server will let go of the earlier poll.
+        pollingTimer.cancel();
         if (polling) {
-            delayMillis = QUICK_POLL_INTERVAL;
-            forcePoll = true;
+            doPoll();
         } else {
             poll(QUICK_POLL_INTERVAL);
         }
@@ -90,6 +91,7 @@ public class SearchBus {
 
     private void doPoll() {
         polling = true;
+        final int currentPoll = ++pollCount;
         final Map<QueryKey, SearchRequest> searchActionMap = new HashMap<>();
         for (final Entry<QueryKey, SearchModel> entry : activeSearchMap.entrySet()) {
             final QueryKey queryKey = entry.getKey();
@@ -110,16 +112,13 @@ public class SearchBus {
                 }
             }
 
-            polling = false;
-
-            // Remember and reset delay.
-            final int delay = delayMillis;
-            delayMillis = DEFAULT_POLL_INTERVAL;
+            // Only the latest poll carries on polling.
+            if (currentPoll == pollCount) {
+                polling = false;
 
-            if (forcePoll || activeSearchMap.size() > 0) {
-                // Reset force.
-                forcePoll = false;
-                poll(delay);
+                if (activeSearchMap.size() > 0) {
+                    poll(DEFAULT_POLL_INTERVAL);
+                }
             }
         });
     }
@@ -29,6 +29,7 @@ import stroom.query.shared.ExpressionItem;
 import stroom.query.shared.ExpressionOperator;
 import stroom.query.shared.ExpressionTerm;
 import stroom.query.shared.QueryKey;
+import stroom.query.shared.Sampling;
 import stroom.query.shared.Search;
 import stroom.query.shared.SearchRequest;
 import stroom.query.shared.SearchResult;
@@ -48,6 +49,7 @@ public class SearchModel {
     private Map<String, ResultComponent> componentMap = new HashMap<>();
     private Map<String, String> currentParameterMap;
     private ExpressionOperator currentExpression;
+    private Sampling currentSampling;
     private SearchResult currentResult;
     private UniqueQueryKey currentQueryKey;
     private Search currentSearch;
@@ -96,7 +98,7 @@ public class SearchModel {
      * Run a search with the provided expression, returning results for all
      * components.
      */
-    public void search(final ExpressionOperator expression, final String params, final boolean incremental, final boolean storeHistory) {
+    public void search(final ExpressionOperator expression, final String params, final boolean incremental, final boolean storeHistory, final Sampling sampling) {
         // Toggle the request mode or start a new search.
         switch (mode) {
             case ACTIVE:
@@ -106,7 +108,7 @@ public class SearchModel {
                 break;
             case INACTIVE:
                 reset();
-                startNewSearch(expression, params, incremental, storeHistory);
+                startNewSearch(expression, params, incremental, storeHistory, sampling);
                 break;
             case PAUSED:
                 // Tell every component that it should want data.
@@ -121,7 +123,7 @@ public class SearchModel {
      *
      * @param expression The expression to search with.
      */
-    private void startNewSearch(final ExpressionOperator expression, final String params, final boolean incremental, final boolean storeHistory) {
+    private void startNewSearch(final ExpressionOperator expression, final String params, final boolean incremental, final boolean storeHistory, final Sampling sampling) {
         final Map<String, ComponentSettings> resultComponentMap = createResultComponentMap();
         if (resultComponentMap != null) {
             final DocRef dataSourceRef = indexLoader.getLoadedDataSourceRef();
@@ -137,7 +139,8 @@ public class SearchModel {
                 currentQueryKey = new UniqueQueryKey(currentQueryKey.getDashboardId(),
                         currentQueryKey.getDashboardName(), currentQueryKey.getQueryId(),
                         RandomId.createDiscrimiator());
-                currentSearch = new Search(dataSourceRef, currentExpression, resultComponentMap, currentParameterMap, timeZones.getTimeZone(), incremental, storeHistory);
+                currentSampling = sampling;
+                currentSearch = new Search(dataSourceRef, currentExpression, resultComponentMap, currentParameterMap, timeZones.getTimeZone(), incremental, storeHistory, currentSampling);
                 activeSearch = currentSearch;
 
                 // Let the query presenter know search is active.
@@ -182,7 +185,7 @@ public class SearchModel {
             if (resultComponentMap != null) {
                 final DocRef dataSourceRef = indexLoader.getLoadedDataSourceRef();
                 if (dataSourceRef != null) {
-                    currentSearch = new Search(dataSourceRef, currentExpression, resultComponentMap, currentParameterMap, timeZones.getTimeZone(), true, false);
+                    currentSearch = new Search(dataSourceRef, currentExpression, resultComponentMap, currentParameterMap, timeZones.getTimeZone(), true, false, currentSampling);
                     activeSearch = currentSearch;
 
                     // Tell the refreshing component that it should want data.
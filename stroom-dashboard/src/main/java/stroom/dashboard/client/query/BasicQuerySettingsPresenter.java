@@ -27,6 +27,7 @@ import stroom.explorer.client.presenter.EntityDropDownPresenter;
 import stroom.query.shared.Automate;
 import stroom.query.shared.DataSource;
 import stroom.query.shared.QueryData;
+import stroom.query.shared.Sampling;
 import stroom.security.shared.DocumentPermissionNames;
 import stroom.util.shared.EqualsBuilder;
 import stroom.util.shared.ModelStringUtil;
@@ -74,6 +75,15 @@ public class BasicQuerySettingsPresenter
         getView().setQueryOnOpen(automate.isOpen());
         getView().setAutoRefresh(automate.isRefresh());
         getView().setRefreshInterval(automate.getRefreshInterval());
+
+        final Sampling sampling = settings.getSampling();
+        if (sampling != null) {
+            getView().setFirstResults(toString(sampling.getFirstResults()));
+            getView().setSamplePercent(toString(sampling.getSamplePercent()));
+        } else {
+            getView().setFirstResults("");
+            getView().setSamplePercent("");
+        }
     }
 
     @Override
@@ -92,6 +102,33 @@ public class BasicQuerySettingsPresenter
         automate.setOpen(getView().isQueryOnOpen());
         automate.setRefresh(getView().isAutoRefresh());
         automate.setRefreshInterval(getView().getRefreshInterval());
+
+        final Sampling sampling = getSampling();
+        if (sampling.isLimited()) {
+            settings.setSampling(sampling);
+        } else {
+            settings.setSampling(null);
+        }
+    }
+
+    private Sampling getSampling() {
+        final Sampling sampling = new Sampling();
+        final String firstResults = getView().getFirstResults().trim();
+        if (firstResults.length() > 0) {
+            sampling.setFirstResults(Long.valueOf(firstResults));
+        }
+        final String samplePercent = getView().getSamplePercent().trim();
+        if (samplePercent.length() > 0) {
+            sampling.setSamplePercent(Double.valueOf(samplePercent));
+        }
+        return sampling;
+    }
+
+    private String toString(final Number number) {
+        if (number == null) {
+            return "";
+        }
+        return number.toString();
     }
 
     @Override
@@ -106,6 +143,20 @@ public class BasicQuerySettingsPresenter
                 throw new NumberFormatException("Query refresh interval must be greater than or equal to 10 seconds");
             }
 
+            final Sampling sampling;
+            try {
+                sampling = getSampling();
+            } catch (final NumberFormatException e) {
+                throw new NumberFormatException("First results and sample percentage must be numbers");
+            }
+            if (sampling.getFirstResults() != null && sampling.getFirstResults() <= 0) {
+                throw new NumberFormatException("First results must be greater than 0");
+            }
+            if (sampling.getSamplePercent() != null
+                    && (sampling.getSamplePercent() <= 0 || sampling.getSamplePercent() > 100)) {
+                throw new NumberFormatException("Sample percentage must be greater than 0 and no more than 100");
+            }
+
             valid = true;
         } catch (final Exception e) {
             AlertEvent.fireError(this, e.getMessage(), null);
@@ -133,6 +184,15 @@ public class BasicQuerySettingsPresenter
         builder.append(automate.isRefresh(), getView().isAutoRefresh());
         builder.append(automate.getRefreshInterval(), getView().getRefreshInterval());
 
+        final Sampling sampling = settings.getSampling();
+        if (sampling != null) {
+            builder.append(toString(sampling.getFirstResults()), getView().getFirstResults().trim());
+            builder.append(toString(sampling.getSamplePercent()), getView().getSamplePercent().trim());
+        } else {
+            builder.append("", getView().getFirstResults().trim());
+            builder.append("", getView().getSamplePercent().trim());
+        }
+
         return !builder.isEquals();
     }
 
@@ -150,5 +210,13 @@ public class BasicQuerySettingsPresenter
         String getRefreshInterval();
 
         void setRefreshInterval(String refreshInterval);
+
+        String getFirstResults();
+
+        void setFirstResults(String firstResults);
+
+        String getSamplePercent();
+
+        void setSamplePercent(String samplePercent);
     }
 }
@@ -44,6 +44,11 @@ public class BasicQuerySettingsViewImpl extends ViewImpl implements BasicQuerySe
     TickBox autoRefresh;
     @UiField
     TextBox refreshInterval;
+    @UiField
+    TextBox firstResults;
+    @UiField
+    TextBox samplePercent;
+
     @Inject
     public BasicQuerySettingsViewImpl(final Binder binder) {
         widget = binder.createAndBindUi(this);
@@ -107,6 +112,26 @@ public class BasicQuerySettingsViewImpl extends ViewImpl implements BasicQuerySe
         this.refreshInterval.setText(refreshInterval);
     }
 
+    @Override
+    public String getFirstResults() {
+        return this.firstResults.getText();
+    }
+
+    @Override
+    public void setFirstResults(final String firstResults) {
+        this.firstResults.setText(firstResults);
+    }
+
+    @Override
+    public String getSamplePercent() {
+        return this.samplePercent.getText();
+    }
+
+    @Override
+    public void setSamplePercent(final String samplePercent) {
+        this.samplePercent.setText(samplePercent);
+    }
+
     public void onResize() {
         ((RequiresResize) widget).onResize();
     }
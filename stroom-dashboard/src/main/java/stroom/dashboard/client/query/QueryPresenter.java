@@ -429,7 +429,7 @@ public class QueryPresenter extends AbstractComponentPresenter<QueryPresenter.Qu
             final ExpressionOperator root = new ExpressionOperator();
             expressionPresenter.write(root);
 
-            searchModel.search(root, params, incremental, storeHistory);
+            searchModel.search(root, params, incremental, storeHistory, getSettings().getSampling());
         }
     }
 
@@ -25,6 +25,36 @@ import java.util.concurrent.ConcurrentHashMap;
 
 public class ActiveQueries {
     private final ConcurrentHashMap<QueryKey, ActiveQuery> activeQueries = new ConcurrentHashMap<>();
+    private long latestPoll;
+
+    /**
+     * Record that the UI has polled for results. Any earlier poll that is still
+     * waiting for results to change is woken up so it can return as the UI is
+     * no longer waiting for it.
+     *
+     * @return The number of this poll.
+     */
+    public synchronized long startPoll() {
+        latestPoll++;
+        notifyAll();
+        return latestPoll;
+    }
+
+    public synchronized boolean isLatestPoll(final long poll) {
+        return poll == latestPoll;
+    }
+
+    /**
+     * Wait until either the timeout has passed or the UI polls again.
+     *
+     * @return True if this is still the latest poll.
+     */
+    public synchronized boolean awaitNextPoll(final long poll, final long timeoutMs) throws InterruptedException {
+        if (poll == latestPoll && timeoutMs > 0) {
+            wait(timeoutMs);
+        }
+        return poll == latestPoll;
+    }
 
     public void destroyUnusedQueries(final Set<QueryKey> keys) {
         // Kill off any searches that are no longer required by the UI.
@@ -25,7 +25,10 @@ import java.util.Map;
 public class ActiveQuery {
     private final Map<String, ComponentResultCreator> componentResultCreatorMap = new HashMap<>();
     private final Map<String, SharedObject> lastResults = new HashMap<>();
+    private final Map<String, CreatedComponentResult> createdResults = new HashMap<>();
     private final SearchResultCollector searchResultCollector;
+    private Boolean lastComplete;
+    private String lastErrors;
 
     public ActiveQuery(final SearchResultCollector searchResultCollector) {
         this.searchResultCollector = searchResultCollector;
@@ -42,4 +45,24 @@ public class ActiveQuery {
     public Map<String, SharedObject> getLastResults() {
         return lastResults;
     }
+
+    public Map<String, CreatedComponentResult> getCreatedResults() {
+        return createdResults;
+    }
+
+    public Boolean getLastComplete() {
+        return lastComplete;
+    }
+
+    public void setLastComplete(final Boolean lastComplete) {
+        this.lastComplete = lastComplete;
+    }
+
+    public String getLastErrors() {
+        return lastErrors;
+    }
+
+    public void setLastErrors(final String lastErrors) {
+        this.lastErrors = lastErrors;
+    }
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.server;
+
+import stroom.query.ResultStore;
+import stroom.query.shared.ComponentResultRequest;
+import stroom.util.shared.SharedObject;
+
+/**
+ * The last result created for a component along with the result store and
+ * request it was created from. Result stores are never changed once they are
+ * made available, a new store replaces the old one when new results arrive, so
+ * the result can be reused for as long as both the store and the request are
+ * the same.
+ */
+public class CreatedComponentResult {
+    private final ResultStore resultStore;
+    private final ComponentResultRequest componentResultRequest;
+    private final SharedObject componentResult;
+
+    public CreatedComponentResult(final ResultStore resultStore, final ComponentResultRequest componentResultRequest,
+                                  final SharedObject componentResult) {
+        this.resultStore = resultStore;
+        this.componentResultRequest = componentResultRequest;
+        this.componentResult = componentResult;
+    }
+
+    public boolean isCreatedFrom(final ResultStore resultStore, final ComponentResultRequest componentResultRequest) {
+        return this.resultStore == resultStore && this.componentResultRequest.equals(componentResultRequest);
+    }
+
+    public SharedObject getComponentResult() {
+        return componentResult;
+    }
+}
@@ -40,6 +40,7 @@ import stroom.util.shared.ResourceKey;
 import stroom.util.spring.StroomScope;
 
 import javax.inject.Inject;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
@@ -111,15 +112,14 @@ public class DownloadSearchResultsHandler extends AbstractTaskHandler<DownloadSe
         final FormatterFactory formatterFactory = new FormatterFactory(dateTimeLocale);
         final FieldFormatter fieldFormatter = new FieldFormatter(formatterFactory);
 
-        try {
-            // The result handler could possibly have not been set yet if the
-            // AsyncSearchTask has not started execution.
-            final ResultStore resultStore = activeQuery.getSearchResultCollector().getResultStore(componentId);
-            if (resultStore == null) {
-                throw new EntityServiceException("Search has not started yet");
-            }
+        // The result handler could possibly have not been set yet if the
+        // AsyncSearchTask has not started execution.
+        final ResultStore resultStore = activeQuery.getSearchResultCollector().getResultStore(componentId);
+        if (resultStore == null) {
+            throw new EntityServiceException("Search has not started yet");
+        }
 
-            final OutputStream outputStream = Files.newOutputStream(file);
+        try (final OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(file))) {
             SearchResultWriter.Target target = null;
 
             // Write delimited file.
@@ -23,6 +23,7 @@ import stroom.dashboard.shared.QueryService;
 import stroom.dashboard.shared.SearchBusPollAction;
 import stroom.dashboard.shared.SearchBusPollResult;
 import stroom.logging.SearchEventLog;
+import stroom.node.server.StroomPropertyService;
 import stroom.query.SearchDataSourceProvider;
 import stroom.query.SearchResultCollector;
 import stroom.query.shared.QueryData;
@@ -49,6 +50,10 @@ import java.util.Map.Entry;
 class SearchBusPollActionHandler extends AbstractTaskHandler<SearchBusPollAction, SearchBusPollResult> {
     private transient static final StroomLogger LOGGER = StroomLogger.getLogger(SearchBusPollActionHandler.class);
 
+    private static final String MAX_POLL_WAIT_MS_PROPERTY = "stroom.search.maxPollWaitMs";
+    private static final long DEFAULT_MAX_POLL_WAIT_MS = 5000;
+    private static final long CHANGE_CHECK_INTERVAL_MS = 100;
+
     private final QueryService queryService;
     private final SearchResultCreator searchResultCreator;
     private final SearchEventLog searchEventLog;
@@ -57,6 +62,7 @@ class SearchBusPollActionHandler extends AbstractTaskHandler<SearchBusPollAction
     private final ClusterResultCollectorCache clusterResultCollectorCache;
     private final TaskManager taskManager;
     private final SecurityContext securityContext;
+    private final StroomPropertyService propertyService;
 
     @Inject
     SearchBusPollActionHandler(final QueryService queryService,
@@ -66,7 +72,8 @@ class SearchBusPollActionHandler extends AbstractTaskHandler<SearchBusPollAction
                                final ActiveQueriesManager activeQueriesManager,
                                final ClusterResultCollectorCache clusterResultCollectorCache,
                                final TaskManager taskManager,
-                               final SecurityContext securityContext) {
+                               final SecurityContext securityContext,
+                               final StroomPropertyService propertyService) {
         this.queryService = queryService;
         this.searchResultCreator = searchResultCreator;
         this.searchEventLog = searchEventLog;
@@ -75,6 +82,7 @@ class SearchBusPollActionHandler extends AbstractTaskHandler<SearchBusPollAction
         this.clusterResultCollectorCache = clusterResultCollectorCache;
         this.taskManager = taskManager;
         this.securityContext = securityContext;
+        this.propertyService = propertyService;
     }
 
     @Override
@@ -99,18 +107,53 @@ class SearchBusPollActionHandler extends AbstractTaskHandler<SearchBusPollAction
             final ActiveQueries searchSession = activeQueriesManager.get(searchSessionId);
             final Map<QueryKey, SearchResult> searchResultMap = new HashMap<>();
 
-            // First kill off any queries that are no longer required by the UI.
-            searchSession.destroyUnusedQueries(action.getSearchActionMap().keySet());
+            // Polls from the same session are dealt with one at a time. A poll
+            // that is waiting for results to change lets go of the session
+            // while it waits.
+            synchronized (searchSession) {
+                final long poll = searchSession.startPoll();
+
+                // First kill off any queries that are no longer required by the UI.
+                searchSession.destroyUnusedQueries(action.getSearchActionMap().keySet());
+
+                // Make sure we have active queries for all current UI queries.
+                final Map<QueryKey, ActiveQuery> activeQueryMap = new HashMap<>();
+                for (final Entry<QueryKey, SearchRequest> entry : action.getSearchActionMap().entrySet()) {
+                    final QueryKey queryKey = entry.getKey();
+                    try {
+                        activeQueryMap.put(queryKey, getActiveQuery(action.getUserToken(), searchSession, queryKey,
+                                entry.getValue()));
+                    } catch (final Exception e) {
+                        LOGGER.debug(e.getMessage(), e);
+                        searchResultMap.put(queryKey, createErrorResult(e));
+                    }
+                }
 
-            // Get query results for every active query.
-            for (final Entry<QueryKey, SearchRequest> entry : action.getSearchActionMap().entrySet()) {
-                final QueryKey queryKey = entry.getKey();
-                final SearchRequest searchRequest = entry.getValue();
+                // Rather than have the UI poll again straight away for results
+                // that are the same as it already has, hold on to the poll until
+                // something changes.
+                if (searchResultMap.isEmpty()
+                        && !awaitChanges(searchSession, poll, activeQueryMap, action.getSearchActionMap())) {
+                    // The UI has polled again so doesn't need anything from
+                    // this poll.
+                    return new SearchBusPollResult(searchResultMap);
+                }
 
-                final SearchResult searchResult = processRequest(action.getUserToken(),
-                        searchSession, queryKey, searchRequest);
-                if (searchResult != null) {
-                    searchResultMap.put(queryKey, searchResult);
+                // Get query results for every active query.
+                for (final Entry<QueryKey, ActiveQuery> entry : activeQueryMap.entrySet()) {
+                    final QueryKey queryKey = entry.getKey();
+                    final SearchRequest searchRequest = action.getSearchActionMap().get(queryKey);
+
+                    // Perform the search or update results.
+                    if (searchRequest != null) {
+                        try {
+                            searchResultMap.put(queryKey, searchResultCreator.createResult(entry.getValue(),
+                                    searchRequest));
+                        } catch (final Exception e) {
+                            LOGGER.debug(e.getMessage(), e);
+                            searchResultMap.put(queryKey, createErrorResult(e));
+                        }
+                    }
                 }
             }
 
@@ -120,54 +163,88 @@ class SearchBusPollActionHandler extends AbstractTaskHandler<SearchBusPollAction
         }
     }
 
-    private SearchResult processRequest(final String userToken, final ActiveQueries activeQueries,
-                                        final QueryKey queryKey, final SearchRequest searchRequest) {
-        SearchResult result = null;
+    private ActiveQuery getActiveQuery(final String userToken, final ActiveQueries activeQueries,
+                                       final QueryKey queryKey, final SearchRequest searchRequest) {
+        // Make sure we have active queries for all current UI queries.
+        // Note: This also ensures that the active query cache is kept alive
+        // for all open UI components.
+        ActiveQuery activeQuery = activeQueries.getExistingQuery(queryKey);
 
-        try {
-            // Make sure we have active queries for all current UI queries.
-            // Note: This also ensures that the active query cache is kept alive
-            // for all open UI components.
-            ActiveQuery activeQuery = activeQueries.getExistingQuery(queryKey);
+        // If the query doesn't have an active query for this query key then
+        // this is new.
+        if (activeQuery == null) {
+            // Create a collector for this query.
+            final SearchResultCollector newCollector = createCollector(userToken, queryKey, searchRequest);
 
-            // If the query doesn't have an active query for this query key then
-            // this is new.
-            if (activeQuery == null) {
-                // Create a collector for this query.
-                final SearchResultCollector newCollector = createCollector(userToken, queryKey, searchRequest);
+            // Create a new active query to store the result collector and
+            // any other state that we wish to maintain for the duration of
+            // the query.
+            final ActiveQuery newQuery = new ActiveQuery(newCollector);
 
-                // Create a new active query to store the result collector and
-                // any other state that we wish to maintain for the duration of
-                // the query.
-                final ActiveQuery newQuery = new ActiveQuery(newCollector);
+            // Store the new active query for this query.
+            activeQueries.addNewQuery(queryKey, newQuery);
 
-                // Store the new active query for this query.
-                activeQueries.addNewQuery(queryKey, newQuery);
+            // Start asynchronous search execution.
+            newCollector.start();
 
-                // Start asynchronous search execution.
-                newCollector.start();
+            activeQuery = newQuery;
+        }
 
-                activeQuery = newQuery;
-            }
+        // Keep the cluster result collector cache fresh.
+        if (activeQuery.getSearchResultCollector() instanceof ClusterResultCollector<?>) {
+            clusterResultCollectorCache
+                    .get(((ClusterResultCollector<?>) activeQuery.getSearchResultCollector()).getId());
+        }
 
-            // Keep the cluster result collector cache fresh.
-            if (activeQuery.getSearchResultCollector() instanceof ClusterResultCollector<?>) {
-                clusterResultCollectorCache
-                        .get(((ClusterResultCollector<?>) activeQuery.getSearchResultCollector()).getId());
-            }
+        return activeQuery;
+    }
 
-            // Perform the search or update results.
-            if (searchRequest != null) {
-                result = searchResultCreator.createResult(activeQuery, searchRequest);
+    /**
+     * Wait until one of the queries has something new for the UI, the UI polls
+     * again or the maximum poll wait has passed.
+     *
+     * @return False if the UI has polled again while we were waiting.
+     */
+    private boolean awaitChanges(final ActiveQueries activeQueries, final long poll,
+                                 final Map<QueryKey, ActiveQuery> activeQueryMap,
+                                 final Map<QueryKey, SearchRequest> searchActionMap) {
+        final long maxWaitMs = propertyService.getLongProperty(MAX_POLL_WAIT_MS_PROPERTY, DEFAULT_MAX_POLL_WAIT_MS);
+        final long endTime = System.currentTimeMillis() + maxWaitMs;
+        try {
+            long remaining = maxWaitMs;
+            while (remaining > 0 && !hasChanges(activeQueryMap, searchActionMap)) {
+                if (!activeQueries.awaitNextPoll(poll, Math.min(remaining, CHANGE_CHECK_INTERVAL_MS))) {
+                    return false;
+                }
+                remaining = endTime - System.currentTimeMillis();
             }
-        } catch (final Exception e) {
-            LOGGER.debug(e.getMessage(), e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return activeQueries.isLatestPoll(poll);
+    }
 
-            result = new SearchResult();
-            result.setErrors(e.getMessage());
-            result.setComplete(true);
+    private boolean hasChanges(final Map<QueryKey, ActiveQuery> activeQueryMap,
+                               final Map<QueryKey, SearchRequest> searchActionMap) {
+        for (final Entry<QueryKey, ActiveQuery> entry : activeQueryMap.entrySet()) {
+            final SearchRequest searchRequest = searchActionMap.get(entry.getKey());
+            try {
+                if (searchRequest != null && searchResultCreator.hasChanged(entry.getValue(), searchRequest)) {
+                    return true;
+                }
+            } catch (final Exception e) {
+                // Let the error be reported when the result is created.
+                LOGGER.debug(e.getMessage(), e);
+                return true;
+            }
         }
+        return false;
+    }
 
+    private SearchResult createErrorResult(final Exception e) {
+        final SearchResult result = new SearchResult();
+        result.setErrors(e.getMessage());
+        result.setComplete(true);
         return result;
     }
 
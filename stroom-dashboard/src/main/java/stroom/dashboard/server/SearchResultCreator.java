@@ -69,16 +69,29 @@ public class SearchResultCreator {
                     SharedObject componentResult = null;
 
                     final ResultStore resultStore = collector.getResultStore(componentId);
-                    if (resultStore != null) {
-                        try {
-                            final ComponentResultCreator componentResultCreator = getComponentResultCreator(componentId,
-                                    componentResultRequest, activeQuery, searchRequest.getSearch().getDateTimeLocale());
-                            if (componentResultCreator != null) {
-                                componentResult = componentResultCreator.create(resultStore, componentResultRequest);
+                    final CreatedComponentResult createdResult = activeQuery.getCreatedResults().get(componentId);
+                    if (createdResult != null && createdResult.isCreatedFrom(resultStore, componentResultRequest)) {
+                        // Nothing has changed since the result was last
+                        // created so there is no need to create it again.
+                        componentResult = createdResult.getComponentResult();
+
+                    } else {
+                        if (resultStore != null) {
+                            try {
+                                final ComponentResultCreator componentResultCreator = getComponentResultCreator(
+                                        componentId, componentResultRequest, activeQuery,
+                                        searchRequest.getSearch().getDateTimeLocale());
+                                if (componentResultCreator != null) {
+                                    componentResult = componentResultCreator.create(resultStore,
+                                            componentResultRequest);
+                                }
+                            } catch (final Exception e) {
+                                componentResult = SharedString.wrap(e.getMessage());
                             }
-                        } catch (final Exception e) {
-                            componentResult = SharedString.wrap(e.getMessage());
                         }
+
+                        activeQuery.getCreatedResults().put(componentId,
+                                new CreatedComponentResult(resultStore, componentResultRequest, componentResult));
                     }
 
                     // See if we have delivered an identical result before so we
@@ -131,9 +144,44 @@ public class SearchResultCreator {
         // Deliver the latest results from the collector.
         result.setErrors(collector.getErrors());
 
+        activeQuery.setLastComplete(result.isComplete());
+        activeQuery.setLastErrors(result.getErrors());
+
         return result;
     }
 
+    /**
+     * Find out if creating a result for the request would give the client
+     * anything it hasn't already had. This is cheap to call as it only looks to
+     * see if the query has finished, has new errors or has new result stores
+     * for the components in the request.
+     */
+    public boolean hasChanged(final ActiveQuery activeQuery, final SearchRequest searchRequest) {
+        final SearchResultCollector collector = activeQuery.getSearchResultCollector();
+        final boolean complete = collector.isComplete();
+        if (!EqualsUtil.isEquals(activeQuery.getLastComplete(), complete)
+                || !EqualsUtil.isEquals(activeQuery.getLastErrors(), collector.getErrors())) {
+            return true;
+        }
+
+        if (searchRequest.getSearch().isIncremental() || complete) {
+            for (final Entry<String, ComponentResultRequest> entry : searchRequest.getComponentResultRequests()
+                    .entrySet()) {
+                final String componentId = entry.getKey();
+                final ComponentResultRequest componentResultRequest = entry.getValue();
+                if (componentResultRequest.wantsData()) {
+                    final CreatedComponentResult createdResult = activeQuery.getCreatedResults().get(componentId);
+                    if (createdResult == null || !createdResult.isCreatedFrom(collector.getResultStore(componentId),
+                            componentResultRequest)) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
     private ComponentResultCreator getComponentResultCreator(final String componentId,
             final ComponentResultRequest componentResultRequest, final ActiveQuery activeQuery,
             final String dateTimeLocale) {
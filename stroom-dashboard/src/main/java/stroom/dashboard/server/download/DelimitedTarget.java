@@ -50,6 +50,12 @@ public class DelimitedTarget implements SearchResultWriter.Target {
         delimitedWriter.close();
     }
 
+    @Override
+    public void abort() {
+        // Nothing is held other than the output stream which belongs to the
+        // caller.
+    }
+
     @Override
     public void startLine() throws IOException {
         // Do nothing
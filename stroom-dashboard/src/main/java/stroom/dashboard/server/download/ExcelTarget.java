@@ -32,6 +32,8 @@ import stroom.query.shared.NumberFormatSettings;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 public class ExcelTarget implements SearchResultWriter.Target {
     // Excel cannot store more than 32767 characters in a cell so we must truncate some values.
@@ -41,9 +43,16 @@ public class ExcelTarget implements SearchResultWriter.Target {
 
     private final OutputStream outputStream;
 
+    // Cell styles are held in memory for the whole workbook and there can only
+    // be so many of them so share a style between all cells with the same
+    // format.
+    private final Map<String, CellStyle> formatStyles = new HashMap<>();
+
     private SXSSFWorkbook wb;
     private Sheet sh;
     private Row row;
+    private CellStyle headingStyle;
+    private DataFormat dataFormat;
 
     private int colNum = 0;
     private int rowNum = 0;
@@ -57,18 +66,35 @@ public class ExcelTarget implements SearchResultWriter.Target {
         // Create a workbook with 100 rows in memory. Exceeding rows will be
         // flushed to disk.
         wb = new SXSSFWorkbook(100);
+        // Rows flushed to disk compress well so keep the temporary files small.
+        wb.setCompressTempFiles(true);
         sh = wb.createSheet();
+        dataFormat = wb.createDataFormat();
+
+        // Create a style for headings.
+        final Font headingFont = wb.createFont();
+        headingFont.setBold(true);
+        headingStyle = wb.createCellStyle();
+        headingStyle.setFont(headingFont);
     }
 
     @Override
     public void end() throws IOException {
-        // Write the workbook to the output stream.
-        wb.write(outputStream);
-        outputStream.close();
-
-        // Close the workbook.
-        wb.close();
+        try {
+            // Write the workbook to the output stream.
+            wb.write(outputStream);
+            outputStream.close();
+
+            // Close the workbook.
+            wb.close();
+        } finally {
+            // Dispose of temporary files backing workbook on disk.
+            wb.dispose();
+        }
+    }
 
+    @Override
+    public void abort() {
         // Dispose of temporary files backing workbook on disk.
         wb.dispose();
     }
@@ -86,12 +112,6 @@ public class ExcelTarget implements SearchResultWriter.Target {
 
     @Override
     public void writeHeading(final Field field, final String heading) throws IOException {
-        // Create a style for headings.
-        final Font headingFont = wb.createFont();
-        headingFont.setBold(true);
-        final CellStyle headingStyle = wb.createCellStyle();
-        headingStyle.setFont(headingFont);
-
         final Cell cell = row.createCell(colNum++);
         cell.setCellType(Cell.CELL_TYPE_STRING);
         cell.setCellValue(heading);
@@ -169,10 +189,7 @@ public class ExcelTarget implements SearchResultWriter.Target {
                 }
             }
 
-            final DataFormat df = wb.createDataFormat();
-            final CellStyle cs = wb.createCellStyle();
-            cs.setDataFormat(df.getFormat(pattern));
-            cell.setCellStyle(cs);
+            cell.setCellStyle(getFormatStyle(pattern));
 
         } else {
             cell.setCellValue(getText(value));
@@ -202,18 +219,23 @@ public class ExcelTarget implements SearchResultWriter.Target {
                     }
                 }
 
-                final String pattern = sb.toString();
-
-                final DataFormat df = wb.createDataFormat();
-                final CellStyle cs = wb.createCellStyle();
-                cs.setDataFormat(df.getFormat(pattern));
-                cell.setCellStyle(cs);
+                cell.setCellStyle(getFormatStyle(sb.toString()));
             }
         } else {
             cell.setCellValue(getText(value));
         }
     }
 
+    private CellStyle getFormatStyle(final String pattern) {
+        CellStyle cellStyle = formatStyles.get(pattern);
+        if (cellStyle == null) {
+            cellStyle = wb.createCellStyle();
+            cellStyle.setDataFormat(dataFormat.getFormat(pattern));
+            formatStyles.put(pattern, cellStyle);
+        }
+        return cellStyle;
+    }
+
     private String getText(final Object value) {
         String text = value.toString();
         if (text.length() > EXCEL_MAX_CELL_CHARACTERS) {
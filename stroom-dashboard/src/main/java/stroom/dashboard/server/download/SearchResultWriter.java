@@ -32,6 +32,12 @@ public class SearchResultWriter {
 
         void end() throws IOException;
 
+        /**
+         * Called instead of end() if writing fails to release any resources
+         * the target holds without writing any more output.
+         */
+        void abort();
+
         void startLine() throws IOException;
 
         void endLine() throws IOException;
@@ -56,11 +62,23 @@ public class SearchResultWriter {
         // Start writing.
         target.start();
 
-        // Write heading.
-        writeHeadings(fields, target);
-
-        // Write content.
-        writeContent(resultStore, fields, sampleGenerator, target);
+        try {
+            // Write heading.
+            writeHeadings(fields, target);
+
+            // Write content. Rows are written one at a time straight from the
+            // result store so nothing more than the current row is held.
+            writeContent(resultStore, fields, sampleGenerator, target);
+        } catch (final Throwable t) {
+            // Make sure the target releases any resources it holds but don't
+            // let a failure to do so hide the original problem.
+            try {
+                target.abort();
+            } catch (final RuntimeException e) {
+                t.addSuppressed(e);
+            }
+            throw t;
+        }
 
         // End writing.
         target.end();
@@ -18,6 +18,8 @@ package stroom.dashboard.shared;
 
 import stroom.query.shared.ComponentResultRequest;
 import stroom.query.shared.TableSettings;
+import stroom.util.shared.EqualsBuilder;
+import stroom.util.shared.HashCodeBuilder;
 import stroom.util.shared.OffsetRange;
 
 import java.util.HashSet;
@@ -82,4 +84,31 @@ public class TableResultRequest extends ComponentResultRequest {
     public ComponentType getComponentType() {
         return ComponentType.TABLE;
     }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof TableResultRequest)) {
+            return false;
+        }
+
+        final TableResultRequest tableResultRequest = (TableResultRequest) o;
+        final EqualsBuilder builder = new EqualsBuilder();
+        builder.append(wantsData(), tableResultRequest.wantsData());
+        builder.append(tableSettings, tableResultRequest.tableSettings);
+        builder.append(requestedRange, tableResultRequest.requestedRange);
+        builder.append(openGroups, tableResultRequest.openGroups);
+        return builder.isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+        final HashCodeBuilder builder = new HashCodeBuilder();
+        builder.append(wantsData());
+        builder.append(tableSettings);
+        builder.append(requestedRange);
+        builder.append(openGroups);
+        return builder.toHashCode();
+    }
 }
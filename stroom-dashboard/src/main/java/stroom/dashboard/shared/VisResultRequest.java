@@ -18,6 +18,8 @@ package stroom.dashboard.shared;
 
 import stroom.query.shared.ComponentResultRequest;
 import stroom.query.shared.VisDashboardSettings;
+import stroom.util.shared.EqualsBuilder;
+import stroom.util.shared.HashCodeBuilder;
 import stroom.util.shared.OffsetRange;
 
 public class VisResultRequest extends ComponentResultRequest {
@@ -54,4 +56,29 @@ public class VisResultRequest extends ComponentResultRequest {
     public ComponentType getComponentType() {
         return ComponentType.VIS;
     }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof VisResultRequest)) {
+            return false;
+        }
+
+        final VisResultRequest visResultRequest = (VisResultRequest) o;
+        final EqualsBuilder builder = new EqualsBuilder();
+        builder.append(wantsData(), visResultRequest.wantsData());
+        builder.append(visDashboardSettings, visResultRequest.visDashboardSettings);
+        builder.append(requestedRange, visResultRequest.requestedRange);
+        return builder.isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+        final HashCodeBuilder builder = new HashCodeBuilder();
+        builder.append(wantsData());
+        builder.append(visDashboardSettings);
+        builder.append(requestedRange);
+        return builder.toHashCode();
+    }
 }
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.server;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import stroom.dashboard.shared.TableResultRequest;
+import stroom.entity.shared.DocRef;
+import stroom.query.ResultStore;
+import stroom.query.SearchResultCollector;
+import stroom.query.shared.ComponentResultRequest;
+import stroom.query.shared.DateTimeFormatSettings;
+import stroom.query.shared.Field;
+import stroom.query.shared.Filter;
+import stroom.query.shared.Format;
+import stroom.query.shared.Format.Type;
+import stroom.query.shared.NumberFormatSettings;
+import stroom.query.shared.Search;
+import stroom.query.shared.SearchRequest;
+import stroom.query.shared.SearchResult;
+import stroom.query.shared.Sort;
+import stroom.query.shared.Sort.SortDirection;
+import stroom.query.shared.TableSettings;
+import stroom.query.shared.TimeZone;
+import stroom.util.shared.SharedString;
+import stroom.util.test.StroomUnitTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class TestSearchResultCreator extends StroomUnitTest {
+    private static final String COMPONENT_ID = "table";
+
+    private final SearchResultCreator searchResultCreator = new SearchResultCreator(null);
+    private TestCollector collector;
+    private ActiveQuery activeQuery;
+    private int created;
+
+    @Before
+    public void setup() {
+        collector = new TestCollector();
+        collector.resultStore = new ResultStore(new HashMap<>(), 0, 0);
+        activeQuery = new ActiveQuery(collector);
+        activeQuery.getComponentResultCreatorMap().put(COMPONENT_ID,
+                (resultStore, componentResultRequest) -> SharedString.wrap("Result " + ++created));
+        created = 0;
+    }
+
+    @Test
+    public void testResultReusedUntilStoreChanges() {
+        final SearchRequest searchRequest = createRequest(0, 100);
+        Assert.assertTrue(searchResultCreator.hasChanged(activeQuery, searchRequest));
+
+        SearchResult result = searchResultCreator.createResult(activeQuery, searchRequest);
+        Assert.assertEquals(1, created);
+        Assert.assertEquals(SharedString.wrap("Result 1"), result.getResults().get(COMPONENT_ID));
+        Assert.assertFalse(searchResultCreator.hasChanged(activeQuery, createRequest(0, 100)));
+
+        // Nothing has changed so nothing should be created or delivered.
+        result = searchResultCreator.createResult(activeQuery, createRequest(0, 100));
+        Assert.assertEquals(1, created);
+        Assert.assertNull(result.getResults());
+
+        collector.resultStore = new ResultStore(new HashMap<>(), 0, 0);
+        Assert.assertTrue(searchResultCreator.hasChanged(activeQuery, createRequest(0, 100)));
+        result = searchResultCreator.createResult(activeQuery, createRequest(0, 100));
+        Assert.assertEquals(2, created);
+        Assert.assertEquals(SharedString.wrap("Result 2"), result.getResults().get(COMPONENT_ID));
+    }
+
+    @Test
+    public void testRangeChange() {
+        searchResultCreator.createResult(activeQuery, createRequest(0, 100));
+        Assert.assertTrue(searchResultCreator.hasChanged(activeQuery, createRequest(100, 100)));
+
+        searchResultCreator.createResult(activeQuery, createRequest(100, 100));
+        Assert.assertEquals(2, created);
+    }
+
+    @Test
+    public void testComplete() {
+        searchResultCreator.createResult(activeQuery, createRequest(0, 100));
+        collector.complete = true;
+        Assert.assertTrue(searchResultCreator.hasChanged(activeQuery, createRequest(0, 100)));
+
+        final SearchResult result = searchResultCreator.createResult(activeQuery, createRequest(0, 100));
+        Assert.assertTrue(result.isComplete());
+        Assert.assertEquals(1, created);
+        Assert.assertFalse(searchResultCreator.hasChanged(activeQuery, createRequest(0, 100)));
+    }
+
+    /**
+     * Each poll receives a new copy of the request from the client so the
+     * result should be reused as long as the copy is equal.
+     */
+    @Test
+    public void testSerialisedRequest() throws Exception {
+        searchResultCreator.createResult(activeQuery, createRequest(0, 100, createTableSettings()));
+        final SearchRequest copy = serialise(createRequest(0, 100, createTableSettings()));
+        Assert.assertFalse(searchResultCreator.hasChanged(activeQuery, copy));
+
+        final TableSettings tableSettings = createTableSettings();
+        tableSettings.setMaxResults(new int[]{1000, 10});
+        Assert.assertTrue(searchResultCreator.hasChanged(activeQuery, serialise(createRequest(0, 100, tableSettings))));
+    }
+
+    private TableSettings createTableSettings() {
+        final NumberFormatSettings numberFormatSettings = new NumberFormatSettings();
+        numberFormatSettings.setDecimalPlaces(2);
+        final Field count = new Field("Count");
+        count.setExpression("count()");
+        count.setFormat(new Format(Type.NUMBER, numberFormatSettings));
+        count.setSort(new Sort(0, SortDirection.DESCENDING));
+
+        final DateTimeFormatSettings dateTimeFormatSettings = new DateTimeFormatSettings();
+        dateTimeFormatSettings.setTimeZone(TimeZone.utc());
+        final Field time = new Field("Time");
+        time.setExpression("roundDay(${EventTime})");
+        time.setFormat(new Format(Type.DATE_TIME, dateTimeFormatSettings));
+        time.setGroup(0);
+
+        final Filter filter = new Filter();
+        filter.setIncludes("user.*");
+        final Field user = new Field("User");
+        user.setExpression("${UserId}");
+        user.setFilter(filter);
+
+        final TableSettings tableSettings = new TableSettings();
+        tableSettings.setQueryId("query");
+        tableSettings.addField(count);
+        tableSettings.addField(time);
+        tableSettings.addField(user);
+        tableSettings.setExtractValues(true);
+        tableSettings.setExtractionPipeline(new DocRef("Pipeline", "uuid", "Extraction"));
+        tableSettings.setMaxResults(new int[]{1000, 100});
+        return tableSettings;
+    }
+
+    private SearchRequest serialise(final SearchRequest searchRequest) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(searchRequest);
+        }
+        try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (SearchRequest) in.readObject();
+        }
+    }
+
+    private SearchRequest createRequest(final int offset, final int length) {
+        return createRequest(offset, length, null);
+    }
+
+    private SearchRequest createRequest(final int offset, final int length, final TableSettings tableSettings) {
+        final TableResultRequest tableResultRequest = new TableResultRequest(offset, length);
+        tableResultRequest.setTableSettings(tableSettings);
+        tableResultRequest.setWantsData(true);
+        final Map<String, ComponentResultRequest> componentResultRequests = new HashMap<>();
+        componentResultRequests.put(COMPONENT_ID, tableResultRequest);
+        return new SearchRequest(new Search(null, null), componentResultRequests);
+    }
+
+    private static class TestCollector implements SearchResultCollector {
+        private volatile ResultStore resultStore;
+        private volatile boolean complete;
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void destroy() {
+        }
+
+        @Override
+        public boolean isComplete() {
+            return complete;
+        }
+
+        @Override
+        public ResultStore getResultStore(final String componentId) {
+            return resultStore;
+        }
+
+        @Override
+        public String getErrors() {
+            return null;
+        }
+
+        @Override
+        public Set<String> getHighlights() {
+            return Collections.emptySet();
+        }
+    }
+}
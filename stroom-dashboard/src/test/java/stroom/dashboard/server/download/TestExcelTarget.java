@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.server.download;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Assert;
+import org.junit.Test;
+import stroom.query.shared.Field;
+import stroom.query.shared.Format;
+import stroom.query.shared.Format.Type;
+import stroom.query.shared.NumberFormatSettings;
+import stroom.util.test.StroomUnitTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+public class TestExcelTarget extends StroomUnitTest {
+    private static final int ROWS = 1000;
+
+    @Test
+    public void testStylesShared() throws IOException {
+        final NumberFormatSettings numberFormatSettings = new NumberFormatSettings();
+        numberFormatSettings.setDecimalPlaces(2);
+        numberFormatSettings.setUseSeparator(true);
+        final Field number = new Field("Number");
+        number.setFormat(new Format(Type.NUMBER, numberFormatSettings));
+        final Field date = new Field("Date");
+        date.setFormat(new Format(Type.DATE_TIME));
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final ExcelTarget target = new ExcelTarget(outputStream);
+        target.start();
+        target.startLine();
+        target.writeHeading(number, number.getName());
+        target.writeHeading(date, date.getName());
+        target.endLine();
+        for (int i = 0; i < ROWS; i++) {
+            target.startLine();
+            target.writeValue(number, (double) i);
+            target.writeValue(date, (double) i * 1000);
+            target.endLine();
+        }
+        target.end();
+
+        try (final XSSFWorkbook wb = new XSSFWorkbook(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            final Sheet sheet = wb.getSheetAt(0);
+            Assert.assertEquals(ROWS, sheet.getLastRowNum());
+            Assert.assertEquals("Number", sheet.getRow(0).getCell(0).getStringCellValue());
+            Assert.assertEquals(ROWS - 1, sheet.getRow(ROWS).getCell(0).getNumericCellValue(), 0);
+            Assert.assertEquals("#,##0.00", sheet.getRow(ROWS).getCell(0).getCellStyle().getDataFormatString());
+
+            // The default style, the heading style and one for each format.
+            Assert.assertEquals(4, wb.getNumCellStyles());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.server.download;
+
+import org.junit.Assert;
+import org.junit.Test;
+import stroom.dashboard.server.SampleGenerator;
+import stroom.query.ResultStore;
+import stroom.query.shared.Field;
+import stroom.util.test.StroomUnitTest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+public class TestSearchResultWriter extends StroomUnitTest {
+    @Test
+    public void testAbortedOnFailure() {
+        final List<String> calls = new ArrayList<>();
+        final IOException failure = new IOException("Deliberate failure");
+        final SearchResultWriter.Target target = new SearchResultWriter.Target() {
+            @Override
+            public void start() throws IOException {
+                calls.add("start");
+            }
+
+            @Override
+            public void end() throws IOException {
+                calls.add("end");
+            }
+
+            @Override
+            public void abort() {
+                calls.add("abort");
+                throw new RuntimeException("Abort failure");
+            }
+
+            @Override
+            public void startLine() throws IOException {
+            }
+
+            @Override
+            public void endLine() throws IOException {
+            }
+
+            @Override
+            public void writeHeading(final Field field, final String heading) throws IOException {
+                throw failure;
+            }
+
+            @Override
+            public void writeValue(final Field field, final Object value) throws IOException {
+            }
+        };
+
+        final SearchResultWriter writer = new SearchResultWriter(new ResultStore(new HashMap<>(), 0, 0),
+                Collections.singletonList(new Field("Test")), new SampleGenerator(false, 100));
+        try {
+            writer.write(target);
+            Assert.fail("Expected the failure to propagate");
+        } catch (final IOException e) {
+            // The original problem should not be hidden by the abort failing.
+            Assert.assertSame(failure, e);
+            Assert.assertEquals(1, e.getSuppressed().length);
+        }
+
+        // Nothing more should have been written after the failure.
+        Assert.assertEquals(2, calls.size());
+        Assert.assertEquals("start", calls.get(0));
+        Assert.assertEquals("abort", calls.get(1));
+    }
+}
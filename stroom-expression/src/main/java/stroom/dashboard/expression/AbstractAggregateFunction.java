@@ -17,12 +17,12 @@
 package stroom.dashboard.expression;
 
 public abstract class AbstractAggregateFunction extends AbstractManyChildFunction implements AggregateFunction {
-    private static class AggregateGen extends AbstractSingleChildGenerator {
+    static class AggregateGen extends AbstractSingleChildGenerator {
         private static final long serialVersionUID = -5622353515345145314L;
 
-        private final Calculator calculator;
+        final Calculator calculator;
 
-        private Double current;
+        double current = Double.NaN;
 
         public AggregateGen(final Generator childGenerator, final Calculator calculator) {
             super(childGenerator);
@@ -32,11 +32,16 @@ public abstract class AbstractAggregateFunction extends AbstractManyChildFunctio
         @Override
         public void set(final String[] values) {
             childGenerator.set(values);
-            current = calculator.calc(current, childGenerator.eval());
+            current = calculator.calc(current, childGenerator.evalDouble());
         }
 
         @Override
         public Object eval() {
+            return TypeConverter.toObject(current);
+        }
+
+        @Override
+        public double evalDouble() {
             return current;
         }
 
@@ -67,9 +72,14 @@ public abstract class AbstractAggregateFunction extends AbstractManyChildFunctio
 
         @Override
         public Object eval() {
-            Double value = null;
+            return TypeConverter.toObject(evalDouble());
+        }
+
+        @Override
+        public double evalDouble() {
+            double value = Double.NaN;
             for (final Generator gen : childGenerators) {
-                value = calculator.calc(value, gen.eval());
+                value = calculator.calc(value, gen.evalDouble());
             }
 
             return value;
@@ -104,4 +114,8 @@ public abstract class AbstractAggregateFunction extends AbstractManyChildFunctio
     public boolean isAggregate() {
         return functions.length == 1;
     }
+
+    Calculator getCalculator() {
+        return calculator;
+    }
 }
@@ -64,6 +64,14 @@ public abstract class AbstractRoundingFunction extends AbstractFunction {
 
     protected abstract RoundCalculator createCalculator(Double decimalPlaces);
 
+    RoundCalculator getCalculator() {
+        return calculator;
+    }
+
+    Function getFunction() {
+        return function;
+    }
+
     @Override
     public boolean hasAggregate() {
         return function.hasAggregate();
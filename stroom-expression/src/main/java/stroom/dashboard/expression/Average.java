@@ -17,13 +17,13 @@
 package stroom.dashboard.expression;
 
 public class Average extends AbstractManyChildFunction implements AggregateFunction {
-    private static class AggregateGen extends AbstractSingleChildGenerator {
+    static class AggregateGen extends AbstractSingleChildGenerator {
         private static final long serialVersionUID = -6770724151493320673L;
 
-        private final Calculator calculator;
+        final Calculator calculator;
 
-        private Double current;
-        private int count;
+        double current = Double.NaN;
+        int count;
 
         public AggregateGen(final Generator childGenerator, final Calculator calculator) {
             super(childGenerator);
@@ -33,14 +33,19 @@ public class Average extends AbstractManyChildFunction implements AggregateFunct
         @Override
         public void set(final String[] values) {
             childGenerator.set(values);
-            current = calculator.calc(current, childGenerator.eval());
+            current = calculator.calc(current, childGenerator.evalDouble());
             count++;
         }
 
         @Override
         public Object eval() {
-            if (current == null || count == 0) {
-                return null;
+            return TypeConverter.toObject(evalDouble());
+        }
+
+        @Override
+        public double evalDouble() {
+            if (count == 0) {
+                return Double.NaN;
             }
             return current / count;
         }
@@ -74,17 +79,17 @@ public class Average extends AbstractManyChildFunction implements AggregateFunct
 
         @Override
         public Object eval() {
-            Double value = null;
-            for (final Generator gen : childGenerators) {
-                value = calculator.calc(value, gen.eval());
-            }
+            return TypeConverter.toObject(evalDouble());
+        }
 
-            final Double cur = TypeConverter.getDouble(value);
-            if (cur == null) {
-                return null;
+        @Override
+        public double evalDouble() {
+            double value = Double.NaN;
+            for (final Generator gen : childGenerators) {
+                value = calculator.calc(value, gen.evalDouble());
             }
 
-            return cur / childGenerators.length;
+            return value / childGenerators.length;
         }
     }
 
@@ -118,4 +123,8 @@ public class Average extends AbstractManyChildFunction implements AggregateFunct
     public boolean isAggregate() {
         return functions.length == 1;
     }
+
+    Calculator getCalculator() {
+        return calculator;
+    }
 }
@@ -46,4 +46,8 @@ public class Brackets extends AbstractFunction {
     public boolean hasAggregate() {
         return function.hasAggregate();
     }
+
+    Function getFunction() {
+        return function;
+    }
 }
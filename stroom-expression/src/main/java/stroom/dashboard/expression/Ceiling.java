@@ -21,23 +21,23 @@ public class Ceiling extends AbstractRoundingFunction {
         private static final long serialVersionUID = -2414316545075369054L;
 
         @Override
-        public Double calc(final Double value) {
-            return Double.valueOf(Math.ceil(value));
+        public double calc(final double value) {
+            return Math.ceil(value);
         }
     }
 
     private static class DecimalPlaceCeiling implements RoundCalculator {
         private static final long serialVersionUID = -5893918049538006730L;
 
-        private final Double multiplier;
+        private final double multiplier;
 
-        public DecimalPlaceCeiling(final Double multiplier) {
+        public DecimalPlaceCeiling(final double multiplier) {
             this.multiplier = multiplier;
         }
 
         @Override
-        public Double calc(final Double value) {
-            return Double.valueOf(Math.ceil(value * multiplier) / multiplier);
+        public double calc(final double value) {
+            return Math.ceil(value * multiplier) / multiplier;
         }
     }
 
@@ -53,7 +53,7 @@ public class Ceiling extends AbstractRoundingFunction {
             return new NumericCeiling();
         }
 
-        final Double multiplier = Double.valueOf(Math.pow(10D, decimalPlaces));
+        final double multiplier = Math.pow(10D, decimalPlaces);
         return new DecimalPlaceCeiling(multiplier);
     }
 }
@@ -17,10 +17,10 @@
 package stroom.dashboard.expression;
 
 public class Count extends AbstractFunction {
-    private static class Gen extends AbstractNoChildGenerator {
+    static class Gen extends AbstractNoChildGenerator {
         private static final long serialVersionUID = 9222017471352363944L;
 
-        private double count;
+        double count;
 
         @Override
         public void set(final String[] values) {
@@ -32,6 +32,11 @@ public class Count extends AbstractFunction {
             return count;
         }
 
+        @Override
+        public double evalDouble() {
+            return count;
+        }
+
         @Override
         public void merge(final Generator generator) {
             final Gen countGen = (Gen) generator;
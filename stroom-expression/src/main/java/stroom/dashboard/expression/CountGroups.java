@@ -20,11 +20,11 @@ import java.util.HashSet;
 import java.util.Set;
 
 public class CountGroups extends AbstractFunction {
-    private static class Gen extends AbstractNoChildGenerator {
+    static class Gen extends AbstractNoChildGenerator {
         private static final long serialVersionUID = -9130548669643582369L;
 
-        private final Set<String> childGroups = new HashSet<>();
-        private long nonGroupedChildCount;
+        final Set<String> childGroups = new HashSet<>();
+        long nonGroupedChildCount;
 
         @Override
         public Object eval() {
@@ -20,6 +20,7 @@ import java.text.ParseException;
 
 public class Expression implements Function {
     private Function function = null;
+    private GeneratorFactory compiled = null;
     private boolean hasAggregate;
 
     @Override
@@ -34,11 +35,27 @@ public class Expression implements Function {
         this.hasAggregate = function.hasAggregate();
     }
 
+    /**
+     * Compile the parsed function tree so that generators are created from
+     * the compiled form rather than interpreted. Any function the compiler
+     * doesn't support is still interpreted, see {@link ExpressionCompiler}.
+     */
+    public void compile() {
+        compiled = new ExpressionCompiler().compile(function);
+    }
+
     @Override
     public Generator createGenerator() {
+        if (compiled != null) {
+            return compiled.createGenerator();
+        }
         return function.createGenerator();
     }
 
+    Function getFunction() {
+        return function;
+    }
+
     @Override
     public String toString() {
         if (function == null) {
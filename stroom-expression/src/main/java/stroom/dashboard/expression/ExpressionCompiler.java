@@ -0,0 +1,461 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression;
+
+/**
+ * Compiles a parsed function tree into a form that is cheaper to evaluate for
+ * every row.
+ * <p>
+ * The parts of an expression that don't aggregate are compiled into a tree of
+ * stateless values that compute a cell straight from the row, so each row
+ * needs one generator for them rather than one for every function. Field
+ * references become array lookups, numeric functions work on primitive
+ * doubles and anything that doesn't reference a field is evaluated once here
+ * rather than for every row. Aggregating functions get a single generator
+ * that reads their compiled child value directly.
+ * <p>
+ * Any function the compiler doesn't know about is left to the interpreter so
+ * the compiled form always gives the same results as the parsed tree.
+ */
+public class ExpressionCompiler {
+    private static final String[] NO_VALUES = new String[0];
+
+    /**
+     * @return A factory that creates generators equivalent to those of the
+     * supplied function.
+     */
+    public GeneratorFactory compile(final Function function) {
+        if (!function.hasAggregate()) {
+            final Value value = compileValue(function);
+            if (value instanceof ConstantValue) {
+                return new ConstantFactory(((ConstantValue) value).value);
+            }
+            return () -> new ValueGen(value);
+        }
+
+        if (function instanceof Expression) {
+            return compile(((Expression) function).getFunction());
+        }
+        if (function instanceof Brackets) {
+            return compile(((Brackets) function).getFunction());
+        }
+
+        if (function instanceof AbstractAggregateFunction && function.isAggregate()) {
+            final AbstractAggregateFunction aggregate = (AbstractAggregateFunction) function;
+            final Function child = aggregate.functions[0];
+            if (!child.hasAggregate()) {
+                final Calculator calculator = aggregate.getCalculator();
+                final Value value = compileValue(child);
+                return () -> new AggregateGen(calculator, value);
+            }
+        } else if (function instanceof Average && function.isAggregate()) {
+            final Average average = (Average) function;
+            final Function child = average.functions[0];
+            if (!child.hasAggregate()) {
+                final Calculator calculator = average.getCalculator();
+                final Value value = compileValue(child);
+                return () -> new AverageGen(calculator, value);
+            }
+        } else if (function instanceof AbstractManyChildFunction && !function.isAggregate()) {
+            // A function of aggregates, e.g. max(${val})-min(${val}), uses the
+            // generator of the source function over the compiled children.
+            final AbstractManyChildFunction manyChild = (AbstractManyChildFunction) function;
+            final GeneratorFactory[] children = new GeneratorFactory[manyChild.functions.length];
+            for (int i = 0; i < children.length; i++) {
+                children[i] = compile(manyChild.functions[i]);
+            }
+            return () -> {
+                final Generator[] childGenerators = new Generator[children.length];
+                for (int i = 0; i < children.length; i++) {
+                    childGenerators[i] = children[i].createGenerator();
+                }
+                return manyChild.createGenerator(childGenerators);
+            };
+        } else if (function instanceof AbstractRoundingFunction) {
+            final AbstractRoundingFunction rounding = (AbstractRoundingFunction) function;
+            return compileRound(rounding.getCalculator(), rounding.getFunction());
+        } else if (function instanceof RoundDate) {
+            final RoundDate rounding = (RoundDate) function;
+            return compileRound(rounding.getCalculator(), rounding.getFunction());
+        }
+
+        // Interpret anything else.
+        return function::createGenerator;
+    }
+
+    private GeneratorFactory compileRound(final RoundCalculator calculator, final Function function) {
+        final GeneratorFactory child = compile(function);
+        return () -> new RoundGenerator(child.createGenerator(), calculator);
+    }
+
+    private Value compileValue(final Function function) {
+        if (isConstant(function)) {
+            final Generator generator = function.createGenerator();
+            generator.set(NO_VALUES);
+            return new ConstantValue(generator.eval());
+        }
+
+        if (function instanceof Ref) {
+            final int fieldIndex = ((Ref) function).getFieldIndex();
+            if (fieldIndex < 0) {
+                return new ConstantValue(null);
+            }
+            return new FieldValue(fieldIndex);
+        } else if (function instanceof Expression) {
+            return compileValue(((Expression) function).getFunction());
+        } else if (function instanceof Brackets) {
+            return compileValue(((Brackets) function).getFunction());
+        } else if (function instanceof NumericFunction) {
+            final NumericFunction numeric = (NumericFunction) function;
+            return new NumericValue(numeric.getCalculator(), compileValues(numeric.functions));
+        } else if (function instanceof AbstractAggregateFunction) {
+            // Without an aggregate this is a function of its parameters, e.g.
+            // max(${a}, ${b}).
+            final AbstractAggregateFunction aggregate = (AbstractAggregateFunction) function;
+            return new NumericValue(aggregate.getCalculator(), compileValues(aggregate.functions));
+        } else if (function instanceof Average) {
+            // Without an aggregate this is the mean of its parameters, e.g.
+            // average(${a}, ${b}).
+            final Average average = (Average) function;
+            return new AverageValue(average.getCalculator(), compileValues(average.functions));
+        } else if (function instanceof AbstractRoundingFunction) {
+            final AbstractRoundingFunction rounding = (AbstractRoundingFunction) function;
+            return new RoundValue(rounding.getCalculator(), compileValue(rounding.getFunction()));
+        } else if (function instanceof RoundDate) {
+            final RoundDate rounding = (RoundDate) function;
+            return new RoundValue(rounding.getCalculator(), compileValue(rounding.getFunction()));
+        }
+
+        return new InterpretedValue(function);
+    }
+
+    private Value[] compileValues(final Function[] functions) {
+        final Value[] values = new Value[functions.length];
+        for (int i = 0; i < functions.length; i++) {
+            values[i] = compileValue(functions[i]);
+        }
+        return values;
+    }
+
+    /**
+     * @return True if the parameter gives the same value for every row, i.e.
+     * it doesn't reference a field, aggregate or produce random numbers.
+     */
+    private boolean isConstant(final Object param) {
+        if (!(param instanceof Function)) {
+            return true;
+        }
+
+        final Function function = (Function) param;
+        if (function.hasAggregate() || function instanceof Ref || function instanceof Random) {
+            return false;
+        } else if (function instanceof StaticValueFunction) {
+            return true;
+        } else if (function instanceof Expression) {
+            return isConstant(((Expression) function).getFunction());
+        } else if (function instanceof AbstractFunction) {
+            final Object[] params = ((AbstractFunction) function).params;
+            if (params != null) {
+                for (final Object childParam : params) {
+                    if (!isConstant(childParam)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Computes a value from a row without keeping any state so that one tree
+     * of values can be shared by all of the generators of an expression.
+     */
+    private abstract static class Value {
+        abstract Object eval(String[] values);
+
+        double evalDouble(final String[] values) {
+            return TypeConverter.getDoubleValue(eval(values));
+        }
+    }
+
+    private static final class ConstantValue extends Value {
+        private final Object value;
+        private final double doubleValue;
+
+        ConstantValue(final Object value) {
+            this.value = value;
+            this.doubleValue = TypeConverter.getDoubleValue(value);
+        }
+
+        @Override
+        Object eval(final String[] values) {
+            return value;
+        }
+
+        @Override
+        double evalDouble(final String[] values) {
+            return doubleValue;
+        }
+    }
+
+    private static final class FieldValue extends Value {
+        private final int fieldIndex;
+
+        FieldValue(final int fieldIndex) {
+            this.fieldIndex = fieldIndex;
+        }
+
+        @Override
+        Object eval(final String[] values) {
+            return values[fieldIndex];
+        }
+    }
+
+    private static final class NumericValue extends Value {
+        private final Calculator calculator;
+        private final Value[] children;
+
+        NumericValue(final Calculator calculator, final Value[] children) {
+            this.calculator = calculator;
+            this.children = children;
+        }
+
+        @Override
+        Object eval(final String[] values) {
+            return TypeConverter.toObject(evalDouble(values));
+        }
+
+        @Override
+        double evalDouble(final String[] values) {
+            double value = Double.NaN;
+            for (final Value child : children) {
+                value = calculator.calc(value, child.evalDouble(values));
+            }
+            return value;
+        }
+    }
+
+    private static final class AverageValue extends Value {
+        private final Calculator calculator;
+        private final Value[] children;
+
+        AverageValue(final Calculator calculator, final Value[] children) {
+            this.calculator = calculator;
+            this.children = children;
+        }
+
+        @Override
+        Object eval(final String[] values) {
+            return TypeConverter.toObject(evalDouble(values));
+        }
+
+        @Override
+        double evalDouble(final String[] values) {
+            double value = Double.NaN;
+            for (final Value child : children) {
+                value = calculator.calc(value, child.evalDouble(values));
+            }
+            return value / children.length;
+        }
+    }
+
+    private static final class RoundValue extends Value {
+        private final RoundCalculator calculator;
+        private final Value child;
+
+        RoundValue(final RoundCalculator calculator, final Value child) {
+            this.calculator = calculator;
+            this.child = child;
+        }
+
+        @Override
+        Object eval(final String[] values) {
+            return TypeConverter.toObject(evalDouble(values));
+        }
+
+        @Override
+        double evalDouble(final String[] values) {
+            final double value = child.evalDouble(values);
+            if (Double.isNaN(value)) {
+                return value;
+            }
+            return calculator.calc(value);
+        }
+    }
+
+    /**
+     * Functions without a compiled form, e.g. string functions, are evaluated
+     * by creating a generator for them for every row. The values below them
+     * are still compiled where they are used as parameters of a compiled
+     * function but not where they are parameters of the interpreted one.
+     */
+    private static final class InterpretedValue extends Value {
+        private final Function function;
+
+        InterpretedValue(final Function function) {
+            this.function = function;
+        }
+
+        @Override
+        Object eval(final String[] values) {
+            final Generator generator = function.createGenerator();
+            generator.set(values);
+            return generator.eval();
+        }
+
+        @Override
+        double evalDouble(final String[] values) {
+            final Generator generator = function.createGenerator();
+            generator.set(values);
+            return generator.evalDouble();
+        }
+    }
+
+    // The compiled values are only needed while rows are being set so the
+    // generators below don't serialise them with the results. Generators that
+    // are read back from their state by GeneratorCodec have no value.
+
+    static class ValueGen extends AbstractNoChildGenerator {
+        private static final long serialVersionUID = -1367442938012467025L;
+
+        private final transient Value value;
+        Object current;
+
+        ValueGen(final Value value) {
+            this.value = value;
+        }
+
+        ValueGen(final Object current) {
+            this.value = null;
+            this.current = current;
+        }
+
+        @Override
+        public void set(final String[] values) {
+            current = value.eval(values);
+        }
+
+        @Override
+        public Object eval() {
+            return current;
+        }
+    }
+
+    static class AggregateGen extends AbstractNoChildGenerator {
+        private static final long serialVersionUID = 5253722414581212744L;
+
+        final Calculator calculator;
+        private final transient Value value;
+        double current = Double.NaN;
+
+        AggregateGen(final Calculator calculator, final Value value) {
+            this.calculator = calculator;
+            this.value = value;
+        }
+
+        AggregateGen(final Calculator calculator, final double current) {
+            this.calculator = calculator;
+            this.value = null;
+            this.current = current;
+        }
+
+        @Override
+        public void set(final String[] values) {
+            current = calculator.calc(current, value.evalDouble(values));
+        }
+
+        @Override
+        public Object eval() {
+            return TypeConverter.toObject(current);
+        }
+
+        @Override
+        public double evalDouble() {
+            return current;
+        }
+
+        @Override
+        public void merge(final Generator generator) {
+            current = calculator.calc(current, ((AggregateGen) generator).current);
+        }
+    }
+
+    static class AverageGen extends AbstractNoChildGenerator {
+        private static final long serialVersionUID = -3390371862343446387L;
+
+        final Calculator calculator;
+        private final transient Value value;
+        double current = Double.NaN;
+        int count;
+
+        AverageGen(final Calculator calculator, final Value value) {
+            this.calculator = calculator;
+            this.value = value;
+        }
+
+        AverageGen(final Calculator calculator, final double current, final int count) {
+            this.calculator = calculator;
+            this.value = null;
+            this.current = current;
+            this.count = count;
+        }
+
+        @Override
+        public void set(final String[] values) {
+            current = calculator.calc(current, value.evalDouble(values));
+            count++;
+        }
+
+        @Override
+        public Object eval() {
+            return TypeConverter.toObject(evalDouble());
+        }
+
+        @Override
+        public double evalDouble() {
+            if (count == 0) {
+                return Double.NaN;
+            }
+            return current / count;
+        }
+
+        @Override
+        public void merge(final Generator generator) {
+            final AverageGen averageGen = (AverageGen) generator;
+            current = calculator.calc(current, averageGen.current);
+            count += averageGen.count;
+        }
+    }
+
+    /**
+     * The generator of an expression that gives the same value for every row.
+     */
+    static final class ConstantFactory implements GeneratorFactory {
+        private final StaticValueFunction function;
+
+        ConstantFactory(final Object value) {
+            this.function = new StaticValueFunction(value);
+        }
+
+        @Override
+        public Generator createGenerator() {
+            return function.createGenerator();
+        }
+    }
+}
@@ -21,23 +21,23 @@ public class Floor extends AbstractRoundingFunction {
         private static final long serialVersionUID = -2414316545075369054L;
 
         @Override
-        public Double calc(final Double value) {
-            return Double.valueOf(Math.floor(value));
+        public double calc(final double value) {
+            return Math.floor(value);
         }
     }
 
     private static class DecimalPlaceFloor implements RoundCalculator {
         private static final long serialVersionUID = -5893918049538006730L;
 
-        private final Double multiplier;
+        private final double multiplier;
 
-        public DecimalPlaceFloor(final Double multiplier) {
+        public DecimalPlaceFloor(final double multiplier) {
             this.multiplier = multiplier;
         }
 
         @Override
-        public Double calc(final Double value) {
-            return Double.valueOf(Math.floor(value * multiplier) / multiplier);
+        public double calc(final double value) {
+            return Math.floor(value * multiplier) / multiplier;
         }
     }
 
@@ -53,7 +53,7 @@ public class Floor extends AbstractRoundingFunction {
             return new NumericFloor();
         }
 
-        final Double multiplier = Double.valueOf(Math.pow(10D, decimalPlaces));
+        final double multiplier = Math.pow(10D, decimalPlaces);
         return new DecimalPlaceFloor(multiplier);
     }
 }
@@ -44,6 +44,18 @@ public interface Generator extends Serializable, Comparable<Object> {
      */
     Object eval();
 
+    /**
+     * Evaluate this generator as a number without boxing the result. Numeric
+     * generators override this so that nested numeric functions and
+     * aggregates can work entirely with primitive values.
+     *
+     * @return The numeric result of this function or NaN if the result is
+     *         not a number.
+     */
+    default double evalDouble() {
+        return TypeConverter.getDoubleValue(eval());
+    }
+
     /**
      * Merge the values from another generator into this generator, e.g. for a
      * min generator take the min value from the supplied min generator and
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes generators in a compact binary form for sending search results
+ * between nodes.
+ * <p>
+ * Once a generator has been sent it is only evaluated and merged, so only the
+ * state needed for that is written: the value of a generator that doesn't
+ * aggregate and the running totals of one that does. Generators are read back
+ * as equivalent generators that can be evaluated and merged with each other
+ * but can't be given any more rows. A generator the codec doesn't know, e.g.
+ * a function of several aggregates, is written with Java serialisation.
+ */
+public final class GeneratorCodec {
+    // Generator types.
+    private static final byte NULL = 0;
+    private static final byte VALUE = 1;
+    private static final byte AGGREGATE = 2;
+    private static final byte AVERAGE = 3;
+    private static final byte COUNT = 4;
+    private static final byte COUNT_GROUPS = 5;
+    private static final byte SERIALISED = 6;
+
+    // Value types.
+    private static final byte NULL_VALUE = 0;
+    private static final byte STRING_VALUE = 1;
+    private static final byte DOUBLE_VALUE = 2;
+    private static final byte SERIALISED_VALUE = 3;
+
+    // Calculators.
+    private static final byte ADD = 1;
+    private static final byte MIN = 2;
+    private static final byte MAX = 3;
+
+    private GeneratorCodec() {
+        // Utility class
+    }
+
+    public static void write(final DataOutput out, final Generator generator) throws IOException {
+        if (generator == null) {
+            out.writeByte(NULL);
+
+        } else if (generator instanceof ExpressionCompiler.AggregateGen
+                && getCalculatorId(((ExpressionCompiler.AggregateGen) generator).calculator) != 0) {
+            final ExpressionCompiler.AggregateGen gen = (ExpressionCompiler.AggregateGen) generator;
+            writeAggregate(out, gen.calculator, gen.current);
+
+        } else if (generator instanceof AbstractAggregateFunction.AggregateGen
+                && getCalculatorId(((AbstractAggregateFunction.AggregateGen) generator).calculator) != 0
+                && isStateless(((AbstractAggregateFunction.AggregateGen) generator).childGenerator)) {
+            final AbstractAggregateFunction.AggregateGen gen = (AbstractAggregateFunction.AggregateGen) generator;
+            writeAggregate(out, gen.calculator, gen.current);
+
+        } else if (generator instanceof ExpressionCompiler.AverageGen
+                && getCalculatorId(((ExpressionCompiler.AverageGen) generator).calculator) == ADD) {
+            final ExpressionCompiler.AverageGen gen = (ExpressionCompiler.AverageGen) generator;
+            writeAverage(out, gen.current, gen.count);
+
+        } else if (generator instanceof Average.AggregateGen
+                && getCalculatorId(((Average.AggregateGen) generator).calculator) == ADD
+                && isStateless(((Average.AggregateGen) generator).childGenerator)) {
+            final Average.AggregateGen gen = (Average.AggregateGen) generator;
+            writeAverage(out, gen.current, gen.count);
+
+        } else if (generator instanceof Count.Gen) {
+            out.writeByte(COUNT);
+            out.writeDouble(((Count.Gen) generator).count);
+
+        } else if (generator instanceof CountGroups.Gen) {
+            final CountGroups.Gen gen = (CountGroups.Gen) generator;
+            out.writeByte(COUNT_GROUPS);
+            writeVarLong(out, gen.nonGroupedChildCount);
+            writeVarLong(out, gen.childGroups.size());
+            for (final String group : gen.childGroups) {
+                writeString(out, group);
+            }
+
+        } else if (isStateless(generator)) {
+            out.writeByte(VALUE);
+            writeValue(out, generator.eval());
+
+        } else {
+            out.writeByte(SERIALISED);
+            writeSerialised(out, generator);
+        }
+    }
+
+    public static Generator read(final DataInput in) throws IOException {
+        final byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case VALUE:
+                return new ExpressionCompiler.ValueGen(readValue(in));
+            case AGGREGATE:
+                final Calculator calculator = getCalculator(in.readByte());
+                return new ExpressionCompiler.AggregateGen(calculator, in.readDouble());
+            case AVERAGE:
+                final double current = in.readDouble();
+                return new ExpressionCompiler.AverageGen(new Add.Calc(), current, (int) readVarLong(in));
+            case COUNT:
+                final Count.Gen countGen = new Count.Gen();
+                countGen.count = in.readDouble();
+                return countGen;
+            case COUNT_GROUPS:
+                final CountGroups.Gen countGroupsGen = new CountGroups.Gen();
+                countGroupsGen.nonGroupedChildCount = readVarLong(in);
+                final long size = readVarLong(in);
+                for (long i = 0; i < size; i++) {
+                    countGroupsGen.childGroups.add(readString(in));
+                }
+                return countGroupsGen;
+            case SERIALISED:
+                return (Generator) readSerialised(in);
+            default:
+                throw new IOException("Unknown generator type " + type);
+        }
+    }
+
+    /**
+     * Write a string that may be null and may be longer than
+     * {@link DataOutput#writeUTF(String)} allows.
+     */
+    public static void writeString(final DataOutput out, final String string) throws IOException {
+        if (string == null) {
+            writeVarLong(out, 0);
+        } else {
+            final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, bytes.length + 1);
+            out.write(bytes);
+        }
+    }
+
+    public static String readString(final DataInput in) throws IOException {
+        final int length = (int) readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write a non negative number in as few bytes as it needs, seven bits to a
+     * byte.
+     */
+    public static void writeVarLong(final DataOutput out, final long value) throws IOException {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            out.writeByte((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        out.writeByte((int) remaining);
+    }
+
+    public static long readVarLong(final DataInput in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * @return True if the generator and its children keep nothing but the
+     * value of the current row, in which case merging it does nothing and
+     * only its value needs to be sent.
+     */
+    private static boolean isStateless(final Generator generator) {
+        if (generator instanceof ExpressionCompiler.AggregateGen
+                || generator instanceof ExpressionCompiler.AverageGen
+                || generator instanceof AbstractAggregateFunction.AggregateGen
+                || generator instanceof Average.AggregateGen
+                || generator instanceof Count.Gen
+                || generator instanceof CountGroups.Gen) {
+            return false;
+        } else if (generator instanceof AbstractSingleChildGenerator) {
+            return isStateless(((AbstractSingleChildGenerator) generator).childGenerator);
+        } else if (generator instanceof AbstractManyChildGenerator) {
+            final Generator[] childGenerators = ((AbstractManyChildGenerator) generator).childGenerators;
+            if (childGenerators != null) {
+                for (final Generator childGenerator : childGenerators) {
+                    if (!isStateless(childGenerator)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return generator instanceof AbstractNoChildGenerator;
+    }
+
+    private static void writeAggregate(final DataOutput out, final Calculator calculator, final double current)
+            throws IOException {
+        out.writeByte(AGGREGATE);
+        out.writeByte(getCalculatorId(calculator));
+        out.writeDouble(current);
+    }
+
+    private static void writeAverage(final DataOutput out, final double current, final int count)
+            throws IOException {
+        out.writeByte(AVERAGE);
+        out.writeDouble(current);
+        writeVarLong(out, count);
+    }
+
+    private static byte getCalculatorId(final Calculator calculator) {
+        if (calculator instanceof Add.Calc) {
+            return ADD;
+        } else if (calculator instanceof Min.Calc) {
+            return MIN;
+        } else if (calculator instanceof Max.Calc) {
+            return MAX;
+        }
+        return 0;
+    }
+
+    private static Calculator getCalculator(final byte id) throws IOException {
+        switch (id) {
+            case ADD:
+                return new Add.Calc();
+            case MIN:
+                return new Min.Calc();
+            case MAX:
+                return new Max.Calc();
+            default:
+                throw new IOException("Unknown calculator " + id);
+        }
+    }
+
+    private static void writeValue(final DataOutput out, final Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL_VALUE);
+        } else if (value instanceof String) {
+            out.writeByte(STRING_VALUE);
+            writeString(out, (String) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE_VALUE);
+            out.writeDouble((Double) value);
+        } else {
+            out.writeByte(SERIALISED_VALUE);
+            writeSerialised(out, value);
+        }
+    }
+
+    private static Object readValue(final DataInput in) throws IOException {
+        final byte type = in.readByte();
+        switch (type) {
+            case NULL_VALUE:
+                return null;
+            case STRING_VALUE:
+                return readString(in);
+            case DOUBLE_VALUE:
+                return in.readDouble();
+            case SERIALISED_VALUE:
+                return readSerialised(in);
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    private static void writeSerialised(final DataOutput out, final Object object) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream objectOutputStream = new ObjectOutputStream(bytes)) {
+            objectOutputStream.writeObject(object);
+        }
+        writeVarLong(out, bytes.size());
+        out.write(bytes.toByteArray());
+    }
+
+    private static Object readSerialised(final DataInput in) throws IOException {
+        final byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        try (final ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return objectInputStream.readObject();
+        } catch (final ClassNotFoundException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+}
@@ -36,9 +36,14 @@ public abstract class NumericFunction extends AbstractManyChildFunction {
 
         @Override
         public Object eval() {
-            Double value = null;
+            return TypeConverter.toObject(evalDouble());
+        }
+
+        @Override
+        public double evalDouble() {
+            double value = Double.NaN;
             for (final Generator gen : childGenerators) {
-                value = calculator.calc(value, gen.eval());
+                value = calculator.calc(value, gen.evalDouble());
             }
 
             return value;
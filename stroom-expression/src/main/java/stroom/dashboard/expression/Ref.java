@@ -28,6 +28,11 @@ public class Ref extends AbstractFunction {
         public Object eval() {
             return null;
         }
+
+        @Override
+        public double evalDouble() {
+            return Double.NaN;
+        }
     }
 
     private static class Gen extends AbstractNoChildGenerator {
@@ -36,6 +41,11 @@ public class Ref extends AbstractFunction {
         private final int fieldIndex;
         private String current;
 
+        // The numeric value of the current field, only converted the first
+        // time it is asked for after each row is set.
+        private transient double currentDouble;
+        private transient boolean converted;
+
         public Gen(final int fieldIndex) {
             this.fieldIndex = fieldIndex;
         }
@@ -43,12 +53,22 @@ public class Ref extends AbstractFunction {
         @Override
         public void set(final String[] values) {
             current = values[fieldIndex];
+            converted = false;
         }
 
         @Override
         public Object eval() {
             return current;
         }
+
+        @Override
+        public double evalDouble() {
+            if (!converted) {
+                currentDouble = TypeConverter.getDoubleValue(current);
+                converted = true;
+            }
+            return currentDouble;
+        }
     }
 
     private static final NullGen NULL_GEN = new NullGen();
@@ -82,4 +102,8 @@ public class Ref extends AbstractFunction {
     public boolean hasAggregate() {
         return false;
     }
+
+    int getFieldIndex() {
+        return fieldIndex;
+    }
 }
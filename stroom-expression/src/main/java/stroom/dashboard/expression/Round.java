@@ -21,23 +21,23 @@ public class Round extends AbstractRoundingFunction {
         private static final long serialVersionUID = -2414316545075369054L;
 
         @Override
-        public Double calc(final Double value) {
-            return Double.valueOf(Math.round(value));
+        public double calc(final double value) {
+            return Math.round(value);
         }
     }
 
     private static class DecimalPlaceRound implements RoundCalculator {
         private static final long serialVersionUID = -5893918049538006730L;
 
-        private final Double multiplier;
+        private final double multiplier;
 
-        public DecimalPlaceRound(final Double multiplier) {
+        public DecimalPlaceRound(final double multiplier) {
             this.multiplier = multiplier;
         }
 
         @Override
-        public Double calc(final Double value) {
-            return Double.valueOf(Math.round(value * multiplier) / multiplier);
+        public double calc(final double value) {
+            return Math.round(value * multiplier) / multiplier;
         }
     }
 
@@ -53,7 +53,7 @@ public class Round extends AbstractRoundingFunction {
             return new NumericRound();
         }
 
-        final Double multiplier = Double.valueOf(Math.pow(10D, decimalPlaces));
+        final double multiplier = Math.pow(10D, decimalPlaces);
         return new DecimalPlaceRound(multiplier);
     }
 }
@@ -19,5 +19,5 @@ package stroom.dashboard.expression;
 import java.io.Serializable;
 
 public interface RoundCalculator extends Serializable {
-    Double calc(Double value);
+    double calc(double value);
 }
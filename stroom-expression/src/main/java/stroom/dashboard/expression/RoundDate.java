@@ -25,10 +25,10 @@ public abstract class RoundDate extends AbstractFunction {
         private static final long serialVersionUID = 1099553839843710283L;
 
         @Override
-        public Double calc(final Double value) {
-            DateTime dateTime = new DateTime(value.longValue());
+        public double calc(final double value) {
+            DateTime dateTime = new DateTime((long) value);
             dateTime = adjust(dateTime);
-            return Double.valueOf(dateTime.getMillis());
+            return dateTime.getMillis();
         }
 
         protected abstract DateTime adjust(DateTime dateTime);
@@ -64,4 +64,8 @@ public abstract class RoundDate extends AbstractFunction {
     }
 
     protected abstract RoundCalculator getCalculator();
+
+    Function getFunction() {
+        return function;
+    }
 }
@@ -33,10 +33,15 @@ public class RoundGenerator extends AbstractSingleChildGenerator {
 
     @Override
     public Object eval() {
-        final Double dbl = TypeConverter.getDouble(childGenerator.eval());
-        if (dbl != null) {
-            return calculator.calc(dbl);
+        return TypeConverter.toObject(evalDouble());
+    }
+
+    @Override
+    public double evalDouble() {
+        final double dbl = childGenerator.evalDouble();
+        if (Double.isNaN(dbl)) {
+            return dbl;
         }
-        return null;
+        return calculator.calc(dbl);
     }
 }
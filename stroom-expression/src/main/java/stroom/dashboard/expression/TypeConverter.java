@@ -47,6 +47,32 @@ public final class TypeConverter {
         return null;
     }
 
+    /**
+     * Convert the object to a primitive double, returning NaN rather than
+     * null if it isn't a number or date.
+     */
+    public static double getDoubleValue(final Object obj) {
+        if (obj instanceof Double) {
+            return (Double) obj;
+        }
+
+        final Double dbl = getDouble(obj);
+        if (dbl == null) {
+            return Double.NaN;
+        }
+        return dbl;
+    }
+
+    /**
+     * Box a primitive result, turning NaN back into null.
+     */
+    public static Double toObject(final double dbl) {
+        if (Double.isNaN(dbl)) {
+            return null;
+        }
+        return dbl;
+    }
+
     public static String getString(final Object obj) {
         if (obj == null) {
             return "";
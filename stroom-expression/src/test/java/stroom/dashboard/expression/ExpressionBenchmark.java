@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import stroom.util.date.DateUtil;
+
+import java.text.ParseException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of setting rows on generators built by the expression
+ * parser, i.e. the work a coprocessor does for each value it is sent. This is
+ * not a unit test so isn't run by the build, run it with the main method.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionBenchmark {
+    private static final int ROWS = 1000;
+
+    @Param({"sum(${val})",
+            "average(${val})",
+            "max(${val})-min(${val})",
+            "round(${val}, 2)+${val}*2",
+            "max(${date})-min(${date})",
+            "roundMinute(max(${date}))"})
+    public String expression;
+
+    @Param({"false", "true"})
+    public boolean compiled;
+
+    private Expression exp;
+    private String[][] rows;
+
+    @Setup
+    public void setup() throws ParseException {
+        final FieldIndexMap fieldIndexMap = new FieldIndexMap();
+        fieldIndexMap.create("val", true);
+        fieldIndexMap.create("date", true);
+        exp = new ExpressionParser(new FunctionFactory(), new ParamFactory()).parse(fieldIndexMap, expression);
+        if (compiled) {
+            exp.compile();
+        }
+
+        final Random random = new Random(0);
+        final long now = System.currentTimeMillis();
+        rows = new String[ROWS][];
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = new String[]{
+                    String.valueOf(random.nextInt(100000) / 100D),
+                    DateUtil.createNormalDateTimeString(now - random.nextInt(100000000))};
+        }
+    }
+
+    @Benchmark
+    public void eval(final Blackhole blackhole) {
+        final Generator generator = exp.createGenerator();
+        for (final String[] row : rows) {
+            generator.set(row);
+        }
+        blackhole.consume(generator.eval());
+    }
+
+    @Benchmark
+    public void evalPerRow(final Blackhole blackhole) {
+        final Generator generator = exp.createGenerator();
+        for (final String[] row : rows) {
+            generator.set(row);
+            blackhole.consume(generator.eval());
+        }
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(ExpressionBenchmark.class.getSimpleName()).build();
+        new Runner(options).run();
+    }
+}
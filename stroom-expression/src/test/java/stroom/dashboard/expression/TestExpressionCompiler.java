@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.dashboard.expression;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.text.ParseException;
+
+/**
+ * Runs all of the expression parser tests against compiled expressions to
+ * check that they give the same results as the interpreter.
+ */
+public class TestExpressionCompiler extends TestExpressionParser {
+    private final ExpressionParser parser = new ExpressionParser(new FunctionFactory(), new ParamFactory());
+
+    @Override
+    protected void prepare(final Expression expression) {
+        expression.compile();
+    }
+
+    @Test
+    public void testMergeCompiled() throws ParseException {
+        final Generator gen1 = createCompiled("max(${val})-min(${val})");
+        gen1.set(new String[]{"3"});
+        gen1.set(new String[]{"5"});
+
+        final Generator gen2 = createCompiled("max(${val})-min(${val})");
+        gen2.set(new String[]{"1"});
+
+        gen1.merge(gen2);
+        Assert.assertEquals(4D, gen1.eval());
+    }
+
+    @Test
+    public void testConstantFolded() throws ParseException {
+        final GeneratorFactory factory = compile("concat('a', 'b')");
+        Assert.assertTrue(factory instanceof ExpressionCompiler.ConstantFactory);
+        Assert.assertEquals("ab", factory.createGenerator().eval());
+    }
+
+    @Test
+    public void testInterpretedChild() throws ParseException {
+        final Generator generator = createCompiled("stringLength(${val})+1");
+        generator.set(new String[]{"abc"});
+        Assert.assertEquals(4D, generator.eval());
+    }
+
+    @Test
+    public void testAverageOfParams() throws ParseException {
+        final Generator generator = createCompiled("average(${val}, 4)");
+        generator.set(new String[]{"2"});
+        Assert.assertEquals(3D, generator.eval());
+    }
+
+    private Generator createCompiled(final String expression) throws ParseException {
+        final Expression exp = parser.parse(createFieldIndexMap(), expression);
+        exp.compile();
+        return exp.createGenerator();
+    }
+
+    private GeneratorFactory compile(final String expression) throws ParseException {
+        return new ExpressionCompiler().compile(parser.parse(createFieldIndexMap(), expression));
+    }
+
+    private FieldIndexMap createFieldIndexMap() {
+        final FieldIndexMap fieldIndexMap = new FieldIndexMap();
+        fieldIndexMap.create("val", true);
+        return fieldIndexMap;
+    }
+}
@@ -288,6 +288,43 @@ public class TestExpressionParser extends StroomUnitTest {
         Assert.assertEquals(4D, ((Double) out).doubleValue(), 0);
     }
 
+    @Test
+    public void testAverageIgnoresNonNumeric() throws ParseException {
+        final Expression exp = createExpression("sum(${val})+average(${val})");
+        final Generator generator = exp.createGenerator();
+
+        generator.set(getVal("3"));
+        generator.set(getVal("not a number"));
+        generator.set(getVal("6"));
+
+        // The sum ignores the value that isn't a number but the average still
+        // counts it.
+        Assert.assertEquals(12D, generator.evalDouble(), 0);
+        Assert.assertEquals(12D, ((Double) generator.eval()).doubleValue(), 0);
+    }
+
+    @Test
+    public void testSumOfDates() throws ParseException {
+        final Expression exp = createExpression("max(${val})-min(${val})");
+        final Generator generator = exp.createGenerator();
+
+        generator.set(getVal("2014-02-22T12:12:12.000Z"));
+        generator.set(getVal("2014-02-22T12:12:13.000Z"));
+
+        Assert.assertEquals(1000D, generator.evalDouble(), 0);
+    }
+
+    @Test
+    public void testNoNumericValue() throws ParseException {
+        final Expression exp = createExpression("sum(${val})");
+        final Generator generator = exp.createGenerator();
+
+        generator.set(getVal("not a number"));
+
+        Assert.assertTrue(Double.isNaN(generator.evalDouble()));
+        Assert.assertNull(generator.eval());
+    }
+
     @Test
     public void testReplace1() throws ParseException {
         final Expression exp = createExpression("replace('this', 'is', 'at')");
@@ -1086,6 +1123,13 @@ public class TestExpressionParser extends StroomUnitTest {
         Assert.assertNull(out);
     }
 
+    /**
+     * Called on each parsed expression before it is used so that subclasses
+     * can run the same tests on a different form of the expression.
+     */
+    protected void prepare(final Expression expression) {
+    }
+
     private Expression createExpression(final String expression) throws ParseException {
         final FieldIndexMap fieldIndexMap = new FieldIndexMap();
         fieldIndexMap.create("val", true);
@@ -1093,6 +1137,7 @@ public class TestExpressionParser extends StroomUnitTest {
         final Expression exp = parser.parse(fieldIndexMap, expression);
         final String actual = exp.toString();
         Assert.assertEquals(expression, actual);
+        prepare(exp);
         return exp;
     }
 
@@ -1104,6 +1149,7 @@ public class TestExpressionParser extends StroomUnitTest {
         final Expression exp = parser.parse(fieldIndexMap, expression);
         final String actual = exp.toString();
         Assert.assertEquals(expression, actual);
+        prepare(exp);
         return exp;
     }
 }
@@ -46,6 +46,8 @@ public class IndexFieldEditViewImpl extends ViewImpl implements IndexFieldEditVi
     @UiField
     TickBox positions;
     @UiField
+    TickBox docValues;
+    @UiField
     ItemListBox<AnalyzerType> analyser;
     @UiField
     TickBox caseSensitive;
@@ -113,6 +115,16 @@ public class IndexFieldEditViewImpl extends ViewImpl implements IndexFieldEditVi
         positions.setBooleanValue(termPositions);
     }
 
+    @Override
+    public boolean isDocValues() {
+        return docValues.getBooleanValue();
+    }
+
+    @Override
+    public void setDocValues(final boolean docValues) {
+        this.docValues.setBooleanValue(docValues);
+    }
+
     @Override
     public AnalyzerType getAnalyzerType() {
         return analyser.getSelectedItem();
@@ -18,6 +18,7 @@ package stroom.index.server;
 
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.NumericDocValuesField;
 
 import stroom.query.shared.IndexField;
 
@@ -26,6 +27,14 @@ public class FieldFactory {
         return new LongField(indexField.getFieldName(), initialValue, FieldTypeFactory.create(indexField));
     }
 
+    /**
+     * Create a column value for a numeric or date field so that search can
+     * read the value by document id without loading stored fields.
+     */
+    public static NumericDocValuesField createDocValues(final IndexField indexField, final long initialValue) {
+        return new NumericDocValuesField(indexField.getFieldName(), initialValue);
+    }
+
     public static Field create(final IndexField indexField, final String initialValue) {
         return new Field(indexField.getFieldName(), initialValue, FieldTypeFactory.create(indexField));
     }
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.index.server;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.util.Version;
+import org.springframework.stereotype.Component;
+import stroom.index.server.analyzer.AnalyzerFactory;
+import stroom.index.shared.FindIndexShardCriteria;
+import stroom.index.shared.Index;
+import stroom.index.shared.IndexShard;
+import stroom.index.shared.IndexShard.IndexShardStatus;
+import stroom.index.shared.IndexShardService;
+import stroom.jobsystem.server.JobTrackedSchedule;
+import stroom.node.server.NodeCache;
+import stroom.node.server.StroomPropertyService;
+import stroom.node.shared.FindVolumeCriteria;
+import stroom.node.shared.Node;
+import stroom.node.shared.Volume;
+import stroom.node.shared.Volume.VolumeUseStatus;
+import stroom.node.shared.VolumeService;
+import stroom.query.shared.IndexField.AnalyzerType;
+import stroom.streamstore.server.fs.FileSystemUtil;
+import stroom.util.logging.LambdaLogger;
+import stroom.util.logging.LambdaLoggerFactory;
+import stroom.util.logging.LogExecutionTime;
+import stroom.util.shared.ModelStringUtil;
+import stroom.util.spring.StroomSimpleCronSchedule;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Merges the closed shards of old partitions into fewer, larger shards. Each
+ * partition of a time partitioned index can end up with several small shards,
+ * each of which needs its own searcher and open files. Once a partition is old
+ * enough that it is unlikely to be written to again its shards are merged into
+ * shards of up to the maximum number of documents per shard and optimised down
+ * to a single segment for reading. The new shard can optionally be written to
+ * an inactive volume so that old data moves to colder storage.
+ */
+@Component
+public class IndexShardCompactor {
+    private static final LambdaLogger LOGGER = LambdaLoggerFactory.getLogger(IndexShardCompactor.class);
+
+    private static final String MIN_PARTITION_AGE_PROPERTY = "stroom.index.compaction.minPartitionAge";
+    private static final String USE_INACTIVE_VOLUMES_PROPERTY = "stroom.index.compaction.useInactiveVolumes";
+    private static final long DEFAULT_MIN_PARTITION_AGE_MS = 7 * 24 * 60 * 60 * 1000L;
+
+    private final IndexShardService indexShardService;
+    private final Provider<IndexShardWriterCache> indexShardWriterCacheProvider;
+    private final VolumeService volumeService;
+    private final NodeCache nodeCache;
+    private final StroomPropertyService propertyService;
+
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    @Inject
+    IndexShardCompactor(final IndexShardService indexShardService,
+                        final Provider<IndexShardWriterCache> indexShardWriterCacheProvider,
+                        final VolumeService volumeService,
+                        final NodeCache nodeCache,
+                        final StroomPropertyService propertyService) {
+        this.indexShardService = indexShardService;
+        this.indexShardWriterCacheProvider = indexShardWriterCacheProvider;
+        this.volumeService = volumeService;
+        this.nodeCache = nodeCache;
+        this.propertyService = propertyService;
+    }
+
+    @StroomSimpleCronSchedule(cron = "0 2 *")
+    @JobTrackedSchedule(jobName = "Index Shard Compaction", enabled = false, description = "Job to merge the closed shards of old index partitions into fewer, larger shards")
+    public void compact() {
+        if (compacting.compareAndSet(false, true)) {
+            try {
+                final LogExecutionTime logExecutionTime = new LogExecutionTime();
+                final long maxPartitionToTime = System.currentTimeMillis() - getMinPartitionAge();
+                final IndexShardWriterCache indexShardWriterCache = indexShardWriterCacheProvider.get();
+
+                // Find closed shards owned by this node.
+                final FindIndexShardCriteria criteria = new FindIndexShardCriteria();
+                criteria.getNodeIdSet().add(nodeCache.getDefaultNode());
+                criteria.getFetchSet().add(Index.ENTITY_TYPE);
+                criteria.getFetchSet().add(Node.ENTITY_TYPE);
+                criteria.getFetchSet().add(Volume.ENTITY_TYPE);
+                criteria.getIndexShardStatusSet().add(IndexShardStatus.CLOSED);
+                final List<IndexShard> shards = indexShardService.find(criteria);
+
+                // Group the shards of old partitions that can be merged.
+                final Map<String, List<IndexShard>> partitionMap = new LinkedHashMap<>();
+                for (final IndexShard shard : shards) {
+                    if (shard.getPartitionToTime() != null && shard.getPartitionToTime() < maxPartitionToTime
+                            && LuceneVersionUtil.getCurrentVersion().equals(shard.getIndexVersion())
+                            && indexShardWriterCache.getWriterByShardId(shard.getId()) == null) {
+                        final String key = shard.getIndex().getId() + ":" + shard.getPartition();
+                        partitionMap.computeIfAbsent(key, k -> new ArrayList<>()).add(shard);
+                    }
+                }
+
+                int compacted = 0;
+                for (final List<IndexShard> partitionShards : partitionMap.values()) {
+                    final int maxDocsPerShard = partitionShards.get(0).getIndex().getMaxDocsPerShard();
+                    for (final List<IndexShard> group : group(partitionShards, maxDocsPerShard)) {
+                        if (compact(group)) {
+                            compacted += group.size();
+                        }
+                    }
+                }
+
+                final int count = compacted;
+                LOGGER.info(() -> "compact() - Compacted " + count + " index shards in " + logExecutionTime);
+            } catch (final Exception e) {
+                LOGGER.error(e::getMessage, e);
+            } finally {
+                compacting.set(false);
+            }
+        }
+    }
+
+    /**
+     * Group the shards of a partition so that each group can be merged into a
+     * single shard that holds no more than the maximum number of documents.
+     * Smaller shards are grouped first and groups of a single shard are not
+     * returned as there is nothing to merge them with.
+     */
+    static List<List<IndexShard>> group(final List<IndexShard> shards, final int maxDocsPerShard) {
+        final List<IndexShard> sorted = new ArrayList<>(shards);
+        sorted.sort(Comparator.comparingInt(IndexShard::getDocumentCount));
+
+        final List<List<IndexShard>> groups = new ArrayList<>();
+        List<IndexShard> group = new ArrayList<>();
+        long documentCount = 0;
+        for (final IndexShard shard : sorted) {
+            if (group.size() > 0 && documentCount + shard.getDocumentCount() > maxDocsPerShard) {
+                if (group.size() > 1) {
+                    groups.add(group);
+                }
+                group = new ArrayList<>();
+                documentCount = 0;
+            }
+            group.add(shard);
+            documentCount += shard.getDocumentCount();
+        }
+        if (group.size() > 1) {
+            groups.add(group);
+        }
+
+        return groups;
+    }
+
+    private boolean compact(final List<IndexShard> shards) {
+        // Put the new shard on the volume of the largest shard unless we are
+        // moving old data to an inactive volume.
+        final IndexShard largest = shards.get(shards.size() - 1);
+        final IndexShard newShard = new IndexShard();
+        newShard.setIndex(largest.getIndex());
+        newShard.setNode(largest.getNode());
+        newShard.setPartition(largest.getPartition());
+        newShard.setPartitionFromTime(largest.getPartitionFromTime());
+        newShard.setPartitionToTime(largest.getPartitionToTime());
+        newShard.setVolume(getVolume(largest));
+        newShard.setIndexVersion(LuceneVersionUtil.getCurrentVersion());
+        newShard.setStatus(IndexShardStatus.CLOSED);
+
+        // Merge into a temporary directory next to where the new shard will
+        // live so that it can be moved into place once the shard is saved.
+        final File partitionDir = IndexShardUtil.getPartitionDir(newShard);
+        final Path tempDir = new File(partitionDir, "compact_" + largest.getId()).toPath();
+        final AtomicReference<Path> movedDir = new AtomicReference<>();
+        try {
+            LOGGER.debug(() -> "compact() - Merging " + shards.size() + " shards of partition "
+                    + largest.getPartition() + " into " + tempDir);
+            final int documentCount = merge(shards, tempDir);
+            newShard.setDocumentCount(documentCount);
+            newShard.setFileSize(calcFileSize(tempDir.toFile()));
+            newShard.setCommitMs(System.currentTimeMillis());
+
+            indexShardService.replaceIndexShards(shards, newShard, saved -> {
+                final Path dir = IndexShardUtil.getIndexDir(saved).toPath();
+                try {
+                    Files.move(tempDir, dir, StandardCopyOption.ATOMIC_MOVE);
+                    movedDir.set(dir);
+                } catch (final IOException e) {
+                    throw new IndexException(e);
+                }
+            });
+            return true;
+        } catch (final Exception e) {
+            LOGGER.error(() -> "compact() - Unable to compact shards of partition " + largest.getPartition()
+                    + " (" + e.getMessage() + ")", e);
+            FileSystemUtil.deleteDirectory(tempDir.toFile());
+            if (movedDir.get() != null) {
+                FileSystemUtil.deleteDirectory(movedDir.get().toFile());
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Merge the shards into a single segment in the supplied directory.
+     *
+     * @return The number of documents in the merged index.
+     */
+    static int merge(final List<IndexShard> shards, final Path dir) throws IOException {
+        Files.createDirectories(dir);
+
+        final Version luceneVersion = LuceneVersionUtil.CURRENT_LUCENE_VERSION;
+        final IndexWriterConfig indexWriterConfig = new IndexWriterConfig(luceneVersion,
+                AnalyzerFactory.create(luceneVersion, AnalyzerType.KEYWORD, false));
+        indexWriterConfig.setOpenMode(OpenMode.CREATE);
+        indexWriterConfig.setUseCompoundFile(false);
+
+        final List<Directory> sources = new ArrayList<>(shards.size());
+        try (final Directory directory = new NIOFSDirectory(dir.toFile(), LockFactoryUtil.get(dir));
+             final IndexWriter indexWriter = new IndexWriter(directory, indexWriterConfig)) {
+            for (final IndexShard shard : shards) {
+                final File shardDir = IndexShardUtil.getIndexDir(shard);
+                sources.add(new NIOFSDirectory(shardDir, LockFactoryUtil.get(shardDir.toPath())));
+            }
+
+            indexWriter.addIndexes(sources.toArray(new Directory[sources.size()]));
+            indexWriter.forceMerge(1);
+            indexWriter.commit();
+            return indexWriter.numDocs();
+        } finally {
+            for (final Directory source : sources) {
+                source.close();
+            }
+        }
+    }
+
+    private Volume getVolume(final IndexShard indexShard) {
+        if (propertyService.getBooleanProperty(USE_INACTIVE_VOLUMES_PROPERTY, false)) {
+            final FindVolumeCriteria criteria = new FindVolumeCriteria();
+            criteria.getNodeIdSet().add(indexShard.getNode());
+            criteria.getIndexStatusSet().add(VolumeUseStatus.INACTIVE);
+            for (final Volume volume : volumeService.find(criteria)) {
+                if (indexShard.getIndex().getVolumes().contains(volume) && !volume.isFull()) {
+                    return volume;
+                }
+            }
+        }
+        return indexShard.getVolume();
+    }
+
+    private long getMinPartitionAge() {
+        final String value = propertyService.getProperty(MIN_PARTITION_AGE_PROPERTY);
+        if (value != null && value.trim().length() > 0) {
+            try {
+                return ModelStringUtil.parseDurationString(value.trim());
+            } catch (final RuntimeException e) {
+                LOGGER.error(() -> "Unable to parse property '" + MIN_PARTITION_AGE_PROPERTY + "' value '" + value
+                        + "', using default instead");
+            }
+        }
+        return DEFAULT_MIN_PARTITION_AGE_MS;
+    }
+
+    private long calcFileSize(final File dir) {
+        long totalSize = 0;
+        final String[] files = dir.list();
+        if (files != null) {
+            for (final String file : files) {
+                totalSize += new File(dir, file).length();
+            }
+        }
+        return totalSize;
+    }
+}
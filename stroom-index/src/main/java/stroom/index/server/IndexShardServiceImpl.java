@@ -30,6 +30,7 @@ import stroom.entity.shared.PermissionException;
 import stroom.index.shared.FindIndexShardCriteria;
 import stroom.index.shared.Index;
 import stroom.index.shared.IndexShard;
+import stroom.index.shared.IndexShard.IndexShardStatus;
 import stroom.index.shared.IndexShardKey;
 import stroom.index.shared.IndexShardService;
 import stroom.node.shared.Node;
@@ -45,6 +46,7 @@ import stroom.util.spring.StroomSpringProfiles;
 import javax.inject.Inject;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 @Component
 @Profile(StroomSpringProfiles.PROD)
@@ -100,6 +102,26 @@ public class IndexShardServiceImpl
         return save(indexShard);
     }
 
+    @Override
+    public IndexShard replaceIndexShards(final List<IndexShard> oldShards, final IndexShard newShard,
+                                         final Consumer<IndexShard> beforeCommit) {
+        // Make sure nothing has been written to the old shards since they
+        // were read.
+        for (final IndexShard oldShard : oldShards) {
+            final IndexShard current = loadById(oldShard.getId());
+            if (current == null || !IndexShardStatus.CLOSED.equals(current.getStatus())
+                    || current.getDocumentCount() != oldShard.getDocumentCount()) {
+                throw new IndexException("Index shard " + oldShard.getId() + " has changed and cannot be replaced");
+            }
+            current.setStatus(IndexShardStatus.DELETED);
+            save(current);
+        }
+
+        final IndexShard saved = save(newShard);
+        beforeCommit.accept(saved);
+        return saved;
+    }
+
     @Override
     public Class<IndexShard> getEntityClass() {
         return IndexShard.class;
@@ -26,6 +26,14 @@ import stroom.streamstore.server.fs.FileSystemUtil;
  */
 public class IndexShardUtil {
     public static File getIndexDir(IndexShard indexShard) {
+        return new File(getPartitionDir(indexShard), String.valueOf(indexShard.getId()));
+    }
+
+    /**
+     * Get the directory that holds all of the shards for the partition of the
+     * supplied shard on its volume.
+     */
+    public static File getPartitionDir(IndexShard indexShard) {
         StringBuilder builder = new StringBuilder();
         builder.append(indexShard.getVolume().getPath());
         builder.append(FileSystemUtil.SEPERATOR_CHAR);
@@ -34,8 +42,6 @@ public class IndexShardUtil {
         builder.append(indexShard.getIndex().getId());
         builder.append(FileSystemUtil.SEPERATOR_CHAR);
         builder.append(indexShard.getPartition());
-        builder.append(FileSystemUtil.SEPERATOR_CHAR);
-        builder.append(indexShard.getId());
         return new File(builder.toString());
     }
 }
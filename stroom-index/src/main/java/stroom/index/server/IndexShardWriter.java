@@ -22,6 +22,7 @@ import org.apache.lucene.store.AlreadyClosedException;
 import stroom.index.shared.IndexShardKey;
 
 import java.io.IOException;
+import java.util.List;
 
 public interface IndexShardWriter {
     IndexShardKey getIndexShardKey();
@@ -30,12 +31,23 @@ public interface IndexShardWriter {
 
     void addDocument(Document document) throws IOException, IndexException, AlreadyClosedException;
 
+    /**
+     * Add a batch of documents to this shard. Either all of the documents are
+     * added or a {@link ShardFullException} is thrown if they will not fit.
+     */
+    void addDocuments(List<Document> documents) throws IOException, IndexException, AlreadyClosedException;
+
     void flush();
 
     void close();
 
     IndexWriter getWriter();
 
+    /**
+     * @return True if documents have been added since the last commit.
+     */
+    boolean hasUncommittedChanges();
+
     int getDocumentCount();
 
     void updateIndexConfig(IndexConfig indexConfig);
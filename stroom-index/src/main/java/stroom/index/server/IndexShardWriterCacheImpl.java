@@ -17,6 +17,7 @@
 package stroom.index.server;
 
 import org.apache.lucene.store.LockObtainFailedException;
+import org.apache.lucene.store.RateLimiter;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import stroom.entity.shared.DocRef;
@@ -31,6 +32,7 @@ import stroom.node.server.NodeCache;
 import stroom.node.server.StroomPropertyService;
 import stroom.node.shared.Node;
 import stroom.task.server.ExecutorProvider;
+import stroom.task.server.StroomThreadGroup;
 import stroom.task.server.TaskContext;
 import stroom.task.server.ThreadPoolImpl;
 import stroom.util.logging.LambdaLogger;
@@ -42,6 +44,7 @@ import stroom.util.spring.StroomFrequencySchedule;
 import stroom.util.spring.StroomShutdown;
 import stroom.util.spring.StroomSpringProfiles;
 import stroom.util.spring.StroomStartup;
+import stroom.util.thread.CustomThreadFactory;
 import stroom.util.thread.ThreadUtil;
 
 import javax.inject.Inject;
@@ -59,6 +62,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
@@ -89,6 +93,19 @@ public class IndexShardWriterCacheImpl implements IndexShardWriterCache {
     private final Runner syncRunner;
     private final TaskContext taskContext;
 
+    // Periodic commits are run on their own pool so that the number of shards
+    // committing at once can be limited and they are started at random times
+    // within a window so that commits are spread out rather than all hitting
+    // the disks together.
+    private final Runner flushRunner;
+    private final ScheduledExecutorService flushScheduler;
+    private final Set<Long> scheduledFlushes = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    // Merges for all shards on a volume share a rate limiter.
+    private final Map<String, RateLimiter.SimpleRateLimiter> mergeRateLimiters = new ConcurrentHashMap<>();
+
+    private final IndexWriterStatistics statistics = new IndexWriterStatistics();
+
     @Inject
     public IndexShardWriterCacheImpl(final NodeCache nodeCache,
                                      final IndexShardService indexShardService,
@@ -108,6 +125,14 @@ public class IndexShardWriterCacheImpl implements IndexShardWriterCache {
         asyncRunner = new AsyncRunner(executor);
         syncRunner = new SyncRunner();
 
+        final int flushThreads = Math.max(1, (int) stroomPropertyService.getLongProperty("stroom.index.writer.flushThreads", 2));
+        final ThreadPool flushThreadPool = new ThreadPoolImpl("Index Shard Writer Flush", 3, 0, flushThreads);
+        flushRunner = new AsyncRunner(executorProvider.getExecutor(flushThreadPool));
+        final CustomThreadFactory flushThreadFactory = new CustomThreadFactory("Index Shard Writer Flush Scheduler #",
+                StroomThreadGroup.instance(), Thread.NORM_PRIORITY);
+        flushThreadFactory.setDaemon(true);
+        flushScheduler = Executors.newSingleThreadScheduledExecutor(flushThreadFactory);
+
         this.taskContext = taskContext;
     }
 
@@ -193,7 +218,8 @@ public class IndexShardWriterCacheImpl implements IndexShardWriterCache {
         indexShardManager.setStatus(indexShardId, IndexShardStatus.OPENING);
 
         try {
-            final IndexShardWriter indexShardWriter = new IndexShardWriterImpl(indexShardManager, indexConfig, indexShardKey, indexShard, ramBufferSizeMB);
+            final RateLimiter mergeRateLimiter = getMergeRateLimiter(indexShard);
+            final IndexShardWriter indexShardWriter = new IndexShardWriterImpl(indexShardManager, indexConfig, indexShardKey, indexShard, ramBufferSizeMB, mergeRateLimiter, statistics);
 
             // We have opened the index so update the DB object.
             indexShardManager.setStatus(indexShardId, IndexShardStatus.OPEN);
@@ -230,6 +256,20 @@ public class IndexShardWriterCacheImpl implements IndexShardWriterCache {
         return ramBufferSizeMB;
     }
 
+    private RateLimiter getMergeRateLimiter(final IndexShard indexShard) {
+        final double mbPerSec = stroomPropertyService.getLongProperty("stroom.index.writer.mergeMBPerSec", 100);
+        if (mbPerSec <= 0 || indexShard.getVolume() == null) {
+            return null;
+        }
+
+        final RateLimiter.SimpleRateLimiter rateLimiter = mergeRateLimiters.computeIfAbsent(indexShard.getVolume().getPath(), k -> new RateLimiter.SimpleRateLimiter(mbPerSec));
+        // Pick up any change to the property.
+        if (rateLimiter.getMbPerSec() != mbPerSec) {
+            rateLimiter.setMbPerSec(mbPerSec);
+        }
+        return rateLimiter;
+    }
+
     @Override
     public void flush(final long indexShardId) {
         final IndexShardWriter indexShardWriter = openWritersByShardId.get(indexShardId);
@@ -240,20 +280,45 @@ public class IndexShardWriterCacheImpl implements IndexShardWriterCache {
     }
 
     /**
-     * This is called by the lifecycle service and will call flush on all open writers.
+     * Flushes all open writers straight away and waits for the flushes to complete.
      */
     @Override
+    public void flushAll() {
+        flushAll(0, false);
+    }
+
+    /**
+     * This is called by the lifecycle service and will call flush on all open writers at random times within the
+     * jitter window.
+     */
     @StroomFrequencySchedule("10m")
     @JobTrackedSchedule(jobName = "Index Writer Flush", description = "Job to flush index shard data to disk")
-    public void flushAll() {
+    public void scheduledFlushAll() {
+        flushAll(Math.max(0, getDuration("stroom.index.writer.flushJitter", 60000)), true);
+    }
+
+    private void flushAll(final long jitter, final boolean scheduled) {
         final LogExecutionTime logExecutionTime = new LogExecutionTime();
 
         try {
-            final Set<IndexShardWriter> openWriters = new HashSet<>(openWritersByShardKey.values());
+            // Only flush writers that have something to commit. Scheduled
+            // flushes skip writers that are still waiting for a flush from a
+            // previous run but on demand flushes must flush every writer
+            // before returning.
+            final Set<IndexShardWriter> openWriters = new HashSet<>();
+            openWritersByShardKey.values().forEach(indexShardWriter -> {
+                if (indexShardWriter.hasUncommittedChanges() &&
+                        (!scheduled || scheduledFlushes.add(indexShardWriter.getIndexShardId()))) {
+                    openWriters.add(indexShardWriter);
+                }
+            });
+
             if (openWriters.size() > 0) {
-                // Flush all writers.
                 final CountDownLatch countDownLatch = new CountDownLatch(openWriters.size());
-                openWriters.forEach(indexShardWriter -> flush(indexShardWriter, asyncRunner).thenAccept(isw -> countDownLatch.countDown()));
+                openWriters.forEach(indexShardWriter -> {
+                    final long delay = jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter) : 0;
+                    scheduleFlush(indexShardWriter, delay, scheduled, countDownLatch);
+                });
                 countDownLatch.await();
             }
         } catch (final InterruptedException e) {
@@ -261,6 +326,31 @@ public class IndexShardWriterCacheImpl implements IndexShardWriterCache {
         }
 
         LOGGER.debug(() -> "flushAll() - Completed in " + logExecutionTime);
+        LOGGER.debug(() -> "Index writer statistics\n" + statistics);
+    }
+
+    private void scheduleFlush(final IndexShardWriter indexShardWriter, final long delay, final boolean scheduled,
+                               final CountDownLatch countDownLatch) {
+        final Runnable complete = () -> {
+            if (scheduled) {
+                scheduledFlushes.remove(indexShardWriter.getIndexShardId());
+            }
+            countDownLatch.countDown();
+        };
+
+        try {
+            flushScheduler.schedule(() -> {
+                try {
+                    flush(indexShardWriter, flushRunner).whenComplete((isw, t) -> complete.run());
+                } catch (final RuntimeException e) {
+                    LOGGER.error(e::getMessage, e);
+                    complete.run();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (final RuntimeException e) {
+            LOGGER.error(e::getMessage, e);
+            complete.run();
+        }
     }
 
     /**
@@ -492,6 +582,10 @@ public class IndexShardWriterCacheImpl implements IndexShardWriterCache {
                 // Shut down the progress logging executor.
                 executor.shutdown();
             }
+
+            // Flushes that are still scheduled will run but will have nothing
+            // to do as the writers have been closed.
+            flushScheduler.shutdown();
         }
 
         LOGGER.info(() -> "Index shard writer cache shutdown completed in " + logExecutionTime);
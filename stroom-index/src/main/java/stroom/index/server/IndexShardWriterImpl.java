@@ -19,12 +19,16 @@ package stroom.index.server;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.LiveIndexWriterConfig;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext.Context;
 import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.RateLimitedDirectoryWrapper;
+import org.apache.lucene.store.RateLimiter;
 import org.apache.lucene.util.Version;
 import stroom.index.server.analyzer.AnalyzerFactory;
 import stroom.index.shared.IndexShard;
@@ -42,6 +46,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -54,6 +59,14 @@ public class IndexShardWriterImpl implements IndexShardWriter {
 
     private static final int DEFAULT_RAM_BUFFER_MB_SIZE = 1024;
 
+    /**
+     * Merges are run on a single thread per shard so that shards on the same
+     * volume do not compete too much for I/O. We allow a few merges to queue
+     * before Lucene stalls indexing threads as throttled merges take longer.
+     */
+    private static final int MAX_MERGE_THREADS = 1;
+    private static final int MAX_MERGE_COUNT = 6;
+
     /**
      * Used to manage the way fields are analysed.
      */
@@ -96,15 +109,24 @@ public class IndexShardWriterImpl implements IndexShardWriter {
     private final AtomicInteger adding = new AtomicInteger();
     private volatile long lastUsedTime;
 
+    private final IndexWriterStatistics statistics;
+
     /**
      * Convenience constructor used in tests.
      */
     IndexShardWriterImpl(final IndexShardManager indexShardManager, final IndexConfig indexConfig, final IndexShardKey indexShardKey, final IndexShard indexShard) throws IOException {
-        this(indexShardManager, indexConfig, indexShardKey, indexShard, DEFAULT_RAM_BUFFER_MB_SIZE);
+        this(indexShardManager, indexConfig, indexShardKey, indexShard, DEFAULT_RAM_BUFFER_MB_SIZE, null, new IndexWriterStatistics());
     }
 
-    IndexShardWriterImpl(final IndexShardManager indexShardManager, final IndexConfig indexConfig, final IndexShardKey indexShardKey, final IndexShard indexShard, final int ramBufferSizeMB) throws IOException {
+    /**
+     * @param mergeRateLimiter An optional rate limiter shared by all shards on
+     *                         the same volume to limit how fast merges can
+     *                         write.
+     * @param statistics       Where to record commit and indexing timings.
+     */
+    IndexShardWriterImpl(final IndexShardManager indexShardManager, final IndexConfig indexConfig, final IndexShardKey indexShardKey, final IndexShard indexShard, final int ramBufferSizeMB, final RateLimiter mergeRateLimiter, final IndexWriterStatistics statistics) throws IOException {
         this.indexShardManager = indexShardManager;
+        this.statistics = statistics;
         this.indexShardKey = indexShardKey;
         this.indexShardId = indexShard.getId();
         this.creationTime = System.currentTimeMillis();
@@ -173,8 +195,19 @@ public class IndexShardWriterImpl implements IndexShardWriter {
             indexWriterConfig.setInfoStream(loggerPrintStream);
         }
 
+        final ConcurrentMergeScheduler mergeScheduler = new ConcurrentMergeScheduler();
+        mergeScheduler.setMaxMergesAndThreads(MAX_MERGE_COUNT, MAX_MERGE_THREADS);
+        indexWriterConfig.setMergeScheduler(mergeScheduler);
+
         // Create lucene directory object.
         directory = new NIOFSDirectory(dir, LockFactoryUtil.get(dir.toPath()));
+        if (mergeRateLimiter != null) {
+            // Throttle writes made by merges but not those made by flushes
+            // and commits.
+            final RateLimitedDirectoryWrapper rateLimitedDirectory = new RateLimitedDirectoryWrapper(directory);
+            rateLimitedDirectory.setRateLimiter(mergeRateLimiter, Context.MERGE);
+            directory = rateLimitedDirectory;
+        }
 
         // IndexWriter to use for adding data to the index.
         indexWriter = new IndexWriter(directory, indexWriterConfig);
@@ -217,6 +250,7 @@ public class IndexShardWriterImpl implements IndexShardWriter {
                 this.lastUsedTime = now;
                 indexWriter.addDocument(document);
                 final long duration = System.currentTimeMillis() - now;
+                statistics.recordAdd(duration);
                 if (duration > 1000) {
                     LAMBDA_LOGGER.warn(() -> "addDocument() - took " + ModelStringUtil.formatDurationString(duration) + " " + toString());
                 }
@@ -231,6 +265,37 @@ public class IndexShardWriterImpl implements IndexShardWriter {
         }
     }
 
+    @Override
+    public void addDocuments(final List<Document> documents) throws IOException, IndexException, AlreadyClosedException {
+        adding.incrementAndGet();
+        try {
+            // Reserve space for the whole batch so that a batch is never
+            // split across shards.
+            final int count = documents.size();
+            try {
+                if (documentCount.addAndGet(count) > maxDocumentCount) {
+                    throw new ShardFullException("Shard is full");
+                }
+
+                final long now = System.currentTimeMillis();
+                this.lastUsedTime = now;
+                indexWriter.addDocuments(documents);
+                final long duration = System.currentTimeMillis() - now;
+                statistics.recordAdd(duration);
+                if (duration > 1000) {
+                    LAMBDA_LOGGER.warn(() -> "addDocuments() - took " + ModelStringUtil.formatDurationString(duration) + " to add " + count + " documents " + toString());
+                }
+
+            } catch (final Throwable e) {
+                documentCount.addAndGet(-count);
+                throw e;
+            }
+
+        } finally {
+            adding.decrementAndGet();
+        }
+    }
+
     @Override
     public void updateIndexConfig(final IndexConfig indexConfig) {
         this.maxDocumentCount = indexConfig.getIndex().getMaxDocsPerShard();
@@ -255,6 +320,7 @@ public class IndexShardWriterImpl implements IndexShardWriter {
             try {
                 // Perform commit
                 indexWriter.commit();
+                statistics.recordCommit(System.currentTimeMillis() - startTime);
 
             } catch (final Exception e) {
                 LAMBDA_LOGGER.error(e::getMessage, e);
@@ -362,6 +428,15 @@ public class IndexShardWriterImpl implements IndexShardWriter {
         return indexWriter;
     }
 
+    @Override
+    public boolean hasUncommittedChanges() {
+        try {
+            return open.get() && indexWriter.hasUncommittedChanges();
+        } catch (final AlreadyClosedException e) {
+            return false;
+        }
+    }
+
     @Override
     public int getDocumentCount() {
         return documentCount.get();
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.index.server;
+
+import stroom.util.concurrent.DurationHistogram;
+
+/**
+ * Timings shared by all of the index shard writers on a node so that we can
+ * see how long commits take and how long indexing threads are held up when
+ * adding documents, e.g. while Lucene waits for flushes or merges to catch up.
+ */
+class IndexWriterStatistics {
+    // Adds that take at least this long are counted as stalls.
+    static final long STALL_THRESHOLD_MS = 10;
+
+    private final DurationHistogram commitDuration = new DurationHistogram();
+    private final DurationHistogram indexingStall = new DurationHistogram();
+
+    void recordCommit(final long durationMs) {
+        commitDuration.record(durationMs);
+    }
+
+    void recordAdd(final long durationMs) {
+        if (durationMs >= STALL_THRESHOLD_MS) {
+            indexingStall.record(durationMs);
+        }
+    }
+
+    DurationHistogram getCommitDuration() {
+        return commitDuration;
+    }
+
+    DurationHistogram getIndexingStall() {
+        return indexingStall;
+    }
+
+    @Override
+    public String toString() {
+        return "commit duration: " + commitDuration + "\nindexing stall:  " + indexingStall;
+    }
+}
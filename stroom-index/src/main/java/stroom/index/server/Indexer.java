@@ -19,6 +19,10 @@ package stroom.index.server;
 import org.apache.lucene.document.Document;
 import stroom.index.shared.IndexShardKey;
 
+import java.util.List;
+
 public interface Indexer {
     void addDocument(IndexShardKey key, Document document);
+
+    void addDocuments(IndexShardKey key, List<Document> documents);
 }
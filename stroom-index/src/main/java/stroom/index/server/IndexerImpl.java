@@ -25,6 +25,7 @@ import stroom.util.logging.LambdaLogger;
 import stroom.util.logging.LambdaLoggerFactory;
 
 import javax.inject.Inject;
+import java.util.List;
 import java.util.concurrent.locks.Lock;
 
 /**
@@ -103,6 +104,32 @@ public class IndexerImpl implements Indexer {
         }
     }
 
+    @Override
+    public void addDocuments(final IndexShardKey indexShardKey, final List<Document> documents) {
+        if (documents != null && documents.size() > 0) {
+            // Try and add the whole batch with a single writer lookup. Lucene
+            // adds a batch atomically so if this fails none of the documents
+            // will have been added.
+            boolean success = false;
+            try {
+                final IndexShardWriter indexShardWriter = indexShardWriterCache.getWriterByShardKey(indexShardKey);
+                indexShardWriter.addDocuments(documents);
+                success = true;
+            } catch (final Throwable t) {
+                LOGGER.trace(t::getMessage, t);
+            }
+
+            // If the batch could not be added, e.g. because the shard does not
+            // have room for all of the documents, then add them one at a time
+            // so that the shard is filled before we move on to a new one.
+            if (!success) {
+                for (final Document document : documents) {
+                    addDocument(indexShardKey, document);
+                }
+            }
+        }
+    }
+
     private boolean addDocument(final IndexShardWriter indexShardWriter, final Document document) {
         boolean success = false;
         try {
@@ -17,7 +17,6 @@
 package stroom.index.server;
 
 import org.apache.lucene.document.Document;
-import org.apache.lucene.document.Field;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 import org.xml.sax.Attributes;
@@ -47,6 +46,10 @@ import stroom.util.shared.Severity;
 import stroom.util.spring.StroomScope;
 
 import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * The index filter... takes the index XML and builds the LUCENE documents
@@ -63,6 +66,9 @@ class IndexingFilter extends AbstractXMLFilter {
     private static final String NAME = "name";
     private static final String VALUE = "value";
 
+    // The number of documents to pass to the indexer at a time.
+    private static final int BATCH_SIZE = 100;
+
     private final StreamHolder streamHolder;
     private final LocationFactoryProxy locationFactory;
     private final Indexer indexer;
@@ -76,7 +82,12 @@ class IndexingFilter extends AbstractXMLFilter {
 
     private final CharBuffer debugBuffer = new CharBuffer(10);
 
-    private Document document;
+    // Documents are reused once they have been passed to the indexer so we
+    // keep one for each document in a batch.
+    private ReusableDocument[] documents;
+    private final List<Document> batch = new ArrayList<>(BATCH_SIZE);
+    private ReusableDocument document;
+    private final Set<String> docValueFields = new HashSet<>();
 
     private int fieldsIndexed = 0;
 
@@ -116,6 +127,11 @@ class IndexingFilter extends AbstractXMLFilter {
             index = indexConfig.getIndex();
             indexFieldsMap = indexConfig.getIndexFieldsMap();
 
+            // Reused documents hold fields created for the previous index
+            // config so start with new ones.
+            documents = new ReusableDocument[BATCH_SIZE];
+            batch.clear();
+
             // Create a key to create shards with.
             if (streamHolder == null || streamHolder.getStream() == null) {
                 // Many tests don't use streams so where this is the case just
@@ -130,6 +146,24 @@ class IndexingFilter extends AbstractXMLFilter {
         }
     }
 
+    @Override
+    public void endStream() {
+        try {
+            flush();
+        } finally {
+            super.endStream();
+        }
+    }
+
+    @Override
+    public void endProcessing() {
+        try {
+            flush();
+        } finally {
+            super.endProcessing();
+        }
+    }
+
     /**
      * Sets the locator to use when reporting errors.
      *
@@ -157,7 +191,7 @@ class IndexingFilter extends AbstractXMLFilter {
                     if (indexField != null) {
                         // Index the current content if we are to store or index
                         // this field.
-                        if (indexField.isIndexed() || indexField.isStored()) {
+                        if (indexField.isIndexed() || indexField.isStored() || indexField.isDocValues()) {
                             processIndexContent(indexField, value);
                         }
                     } else {
@@ -166,8 +200,15 @@ class IndexingFilter extends AbstractXMLFilter {
                 }
             }
         } else if (RECORD.equals(localName)) {
-            // Create a document to store fields in.
-            document = new Document();
+            // Get the next document in the batch to store fields in.
+            final int slot = batch.size();
+            document = documents[slot];
+            if (document == null) {
+                document = new ReusableDocument();
+                documents[slot] = document;
+            } else {
+                document.reset();
+            }
         }
 
         super.startElement(uri, localName, qName, atts);
@@ -178,6 +219,7 @@ class IndexingFilter extends AbstractXMLFilter {
         if (RECORD.equals(localName)) {
             processDocument();
             document = null;
+            docValueFields.clear();
 
             // Reset the count of how many fields we have indexed for the
             // current event.
@@ -192,41 +234,57 @@ class IndexingFilter extends AbstractXMLFilter {
         super.endElement(uri, localName, qName);
     }
 
-    private void processDocument() throws SAXException {
-        // Write the document if we have dropped out of the record element and
-        // have indexed some fields.
+    private void processDocument() {
+        // Add the document to the batch if we have dropped out of the record
+        // element and have indexed some fields.
         if (fieldsIndexed > 0) {
+            batch.add(document.getDocument());
+            if (batch.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+    }
+
+    private void flush() {
+        if (batch.size() > 0) {
             try {
-                indexer.addDocument(indexShardKey, document);
+                indexer.addDocuments(indexShardKey, batch);
             } catch (final RuntimeException e) {
                 log(Severity.FATAL_ERROR, e.getMessage(), e);
                 // Terminate processing as this is a fatal error.
                 throw new LoggedException(e.getMessage(), e);
+            } finally {
+                // The documents can now be reused.
+                batch.clear();
             }
         }
     }
 
     private void processIndexContent(final IndexField indexField, final String value) {
         try {
-            Field field = null;
+            boolean added = false;
 
             if (indexField.getFieldType().isNumeric()) {
                 final long val = Long.parseLong(value);
-                field = FieldFactory.create(indexField, val);
+                added = addField(indexField, val);
+                addDocValues(indexField, val);
 
             } else if (IndexFieldType.DATE_FIELD.equals(indexField.getFieldType())) {
                 try {
                     final long val = DateUtil.parseUnknownString(value);
-                    field = FieldFactory.create(indexField, val);
+                    added = addField(indexField, val);
+                    addDocValues(indexField, val);
                 } catch (final Exception e) {
                     LOGGER.trace(e.getMessage(), e);
                 }
-            } else {
-                field = FieldFactory.create(indexField, value);
+            } else if (indexField.isIndexed() || indexField.isStored()) {
+                // Doc values are only written for numeric and date fields.
+                document.addString(indexField, value);
+                added = true;
             }
 
-            // Add the current field to the document if it is not null.
-            if (field != null) {
+            // Count the current field if it was added to the document.
+            if (added) {
                 // Output some debug.
                 if (LOGGER.isDebugEnabled()) {
                     debugBuffer.append("endElement() - Adding index indexName=");
@@ -243,13 +301,31 @@ class IndexingFilter extends AbstractXMLFilter {
                 }
 
                 fieldsIndexed++;
-                document.add(field);
             }
         } catch (final RuntimeException e) {
             log(Severity.ERROR, e.getMessage(), e);
         }
     }
 
+    private boolean addField(final IndexField indexField, final long value) {
+        // A field can be written only as doc values in which case there is
+        // nothing to index or store.
+        if (indexField.isIndexed() || indexField.isStored()) {
+            document.addLong(indexField, value);
+            return true;
+        }
+        return false;
+    }
+
+    private void addDocValues(final IndexField indexField, final long value) {
+        // Lucene only allows one doc value per field in each document so keep
+        // the first value if a record repeats a field.
+        if (indexField.isDocValues() && docValueFields.add(indexField.getFieldName())) {
+            fieldsIndexed++;
+            document.addDocValues(indexField, value);
+        }
+    }
+
     @PipelineProperty(description = "The index to send records to.")
     public void setIndex(final Index index) {
         this.index = index;
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.index.server;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.NumericDocValuesField;
+import stroom.query.shared.IndexField;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A Lucene document that keeps hold of the fields it has been given so that
+ * they can be reused for the next record by setting new values rather than
+ * creating new fields. A record can repeat a field so several fields may be
+ * held for each index field. Lucene has finished with the fields of a document
+ * once it has been added so a document can be reset and reused as soon as the
+ * call to add it returns.
+ */
+class ReusableDocument {
+    private final Document document = new Document();
+    private final Map<IndexField, FieldSlots<LongField>> longFields = new HashMap<>();
+    private final Map<IndexField, FieldSlots<Field>> stringFields = new HashMap<>();
+    private final Map<IndexField, FieldSlots<NumericDocValuesField>> docValuesFields = new HashMap<>();
+
+    LongField addLong(final IndexField indexField, final long value) {
+        final LongField field = longFields.computeIfAbsent(indexField, k -> new FieldSlots<>())
+                .next(indexField, f -> FieldFactory.create(f, value));
+        field.setLongValue(value);
+        document.add(field);
+        return field;
+    }
+
+    Field addString(final IndexField indexField, final String value) {
+        final Field field = stringFields.computeIfAbsent(indexField, k -> new FieldSlots<>())
+                .next(indexField, f -> FieldFactory.create(f, value));
+        field.setStringValue(value);
+        document.add(field);
+        return field;
+    }
+
+    NumericDocValuesField addDocValues(final IndexField indexField, final long value) {
+        final NumericDocValuesField field = docValuesFields.computeIfAbsent(indexField, k -> new FieldSlots<>())
+                .next(indexField, f -> FieldFactory.createDocValues(f, value));
+        field.setLongValue(value);
+        document.add(field);
+        return field;
+    }
+
+    /**
+     * Remove all fields from the document so that it can be used for another
+     * record. The fields are kept so that they can be reused.
+     */
+    void reset() {
+        document.getFields().clear();
+        longFields.values().forEach(FieldSlots::reset);
+        stringFields.values().forEach(FieldSlots::reset);
+        docValuesFields.values().forEach(FieldSlots::reset);
+    }
+
+    Document getDocument() {
+        return document;
+    }
+
+    private static class FieldSlots<T extends Field> {
+        private final List<T> fields = new ArrayList<>();
+        private int used;
+
+        T next(final IndexField indexField, final Function<IndexField, T> factory) {
+            final T field;
+            if (used < fields.size()) {
+                field = fields.get(used);
+            } else {
+                field = factory.apply(indexField);
+                fields.add(field);
+            }
+            used++;
+            return field;
+        }
+
+        void reset() {
+            used = 0;
+        }
+    }
+}
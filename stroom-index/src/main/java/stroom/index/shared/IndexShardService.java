@@ -20,6 +20,27 @@ import stroom.entity.shared.BaseEntityService;
 import stroom.entity.shared.FindService;
 import stroom.node.shared.Node;
 
+import java.util.List;
+import java.util.function.Consumer;
+
 public interface IndexShardService extends BaseEntityService<IndexShard>, FindService<IndexShard, FindIndexShardCriteria> {
     IndexShard createIndexShard(IndexShardKey indexShardKey, Node ownerNode);
+
+    /**
+     * Replace a set of closed shards with a single shard that holds all of
+     * their documents. The new shard is saved and the old shards are marked
+     * as deleted together so that searches see either the old shards or the
+     * new one but never both.
+     *
+     * @param oldShards    The shards being replaced. Nothing is changed if any
+     *                     of them is no longer closed or has a different
+     *                     document count as it has been written to since.
+     * @param newShard     The shard that replaces them.
+     * @param beforeCommit Called with the saved new shard before the change is
+     *                     committed so that its data can be moved into place.
+     *                     The change is rolled back if this throws an
+     *                     exception.
+     * @return The saved new shard.
+     */
+    IndexShard replaceIndexShards(List<IndexShard> oldShards, IndexShard newShard, Consumer<IndexShard> beforeCommit);
 }
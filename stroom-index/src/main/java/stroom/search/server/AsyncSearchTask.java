@@ -19,7 +19,9 @@ package stroom.search.server;
 import stroom.node.shared.Node;
 import stroom.query.shared.CoprocessorSettings;
 import stroom.query.shared.Search;
+import stroom.task.server.IoThreadPool;
 import stroom.util.shared.Task;
+import stroom.util.shared.ThreadPool;
 import stroom.util.shared.VoidResult;
 import stroom.util.task.ServerTask;
 
@@ -28,6 +30,7 @@ import java.util.Map;
 
 public class AsyncSearchTask extends ServerTask<VoidResult> implements Serializable {
     private static final long serialVersionUID = -1305243739417365803L;
+    private static final ThreadPool THREAD_POOL = new IoThreadPool("Async Search", 5);
 
     private final String searchName;
     private final Search search;
@@ -79,6 +82,11 @@ public class AsyncSearchTask extends ServerTask<VoidResult> implements Serializa
         return now;
     }
 
+    @Override
+    public ThreadPool getThreadPool() {
+        return THREAD_POOL;
+    }
+
     public ClusterSearchResultCollector getResultCollector() {
         return resultCollector;
     }
@@ -24,6 +24,7 @@ import stroom.index.shared.IndexService;
 import stroom.index.shared.IndexShard;
 import stroom.index.shared.IndexShard.IndexShardStatus;
 import stroom.index.shared.IndexShardService;
+import stroom.node.server.StroomPropertyService;
 import stroom.node.shared.Node;
 import stroom.query.ResultHandler;
 import stroom.query.shared.IndexField;
@@ -40,6 +41,8 @@ import stroom.task.server.GenericServerTask;
 import stroom.task.server.TaskHandlerBean;
 import stroom.task.server.TaskManager;
 import stroom.task.shared.FindTaskCriteria;
+import stroom.util.logging.StroomLogger;
+import stroom.util.shared.ModelStringUtil;
 import stroom.util.shared.VoidResult;
 import stroom.util.spring.StroomScope;
 import stroom.util.task.TaskMonitor;
@@ -57,6 +60,12 @@ import java.util.Set;
 @TaskHandlerBean(task = AsyncSearchTask.class)
 @Scope(value = StroomScope.TASK)
 class AsyncSearchTaskHandler extends AbstractTaskHandler<AsyncSearchTask, VoidResult> {
+    private static final StroomLogger LOGGER = StroomLogger.getLogger(AsyncSearchTaskHandler.class);
+
+    private static final String PARTITION_TIME_FIELD_PROPERTY = "stroom.search.shard.partitionTimeField";
+    private static final String PARTITION_TIME_TOLERANCE_PROPERTY = "stroom.search.shard.partitionTimeTolerance";
+    private static final long DEFAULT_PARTITION_TIME_TOLERANCE_MS = 24 * 60 * 60 * 1000L;
+
     private final TaskMonitor taskMonitor;
     private final TargetNodeSetFactory targetNodeSetFactory;
     private final ClusterDispatchAsync dispatcher;
@@ -66,12 +75,14 @@ class AsyncSearchTaskHandler extends AbstractTaskHandler<AsyncSearchTask, VoidRe
     private final IndexShardService indexShardService;
     private final TaskManager taskManager;
     private final SecurityContext securityContext;
+    private final StroomPropertyService stroomPropertyService;
 
     @Inject
     AsyncSearchTaskHandler(final TaskMonitor taskMonitor, final TargetNodeSetFactory targetNodeSetFactory,
                            final ClusterDispatchAsync dispatcher, final ClusterDispatchAsyncHelper dispatchHelper,
                            final ClusterResultCollectorCache clusterResultCollectorCache, final IndexService indexService,
-                           final IndexShardService indexShardService, final TaskManager taskManager, final SecurityContext securityContext) {
+                           final IndexShardService indexShardService, final TaskManager taskManager, final SecurityContext securityContext,
+                           final StroomPropertyService stroomPropertyService) {
         this.taskMonitor = taskMonitor;
         this.targetNodeSetFactory = targetNodeSetFactory;
         this.dispatcher = dispatcher;
@@ -81,6 +92,7 @@ class AsyncSearchTaskHandler extends AbstractTaskHandler<AsyncSearchTask, VoidRe
         this.indexShardService = indexShardService;
         this.taskManager = taskManager;
         this.securityContext = securityContext;
+        this.stroomPropertyService = stroomPropertyService;
     }
 
     @Override
@@ -122,10 +134,17 @@ class AsyncSearchTaskHandler extends AbstractTaskHandler<AsyncSearchTask, VoidRe
                     findIndexShardCriteria.getFetchSet().add(Node.ENTITY_TYPE);
                     final List<IndexShard> indexShards = indexShardService.find(findIndexShardCriteria);
 
+                    // Ignore shards whose time partition ends before the
+                    // earliest time the query is interested in.
+                    final IndexShardTimeFilter timeFilter = createTimeFilter(search, task.getNow());
+                    int prunedShardCount = 0;
+
                     // Build a map of nodes that will deal with each set of shards.
                     final Map<Node, List<Long>> shardMap = new HashMap<>();
                     for (final IndexShard indexShard : indexShards) {
-                        if (IndexShardStatus.CORRUPT.equals(indexShard.getStatus())) {
+                        if (!timeFilter.isMatch(indexShard)) {
+                            prunedShardCount++;
+                        } else if (IndexShardStatus.CORRUPT.equals(indexShard.getStatus())) {
                             resultCollector.getErrorSet(indexShard.getNode()).add(
                                     "Attempt to search an index shard marked as corrupt: id=" + indexShard.getId() + ".");
                         } else {
@@ -139,6 +158,14 @@ class AsyncSearchTaskHandler extends AbstractTaskHandler<AsyncSearchTask, VoidRe
                         }
                     }
 
+                    if (timeFilter.isEnabled()) {
+                        LOGGER.debug("exec() - %s searching %s of %s shards, %s pruned by time partition",
+                                task.getSearchName(), indexShards.size() - prunedShardCount, indexShards.size(),
+                                prunedShardCount);
+                        taskMonitor.info(task.getSearchName() + " - " + prunedShardCount + " of " + indexShards.size()
+                                + " shards pruned by time partition");
+                    }
+
                     // Start remote cluster search execution.
                     int expectedNodeResultCount = 0;
                     for (final Entry<Node, List<Long>> entry : shardMap.entrySet()) {
@@ -217,11 +244,36 @@ class AsyncSearchTaskHandler extends AbstractTaskHandler<AsyncSearchTask, VoidRe
         taskManager.execAsync(outerTask);
     }
 
+    private IndexShardTimeFilter createTimeFilter(final Search search, final long now) {
+        String timeField = null;
+        long toleranceMs = DEFAULT_PARTITION_TIME_TOLERANCE_MS;
+        if (stroomPropertyService != null) {
+            timeField = stroomPropertyService.getProperty(PARTITION_TIME_FIELD_PROPERTY);
+            final String tolerance = stroomPropertyService.getProperty(PARTITION_TIME_TOLERANCE_PROPERTY);
+            if (tolerance != null && tolerance.trim().length() > 0) {
+                try {
+                    toleranceMs = ModelStringUtil.parseDurationString(tolerance.trim());
+                } catch (final RuntimeException e) {
+                    LOGGER.error("createTimeFilter() - Unable to parse %s '%s'", PARTITION_TIME_TOLERANCE_PROPERTY,
+                            tolerance);
+                }
+            }
+        }
+
+        if (timeField != null) {
+            timeField = timeField.trim();
+        }
+        return IndexShardTimeFilter.create(search.getExpression(), timeField, toleranceMs, search.getDateTimeLocale(),
+                now);
+    }
+
     private IndexField[] getStoredFields(final Index index) {
         final List<IndexField> indexFields = index.getIndexFieldsObject().getIndexFields();
         final List<IndexField> list = new ArrayList<>(indexFields.size());
         for (final IndexField indexField : indexFields) {
-            if (indexField.isStored()) {
+            // Fields with doc values can be read by search even if they are
+            // not stored.
+            if (indexField.isStored() || indexField.isDocValues()) {
                 list.add(indexField);
             }
         }
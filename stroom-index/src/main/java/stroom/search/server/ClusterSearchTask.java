@@ -21,6 +21,8 @@ import stroom.query.shared.CoprocessorSettings;
 import stroom.query.shared.IndexField;
 import stroom.query.shared.Search;
 import stroom.task.cluster.ClusterTask;
+import stroom.task.server.IoThreadPool;
+import stroom.util.shared.ThreadPool;
 
 import java.time.ZonedDateTime;
 import java.util.List;
@@ -28,6 +30,7 @@ import java.util.Map;
 
 public class ClusterSearchTask extends ClusterTask<NodeResult> {
     private static final long serialVersionUID = -1305243739417365803L;
+    private static final ThreadPool THREAD_POOL = new IoThreadPool("Cluster Search", 5);
 
     private final Search search;
     private final List<Long> shards;
@@ -77,4 +80,9 @@ public class ClusterSearchTask extends ClusterTask<NodeResult> {
     public long getNow() {
         return now;
     }
+
+    @Override
+    public ThreadPool getThreadPool() {
+        return THREAD_POOL;
+    }
 }
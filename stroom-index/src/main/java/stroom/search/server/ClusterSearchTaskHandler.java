@@ -25,8 +25,11 @@ import org.springframework.context.annotation.Scope;
 import stroom.dashboard.expression.FieldIndexMap;
 import stroom.dictionary.shared.DictionaryService;
 import stroom.entity.shared.DocRef;
+import stroom.index.shared.FindIndexShardCriteria;
 import stroom.index.shared.Index;
+import stroom.index.shared.IndexShard;
 import stroom.index.shared.IndexService;
+import stroom.index.shared.IndexShardService;
 import stroom.pipeline.server.errorhandler.ErrorReceiver;
 import stroom.pipeline.server.errorhandler.MessageUtil;
 import stroom.query.Payload;
@@ -50,12 +53,12 @@ import stroom.search.server.shard.IndexShardSearcherCache;
 import stroom.security.SecurityContext;
 import stroom.streamstore.server.StreamStore;
 import stroom.task.server.ExecutorProvider;
+import stroom.task.server.IoThreadPool;
 import stroom.task.server.TaskCallback;
 import stroom.task.server.TaskContext;
 import stroom.task.server.TaskHandler;
 import stroom.task.server.TaskHandlerBean;
 import stroom.task.server.TaskTerminatedException;
-import stroom.task.server.ThreadPoolImpl;
 import stroom.util.config.PropertyUtil;
 import stroom.util.logging.StroomLogger;
 import stroom.util.shared.Location;
@@ -94,10 +97,12 @@ class ClusterSearchTaskHandler implements TaskHandler<ClusterSearchTask, NodeRes
     private static final int DEFAULT_MAX_STORED_DATA_QUEUE_SIZE = 1000000;
     private static final int DEFAULT_MAX_BOOLEAN_CLAUSE_COUNT = 1024;
 
-    private static final ThreadPool THREAD_POOL = new ThreadPoolImpl("Search Result Sender", 5, 0, Integer.MAX_VALUE);
+    private static final ThreadPool THREAD_POOL = new IoThreadPool("Search Result Sender", 5);
 
     private final IndexService indexService;
+    private final IndexShardService indexShardService;
     private final DictionaryService dictionaryService;
+    private final DictionaryQueryCache dictionaryQueryCache;
     private final TaskContext taskContext;
     private final CoprocessorFactory coprocessorFactory;
     private final IndexShardSearchTaskExecutor indexShardSearchTaskExecutor;
@@ -109,6 +114,7 @@ class ClusterSearchTaskHandler implements TaskHandler<ClusterSearchTask, NodeRes
     private final SecurityContext securityContext;
     private final int maxBooleanClauseCount;
     private final int maxStoredDataQueueSize;
+    private final boolean shardAggregation;
     private final LinkedBlockingQueue<String> errors = new LinkedBlockingQueue<>();
     private final AtomicBoolean searchComplete = new AtomicBoolean();
     private final AtomicBoolean sendingData = new AtomicBoolean();
@@ -122,7 +128,9 @@ class ClusterSearchTaskHandler implements TaskHandler<ClusterSearchTask, NodeRes
 
     @Inject
     ClusterSearchTaskHandler(final IndexService indexService,
+                             final IndexShardService indexShardService,
                              final DictionaryService dictionaryService,
+                             final DictionaryQueryCache dictionaryQueryCache,
                              final TaskContext taskContext,
                              final CoprocessorFactory coprocessorFactory,
                              final IndexShardSearchTaskExecutor indexShardSearchTaskExecutor,
@@ -134,11 +142,14 @@ class ClusterSearchTaskHandler implements TaskHandler<ClusterSearchTask, NodeRes
                              final SecurityContext securityContext,
                              @Value("#{propertyConfigurer.getProperty('stroom.search.maxBooleanClauseCount')}") final String maxBooleanClauseCount,
                              @Value("#{propertyConfigurer.getProperty('stroom.search.maxStoredDataQueueSize')}") final String maxStoredDataQueueSize,
+                             @Value("#{propertyConfigurer.getProperty('stroom.search.shard.aggregation')}") final String shardAggregation,
                              final Provider<IndexShardSearchTaskHandler> indexShardSearchTaskHandlerProvider,
                              final Provider<ExtractionTaskHandler> extractionTaskHandlerProvider,
                              final ExecutorProvider executorProvider) {
         this.indexService = indexService;
+        this.indexShardService = indexShardService;
         this.dictionaryService = dictionaryService;
+        this.dictionaryQueryCache = dictionaryQueryCache;
         this.taskContext = taskContext;
         this.coprocessorFactory = coprocessorFactory;
         this.indexShardSearchTaskExecutor = indexShardSearchTaskExecutor;
@@ -150,6 +161,7 @@ class ClusterSearchTaskHandler implements TaskHandler<ClusterSearchTask, NodeRes
         this.securityContext = securityContext;
         this.maxBooleanClauseCount = PropertyUtil.toInt(maxBooleanClauseCount, DEFAULT_MAX_BOOLEAN_CLAUSE_COUNT);
         this.maxStoredDataQueueSize = PropertyUtil.toInt(maxStoredDataQueueSize, DEFAULT_MAX_STORED_DATA_QUEUE_SIZE);
+        this.shardAggregation = PropertyUtil.toBoolean(shardAggregation, true);
         this.indexShardSearchTaskHandlerProvider = indexShardSearchTaskHandlerProvider;
         this.extractionTaskHandlerProvider = extractionTaskHandlerProvider;
         this.executorProvider = executorProvider;
@@ -385,7 +397,7 @@ class ClusterSearchTaskHandler implements TaskHandler<ClusterSearchTask, NodeRes
                         SearchExpressionQuery query = null;
                         try {
                             final SearchExpressionQueryBuilder searchExpressionQueryBuilder = new SearchExpressionQueryBuilder(
-                                    dictionaryService, indexFieldsMap, maxBooleanClauseCount, search.getDateTimeLocale(), task.getNow());
+                                    dictionaryService, dictionaryQueryCache, indexFieldsMap, maxBooleanClauseCount, search.getDateTimeLocale(), task.getNow());
                             query = searchExpressionQueryBuilder.buildQuery(version, expression);
 
                             // Make sure the query was created successfully.
@@ -418,6 +430,16 @@ class ClusterSearchTaskHandler implements TaskHandler<ClusterSearchTask, NodeRes
 
                 // Update config for the index shard search task executor.
                 indexShardSearchTaskExecutor.setMaxThreads(indexShardSearchTaskProperties.getMaxThreads());
+                indexShardSearchTaskExecutor.setTargetQueueLatency(indexShardSearchTaskProperties.getTargetQueueLatencyMs());
+
+                // Create an object to make event lists from raw index data.
+                final StreamMapCreator streamMapCreator = new StreamMapCreator(task.getStoredFields(), this,
+                        streamStore, securityContext);
+
+                // If all of the coprocessors just aggregate raw index values
+                // then aggregate them as each shard is searched.
+                final ShardResultAggregator shardResultAggregator = createShardResultAggregator(
+                        extractionCoprocessorsMap, streamMapCreator);
 
                 // Make a task producer that will create event data extraction tasks when requested by the executor.
                 final IndexShardSearchTaskProducer indexShardSearchTaskProducer = new IndexShardSearchTaskProducer(
@@ -432,9 +454,24 @@ class ClusterSearchTaskHandler implements TaskHandler<ClusterSearchTask, NodeRes
                         hitCount,
                         indexShardSearchTaskProperties.getMaxThreadsPerTask(),
                         executorProvider,
-                        indexShardSearchTaskHandlerProvider);
+                        indexShardSearchTaskHandlerProvider,
+                        shardResultAggregator,
+                        getShardDocumentCounts(task.getShards()),
+                        indexShardSearchTaskProperties.getSmallShardDocCount(),
+                        indexShardSearchTaskProperties.getSplitShardDocCount());
+
+                if (shardResultAggregator != null) {
+                    // Values go straight from the shards to the coprocessors so just wait for the shards.
+                    while (!indexShardSearchTaskProducer.isComplete()) {
+                        taskContext.info(
+                                "Searching... " +
+                                        indexShardSearchTaskProducer.getRemainingTasks() +
+                                        " shards remaining");
+
+                        ThreadUtil.sleep(1000);
+                    }
 
-                if (!filterStreams) {
+                } else if (!filterStreams) {
                     // If we aren't required to filter streams and aren't using pipelines to feed data to coprocessors then just do a simple data transfer to the coprocessors.
                     transfer(extractionCoprocessorsMap, indexShardSearchTaskProducer);
 
@@ -442,10 +479,6 @@ class ClusterSearchTaskHandler implements TaskHandler<ClusterSearchTask, NodeRes
                     // Update config for extraction task executor.
                     extractionTaskExecutor.setMaxThreads(extractionTaskProperties.getMaxThreads());
 
-                    // Create an object to make event lists from raw index data.
-                    final StreamMapCreator streamMapCreator = new StreamMapCreator(task.getStoredFields(), this,
-                            streamStore, securityContext);
-
                     // Make a task producer that will create event data extraction tasks when requested by the executor.
                     final ExtractionTaskProducer extractionTaskProducer = new ExtractionTaskProducer(
                             extractionTaskExecutor,
@@ -478,6 +511,46 @@ class ClusterSearchTaskHandler implements TaskHandler<ClusterSearchTask, NodeRes
         }
     }
 
+    /**
+     * Get the number of documents in each shard as of the last commit so that
+     * small shards can be searched together and large ones split.
+     */
+    private Map<Long, Integer> getShardDocumentCounts(final List<Long> shards) {
+        final Map<Long, Integer> documentCounts = new HashMap<>();
+        try {
+            final FindIndexShardCriteria criteria = new FindIndexShardCriteria();
+            criteria.getIndexShardSet().addAll(shards);
+            for (final IndexShard indexShard : indexShardService.find(criteria)) {
+                documentCounts.put(indexShard.getId(), indexShard.getDocumentCount());
+            }
+        } catch (final RuntimeException e) {
+            // Shards will just be searched one per task.
+            LOGGER.debug(e.getMessage(), e);
+        }
+        return documentCounts;
+    }
+
+    private ShardResultAggregator createShardResultAggregator(
+            final Map<DocRef, Set<Coprocessor<?>>> extractionCoprocessorsMap,
+            final StreamMapCreator streamMapCreator) {
+        if (!shardAggregation || extractionCoprocessorsMap.size() != 1) {
+            return null;
+        }
+
+        final Set<Coprocessor<?>> coprocessors = extractionCoprocessorsMap.get(null);
+        if (coprocessors == null || !ShardResultAggregator.canAggregate(coprocessors)) {
+            return null;
+        }
+
+        final List<TableCoprocessor> tableCoprocessors = new ArrayList<>(coprocessors.size());
+        for (final Coprocessor<?> coprocessor : coprocessors) {
+            tableCoprocessors.add((TableCoprocessor) coprocessor);
+        }
+
+        LOGGER.debug("Aggregating results for %s table coprocessors as shards are searched", tableCoprocessors.size());
+        return new ShardResultAggregator(tableCoprocessors, streamMapCreator, task);
+    }
+
     private void transfer(final Map<DocRef, Set<Coprocessor<?>>> extractionCoprocessorsMap,
                           final IndexShardSearchTaskProducer indexShardSearchTaskProducer) {
         try {
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.search.server;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.AutomatonQuery;
+import org.apache.lucene.search.MultiTermQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.NumericUtils;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.BasicAutomata;
+import org.apache.lucene.util.automaton.BasicOperations;
+import stroom.query.shared.IndexField;
+import stroom.query.shared.IndexField.AnalyzerType;
+import stroom.query.shared.IndexFieldType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The entries of a dictionary compiled into a single query for a field.
+ * Entries that each match a single term, i.e. plain values and wildcards for
+ * keyword fields or single values for numeric fields, are combined into one
+ * automaton so that the term dictionary of a shard is only walked once no
+ * matter how many entries there are. Entries that need analysing or that hold
+ * several values are left for the query builder to turn into individual
+ * queries as before.
+ */
+class CompiledDictionary {
+    private final Query query;
+    private final List<String> otherEntries;
+    private final Set<String> highlights;
+
+    private CompiledDictionary(final Query query, final List<String> otherEntries, final Set<String> highlights) {
+        this.query = query;
+        this.otherEntries = otherEntries;
+        this.highlights = highlights;
+    }
+
+    static CompiledDictionary compile(final String[] entries, final IndexField indexField) {
+        final String fieldName = indexField.getFieldName();
+        final boolean numeric = indexField.getFieldType().isNumeric();
+        final boolean keyword = IndexFieldType.FIELD.equals(indexField.getFieldType())
+                && AnalyzerType.KEYWORD.equals(indexField.getAnalyzerType());
+
+        final Set<BytesRef> values = new TreeSet<>();
+        final List<Automaton> wildcards = new ArrayList<>();
+        final List<String> otherEntries = new ArrayList<>();
+        final Set<String> highlights = new LinkedHashSet<>();
+
+        for (final String entry : entries) {
+            if (numeric) {
+                final String val = entry.trim();
+                if (val.length() > 0 && val.indexOf(',') == -1) {
+                    final BytesRef bytes = new BytesRef(NumericUtils.BUF_SIZE_LONG);
+                    NumericUtils.longToPrefixCoded(parseLong(fieldName, val), 0, bytes);
+                    values.add(bytes);
+                } else {
+                    otherEntries.add(entry);
+                }
+
+            } else if (keyword) {
+                // Create the same term that the query builder would for a
+                // keyword field.
+                String val = entry.trim();
+                if (val.length() > 0) {
+                    SearchExpressionQueryBuilder.addHighlights(entry, highlights);
+                    if (!indexField.isCaseSensitive()) {
+                        val = entry.toLowerCase();
+                    }
+
+                    if (val.indexOf('*') != -1 || val.indexOf('?') != -1) {
+                        wildcards.add(WildcardQuery.toAutomaton(new Term(fieldName, val)));
+                    } else {
+                        values.add(new BytesRef(val));
+                    }
+                }
+
+            } else {
+                otherEntries.add(entry);
+            }
+        }
+
+        Automaton automaton = null;
+        if (values.size() > 0) {
+            automaton = BasicAutomata.makeStringUnion(values);
+        }
+        if (wildcards.size() > 0) {
+            if (automaton != null) {
+                wildcards.add(automaton);
+            }
+            automaton = BasicOperations.union(wildcards);
+        }
+
+        Query query = null;
+        if (automaton != null) {
+            final AutomatonQuery automatonQuery = new AutomatonQuery(new Term(fieldName), automaton);
+            // Never expand to a boolean query as there may be a very large
+            // number of matching terms.
+            automatonQuery.setRewriteMethod(MultiTermQuery.CONSTANT_SCORE_FILTER_REWRITE);
+            query = automatonQuery;
+        }
+
+        return new CompiledDictionary(query, Collections.unmodifiableList(otherEntries),
+                Collections.unmodifiableSet(highlights));
+    }
+
+    private static long parseLong(final String fieldName, final String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (final NumberFormatException e) {
+            throw new SearchException(
+                    "Expected a numeric value for field \"" + fieldName + "\" but was given string \"" + value + "\"");
+        }
+    }
+
+    /**
+     * @return A query that matches any of the compiled entries or null if no
+     * entries could be compiled.
+     */
+    Query getQuery() {
+        return query;
+    }
+
+    /**
+     * @return Entries that could not be compiled and need their own query.
+     */
+    List<String> getOtherEntries() {
+        return otherEntries;
+    }
+
+    /**
+     * @return Terms to highlight for the compiled entries.
+     */
+    Set<String> getHighlights() {
+        return highlights;
+    }
+}
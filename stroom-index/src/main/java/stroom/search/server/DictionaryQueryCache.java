@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.search.server;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.springframework.stereotype.Component;
+import stroom.dictionary.shared.Dictionary;
+import stroom.query.shared.IndexField;
+import stroom.query.shared.IndexField.AnalyzerType;
+import stroom.query.shared.IndexFieldType;
+import stroom.util.cache.CacheManager;
+
+import javax.inject.Inject;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches compiled dictionaries by dictionary version and field so that large
+ * dictionaries are only compiled once rather than for every search and every
+ * shard Lucene version.
+ */
+@Component
+class DictionaryQueryCache {
+    private static final int MAX_CACHE_ENTRIES = 100;
+
+    private final Cache<Key, CompiledDictionary> cache;
+
+    @Inject
+    @SuppressWarnings("unchecked")
+    DictionaryQueryCache(final CacheManager cacheManager) {
+        final CacheBuilder cacheBuilder = CacheBuilder.newBuilder()
+                .maximumSize(MAX_CACHE_ENTRIES)
+                .expireAfterAccess(10, TimeUnit.MINUTES);
+        cache = cacheBuilder.build();
+        cacheManager.registerCache("Dictionary Query Cache", cacheBuilder, cache);
+    }
+
+    CompiledDictionary get(final Dictionary dictionary, final String[] entries, final IndexField indexField) {
+        final Key key = new Key(dictionary, indexField);
+        try {
+            return cache.get(key, () -> CompiledDictionary.compile(entries, indexField));
+        } catch (final ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SearchException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static class Key {
+        private final String uuid;
+        private final byte version;
+        private final Long updateTime;
+        private final String fieldName;
+        private final IndexFieldType fieldType;
+        private final AnalyzerType analyzerType;
+        private final boolean caseSensitive;
+        private final int hashCode;
+
+        Key(final Dictionary dictionary, final IndexField indexField) {
+            this.uuid = dictionary.getUuid();
+            this.version = dictionary.getVersion();
+            this.updateTime = dictionary.getUpdateTime();
+            this.fieldName = indexField.getFieldName();
+            this.fieldType = indexField.getFieldType();
+            this.analyzerType = indexField.getAnalyzerType();
+            this.caseSensitive = indexField.isCaseSensitive();
+            this.hashCode = Objects.hash(uuid, version, updateTime, fieldName, fieldType, analyzerType, caseSensitive);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return version == key.version &&
+                    caseSensitive == key.caseSensitive &&
+                    Objects.equals(uuid, key.uuid) &&
+                    Objects.equals(updateTime, key.updateTime) &&
+                    Objects.equals(fieldName, key.fieldName) &&
+                    fieldType == key.fieldType &&
+                    analyzerType == key.analyzerType;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.search.server;
+
+import stroom.index.shared.IndexShard;
+import stroom.query.DateExpressionParser;
+import stroom.query.shared.ExpressionItem;
+import stroom.query.shared.ExpressionOperator;
+import stroom.query.shared.ExpressionOperator.Op;
+import stroom.query.shared.ExpressionTerm;
+
+/**
+ * Decides whether an index shard can contain results for a query by comparing
+ * the time bounds of the query with the time partition of the shard.
+ * <p>
+ * Shards are partitioned by the time that the streams they index were created,
+ * not by the time of the events themselves. Events are nearly always created
+ * before the stream that contains them so a shard cannot contain events newer
+ * than the end of its partition (plus a tolerance for clock differences).
+ * Events can arrive late by any amount though so the start of a partition says
+ * nothing about how old its events might be. As a result shards are only ever
+ * excluded because they end before the earliest time the query asks for.
+ */
+class IndexShardTimeFilter {
+    private final Long minTime;
+
+    private IndexShardTimeFilter(final Long minTime) {
+        this.minTime = minTime;
+    }
+
+    /**
+     * @param expression The query expression.
+     * @param timeField  The name of the field that holds the event time.
+     * @param toleranceMs The amount of time that event times may be after the
+     *                    time their stream was created.
+     * @param timeZoneId The time zone to resolve date expressions with.
+     * @param nowEpochMilli The time to resolve relative date expressions with.
+     */
+    static IndexShardTimeFilter create(final ExpressionOperator expression, final String timeField,
+                                       final long toleranceMs, final String timeZoneId, final long nowEpochMilli) {
+        Long minTime = null;
+        if (expression != null && timeField != null && timeField.length() > 0) {
+            final Long from = getMinTime(expression, timeField, timeZoneId, nowEpochMilli);
+            if (from != null) {
+                minTime = from - Math.max(0, toleranceMs);
+            }
+        }
+        return new IndexShardTimeFilter(minTime);
+    }
+
+    boolean isEnabled() {
+        return minTime != null;
+    }
+
+    boolean isMatch(final IndexShard indexShard) {
+        return minTime == null || indexShard.getPartitionToTime() == null || indexShard.getPartitionToTime() > minTime;
+    }
+
+    /**
+     * Get the earliest time that the time field can have for an item to match
+     * or null if the item places no lower bound on the time field.
+     */
+    private static Long getMinTime(final ExpressionItem item, final String timeField, final String timeZoneId,
+                                   final long nowEpochMilli) {
+        if (item == null || !item.isEnabled()) {
+            return null;
+        }
+
+        if (item instanceof ExpressionTerm) {
+            final ExpressionTerm term = (ExpressionTerm) item;
+            if (!timeField.equals(term.getField()) || term.getValue() == null) {
+                return null;
+            }
+            try {
+                return getTermMinTime(term, timeZoneId, nowEpochMilli);
+            } catch (final RuntimeException e) {
+                // The query builder will report bad dates so just don't prune.
+                return null;
+            }
+        }
+
+        if (item instanceof ExpressionOperator) {
+            final ExpressionOperator operator = (ExpressionOperator) item;
+            if (operator.getChildren() == null || Op.NOT.equals(operator.getType())) {
+                return null;
+            }
+
+            Long result = null;
+            boolean first = true;
+            for (final ExpressionItem child : operator.getChildren()) {
+                if (child.isEnabled()) {
+                    final Long minTime = getMinTime(child, timeField, timeZoneId, nowEpochMilli);
+                    if (Op.AND.equals(operator.getType())) {
+                        // All children must match so use the latest bound.
+                        if (result == null || (minTime != null && minTime > result)) {
+                            result = minTime;
+                        }
+                    } else {
+                        // Any child can match so use the earliest bound. An
+                        // unbounded child makes the whole OR unbounded.
+                        if (minTime == null) {
+                            return null;
+                        }
+                        if (first || minTime < result) {
+                            result = minTime;
+                        }
+                    }
+                    first = false;
+                }
+            }
+            return result;
+        }
+
+        return null;
+    }
+
+    private static Long getTermMinTime(final ExpressionTerm term, final String timeZoneId, final long nowEpochMilli) {
+        final String value = term.getValue();
+        switch (term.getCondition()) {
+            case EQUALS:
+            case GREATER_THAN:
+            case GREATER_THAN_OR_EQUAL_TO:
+                return getDate(value, timeZoneId, nowEpochMilli);
+            case BETWEEN:
+            case IN:
+                long min = Long.MAX_VALUE;
+                for (final String val : value.split(",")) {
+                    min = Math.min(min, getDate(val.trim(), timeZoneId, nowEpochMilli));
+                }
+                return min;
+            default:
+                return null;
+        }
+    }
+
+    private static long getDate(final String value, final String timeZoneId, final long nowEpochMilli) {
+        return new DateExpressionParser().parse(value, timeZoneId, nowEpochMilli).toInstant().toEpochMilli();
+    }
+}
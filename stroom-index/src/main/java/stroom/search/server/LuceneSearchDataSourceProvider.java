@@ -57,6 +57,7 @@ public class LuceneSearchDataSourceProvider implements SearchDataSourceProvider
 
     private final IndexService indexService;
     private final DictionaryService dictionaryService;
+    private final DictionaryQueryCache dictionaryQueryCache;
     private final NodeCache nodeCache;
     private final TaskManager taskManager;
     private final ClusterResultCollectorCache clusterResultCollectorCache;
@@ -65,12 +66,14 @@ public class LuceneSearchDataSourceProvider implements SearchDataSourceProvider
     @Inject
     public LuceneSearchDataSourceProvider(final IndexService indexService,
                                           final DictionaryService dictionaryService,
+                                          final DictionaryQueryCache dictionaryQueryCache,
                                           final NodeCache nodeCache,
                                           final TaskManager taskManager,
                                           final ClusterResultCollectorCache clusterResultCollectorCache,
                                           @Value("#{propertyConfigurer.getProperty('stroom.search.maxBooleanClauseCount')}") final String maxBooleanClauseCount) {
         this.indexService = indexService;
         this.dictionaryService = dictionaryService;
+        this.dictionaryQueryCache = dictionaryQueryCache;
         this.nodeCache = nodeCache;
         this.taskManager = taskManager;
         this.clusterResultCollectorCache = clusterResultCollectorCache;
@@ -104,7 +107,7 @@ public class LuceneSearchDataSourceProvider implements SearchDataSourceProvider
                 SEND_INTERACTIVE_SEARCH_RESULT_FREQUENCY, coprocessorMap.getMap(), nowEpochMilli);
 
         // Create a handler for search results.
-        final SearchResultHandler resultHandler = new SearchResultHandler(coprocessorMap);
+        final SearchResultHandler resultHandler = new SearchResultHandler(coprocessorMap, search.getSampling());
 
         // Create the search result collector.
         final ClusterSearchResultCollector searchResultCollector = ClusterSearchResultCollector.create(taskManager,
@@ -128,7 +131,8 @@ public class LuceneSearchDataSourceProvider implements SearchDataSourceProvider
             final IndexFieldsMap indexFieldsMap = new IndexFieldsMap(index.getIndexFieldsObject());
             // Parse the query.
             final SearchExpressionQueryBuilder searchExpressionQueryBuilder = new SearchExpressionQueryBuilder(
-                    dictionaryService, indexFieldsMap, maxBooleanClauseCount, timeZoneId, nowEpochMilli);
+                    dictionaryService, dictionaryQueryCache, indexFieldsMap, maxBooleanClauseCount, timeZoneId,
+                    nowEpochMilli);
             final SearchExpressionQuery query = searchExpressionQueryBuilder
                     .buildQuery(LuceneVersionUtil.CURRENT_LUCENE_VERSION, expression);
 
@@ -46,6 +46,7 @@ import stroom.query.shared.IndexFieldsMap;
 
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -62,13 +63,17 @@ public class SearchExpressionQueryBuilder {
     private static final Pattern MULTIPLE_SPACE = Pattern.compile("[ ]+");
     private final IndexFieldsMap indexFieldsMap;
     private final DictionaryService dictionaryService;
+    private final DictionaryQueryCache dictionaryQueryCache;
     private final int maxBooleanClauseCount;
     private final String timeZoneId;
     private final long nowEpochMilli;
 
-    public SearchExpressionQueryBuilder(final DictionaryService dictionaryService, final IndexFieldsMap indexFieldsMap,
-                                        final int maxBooleanClauseCount, final String timeZoneId, final long nowEpochMilli) {
+    public SearchExpressionQueryBuilder(final DictionaryService dictionaryService,
+                                        final DictionaryQueryCache dictionaryQueryCache,
+                                        final IndexFieldsMap indexFieldsMap, final int maxBooleanClauseCount,
+                                        final String timeZoneId, final long nowEpochMilli) {
         this.dictionaryService = dictionaryService;
+        this.dictionaryQueryCache = dictionaryQueryCache;
         this.indexFieldsMap = indexFieldsMap;
         this.maxBooleanClauseCount = maxBooleanClauseCount;
         this.timeZoneId = timeZoneId;
@@ -389,10 +394,24 @@ public class SearchExpressionQueryBuilder {
 
     private Query getDictionary(final String fieldName, final DocRef docRef,
             final IndexField indexField, final Version matchVersion, final Set<String> terms) {
-        final String[] wordArr = loadWords(docRef);
+        final Dictionary dictionary = loadDictionary(docRef);
+        final String[] wordArr = getWords(dictionary);
         if (wordArr != null) {
+            // Compile as many of the entries as possible into a single query.
+            final CompiledDictionary compiledDictionary;
+            if (dictionaryQueryCache != null) {
+                compiledDictionary = dictionaryQueryCache.get(dictionary, wordArr, indexField);
+            } else {
+                compiledDictionary = CompiledDictionary.compile(wordArr, indexField);
+            }
+            terms.addAll(compiledDictionary.getHighlights());
+
             final BooleanQuery dictionaryQuery = new BooleanQuery();
-            for (final String val : wordArr) {
+            if (compiledDictionary.getQuery() != null) {
+                dictionaryQuery.add(compiledDictionary.getQuery(), Occur.SHOULD);
+            }
+
+            for (final String val : compiledDictionary.getOtherEntries()) {
                 Query query;
 
                 if (indexField.getFieldType().isNumeric()) {
@@ -416,12 +435,15 @@ public class SearchExpressionQueryBuilder {
         return null;
     }
 
-    private String[] loadWords(final DocRef docRef) {
+    private Dictionary loadDictionary(final DocRef docRef) {
         final Dictionary dictionary = dictionaryService.loadByUuid(docRef.getUuid());
         if (dictionary == null) {
             throw new SearchException("Dictionary \"" + docRef + "\" not found");
         }
+        return dictionary;
+    }
 
+    private String[] getWords(final Dictionary dictionary) {
         final String words = dictionary.getData();
         if (words != null) {
             return words.trim().split("\n");
@@ -450,14 +472,7 @@ public class SearchExpressionQueryBuilder {
         Query query = null;
 
         // Store terms for hit highlighting.
-        String highlight = value;
-        highlight = NON_WORD.matcher(highlight).replaceAll(" ");
-        highlight = highlight.trim();
-        highlight = MULTIPLE_SPACE.matcher(highlight).replaceAll(" ");
-        final String[] highlights = highlight.split(" ");
-        for (final String hl : highlights) {
-            terms.add(hl);
-        }
+        addHighlights(value, terms);
 
         // If we have omitted term frequencies and positions for this field then
         // we can't expect to do a sentence match. In this case we need to
@@ -510,6 +525,17 @@ public class SearchExpressionQueryBuilder {
         return query;
     }
 
+    static void addHighlights(final String value, final Collection<String> terms) {
+        String highlight = value;
+        highlight = NON_WORD.matcher(highlight).replaceAll(" ");
+        highlight = highlight.trim();
+        highlight = MULTIPLE_SPACE.matcher(highlight).replaceAll(" ");
+        final String[] highlights = highlight.split(" ");
+        for (final String hl : highlights) {
+            terms.add(hl);
+        }
+    }
+
     private boolean hasChildren(final ExpressionOperator operator) {
         if (operator != null && operator.isEnabled() && operator.getChildren() != null
                 && operator.getChildren().size() > 0) {
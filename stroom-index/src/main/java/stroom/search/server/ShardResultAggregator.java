@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.search.server;
+
+import stroom.search.server.TableCoprocessor.Combiner;
+import stroom.search.server.extraction.StreamMapCreator;
+import stroom.search.server.shard.IndexShardSearchTask;
+import stroom.search.server.shard.IndexShardSearchTask.ResultReceiver;
+import stroom.util.shared.HasTerminate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Aggregates the values found in each shard on the thread that searches the
+ * shard so that table coprocessors receive one partially aggregated item per
+ * group from each shard rather than every hit. Values are only aggregated if
+ * they belong to a stream that the user is allowed to see, which is the same
+ * filtering that is applied to hits when they are mapped to streams for
+ * extraction.
+ */
+class ShardResultAggregator implements ResultReceiver {
+    private final List<TableCoprocessor> coprocessors;
+    private final StreamMapCreator streamMapCreator;
+    private final HasTerminate monitor;
+    private final Map<IndexShardSearchTask, List<Combiner>> combinersByTask = new ConcurrentHashMap<>();
+
+    ShardResultAggregator(final List<TableCoprocessor> coprocessors,
+                          final StreamMapCreator streamMapCreator,
+                          final HasTerminate monitor) {
+        this.coprocessors = coprocessors;
+        this.streamMapCreator = streamMapCreator;
+        this.monitor = monitor;
+    }
+
+    /**
+     * @return True if all of the coprocessors can have their values aggregated
+     * as shards are searched.
+     */
+    static boolean canAggregate(final Iterable<Coprocessor<?>> coprocessors) {
+        boolean found = false;
+        for (final Coprocessor<?> coprocessor : coprocessors) {
+            if (!(coprocessor instanceof TableCoprocessor) || !((TableCoprocessor) coprocessor).isCombinable()) {
+                return false;
+            }
+            found = true;
+        }
+        return found;
+    }
+
+    @Override
+    public void receive(final IndexShardSearchTask task, final String[] values) {
+        if (streamMapCreator.isVisible(values)) {
+            // Each task is run by a single thread so the combiners for a task
+            // are never used concurrently.
+            final List<Combiner> combiners = combinersByTask.computeIfAbsent(task, k ->
+                    coprocessors.stream().map(TableCoprocessor::createCombiner).collect(Collectors.toList()));
+            for (final Combiner combiner : combiners) {
+                combiner.receive(values);
+            }
+        }
+    }
+
+    @Override
+    public void complete(final IndexShardSearchTask task) {
+        final List<Combiner> combiners = combinersByTask.remove(task);
+        if (combiners != null && !monitor.isTerminated()) {
+            for (final Combiner combiner : combiners) {
+                combiner.flush();
+            }
+        }
+    }
+}
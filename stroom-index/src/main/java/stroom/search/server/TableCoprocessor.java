@@ -23,6 +23,7 @@ import stroom.mapreduce.UnsafePairQueue;
 import stroom.query.CompiledDepths;
 import stroom.query.CompiledFields;
 import stroom.query.Item;
+import stroom.query.ItemCombiner;
 import stroom.query.ItemMapper;
 import stroom.query.ItemPartitioner;
 import stroom.query.Payload;
@@ -37,6 +38,8 @@ import java.util.List;
 import java.util.Map;
 
 public class TableCoprocessor implements Coprocessor<TableCoprocessorSettings> {
+    private static final int MAX_COMBINED_ITEMS = 10000;
+
     private final PairQueue<String, Item> queue;
     private final ItemMapper mapper;
 
@@ -60,6 +63,27 @@ public class TableCoprocessor implements Coprocessor<TableCoprocessorSettings> {
         mapper.collect(null, values);
     }
 
+    /**
+     * @return True if every item this coprocessor produces has a group key so
+     * that values can be aggregated before they are passed to this coprocessor.
+     */
+    public boolean isCombinable() {
+        return compiledDepths.hasGroupBy() && compiledDepths.getMaxDepth() == compiledDepths.getMaxGroupDepth();
+    }
+
+    /**
+     * Create a combiner that aggregates values in the calling thread and
+     * passes partially aggregated items to this coprocessor. Combiners are not
+     * thread safe so each thread that receives values must create its own.
+     */
+    public Combiner createCombiner() {
+        final ItemCombiner itemCombiner = new ItemCombiner(compiledDepths.getDepths(), compiledDepths.getMaxDepth(),
+                MAX_COMBINED_ITEMS, queue);
+        final ItemMapper itemMapper = new ItemMapper(itemCombiner, compiledFields, compiledDepths.getMaxDepth(),
+                compiledDepths.getMaxGroupDepth());
+        return new Combiner(itemMapper, itemCombiner);
+    }
+
     @Override
     public Payload createPayload() {
         final UnsafePairQueue<String, Item> outputQueue = new UnsafePairQueue<>();
@@ -82,4 +106,22 @@ public class TableCoprocessor implements Coprocessor<TableCoprocessorSettings> {
 
         return new TablePayload(outputQueue);
     }
+
+    public static class Combiner {
+        private final ItemMapper itemMapper;
+        private final ItemCombiner itemCombiner;
+
+        Combiner(final ItemMapper itemMapper, final ItemCombiner itemCombiner) {
+            this.itemMapper = itemMapper;
+            this.itemCombiner = itemCombiner;
+        }
+
+        public void receive(final String[] values) {
+            itemMapper.collect(null, values);
+        }
+
+        public void flush() {
+            itemCombiner.flush();
+        }
+    }
 }
@@ -28,10 +28,10 @@ import stroom.util.logging.StroomLogger;
 import stroom.util.shared.Severity;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class StreamMapCreator {
     private static final StroomLogger LOGGER = StroomLogger.getLogger(StreamMapCreator.class);
@@ -43,7 +43,7 @@ public class StreamMapCreator {
     private final int eventIdIndex;
 
     private final SecurityContext securityContext;
-    private Map<Long, Optional<Stream>> fiteredStreamCache;
+    private volatile Map<Long, Optional<Stream>> fiteredStreamCache;
 
     public StreamMapCreator(final IndexField[] storedFields,
                             final ErrorReceiver errorReceiver,
@@ -99,13 +99,35 @@ public class StreamMapCreator {
         }
     }
 
+    /**
+     * Check that the values contain a stream and event id and that the stream
+     * is visible to the current user. Unlike adding events this can be called
+     * from multiple threads at once.
+     */
+    public boolean isVisible(final String[] storedData) {
+        final Long longStreamId = getLong(storedData, streamIdIndex);
+        final Long longEventId = getLong(storedData, eventIdIndex);
+        if (longStreamId == null || longEventId == null) {
+            return false;
+        }
+
+        securityContext.elevatePermissions();
+        try {
+            return getStreamById(longStreamId).isPresent();
+        } finally {
+            securityContext.restorePermissions();
+        }
+    }
+
     private Optional<Stream> getStreamById(final long streamId) {
         // Create a map to cache stream lookups. If we have cached more than a million streams then discard the map and start again to avoid using too much memory.
-        if (fiteredStreamCache == null || fiteredStreamCache.size() > 1000000) {
-            fiteredStreamCache = new HashMap<>();
+        Map<Long, Optional<Stream>> cache = fiteredStreamCache;
+        if (cache == null || cache.size() > 1000000) {
+            cache = new ConcurrentHashMap<>();
+            fiteredStreamCache = cache;
         }
 
-        return fiteredStreamCache.computeIfAbsent(streamId, k -> {
+        return cache.computeIfAbsent(streamId, k -> {
             Stream stream = null;
 
             try {
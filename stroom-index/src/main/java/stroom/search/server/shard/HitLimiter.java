@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.search.server.shard;
+
+import stroom.query.shared.Sampling;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which hits are collected by an exploratory search. Hits can be
+ * sampled so that only a percentage of matching docs are collected and the
+ * number of hits collected by all of the shards searched on a node can be
+ * limited so that collection stops as soon as enough have been found.
+ * <p>
+ * Sampling hashes the shard and doc id rather than using a random number so
+ * that running the same search again samples the same docs.
+ */
+class HitLimiter {
+    private static final int SAMPLE_RANGE = 1000000;
+
+    private final long maxHits;
+    private final int sampleThreshold;
+    private final AtomicLong hits = new AtomicLong();
+
+    HitLimiter(final long maxHits, final double samplePercent) {
+        this.maxHits = maxHits;
+        this.sampleThreshold = (int) Math.round(samplePercent * SAMPLE_RANGE / 100D);
+    }
+
+    /**
+     * @return A limiter for the supplied options or null if every hit is to
+     * be collected.
+     */
+    static HitLimiter create(final Sampling sampling) {
+        if (sampling == null || !sampling.isLimited()) {
+            return null;
+        }
+
+        long maxHits = Long.MAX_VALUE;
+        if (sampling.getFirstResults() != null && sampling.getFirstResults() > 0) {
+            maxHits = sampling.getFirstResults();
+        }
+        double samplePercent = 100;
+        if (sampling.getSamplePercent() != null) {
+            samplePercent = Math.max(0, Math.min(100, sampling.getSamplePercent()));
+        }
+        return new HitLimiter(maxHits, samplePercent);
+    }
+
+    /**
+     * @return True if the doc is in the sample.
+     */
+    boolean isSampled(final long indexShardId, final int docId) {
+        if (sampleThreshold >= SAMPLE_RANGE) {
+            return true;
+        }
+        return Math.floorMod(mix(indexShardId * 31 + docId), SAMPLE_RANGE) < sampleThreshold;
+    }
+
+    /**
+     * Take a hit from the remaining allowance.
+     *
+     * @return False if the limit has already been reached and the hit should
+     * not be collected.
+     */
+    boolean tryAcquire() {
+        if (maxHits == Long.MAX_VALUE) {
+            return true;
+        }
+        if (hits.get() >= maxHits) {
+            return false;
+        }
+        return hits.incrementAndGet() <= maxHits;
+    }
+
+    /**
+     * @return True once no more hits will be allowed.
+     */
+    boolean isFull() {
+        return hits.get() >= maxHits;
+    }
+
+    // The 64 bit finaliser from MurmurHash3 so that neighbouring doc ids are
+    // spread evenly.
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
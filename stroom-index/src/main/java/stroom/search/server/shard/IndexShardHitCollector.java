@@ -17,6 +17,7 @@
 package stroom.search.server.shard;
 
 import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.search.CollectionTerminatedException;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.Scorer;
 import org.slf4j.Logger;
@@ -26,48 +27,117 @@ import stroom.task.server.TaskContext;
 import stroom.util.shared.ModelStringUtil;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Collects matching doc ids into primitive int batches and hands each batch to
+ * the stored field reader when it is full or when the searcher moves on to the
+ * next segment. Batches are sorted so that readers visit doc ids in segment
+ * order. {@link #flush()} must be called once the search completes to hand off
+ * any remaining doc ids.
+ * <p>
+ * If a hit limiter is supplied then only sampled docs are collected and
+ * collection stops early once the limiter has allowed as many hits as the
+ * search wants.
+ */
 public class IndexShardHitCollector extends Collector {
     private static final Logger LOGGER = LoggerFactory.getLogger(IndexShardHitCollector.class);
 
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * Added to the store once the search has finished.
+     */
+    public static final int[] COMPLETE = new int[0];
+
     private final TaskContext taskContext;
-    private final LinkedBlockingQueue<Integer> docIdStore;
+    private final LinkedBlockingQueue<int[]> docIdStore;
     private final AtomicLong hitCount;
+    private final int batchSize;
+    private final long indexShardId;
+    private final HitLimiter hitLimiter;
+    private int[] batch;
+    private int batchLength;
     private int docBase;
     private Long pauseTime;
 
-    public IndexShardHitCollector(final TaskContext taskContext, final LinkedBlockingQueue<Integer> docIdStore,
-                                  final AtomicLong hitCount) {
+    public IndexShardHitCollector(final TaskContext taskContext, final LinkedBlockingQueue<int[]> docIdStore,
+                                  final AtomicLong hitCount, final int batchSize) {
+        this(taskContext, docIdStore, hitCount, batchSize, 0, null);
+    }
+
+    public IndexShardHitCollector(final TaskContext taskContext, final LinkedBlockingQueue<int[]> docIdStore,
+                                  final AtomicLong hitCount, final int batchSize, final long indexShardId,
+                                  final HitLimiter hitLimiter) {
         this.docIdStore = docIdStore;
         this.taskContext = taskContext;
         this.hitCount = hitCount;
+        this.batchSize = Math.max(1, batchSize);
+        this.batch = new int[this.batchSize];
+        this.indexShardId = indexShardId;
+        this.hitLimiter = hitLimiter;
     }
 
     @Override
     public void collect(final int doc) {
-        // Pause the current search if the deque is full.
         final int docId = docBase + doc;
+        if (hitLimiter != null) {
+            if (!hitLimiter.isSampled(indexShardId, docId)) {
+                return;
+            }
+            if (!hitLimiter.tryAcquire()) {
+                // Stop collecting from this segment. The searcher will move on
+                // to the next segment where setNextReader() stops it again.
+                throw new CollectionTerminatedException();
+            }
+        }
 
-        try {
-            while (!docIdStore.offer(docId, 1, TimeUnit.SECONDS) && !taskContext.isTerminated()) {
-                if (isProvidingInfo()) {
-                    if (pauseTime == null) {
-                        pauseTime = System.currentTimeMillis();
-                    }
+        batch[batchLength++] = docId;
+        if (batchLength == batchSize) {
+            flush();
+        }
+    }
 
-                    final long elapsed = System.currentTimeMillis() - pauseTime;
-                    provideInfo("Paused for " + ModelStringUtil.formatDurationString(elapsed));
+    /**
+     * Hand off the current batch of doc ids, pausing the search if the store is
+     * full.
+     */
+    public void flush() {
+        if (batchLength > 0) {
+            final int[] docIds;
+            if (batchLength == batch.length) {
+                docIds = batch;
+                batch = new int[batchSize];
+            } else {
+                docIds = Arrays.copyOf(batch, batchLength);
+            }
+            batchLength = 0;
+
+            // Docs may be collected out of order within a segment so sort them
+            // to allow stored fields to be read sequentially.
+            Arrays.sort(docIds);
+
+            try {
+                while (!docIdStore.offer(docIds, 1, TimeUnit.SECONDS) && !taskContext.isTerminated()) {
+                    if (isProvidingInfo()) {
+                        if (pauseTime == null) {
+                            pauseTime = System.currentTimeMillis();
+                        }
+
+                        final long elapsed = System.currentTimeMillis() - pauseTime;
+                        provideInfo("Paused for " + ModelStringUtil.formatDurationString(elapsed));
+                    }
                 }
+            } catch (final Throwable e) {
+                LOGGER.error(e.getMessage(), e);
             }
-        } catch (final Throwable e) {
-            LOGGER.error(e.getMessage(), e);
-        }
 
-        // Add to the hit count.
-        hitCount.incrementAndGet();
+            // Add to the hit count.
+            hitCount.addAndGet(docIds.length);
+        }
 
         // Quit searching if the task monitor is set to stop.
         if (taskContext.isTerminated()) {
@@ -92,6 +162,20 @@ public class IndexShardHitCollector extends Collector {
         }
     }
 
+    /**
+     * Tell the reader that no more doc ids will be added to the store.
+     */
+    public void complete() {
+        try {
+            while (!docIdStore.offer(COMPLETE, 1, TimeUnit.SECONDS) && !taskContext.isTerminated()) {
+                // Wait for the reader to make room.
+            }
+        } catch (final InterruptedException e) {
+            LOGGER.debug(e.getMessage(), e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private boolean isProvidingInfo() {
         return true;
     }
@@ -108,7 +192,15 @@ public class IndexShardHitCollector extends Collector {
 
     @Override
     public void setNextReader(final AtomicReaderContext context) throws IOException {
+        // Hand off the doc ids for the previous segment so that each batch is
+        // from a single segment.
+        flush();
         this.docBase = context.docBase;
+
+        // Skip the remaining segments if we already have enough hits.
+        if (hitLimiter != null && hitLimiter.isFull()) {
+            throw new CollectionTerminatedException();
+        }
     }
 
     @Override
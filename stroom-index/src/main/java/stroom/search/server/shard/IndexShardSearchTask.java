@@ -32,6 +32,12 @@ public class IndexShardSearchTask {
     private int shardNumber;
     private int shardTotal;
 
+    private SubTaskQueue subTaskQueue;
+    private int splitDocCount;
+    private int maxSplits;
+    private SegmentRange segmentRange;
+    private HitLimiter hitLimiter;
+
     IndexShardSearchTask(final IndexShardQueryFactory queryFactory,
                          final long indexShardId,
                          final String[] fieldNames,
@@ -86,8 +92,74 @@ public class IndexShardSearchTask {
         this.shardTotal = shardTotal;
     }
 
+    SubTaskQueue getSubTaskQueue() {
+        return subTaskQueue;
+    }
+
+    int getSplitDocCount() {
+        return splitDocCount;
+    }
+
+    int getMaxSplits() {
+        return maxSplits;
+    }
+
+    /**
+     * Allow this task to split the shard into ranges of segments that are
+     * searched by sub tasks if the shard has more than the split doc count.
+     */
+    void setSplittable(final SubTaskQueue subTaskQueue, final int splitDocCount, final int maxSplits) {
+        this.subTaskQueue = subTaskQueue;
+        this.splitDocCount = splitDocCount;
+        this.maxSplits = maxSplits;
+    }
+
+    /**
+     * @return The range of segments to search if this is a sub task of a
+     * split shard, otherwise null.
+     */
+    SegmentRange getSegmentRange() {
+        return segmentRange;
+    }
+
+    /**
+     * @return The limiter shared by all shards searched for an exploratory
+     * search or null if every hit is to be collected.
+     */
+    HitLimiter getHitLimiter() {
+        return hitLimiter;
+    }
+
+    void setHitLimiter(final HitLimiter hitLimiter) {
+        this.hitLimiter = hitLimiter;
+    }
+
+    IndexShardSearchTask createSubTask(final SegmentRange segmentRange) {
+        final IndexShardSearchTask subTask = new IndexShardSearchTask(queryFactory, indexShardId, fieldNames,
+                resultReceiver, errorReceiver, hitCount);
+        subTask.segmentRange = segmentRange;
+        subTask.shardNumber = shardNumber;
+        subTask.shardTotal = shardTotal;
+        subTask.hitLimiter = hitLimiter;
+        return subTask;
+    }
+
+    /**
+     * Receives values found by a task. A shard may be split across several
+     * tasks that run at the same time so receivers that keep state should
+     * keep it per task.
+     */
     public interface ResultReceiver {
-        void receive(long shardId, String[] values);
+        void receive(IndexShardSearchTask task, String[] values);
+
+        /**
+         * Called once all of the values for a task have been received.
+         */
+        void complete(IndexShardSearchTask task);
+    }
+
+    interface SubTaskQueue {
+        void add(IndexShardSearchTask task);
     }
 
     public interface IndexShardQueryFactory {
@@ -16,8 +16,6 @@
 
 package stroom.search.server.shard;
 
-import org.apache.lucene.document.Document;
-import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.SearcherManager;
@@ -36,6 +34,8 @@ import stroom.util.shared.VoidResult;
 import stroom.util.spring.StroomScope;
 
 import javax.inject.Inject;
+import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -66,14 +66,30 @@ public class IndexShardSearchTaskHandler {
         try {
             taskContext.setName("Search Index Shard");
             if (!taskContext.isTerminated()) {
-                taskContext.info("Searching shard " + task.getShardNumber() + " of " + task.getShardTotal() + " (id="
-                        + task.getIndexShardId() + ")");
+                final SegmentRange segmentRange = task.getSegmentRange();
+                if (segmentRange != null) {
+                    // This task searches part of a shard that has been split.
+                    try {
+                        taskContext.info("Searching segments " + (segmentRange.getFromLeaf() + 1) + " to "
+                                + segmentRange.getToLeaf() + " of shard " + task.getShardNumber() + " of "
+                                + task.getShardTotal() + " (id=" + task.getIndexShardId() + ")");
+                        searchRange(task, segmentRange);
+                    } finally {
+                        task.getResultReceiver().complete(task);
+                    }
+
+                } else {
+                    taskContext.info("Searching shard " + task.getShardNumber() + " of " + task.getShardTotal() + " (id="
+                            + task.getIndexShardId() + ")");
 
-                // Borrow a searcher from the pool.
-                final IndexShardSearcher indexShardSearcher = indexShardSearcherCache.get(task.getIndexShardId());
+                    // Borrow a searcher from the pool.
+                    final IndexShardSearcher indexShardSearcher = indexShardSearcherCache.get(task.getIndexShardId());
 
-                // Start searching.
-                searchShard(task, indexShardSearcher);
+                    // Start searching.
+                    searchShard(task, indexShardSearcher);
+                }
+            } else if (task.getSegmentRange() != null) {
+                task.getSegmentRange().release();
             }
         } catch (final Throwable t) {
             error(task, t.getMessage(), t);
@@ -92,47 +108,44 @@ public class IndexShardSearchTaskHandler {
 
         // If there is an error building the query then it will be null here.
         if (query != null) {
-            final int maxDocIdQueueSize = getIntProperty("stroom.search.shard.maxDocIdQueueSize", 1000);
-            final LinkedBlockingQueue<Integer> docIdStore = new LinkedBlockingQueue<>(maxDocIdQueueSize);
-
-            // Create a collector.
-            final IndexShardHitCollector collector = new IndexShardHitCollector(taskContext, docIdStore,
-                    task.getHitCount());
-
             try {
                 final SearcherManager searcherManager = indexShardSearcher.getSearcherManager();
                 final IndexSearcher searcher = searcherManager.acquire();
+                List<SegmentRange> segmentRanges = null;
+                int queued = 0;
                 try {
-                    final Executor executor = executorProvider.getExecutor(IndexShardSearchTaskProducer.THREAD_POOL);
-                    final CompletableFuture<Void> completableFuture = CompletableFuture.runAsync(() -> {
-                        try {
-                            taskContext.setName("Index Searcher");
-                            searcher.search(query, collector);
-                        } catch (final Throwable t) {
-                            error(task, t.getMessage(), t);
-                        }
-                    }, executor);
-
-                    // Start retrieving stored data from the shard.
-                    boolean complete = false;
-                    while (!complete && !taskContext.isTerminated()) {
-                        // Check if search is finished before polling for doc ids.
-                        final boolean searchFinished = completableFuture.isDone();
-                        // Poll for the next doc id.
-                        final Integer docId = docIdStore.poll(1, TimeUnit.SECONDS);
-
-                        if (docId != null) {
-                            // If we have a doc id then retrieve the stored data for it.
-                            getStoredData(task, searcher, docId);
-                        } else {
-                            // If we did not get a doc id then this search is complete if the shard has finished being searched.
-                            complete = searchFinished;
-                        }
+                    // Split large shards into ranges of segments and hand all
+                    // but the first to other tasks.
+                    int splitDocCount = 0;
+                    if (task.getSubTaskQueue() != null) {
+                        splitDocCount = task.getSplitDocCount();
+                    }
+                    segmentRanges = SegmentRange.split(searcherManager, searcher, query, splitDocCount,
+                            Math.max(1, task.getMaxSplits()));
+                    for (queued = 1; queued < segmentRanges.size(); queued++) {
+                        task.getSubTaskQueue().add(task.createSubTask(segmentRanges.get(queued)));
+                    }
+
+                    if (segmentRanges.size() > 1) {
+                        LOGGER.debug("Split shard {} into {} ranges of segments", task.getIndexShardId(),
+                                segmentRanges.size());
                     }
+
+                    searchRange(task, segmentRanges.get(0));
                 } catch (final Throwable t) {
                     error(task, t.getMessage(), t);
                 } finally {
-                    searcherManager.release(searcher);
+                    if (segmentRanges != null) {
+                        // Release our range and any that could not be handed
+                        // to other tasks.
+                        segmentRanges.get(0).release();
+                        for (int i = Math.max(1, queued); i < segmentRanges.size(); i++) {
+                            segmentRanges.get(i).release();
+                        }
+                    } else {
+                        searcherManager.release(searcher);
+                    }
+                    task.getResultReceiver().complete(task);
                 }
             } catch (final Throwable t) {
                 error(task, t.getMessage(), t);
@@ -140,39 +153,87 @@ public class IndexShardSearchTaskHandler {
         }
     }
 
-    /**
-     * This method takes a list of document id's and extracts the stored fields
-     * that are required for data display. In some cases such as batch search we
-     * only want to get stream and event ids, in these cases no values are
-     * retrieved, only stream and event ids.
-     */
-    private void getStoredData(final IndexShardSearchTask task, final IndexSearcher searcher, final int docId) {
-        final String[] fieldNames = task.getFieldNames();
+    private void searchRange(final IndexShardSearchTask task, final SegmentRange segmentRange) throws IOException {
+        if (segmentRange.isWholeShard()) {
+            search(task, segmentRange.getQuery(), segmentRange.getSearcher());
+        } else {
+            final IndexSearcher searcher = segmentRange.createSearcher();
+            try {
+                search(task, segmentRange.getQuery(), searcher);
+            } finally {
+                searcher.getIndexReader().close();
+            }
+        }
+    }
+
+    private void search(final IndexShardSearchTask task, final Query query, final IndexSearcher searcher) {
+        // Doc ids are handed over in batches so size the store by the
+        // number of batches needed to hold the maximum number of doc ids.
+        final int maxDocIdQueueSize = getIntProperty("stroom.search.shard.maxDocIdQueueSize", 1000);
+        final int batchSize = Math.min(IndexShardHitCollector.DEFAULT_BATCH_SIZE, Math.max(1, maxDocIdQueueSize));
+        final LinkedBlockingQueue<int[]> docIdStore = new LinkedBlockingQueue<>(
+                Math.max(1, maxDocIdQueueSize / batchSize));
+
+        // Create a collector.
+        final IndexShardHitCollector collector = new IndexShardHitCollector(taskContext, docIdStore,
+                task.getHitCount(), batchSize, task.getIndexShardId(), task.getHitLimiter());
+
         try {
-            final Document document = searcher.doc(docId);
-            String[] values = null;
-
-            for (int i = 0; i < fieldNames.length; i++) {
-                final String storedField = fieldNames[i];
-                final IndexableField indexableField = document.getField(storedField);
-
-                // If the field is not in fact stored then it will be null here.
-                if (indexableField != null) {
-                    final String value = indexableField.stringValue();
-                    if (value != null) {
-                        final String trimmed = value.trim();
-                        if (trimmed.length() > 0) {
-                            if (values == null) {
-                                values = new String[fieldNames.length];
-                            }
-                            values[i] = trimmed;
-                        }
+            final Executor executor = executorProvider.getExecutor(IndexShardSearchTaskProducer.THREAD_POOL);
+            final CompletableFuture<Void> completableFuture = CompletableFuture.runAsync(() -> {
+                try {
+                    taskContext.setName("Index Searcher");
+                    searcher.search(query, collector);
+                    collector.flush();
+                } catch (final Throwable t) {
+                    error(task, t.getMessage(), t);
+                } finally {
+                    // Tell the reader that there are no more doc ids so it
+                    // doesn't have to wait for the next poll to time out.
+                    collector.complete();
+                }
+            }, executor);
+
+            // Start retrieving stored data from the shard.
+            final StoredDataReader storedDataReader = new StoredDataReader(searcher, task.getFieldNames());
+            boolean complete = false;
+            while (!complete && !taskContext.isTerminated()) {
+                // Check if search is finished before polling for doc ids.
+                final boolean searchFinished = completableFuture.isDone();
+                // Poll for the next batch of doc ids.
+                final int[] docIds = docIdStore.poll(1, TimeUnit.SECONDS);
+
+                if (docIds == IndexShardHitCollector.COMPLETE) {
+                    complete = true;
+                } else if (docIds != null) {
+                    // If we have doc ids then retrieve the stored data
+                    // for them. Each batch is sorted so stored fields
+                    // are read in segment order.
+                    for (int i = 0; i < docIds.length && !taskContext.isTerminated(); i++) {
+                        getStoredData(task, storedDataReader, docIds[i]);
                     }
+                } else {
+                    // If we did not get a doc id then this search is complete if the shard has finished being searched.
+                    complete = searchFinished;
                 }
             }
+        } catch (final Throwable t) {
+            error(task, t.getMessage(), t);
+        }
+    }
 
+    /**
+     * This method takes a document id and extracts the stored fields that are
+     * required for data display. In some cases such as batch search we only
+     * want to get stream and event ids, in these cases no values are
+     * retrieved, only stream and event ids.
+     */
+    private void getStoredData(final IndexShardSearchTask task, final StoredDataReader storedDataReader,
+                               final int docId) {
+        try {
+            final String[] values = storedDataReader.read(docId);
             if (values != null) {
-                task.getResultReceiver().receive(task.getIndexShardId(), values);
+                task.getResultReceiver().receive(task, values);
             }
         } catch (final Exception e) {
             error(task, e.getMessage(), e);
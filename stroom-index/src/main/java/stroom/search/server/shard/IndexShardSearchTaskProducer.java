@@ -28,9 +28,12 @@ import stroom.util.shared.Severity;
 import stroom.util.shared.ThreadPool;
 
 import javax.inject.Provider;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -43,8 +46,10 @@ public class IndexShardSearchTaskProducer extends TaskProducer {
     private final IndexShardSearcherCache indexShardSearcherCache;
     private final ErrorReceiver errorReceiver;
 
-    private final Queue<IndexShardSearchRunnable> taskQueue = new ConcurrentLinkedQueue<>();
-    private final AtomicInteger tasksRequested = new AtomicInteger();
+    private final Deque<IndexShardSearchRunnable> taskQueue = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger shardsRequested = new AtomicInteger();
+    private final int shardTotal;
+    private final Provider<IndexShardSearchTaskHandler> handlerProvider;
 
     public IndexShardSearchTaskProducer(final TaskExecutor taskExecutor,
                                         final ClusterSearchTask clusterSearchTask,
@@ -57,31 +62,80 @@ public class IndexShardSearchTaskProducer extends TaskProducer {
                                         final AtomicLong hitCount,
                                         final int maxThreadsPerTask,
                                         final ExecutorProvider executorProvider,
-                                        final Provider<IndexShardSearchTaskHandler> handlerProvider) {
+                                        final Provider<IndexShardSearchTaskHandler> handlerProvider,
+                                        final ResultReceiver aggregatingReceiver,
+                                        final Map<Long, Integer> shardDocumentCounts,
+                                        final int smallShardDocCount,
+                                        final int splitShardDocCount) {
         super(taskExecutor, maxThreadsPerTask, executorProvider.getExecutor(THREAD_POOL));
         this.clusterSearchTask = clusterSearchTask;
         this.indexShardSearcherCache = indexShardSearcherCache;
         this.errorReceiver = errorReceiver;
+        this.handlerProvider = handlerProvider;
+        this.shardTotal = shards.size();
 
-        // Create a deque to capture stored data from the index that can be used by coprocessors.
-        final ResultReceiver resultReceiver = (shardId, values) -> {
-            try {
-                boolean stored = false;
-                while (!clusterSearchTask.isTerminated() && !stored) {
-                    // Loop until item is added or we terminate.
-                    stored = storedData.offer(values, 1, TimeUnit.SECONDS);
+        // Create a deque to capture stored data from the index that can be used
+        // by coprocessors unless values are being aggregated as shards are
+        // searched.
+        ResultReceiver resultReceiver = aggregatingReceiver;
+        if (resultReceiver == null) {
+            resultReceiver = new ResultReceiver() {
+                @Override
+                public void receive(final IndexShardSearchTask task, final String[] values) {
+                    try {
+                        boolean stored = false;
+                        while (!clusterSearchTask.isTerminated() && !stored) {
+                            // Loop until item is added or we terminate.
+                            stored = storedData.offer(values, 1, TimeUnit.SECONDS);
+                        }
+                    } catch (final Throwable e) {
+                        error(e.getMessage(), e);
+                    }
                 }
-            } catch (final Throwable e) {
-                error(e.getMessage(), e);
-            }
-        };
 
-        getTasksTotal().set(shards.size());
+                @Override
+                public void complete(final IndexShardSearchTask task) {
+                    // Nothing is held back so there is nothing to do.
+                }
+            };
+        }
+
+        // Small shards are searched together by a single task to save the
+        // overhead of a task per shard. Large shards may be split into ranges
+        // of segments that are searched by separate tasks so that one big
+        // shard doesn't hold up the search while other threads are idle.
+        final List<IndexShardSearchRunnable> runnables = new ArrayList<>();
+        // Exploratory searches share a limiter across all shards so that
+        // collection stops once the node has found enough hits. Shards are
+        // supplied with the most recent time partitions first.
+        final HitLimiter hitLimiter = HitLimiter.create(clusterSearchTask.getSearch().getSampling());
+        List<IndexShardSearchTask> smallShardTasks = new ArrayList<>();
+        long smallShardDocs = 0;
         for (final Long shard : shards) {
             final IndexShardSearchTask task = new IndexShardSearchTask(queryFactory, shard, fieldNames, resultReceiver, errorReceiver, hitCount);
-            final IndexShardSearchRunnable runnable = new IndexShardSearchRunnable(task, handlerProvider);
-            taskQueue.add(runnable);
+            task.setHitLimiter(hitLimiter);
+            final Integer documentCount = shardDocumentCounts.get(shard);
+            if (documentCount != null && documentCount < smallShardDocCount) {
+                smallShardTasks.add(task);
+                smallShardDocs += documentCount;
+                if (smallShardDocs >= smallShardDocCount) {
+                    runnables.add(new IndexShardSearchRunnable(smallShardTasks, handlerProvider));
+                    smallShardTasks = new ArrayList<>();
+                    smallShardDocs = 0;
+                }
+            } else {
+                if (splitShardDocCount > 0 && (documentCount == null || documentCount >= splitShardDocCount)) {
+                    task.setSplittable(this::addSubTask, splitShardDocCount, maxThreadsPerTask);
+                }
+                runnables.add(new IndexShardSearchRunnable(Collections.singletonList(task), handlerProvider));
+            }
         }
+        if (smallShardTasks.size() > 0) {
+            runnables.add(new IndexShardSearchRunnable(smallShardTasks, handlerProvider));
+        }
+
+        getTasksTotal().set(runnables.size());
+        taskQueue.addAll(runnables);
 
         // Attach to the supplied executor.
         attach();
@@ -90,6 +144,30 @@ public class IndexShardSearchTaskProducer extends TaskProducer {
         signalAvailable();
     }
 
+    /**
+     * Add a task to search part of a shard that has been split. These tasks
+     * are put at the front of the queue so that the split shard is finished
+     * and its searcher released as soon as possible.
+     */
+    private void addSubTask(final IndexShardSearchTask task) {
+        getTasksTotal().incrementAndGet();
+        taskQueue.addFirst(new IndexShardSearchRunnable(Collections.singletonList(task), handlerProvider));
+        if (clusterSearchTask.isTerminated()) {
+            // We may no longer be asked for tasks so release the sub task now.
+            drain();
+        }
+        signalAvailable();
+    }
+
+    private void drain() {
+        // Drain the queue and increment the complete task count.
+        IndexShardSearchRunnable runnable;
+        while ((runnable = taskQueue.poll()) != null) {
+            runnable.discard();
+            getTasksCompleted().getAndIncrement();
+        }
+    }
+
     @Override
     public boolean isComplete() {
         return clusterSearchTask.isTerminated() || super.isComplete();
@@ -100,14 +178,11 @@ public class IndexShardSearchTaskProducer extends TaskProducer {
         IndexShardSearchRunnable task = null;
 
         if (clusterSearchTask.isTerminated()) {
-            // Drain the queue and increment the complete task count.
-            while (taskQueue.poll() != null) {
-                getTasksCompleted().getAndIncrement();
-            }
+            drain();
         } else {
             // First try and get a task that will make use of an open shard.
             for (final IndexShardSearchRunnable t : taskQueue) {
-                if (indexShardSearcherCache.isCached(t.getTask().getIndexShardId())) {
+                if (t.isCached(indexShardSearcherCache)) {
                     if (taskQueue.remove(t)) {
                         task = t;
                         break;
@@ -121,9 +196,7 @@ public class IndexShardSearchTaskProducer extends TaskProducer {
             }
 
             if (task != null) {
-                final int no = tasksRequested.incrementAndGet();
-                task.getTask().setShardTotal(getTasksTotal().get());
-                task.getTask().setShardNumber(no);
+                task.number(shardsRequested, shardTotal);
             }
         }
 
@@ -135,22 +208,52 @@ public class IndexShardSearchTaskProducer extends TaskProducer {
     }
 
     private static class IndexShardSearchRunnable implements Runnable {
-        private final IndexShardSearchTask task;
+        private final List<IndexShardSearchTask> tasks;
         private final Provider<IndexShardSearchTaskHandler> handlerProvider;
 
-        IndexShardSearchRunnable(final IndexShardSearchTask task, final Provider<IndexShardSearchTaskHandler> handlerProvider) {
-            this.task = task;
+        IndexShardSearchRunnable(final List<IndexShardSearchTask> tasks, final Provider<IndexShardSearchTaskHandler> handlerProvider) {
+            this.tasks = tasks;
             this.handlerProvider = handlerProvider;
         }
 
         @Override
         public void run() {
             final IndexShardSearchTaskHandler handler = handlerProvider.get();
-            handler.exec(task);
+            for (final IndexShardSearchTask task : tasks) {
+                handler.exec(task);
+            }
         }
 
-        public IndexShardSearchTask getTask() {
-            return task;
+        boolean isCached(final IndexShardSearcherCache indexShardSearcherCache) {
+            // Sub tasks already hold a searcher. Grouped small shards are only
+            // treated as cached if none of them need to be opened.
+            for (final IndexShardSearchTask task : tasks) {
+                if (task.getSegmentRange() == null && !indexShardSearcherCache.isCached(task.getIndexShardId())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void number(final AtomicInteger shardsRequested, final int shardTotal) {
+            for (final IndexShardSearchTask task : tasks) {
+                // Sub tasks keep the number of the shard they are part of.
+                if (task.getSegmentRange() == null) {
+                    task.setShardNumber(shardsRequested.incrementAndGet());
+                    task.setShardTotal(shardTotal);
+                }
+            }
+        }
+
+        /**
+         * Called if the tasks will not be run.
+         */
+        void discard() {
+            for (final IndexShardSearchTask task : tasks) {
+                if (task.getSegmentRange() != null) {
+                    task.getSegmentRange().release();
+                }
+            }
         }
     }
 }
@@ -23,9 +23,12 @@ import org.springframework.stereotype.Component;
 
 @Component
 public class IndexShardSearchTaskProperties {
-    private static final int DEFAULT_MAX_THREADS = 4;
-    private static final int DEFAULT_MAX_THREADS_PER_TASK = 2;
+    private static final int DEFAULT_MAX_THREADS = 0;
+    private static final int DEFAULT_MAX_THREADS_PER_TASK = 0;
     private static final int DEFAULT_MAX_OPEN_SHARDS = 5;
+    private static final int DEFAULT_SMALL_SHARD_DOC_COUNT = 100000;
+    private static final int DEFAULT_SPLIT_SHARD_DOC_COUNT = 5000000;
+    private static final long DEFAULT_TARGET_QUEUE_LATENCY_MS = 100;
 
     private final StroomPropertyService propertyService;
 
@@ -34,12 +37,51 @@ public class IndexShardSearchTaskProperties {
         this.propertyService = propertyService;
     }
 
+    /**
+     * @return The max threads to use or the number of processors if the
+     * property is set to 0.
+     */
     public int getMaxThreads() {
-        return propertyService.getIntProperty("stroom.search.shard.maxThreads", DEFAULT_MAX_THREADS);
+        return orProcessorCount(propertyService.getIntProperty("stroom.search.shard.maxThreads", DEFAULT_MAX_THREADS));
     }
 
+    /**
+     * @return The max threads per search to use or the number of processors if
+     * the property is set to 0.
+     */
     public int getMaxThreadsPerTask() {
-        return propertyService.getIntProperty("stroom.search.shard.maxThreadsPerTask", DEFAULT_MAX_THREADS_PER_TASK);
+        return orProcessorCount(propertyService.getIntProperty("stroom.search.shard.maxThreadsPerTask", DEFAULT_MAX_THREADS_PER_TASK));
+    }
+
+    private int orProcessorCount(final int threads) {
+        if (threads <= 0) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        return threads;
+    }
+
+    /**
+     * @return Shards with fewer documents than this are searched together in
+     * a single task.
+     */
+    public int getSmallShardDocCount() {
+        return propertyService.getIntProperty("stroom.search.shard.smallShardDocCount", DEFAULT_SMALL_SHARD_DOC_COUNT);
+    }
+
+    /**
+     * @return Shards with more documents than this are split into ranges of
+     * segments that are searched by separate tasks.
+     */
+    public int getSplitShardDocCount() {
+        return propertyService.getIntProperty("stroom.search.shard.splitShardDocCount", DEFAULT_SPLIT_SHARD_DOC_COUNT);
+    }
+
+    /**
+     * @return How long in milliseconds shard search tasks can wait to start
+     * before fewer threads are used or 0 to always use the max threads.
+     */
+    public long getTargetQueueLatencyMs() {
+        return propertyService.getLongProperty("stroom.search.shard.targetQueueLatencyMs", DEFAULT_TARGET_QUEUE_LATENCY_MS);
     }
 
     public int getMaxOpenShards() {
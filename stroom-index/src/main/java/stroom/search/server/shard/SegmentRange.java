@@ -0,0 +1,187 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.search.server.shard;
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A range of the segments of a large shard that is searched by its own task so
+ * that several threads can search one shard. All of the ranges of a shard use
+ * the searcher that was acquired when the shard was split so that they see the
+ * same segments. The searcher is released once every range has been searched
+ * or discarded.
+ */
+class SegmentRange {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentRange.class);
+
+    private final SharedSearcher sharedSearcher;
+    private final Query query;
+    private final int fromLeaf;
+    private final int toLeaf;
+
+    private SegmentRange(final SharedSearcher sharedSearcher, final Query query, final int fromLeaf, final int toLeaf) {
+        this.sharedSearcher = sharedSearcher;
+        this.query = query;
+        this.fromLeaf = fromLeaf;
+        this.toLeaf = toLeaf;
+    }
+
+    /**
+     * Split the segments of the supplied searcher into contiguous ranges that
+     * each hold roughly the same number of documents and at least the split
+     * document count unless there are too few segments.
+     *
+     * @return The ranges or a single range covering all segments if the shard
+     * is not worth splitting. The caller must release every range returned.
+     */
+    static List<SegmentRange> split(final SearcherManager searcherManager, final IndexSearcher searcher,
+                                    final Query query, final int splitDocCount, final int maxRanges) {
+        final List<AtomicReaderContext> leaves = searcher.getIndexReader().leaves();
+        final int[] leafSizes = new int[leaves.size()];
+        for (int i = 0; i < leafSizes.length; i++) {
+            leafSizes[i] = leaves.get(i).reader().maxDoc();
+        }
+
+        final List<int[]> partitions = partition(leafSizes, splitDocCount, maxRanges);
+        final SharedSearcher sharedSearcher = new SharedSearcher(searcherManager, searcher, partitions.size());
+        final List<SegmentRange> ranges = new ArrayList<>(partitions.size());
+        for (final int[] partition : partitions) {
+            ranges.add(new SegmentRange(sharedSearcher, query, partition[0], partition[1]));
+        }
+        return ranges;
+    }
+
+    /**
+     * Partition leaves into contiguous ranges of [from, to) leaf indexes.
+     */
+    static List<int[]> partition(final int[] leafSizes, final int splitDocCount, final int maxRanges) {
+        long total = 0;
+        for (final int size : leafSizes) {
+            total += size;
+        }
+
+        int rangeCount = 1;
+        if (splitDocCount > 0) {
+            rangeCount = (int) Math.min(Math.min(leafSizes.length, maxRanges), total / splitDocCount);
+            rangeCount = Math.max(1, rangeCount);
+        }
+
+        final List<int[]> ranges = new ArrayList<>(rangeCount);
+        if (rangeCount == 1) {
+            ranges.add(new int[]{0, leafSizes.length});
+        } else {
+            // Close a range once it has reached its share of the remaining
+            // docs while leaving at least one leaf for each remaining range.
+            int from = 0;
+            long remaining = total;
+            long size = 0;
+            for (int i = 0; i < leafSizes.length; i++) {
+                size += leafSizes[i];
+                final int rangesLeft = rangeCount - ranges.size();
+                final int leavesLeft = leafSizes.length - i - 1;
+                if (rangesLeft > 1 && (size >= remaining / rangesLeft || leavesLeft < rangesLeft)) {
+                    ranges.add(new int[]{from, i + 1});
+                    remaining -= size;
+                    size = 0;
+                    from = i + 1;
+                }
+            }
+            ranges.add(new int[]{from, leafSizes.length});
+        }
+
+        return ranges;
+    }
+
+    /**
+     * @return A searcher for just the segments in this range. The searcher
+     * must be closed with the returned reader once the search is complete.
+     */
+    IndexSearcher createSearcher() {
+        final List<AtomicReaderContext> leaves = sharedSearcher.searcher.getIndexReader().leaves();
+        final AtomicReader[] readers = new AtomicReader[toLeaf - fromLeaf];
+        for (int i = fromLeaf; i < toLeaf; i++) {
+            readers[i - fromLeaf] = leaves.get(i).reader();
+        }
+        // Don't close the segment readers when this reader is closed as they
+        // belong to the shared searcher.
+        return new IndexSearcher(new MultiReader(readers, false));
+    }
+
+    /**
+     * @return True if this range covers every segment of the searcher.
+     */
+    boolean isWholeShard() {
+        return fromLeaf == 0 && toLeaf == sharedSearcher.searcher.getIndexReader().leaves().size();
+    }
+
+    IndexSearcher getSearcher() {
+        return sharedSearcher.searcher;
+    }
+
+    Query getQuery() {
+        return query;
+    }
+
+    int getFromLeaf() {
+        return fromLeaf;
+    }
+
+    int getToLeaf() {
+        return toLeaf;
+    }
+
+    /**
+     * Called once this range has been searched or will not be searched.
+     */
+    void release() {
+        sharedSearcher.release();
+    }
+
+    private static class SharedSearcher {
+        private final SearcherManager searcherManager;
+        private final IndexSearcher searcher;
+        private final AtomicInteger references;
+
+        SharedSearcher(final SearcherManager searcherManager, final IndexSearcher searcher, final int references) {
+            this.searcherManager = searcherManager;
+            this.searcher = searcher;
+            this.references = new AtomicInteger(references);
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                try {
+                    searcherManager.release(searcher);
+                } catch (final IOException e) {
+                    LOGGER.error(e.getMessage(), e);
+                }
+            }
+        }
+    }
+}
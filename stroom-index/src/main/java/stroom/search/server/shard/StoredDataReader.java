@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.search.server.shard;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfo.DocValuesType;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.util.Bits;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads the values of the requested fields for a document. Fields that have
+ * been written with numeric doc values in the segment that holds the document
+ * are read by doc id from the doc values column. The stored fields of the
+ * document are only loaded if some requested fields have no doc values, and
+ * then only those fields are loaded, so searches that only need doc value
+ * fields never decompress stored fields.
+ * <p>
+ * Doc ids should be supplied in increasing order so that the doc values of a
+ * segment are looked up once.
+ */
+class StoredDataReader {
+    private final IndexSearcher searcher;
+    private final String[] fieldNames;
+    private final List<AtomicReaderContext> leaves;
+
+    private int leafIndex = -1;
+    private int docBase;
+    private NumericDocValues[] docValues;
+    private Bits[] docsWithField;
+    private Set<String> storedFieldNames;
+
+    StoredDataReader(final IndexSearcher searcher, final String[] fieldNames) {
+        this.searcher = searcher;
+        this.fieldNames = fieldNames;
+        this.leaves = searcher.getIndexReader().leaves();
+    }
+
+    /**
+     * @return The trimmed values of the requested fields in the order they
+     * were requested or null if the document has none of them.
+     */
+    String[] read(final int docId) throws IOException {
+        setLeaf(ReaderUtil.subIndex(docId, leaves));
+        final int segmentDocId = docId - docBase;
+
+        String[] values = null;
+
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (docValues[i] != null && docsWithField[i].get(segmentDocId)) {
+                if (values == null) {
+                    values = new String[fieldNames.length];
+                }
+                values[i] = Long.toString(docValues[i].get(segmentDocId));
+            }
+        }
+
+        if (storedFieldNames != null) {
+            final Document document = searcher.doc(docId, storedFieldNames);
+            for (int i = 0; i < fieldNames.length; i++) {
+                if (docValues[i] == null) {
+                    final IndexableField indexableField = document.getField(fieldNames[i]);
+
+                    // If the field is not in fact stored then it will be null here.
+                    if (indexableField != null) {
+                        final String value = indexableField.stringValue();
+                        if (value != null) {
+                            final String trimmed = value.trim();
+                            if (trimmed.length() > 0) {
+                                if (values == null) {
+                                    values = new String[fieldNames.length];
+                                }
+                                values[i] = trimmed;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return values;
+    }
+
+    private void setLeaf(final int index) throws IOException {
+        if (index == leafIndex) {
+            return;
+        }
+
+        final AtomicReaderContext context = leaves.get(index);
+        final AtomicReader reader = context.reader();
+        leafIndex = index;
+        docBase = context.docBase;
+        docValues = new NumericDocValues[fieldNames.length];
+        docsWithField = new Bits[fieldNames.length];
+        storedFieldNames = null;
+
+        for (int i = 0; i < fieldNames.length; i++) {
+            final String fieldName = fieldNames[i];
+            final FieldInfo fieldInfo = reader.getFieldInfos().fieldInfo(fieldName);
+
+            // Segments written before a field had doc values enabled will
+            // only have the stored value.
+            if (fieldInfo != null && DocValuesType.NUMERIC.equals(fieldInfo.getDocValuesType())) {
+                docValues[i] = reader.getNumericDocValues(fieldName);
+                docsWithField[i] = reader.getDocsWithField(fieldName);
+            }
+
+            if (docValues[i] == null || docsWithField[i] == null) {
+                docValues[i] = null;
+                if (storedFieldNames == null) {
+                    storedFieldNames = new HashSet<>();
+                }
+                storedFieldNames.add(fieldName);
+            }
+        }
+    }
+}
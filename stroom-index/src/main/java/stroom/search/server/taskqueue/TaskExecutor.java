@@ -33,11 +33,25 @@ import java.util.concurrent.locks.ReentrantLock;
 
 public class TaskExecutor {
     private static final int DEFAULT_MAX_THREADS = 5;
+    private static final long ADJUSTMENT_INTERVAL_MS = 1000;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskExecutor.class);
 
     private volatile int maxThreads = DEFAULT_MAX_THREADS;
 
+    /**
+     * If a target queue latency is set then the number of threads in use is
+     * adapted between 1 and the max threads depending on how long tasks wait
+     * to start once they have been handed to the producer's executor. If tasks
+     * start quickly then there is spare capacity and we allow more threads,
+     * if they are kept waiting then the underlying executor is overloaded and
+     * adding more tasks will just increase contention.
+     */
+    private volatile long targetQueueLatencyMs;
+    private volatile int threadLimit = DEFAULT_MAX_THREADS;
+    private volatile long queueLatencyMs;
+    private volatile long lastAdjustmentMs;
+
     private final AtomicInteger totalThreads = new AtomicInteger();
 
     private final ConcurrentSkipListSet<TaskProducer> producers = new ConcurrentSkipListSet<>();
@@ -126,7 +140,7 @@ public class TaskExecutor {
         boolean executing = false;
 
         try {
-            if (total < maxThreads) {
+            if (total < getThreadLimit()) {
                 // Try and get a task from usable producers.
                 final int tries = producers.size();
                 for (int i = 0; i < tries && task == null; i++) {
@@ -141,7 +155,12 @@ public class TaskExecutor {
 
                 if (currentTask != null) {
                     executing = true;
-                    CompletableFuture.runAsync(currentTask, currentProducer.getExecutor())
+                    final long queuedMs = System.currentTimeMillis();
+                    CompletableFuture.runAsync(() -> {
+                        final long now = System.currentTimeMillis();
+                        recordQueueLatency(now - queuedMs, now);
+                        currentTask.run();
+                    }, currentProducer.getExecutor())
                             .thenAccept(result -> complete())
                             .exceptionally(t -> {
                                 complete();
@@ -159,6 +178,36 @@ public class TaskExecutor {
         return task;
     }
 
+    int getThreadLimit() {
+        if (targetQueueLatencyMs > 0) {
+            return Math.min(threadLimit, maxThreads);
+        }
+        return maxThreads;
+    }
+
+    void recordQueueLatency(final long latencyMs, final long now) {
+        if (targetQueueLatencyMs > 0) {
+            // Keep a moving average of the latency. Races between threads may
+            // lose the odd measurement which doesn't matter here.
+            final long average = (queueLatencyMs * 7 + latencyMs) / 8;
+            queueLatencyMs = average;
+
+            // Only adjust the limit every so often so that the average has a
+            // chance to reflect the change.
+            if (now - lastAdjustmentMs >= ADJUSTMENT_INTERVAL_MS) {
+                lastAdjustmentMs = now;
+                final int limit = Math.min(threadLimit, maxThreads);
+                if (average > targetQueueLatencyMs && limit > 1) {
+                    threadLimit = limit - 1;
+                    LOGGER.debug("Reducing thread limit for " + name + " to " + (limit - 1) + " as queue latency is " + average + "ms");
+                } else if (average < targetQueueLatencyMs / 2 && limit < maxThreads) {
+                    threadLimit = limit + 1;
+                    LOGGER.debug("Increasing thread limit for " + name + " to " + (limit + 1) + " as queue latency is " + average + "ms");
+                }
+            }
+        }
+    }
+
     private void complete() {
         totalThreads.decrementAndGet();
         signalAll();
@@ -191,4 +240,16 @@ public class TaskExecutor {
     public void setMaxThreads(final int maxThreads) {
         this.maxThreads = maxThreads;
     }
+
+    /**
+     * Set how long tasks can wait to start before we reduce the number of
+     * threads used. Set to 0 to always use the max threads.
+     */
+    public void setTargetQueueLatency(final long targetQueueLatencyMs) {
+        if (this.targetQueueLatencyMs != targetQueueLatencyMs) {
+            // Start from the max and let the limit adapt.
+            threadLimit = maxThreads;
+            this.targetQueueLatencyMs = targetQueueLatencyMs;
+        }
+    }
 }
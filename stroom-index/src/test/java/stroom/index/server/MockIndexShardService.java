@@ -20,6 +20,7 @@ import stroom.entity.server.MockEntityService;
 import stroom.entity.shared.BaseResultList;
 import stroom.index.shared.FindIndexShardCriteria;
 import stroom.index.shared.IndexShard;
+import stroom.index.shared.IndexShard.IndexShardStatus;
 import stroom.index.shared.IndexShardKey;
 import stroom.index.shared.IndexShardService;
 import stroom.node.server.NodeCache;
@@ -34,6 +35,8 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
 import java.io.File;
+import java.util.List;
+import java.util.function.Consumer;
 
 @Profile(StroomSpringProfiles.TEST)
 @Component("indexShardService")
@@ -56,6 +59,23 @@ public class MockIndexShardService extends MockEntityService<IndexShard, FindInd
         return il;
     }
 
+    @Override
+    public IndexShard replaceIndexShards(final List<IndexShard> oldShards, final IndexShard newShard,
+                                         final Consumer<IndexShard> beforeCommit) {
+        for (final IndexShard oldShard : oldShards) {
+            final IndexShard current = loadById(oldShard.getId());
+            if (current == null || !IndexShardStatus.CLOSED.equals(current.getStatus())
+                    || current.getDocumentCount() != oldShard.getDocumentCount()) {
+                throw new IndexException("Index shard " + oldShard.getId() + " has changed and cannot be replaced");
+            }
+        }
+
+        final IndexShard saved = save(newShard);
+        beforeCommit.accept(saved);
+        oldShards.forEach(oldShard -> loadById(oldShard.getId()).setStatus(IndexShardStatus.DELETED));
+        return saved;
+    }
+
     @Override
     public BaseResultList<IndexShard> find(final FindIndexShardCriteria criteria) throws RuntimeException {
         final BaseResultList<IndexShard> results = new BaseResultList<>();
@@ -17,6 +17,9 @@
 package stroom.index.server;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexableField;
 import stroom.index.shared.IndexShard;
@@ -56,10 +59,11 @@ public class MockIndexShardWriter implements IndexShardWriter {
                 throw new IndexException("Shard is full");
             }
 
-            // Create a new document and copy the fields.
+            // Create a new document and copy the fields as the indexing
+            // filter reuses them for subsequent documents.
             final Document doc = new Document();
             for (final IndexableField field : document.getFields()) {
-                doc.add(field);
+                doc.add(copy(field));
             }
             documents.add(doc);
 
@@ -69,6 +73,24 @@ public class MockIndexShardWriter implements IndexShardWriter {
         }
     }
 
+    @Override
+    public void addDocuments(final List<Document> documents) {
+        for (final Document document : documents) {
+            addDocument(document);
+        }
+    }
+
+    private IndexableField copy(final IndexableField field) {
+        if (field instanceof LongField) {
+            return new LongField(field.name(), field.numericValue().longValue(), ((LongField) field).fieldType());
+        } else if (field instanceof NumericDocValuesField) {
+            return new NumericDocValuesField(field.name(), field.numericValue().longValue());
+        } else if (field instanceof Field && field.stringValue() != null) {
+            return new Field(field.name(), field.stringValue(), ((Field) field).fieldType());
+        }
+        return field;
+    }
+
     List<Document> getDocuments() {
         return documents;
     }
@@ -78,6 +100,11 @@ public class MockIndexShardWriter implements IndexShardWriter {
         return null;
     }
 
+    @Override
+    public boolean hasUncommittedChanges() {
+        return false;
+    }
+
     @Override
     public int getDocumentCount() {
         return documents.size();
@@ -19,6 +19,8 @@ package stroom.index.server;
 import org.apache.lucene.document.Document;
 import stroom.index.shared.IndexShardKey;
 
+import java.util.List;
+
 //@Profile(StroomSpringProfiles.TEST)
 //@Component("indexer")
 public class MockIndexer implements Indexer {
@@ -42,4 +44,11 @@ MockIndexer(final IndexShardWriterCache indexShardWriterCache) {
             throw new RuntimeException(e.getMessage(), e);
         }
     }
+
+    @Override
+    public void addDocuments(final IndexShardKey key, final List<Document> documents) {
+        for (final Document document : documents) {
+            addDocument(key, document);
+        }
+    }
 }
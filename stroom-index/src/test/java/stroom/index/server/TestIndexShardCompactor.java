@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.index.server;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import stroom.index.server.analyzer.AnalyzerFactory;
+import stroom.index.shared.Index;
+import stroom.index.shared.IndexShard;
+import stroom.node.shared.Volume;
+import stroom.node.shared.Volume.VolumeType;
+import stroom.query.shared.IndexField;
+import stroom.query.shared.IndexField.AnalyzerType;
+import stroom.streamstore.server.fs.FileSystemUtil;
+import stroom.util.test.StroomJUnit4ClassRunner;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(StroomJUnit4ClassRunner.class)
+public class TestIndexShardCompactor {
+    @Test
+    public void testGroup() {
+        final List<List<IndexShard>> groups = IndexShardCompactor.group(
+                Arrays.asList(createShard(1, 60), createShard(2, 10), createShard(3, 30), createShard(4, 100),
+                        createShard(5, 20)), 100);
+
+        // Smallest shards are grouped first and shards that can't be merged
+        // with anything are left alone.
+        Assert.assertEquals(1, groups.size());
+        assertIds(groups.get(0), 2, 5, 3);
+    }
+
+    @Test
+    public void testGroupNothingToMerge() {
+        Assert.assertEquals(0, IndexShardCompactor.group(Arrays.asList(createShard(1, 60), createShard(2, 60)), 100)
+                .size());
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        final Path volumeDir = Files.createTempDirectory("stroom");
+        try {
+            final Volume volume = Volume.create(null, volumeDir.toString(), VolumeType.PUBLIC);
+            final IndexShard shard1 = createShard(1, 10);
+            shard1.setVolume(volume);
+            final IndexShard shard2 = createShard(2, 20);
+            shard2.setVolume(volume);
+            write(shard1);
+            write(shard2);
+
+            final Path dir = new File(IndexShardUtil.getPartitionDir(shard1), "compact").toPath();
+            Assert.assertEquals(30, IndexShardCompactor.merge(Arrays.asList(shard1, shard2), dir));
+
+            try (final DirectoryReader reader = DirectoryReader.open(new NIOFSDirectory(dir.toFile()))) {
+                Assert.assertEquals(30, reader.numDocs());
+                // The merged shard is optimised into a single segment.
+                Assert.assertEquals(1, reader.leaves().size());
+            }
+        } finally {
+            FileSystemUtil.deleteDirectory(volumeDir.toFile());
+        }
+    }
+
+    private void write(final IndexShard shard) throws Exception {
+        final IndexField id = IndexField.createIdField("Id");
+        final File dir = IndexShardUtil.getIndexDir(shard);
+        Files.createDirectories(dir.toPath());
+        try (final IndexWriter writer = new IndexWriter(new NIOFSDirectory(dir),
+                new IndexWriterConfig(LuceneVersionUtil.CURRENT_LUCENE_VERSION,
+                        AnalyzerFactory.create(LuceneVersionUtil.CURRENT_LUCENE_VERSION, AnalyzerType.KEYWORD, false)))) {
+            for (int i = 0; i < shard.getDocumentCount(); i++) {
+                final Document document = new Document();
+                document.add(FieldFactory.create(id, i));
+                writer.addDocument(document);
+            }
+        }
+    }
+
+    private IndexShard createShard(final long id, final int documentCount) {
+        final Index index = new Index();
+        index.setId(1);
+        final IndexShard shard = new IndexShard();
+        shard.setId(id);
+        shard.setIndex(index);
+        shard.setPartition("2017-01");
+        shard.setDocumentCount(documentCount);
+        return shard;
+    }
+
+    private void assertIds(final List<IndexShard> shards, final long... ids) {
+        Assert.assertEquals(ids.length, shards.size());
+        for (int i = 0; i < ids.length; i++) {
+            Assert.assertEquals(ids[i], shards.get(i).getId());
+        }
+    }
+}
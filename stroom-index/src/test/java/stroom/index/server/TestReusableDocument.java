@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.index.server;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import stroom.index.server.analyzer.AnalyzerFactory;
+import stroom.query.shared.IndexField;
+import stroom.query.shared.IndexField.AnalyzerType;
+import stroom.util.test.StroomJUnit4ClassRunner;
+
+import java.util.Arrays;
+
+@RunWith(StroomJUnit4ClassRunner.class)
+public class TestReusableDocument {
+    private final IndexField userId = IndexField.createField("UserId", AnalyzerType.KEYWORD, false, true, true, false);
+    private final IndexField count = IndexField.createNumericField("Count");
+
+    @Test
+    public void testFieldsReused() {
+        final ReusableDocument document = new ReusableDocument();
+        final Object user1 = document.addString(userId, "user1");
+        final Object user2 = document.addString(userId, "user2");
+        final Object count1 = document.addLong(count, 1);
+        Assert.assertNotSame(user1, user2);
+        Assert.assertEquals(3, document.getDocument().getFields().size());
+
+        document.reset();
+        Assert.assertEquals(0, document.getDocument().getFields().size());
+
+        Assert.assertSame(user1, document.addString(userId, "user3"));
+        Assert.assertSame(count1, document.addLong(count, 2));
+        Assert.assertEquals("user3", document.getDocument().get("UserId"));
+        Assert.assertEquals(2L, document.getDocument().getField("Count").numericValue());
+    }
+
+    @Test
+    public void testReuseAfterAdd() throws Exception {
+        final RAMDirectory directory = new RAMDirectory();
+        final IndexWriter writer = new IndexWriter(directory,
+                new IndexWriterConfig(LuceneVersionUtil.CURRENT_LUCENE_VERSION,
+                        AnalyzerFactory.create(LuceneVersionUtil.CURRENT_LUCENE_VERSION, AnalyzerType.KEYWORD, false)));
+
+        final ReusableDocument document1 = new ReusableDocument();
+        final ReusableDocument document2 = new ReusableDocument();
+        for (int i = 0; i < 4; i += 2) {
+            document1.reset();
+            document1.addString(userId, "user" + i);
+            document2.reset();
+            document2.addString(userId, "user" + (i + 1));
+            writer.addDocuments(Arrays.asList(document1.getDocument(), document2.getDocument()));
+        }
+        writer.close();
+
+        try (final DirectoryReader reader = DirectoryReader.open(directory)) {
+            Assert.assertEquals(4, reader.numDocs());
+            for (int i = 0; i < 4; i++) {
+                final Document document = reader.document(i);
+                Assert.assertEquals("user" + i, document.get("UserId"));
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.search.server;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.AutomatonQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import stroom.index.server.FieldFactory;
+import stroom.index.server.LuceneVersionUtil;
+import stroom.index.server.analyzer.AnalyzerFactory;
+import stroom.query.shared.IndexField;
+import stroom.query.shared.IndexField.AnalyzerType;
+import stroom.util.test.StroomJUnit4ClassRunner;
+
+@RunWith(StroomJUnit4ClassRunner.class)
+public class TestCompiledDictionary {
+    private final IndexField userId = IndexField.createField("UserId", AnalyzerType.KEYWORD);
+    private final IndexField count = IndexField.createNumericField("Count");
+    private final IndexField command = IndexField.createField("Command", AnalyzerType.ALPHA_NUMERIC);
+
+    @Test
+    public void testKeyword() throws Exception {
+        final CompiledDictionary compiledDictionary = CompiledDictionary.compile(
+                new String[]{"user1", "USER5", "admin*", "x?z"}, userId);
+        Assert.assertTrue(compiledDictionary.getQuery() instanceof AutomatonQuery);
+        Assert.assertEquals(0, compiledDictionary.getOtherEntries().size());
+        Assert.assertTrue(compiledDictionary.getHighlights().contains("USER5"));
+
+        try (final DirectoryReader reader = createReader()) {
+            final IndexSearcher searcher = new IndexSearcher(reader);
+            // user1, user5, admin1, admin22 and xyz.
+            Assert.assertEquals(5, searcher.search(compiledDictionary.getQuery(), 100).totalHits);
+        }
+    }
+
+    @Test
+    public void testNumeric() throws Exception {
+        final CompiledDictionary compiledDictionary = CompiledDictionary.compile(
+                new String[]{"3", " 5 ", "7", "1000", "1,2"}, count);
+        Assert.assertEquals(1, compiledDictionary.getOtherEntries().size());
+        Assert.assertEquals("1,2", compiledDictionary.getOtherEntries().get(0));
+
+        try (final DirectoryReader reader = createReader()) {
+            final IndexSearcher searcher = new IndexSearcher(reader);
+            Assert.assertEquals(3, searcher.search(compiledDictionary.getQuery(), 100).totalHits);
+        }
+    }
+
+    @Test
+    public void testAnalysedFieldNotCompiled() {
+        final CompiledDictionary compiledDictionary = CompiledDictionary.compile(
+                new String[]{"msg foo", "bar"}, command);
+        Assert.assertNull(compiledDictionary.getQuery());
+        Assert.assertEquals(2, compiledDictionary.getOtherEntries().size());
+    }
+
+    private DirectoryReader createReader() throws Exception {
+        final RAMDirectory directory = new RAMDirectory();
+        final IndexWriter writer = new IndexWriter(directory,
+                new IndexWriterConfig(LuceneVersionUtil.CURRENT_LUCENE_VERSION,
+                        AnalyzerFactory.create(LuceneVersionUtil.CURRENT_LUCENE_VERSION, AnalyzerType.KEYWORD, false)));
+
+        final String[] users = new String[]{"user1", "user2", "user5", "admin1", "admin22", "xyz", "xyyz", "other"};
+        for (int i = 0; i < users.length; i++) {
+            final Document document = new Document();
+            document.add(FieldFactory.create(userId, users[i]));
+            document.add(FieldFactory.create(count, i));
+            writer.addDocument(document);
+        }
+        writer.close();
+
+        return DirectoryReader.open(directory);
+    }
+}
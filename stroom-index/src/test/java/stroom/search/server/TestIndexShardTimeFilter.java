@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.search.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import stroom.index.shared.IndexShard;
+import stroom.query.shared.Condition;
+import stroom.query.shared.ExpressionOperator;
+import stroom.query.shared.ExpressionOperator.Op;
+import stroom.query.shared.ExpressionTerm;
+import stroom.util.date.DateUtil;
+import stroom.util.test.StroomJUnit4ClassRunner;
+
+@RunWith(StroomJUnit4ClassRunner.class)
+public class TestIndexShardTimeFilter {
+    private static final String TIME_FIELD = "EventTime";
+    private static final long NOW = DateUtil.parseNormalDateTimeString("2017-06-10T12:00:00.000Z");
+
+    @Test
+    public void testNoTimeTerm() {
+        final ExpressionOperator expression = new ExpressionOperator(Op.AND);
+        expression.addChild(new ExpressionTerm("UserId", Condition.EQUALS, "user1"));
+
+        final IndexShardTimeFilter filter = create(expression);
+        Assert.assertFalse(filter.isEnabled());
+        Assert.assertTrue(filter.isMatch(createShard("2010-01-01T00:00:00.000Z", "2010-01-02T00:00:00.000Z")));
+    }
+
+    @Test
+    public void testLastDay() {
+        final ExpressionOperator expression = new ExpressionOperator(Op.AND);
+        expression.addChild(new ExpressionTerm("UserId", Condition.EQUALS, "user1"));
+        expression.addChild(new ExpressionTerm(TIME_FIELD, Condition.GREATER_THAN, "now()-1d"));
+
+        final IndexShardTimeFilter filter = create(expression);
+        Assert.assertTrue(filter.isEnabled());
+        Assert.assertFalse(filter.isMatch(createShard("2017-06-01T00:00:00.000Z", "2017-06-02T00:00:00.000Z")));
+        Assert.assertTrue(filter.isMatch(createShard("2017-06-10T00:00:00.000Z", "2017-06-11T00:00:00.000Z")));
+        // Partitions that end shortly before the bound are kept to allow for
+        // events that are ahead of their stream.
+        Assert.assertTrue(filter.isMatch(createShard("2017-06-08T00:00:00.000Z", "2017-06-09T00:00:00.000Z")));
+        // Shards without a partition time are always searched.
+        Assert.assertTrue(filter.isMatch(new IndexShard()));
+    }
+
+    @Test
+    public void testOr() {
+        final ExpressionOperator expression = new ExpressionOperator(Op.OR);
+        expression.addChild(new ExpressionTerm(TIME_FIELD, Condition.BETWEEN,
+                "2017-06-01T00:00:00.000Z,2017-06-02T00:00:00.000Z"));
+        expression.addChild(new ExpressionTerm(TIME_FIELD, Condition.GREATER_THAN, "2017-06-05T00:00:00.000Z"));
+
+        IndexShardTimeFilter filter = create(expression);
+        Assert.assertFalse(filter.isMatch(createShard("2017-05-01T00:00:00.000Z", "2017-05-02T00:00:00.000Z")));
+        Assert.assertTrue(filter.isMatch(createShard("2017-06-01T00:00:00.000Z", "2017-06-02T00:00:00.000Z")));
+
+        // An OR with an unbounded branch can't be pruned.
+        expression.addChild(new ExpressionTerm("UserId", Condition.EQUALS, "user1"));
+        filter = create(expression);
+        Assert.assertFalse(filter.isEnabled());
+    }
+
+    @Test
+    public void testNotAndDisabled() {
+        final ExpressionOperator not = new ExpressionOperator(Op.NOT);
+        not.addChild(new ExpressionTerm(TIME_FIELD, Condition.GREATER_THAN, "2017-06-05T00:00:00.000Z"));
+        final ExpressionOperator expression = new ExpressionOperator(Op.AND);
+        expression.addChild(not);
+        Assert.assertFalse(create(expression).isEnabled());
+
+        final ExpressionTerm disabled = new ExpressionTerm(TIME_FIELD, Condition.GREATER_THAN,
+                "2017-06-05T00:00:00.000Z");
+        disabled.setEnabled(false);
+        expression.addChild(disabled);
+        Assert.assertFalse(create(expression).isEnabled());
+    }
+
+    private IndexShardTimeFilter create(final ExpressionOperator expression) {
+        return IndexShardTimeFilter.create(expression, TIME_FIELD, 24 * 60 * 60 * 1000L, "UTC", NOW);
+    }
+
+    private IndexShard createShard(final String from, final String to) {
+        final IndexShard indexShard = new IndexShard();
+        indexShard.setPartitionFromTime(DateUtil.parseNormalDateTimeString(from));
+        indexShard.setPartitionToTime(DateUtil.parseNormalDateTimeString(to));
+        return indexShard;
+    }
+}
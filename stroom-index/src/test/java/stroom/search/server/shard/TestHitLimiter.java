@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.search.server.shard;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import stroom.index.server.FieldFactory;
+import stroom.index.server.LuceneVersionUtil;
+import stroom.index.server.analyzer.AnalyzerFactory;
+import stroom.query.shared.IndexField;
+import stroom.query.shared.IndexField.AnalyzerType;
+import stroom.query.shared.Sampling;
+import stroom.task.server.TaskContext;
+import stroom.util.test.StroomJUnit4ClassRunner;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+@RunWith(StroomJUnit4ClassRunner.class)
+public class TestHitLimiter {
+    @Test
+    public void testCreate() {
+        Assert.assertNull(HitLimiter.create(null));
+        Assert.assertNull(HitLimiter.create(new Sampling()));
+        Assert.assertNull(HitLimiter.create(new Sampling(null, 100D)));
+        Assert.assertNotNull(HitLimiter.create(new Sampling(10L, null)));
+        Assert.assertNotNull(HitLimiter.create(new Sampling(null, 10D)));
+    }
+
+    @Test
+    public void testSample() {
+        final HitLimiter hitLimiter = HitLimiter.create(new Sampling(null, 10D));
+        int sampled = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (hitLimiter.isSampled(1, i)) {
+                sampled++;
+            }
+        }
+        Assert.assertTrue(sampled > 9000 && sampled < 11000);
+
+        // The same docs are sampled each time.
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(hitLimiter.isSampled(2, i), hitLimiter.isSampled(2, i));
+        }
+    }
+
+    @Test
+    public void testFirstResults() {
+        final HitLimiter hitLimiter = HitLimiter.create(new Sampling(3L, null));
+        Assert.assertTrue(hitLimiter.tryAcquire());
+        Assert.assertTrue(hitLimiter.tryAcquire());
+        Assert.assertFalse(hitLimiter.isFull());
+        Assert.assertTrue(hitLimiter.tryAcquire());
+        Assert.assertTrue(hitLimiter.isFull());
+        Assert.assertFalse(hitLimiter.tryAcquire());
+    }
+
+    @Test
+    public void testCollectorStopsEarly() throws Exception {
+        final IndexField id = IndexField.createIdField("Id");
+        final RAMDirectory directory = new RAMDirectory();
+        final IndexWriterConfig config = new IndexWriterConfig(LuceneVersionUtil.CURRENT_LUCENE_VERSION,
+                AnalyzerFactory.create(LuceneVersionUtil.CURRENT_LUCENE_VERSION, AnalyzerType.KEYWORD, false));
+        config.setMergePolicy(NoMergePolicy.NO_COMPOUND_FILES);
+        final IndexWriter writer = new IndexWriter(directory, config);
+
+        // Write 4 segments of 10 documents.
+        for (int i = 0; i < 40; i++) {
+            final Document document = new Document();
+            document.add(FieldFactory.create(id, i));
+            writer.addDocument(document);
+            if (i % 10 == 9) {
+                writer.commit();
+            }
+        }
+        writer.close();
+
+        try (final DirectoryReader reader = DirectoryReader.open(directory)) {
+            final LinkedBlockingQueue<int[]> docIdStore = new LinkedBlockingQueue<>();
+            final AtomicLong hitCount = new AtomicLong();
+            final IndexShardHitCollector collector = new IndexShardHitCollector(new SimpleTaskContext(),
+                    docIdStore, hitCount, 4, 1, HitLimiter.create(new Sampling(15L, null)));
+            new IndexSearcher(reader).search(new MatchAllDocsQuery(), collector);
+            collector.flush();
+
+            Assert.assertEquals(15, hitCount.get());
+            int collected = 0;
+            for (final int[] docIds : docIdStore) {
+                collected += docIds.length;
+            }
+            Assert.assertEquals(15, collected);
+        }
+    }
+
+    private static class SimpleTaskContext implements TaskContext {
+        @Override
+        public void setName(final String name) {
+        }
+
+        @Override
+        public void info(final Object... args) {
+        }
+
+        @Override
+        public void terminate() {
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.search.server.shard;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import stroom.index.server.FieldFactory;
+import stroom.index.server.LuceneVersionUtil;
+import stroom.index.server.analyzer.AnalyzerFactory;
+import stroom.query.shared.IndexField;
+import stroom.query.shared.IndexField.AnalyzerType;
+import stroom.util.test.StroomJUnit4ClassRunner;
+
+import java.util.List;
+
+@RunWith(StroomJUnit4ClassRunner.class)
+public class TestSegmentRange {
+    @Test
+    public void testPartition() {
+        assertRanges(SegmentRange.partition(new int[]{10, 10, 10, 10}, 10, 4), 0, 1, 2, 3, 4);
+        assertRanges(SegmentRange.partition(new int[]{10, 10, 10, 10}, 20, 4), 0, 2, 4);
+        // Limited by the max number of ranges.
+        assertRanges(SegmentRange.partition(new int[]{10, 10, 10, 10}, 10, 2), 0, 2, 4);
+        // Too small to split.
+        assertRanges(SegmentRange.partition(new int[]{10, 10, 10, 10}, 100, 4), 0, 4);
+        assertRanges(SegmentRange.partition(new int[]{10, 10, 10, 10}, 0, 4), 0, 4);
+        // A single big segment.
+        assertRanges(SegmentRange.partition(new int[]{100}, 10, 4), 0, 1);
+        // Uneven segments are balanced by document count.
+        assertRanges(SegmentRange.partition(new int[]{60, 10, 10, 10, 10}, 40, 4), 0, 1, 5);
+        // Every range gets at least one segment.
+        assertRanges(SegmentRange.partition(new int[]{1, 1, 100}, 30, 4), 0, 1, 2, 3);
+    }
+
+    private void assertRanges(final List<int[]> ranges, final int... bounds) {
+        Assert.assertEquals(bounds.length - 1, ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            Assert.assertEquals(bounds[i], ranges.get(i)[0]);
+            Assert.assertEquals(bounds[i + 1], ranges.get(i)[1]);
+        }
+    }
+
+    @Test
+    public void testSplitSearch() throws Exception {
+        final IndexField id = IndexField.createIdField("Id");
+        final RAMDirectory directory = new RAMDirectory();
+        final IndexWriterConfig config = new IndexWriterConfig(LuceneVersionUtil.CURRENT_LUCENE_VERSION,
+                AnalyzerFactory.create(LuceneVersionUtil.CURRENT_LUCENE_VERSION, AnalyzerType.KEYWORD, false));
+        config.setMergePolicy(NoMergePolicy.NO_COMPOUND_FILES);
+        final IndexWriter writer = new IndexWriter(directory, config);
+
+        // Write 4 segments of 10 documents.
+        for (int i = 0; i < 40; i++) {
+            final Document document = new Document();
+            document.add(FieldFactory.create(id, i));
+            writer.addDocument(document);
+            if (i % 10 == 9) {
+                writer.commit();
+            }
+        }
+        writer.close();
+
+        final SearcherManager searcherManager = new SearcherManager(directory, null);
+        final IndexSearcher searcher = searcherManager.acquire();
+        final Query query = new MatchAllDocsQuery();
+        final List<SegmentRange> ranges = SegmentRange.split(searcherManager, searcher, query, 10, 2);
+        Assert.assertEquals(2, ranges.size());
+
+        int total = 0;
+        for (final SegmentRange range : ranges) {
+            Assert.assertFalse(range.isWholeShard());
+            final IndexSearcher rangeSearcher = range.createSearcher();
+            final int hits = rangeSearcher.search(range.getQuery(), 100).totalHits;
+            Assert.assertEquals(20, hits);
+            total += hits;
+            rangeSearcher.getIndexReader().close();
+            range.release();
+        }
+        Assert.assertEquals(40, total);
+
+        // The searcher is released once all ranges have been released leaving
+        // just the reference held by the searcher manager.
+        Assert.assertEquals(1, searcher.getIndexReader().getRefCount());
+        searcherManager.close();
+    }
+}
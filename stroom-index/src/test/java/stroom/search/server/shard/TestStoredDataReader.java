@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.search.server.shard;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import stroom.index.server.FieldFactory;
+import stroom.query.shared.IndexField;
+import stroom.util.test.StroomJUnit4ClassRunner;
+
+@RunWith(StroomJUnit4ClassRunner.class)
+public class TestStoredDataReader {
+    private static final String[] FIELD_NAMES = new String[]{"Text", "Count", "EventTime"};
+
+    @Test
+    public void testDocValuesAndStoredFields() throws Exception {
+        final IndexField text = IndexField.createField("Text");
+        text.setStored(true);
+        final IndexField count = IndexField.createNumericField("Count");
+        count.setDocValues(true);
+        final IndexField eventTime = IndexField.createDateField("EventTime");
+        eventTime.setStored(true);
+        eventTime.setDocValues(true);
+
+        final RAMDirectory directory = new RAMDirectory();
+        final IndexWriter writer = new IndexWriter(directory,
+                new IndexWriterConfig(Version.LUCENE_46, new KeywordAnalyzer()));
+
+        Document document = new Document();
+        document.add(FieldFactory.create(text, "first"));
+        document.add(FieldFactory.create(count, 10));
+        document.add(FieldFactory.createDocValues(count, 10));
+        document.add(FieldFactory.create(eventTime, 1000));
+        document.add(FieldFactory.createDocValues(eventTime, 1000));
+        writer.addDocument(document);
+        writer.commit();
+
+        // Put the second document in its own segment that has no doc values.
+        document = new Document();
+        document.add(FieldFactory.create(text, "second"));
+        document.add(FieldFactory.create(eventTime, 2000));
+        writer.addDocument(document);
+        writer.close();
+
+        try (final DirectoryReader reader = DirectoryReader.open(directory)) {
+            Assert.assertEquals(2, reader.leaves().size());
+
+            final StoredDataReader storedDataReader = new StoredDataReader(new IndexSearcher(reader), FIELD_NAMES);
+            Assert.assertArrayEquals(new String[]{"first", "10", "1000"}, storedDataReader.read(0));
+            Assert.assertArrayEquals(new String[]{"second", null, "2000"}, storedDataReader.read(1));
+
+            // Only ask for doc values fields so stored fields are not needed.
+            final StoredDataReader docValuesReader = new StoredDataReader(new IndexSearcher(reader),
+                    new String[]{"Count"});
+            Assert.assertArrayEquals(new String[]{"10"}, docValuesReader.read(0));
+            Assert.assertNull(docValuesReader.read(1));
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package stroom.search.server.taskqueue;
 
+import org.junit.Assert;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -80,4 +81,42 @@ public class TestTaskExecutor {
 
         executorService.shutdown();
     }
+
+    @Test
+    public void testAdaptiveThreadLimit() {
+        final TaskExecutor taskExecutor = new TaskExecutor("Test Executor");
+        taskExecutor.setMaxThreads(4);
+        Assert.assertEquals(4, taskExecutor.getThreadLimit());
+
+        taskExecutor.setTargetQueueLatency(100);
+        Assert.assertEquals(4, taskExecutor.getThreadLimit());
+
+        // Tasks kept waiting reduce the limit but only once per interval.
+        long now = 10000;
+        taskExecutor.recordQueueLatency(1000, now);
+        Assert.assertEquals(3, taskExecutor.getThreadLimit());
+        taskExecutor.recordQueueLatency(1000, now + 500);
+        Assert.assertEquals(3, taskExecutor.getThreadLimit());
+        for (int i = 0; i < 5; i++) {
+            now += 1000;
+            taskExecutor.recordQueueLatency(1000, now);
+        }
+        Assert.assertEquals(1, taskExecutor.getThreadLimit());
+
+        // Tasks that start quickly raise the limit again up to the max.
+        for (int i = 0; i < 50; i++) {
+            now += 1000;
+            taskExecutor.recordQueueLatency(0, now);
+        }
+        Assert.assertEquals(4, taskExecutor.getThreadLimit());
+
+        // Without a target the max is always used whatever the latency.
+        for (int i = 0; i < 10; i++) {
+            now += 1000;
+            taskExecutor.recordQueueLatency(1000, now);
+        }
+        Assert.assertEquals(1, taskExecutor.getThreadLimit());
+        taskExecutor.setTargetQueueLatency(0);
+        Assert.assertEquals(4, taskExecutor.getThreadLimit());
+    }
 }
@@ -20,6 +20,7 @@ import stroom.AbstractProcessIntegrationTest;
 import stroom.entity.shared.DocRef;
 import stroom.io.StreamCloser;
 import stroom.pipeline.server.errorhandler.ErrorReceiverProxy;
+import stroom.pipeline.server.errorhandler.LoggedException;
 import stroom.pipeline.server.errorhandler.LoggingErrorReceiver;
 import stroom.pipeline.server.factory.Pipeline;
 import stroom.pipeline.server.factory.PipelineDataCache;
@@ -64,6 +65,9 @@ public class TestXMLTransformer extends AbstractProcessIntegrationTest {
     private static final String INPUT_UTF_16_BE_BOM = DIR + "XML-EVENTS_UTF-16BE_BOM.nxml";
     private static final String INPUT_FRAGMENT = DIR + "XML-EVENTS_fragment.nxml";
     private static final String XSLT_PATH = DIR + "DATA_SPLITTER-EVENTS_no-ref.xsl";
+    private static final String LOG_XSLT_PATH = DIR + "DATA_SPLITTER-EVENTS_log.xsl";
+    private static final String PARALLEL_XSLT_PATH = DIR + "DATA_SPLITTER-EVENTS_parallel.xsl";
+    private static final String PARALLEL_FAIL_XSLT_PATH = DIR + "DATA_SPLITTER-EVENTS_parallel_fail.xsl";
     private static final String FRAGMENT_WRAPPER = DIR + "fragment_wrapper.xml";
 
     private static final String TRANSFORMER_PIPELINE = DIR + "XMLTransformer.Pipeline.data.xml";
@@ -129,6 +133,73 @@ public class TestXMLTransformer extends AbstractProcessIntegrationTest {
         test(pipelineEntity, INPUT_FRAGMENT, null);
     }
 
+    /**
+     * Stroom functions must report errors through the pipeline even when
+     * parallel records are configured.
+     */
+    @Test
+    public void testParallelWithFunctions() throws Exception {
+        final PipelineEntity pipelineEntity = createParallelPipeline(LOG_XSLT_PATH);
+        final LoggingErrorReceiver loggingErrorReceiver = process(pipelineEntity, INPUT_DEFAULT, null);
+
+        Assert.assertEquals(NUMBER_OF_RECORDS, recordCount.getRead());
+        Assert.assertEquals(NUMBER_OF_RECORDS, recordCount.getWritten());
+        Assert.assertEquals(NUMBER_OF_RECORDS, loggingErrorReceiver.getRecords(Severity.ERROR));
+        Assert.assertEquals(0, loggingErrorReceiver.getRecords(Severity.FATAL_ERROR));
+    }
+
+    /**
+     * Records transformed in parallel must be output in the order they were
+     * read. The XSLT doesn't use stroom functions so records are transformed
+     * on the record executor.
+     */
+    @Test
+    public void testParallel() throws Exception {
+        final PipelineEntity pipelineEntity = createParallelPipeline(PARALLEL_XSLT_PATH);
+        test(pipelineEntity, INPUT_DEFAULT, null);
+    }
+
+    /**
+     * A record that fails to transform in parallel must produce a fatal error
+     * after all of the records before it have been output and no records after
+     * it must be output.
+     */
+    @Test
+    public void testParallelWithFailure() throws Exception {
+        final PipelineEntity pipelineEntity = createParallelPipeline(PARALLEL_FAIL_XSLT_PATH);
+
+        try {
+            process(pipelineEntity, INPUT_DEFAULT, null);
+            Assert.fail("Expected the pipeline to fail");
+        } catch (final LoggedException e) {
+            // Expected.
+        }
+
+        final LoggingErrorReceiver loggingErrorReceiver = (LoggingErrorReceiver) errorReceiver.getErrorReceiver();
+        Assert.assertEquals(1, loggingErrorReceiver.getTotal(Severity.FATAL_ERROR));
+        Assert.assertEquals(5, recordCount.getWritten());
+
+        final String output = StreamUtil.fileToString(new File(getCurrentTestDir(), "TestXMLTransformer.xml"));
+        int lastIndex = -1;
+        for (int i = 1; i <= NUMBER_OF_RECORDS; i++) {
+            final int index = output.indexOf("<Data Name=\"LineNo\" Value=\"" + i + "\"/>");
+            if (i <= 5) {
+                Assert.assertTrue("Record " + i + " is missing or out of order", index > lastIndex);
+                lastIndex = index;
+            } else {
+                Assert.assertEquals("Record " + i + " should not have been output", -1, index);
+            }
+        }
+    }
+
+    private PipelineEntity createParallelPipeline(final String xsltPath) {
+        final PipelineEntity pipelineEntity = createTransformerPipeline(xsltPath);
+        final PipelineData pipelineData = pipelineEntity.getPipelineData();
+        pipelineData.addProperty(PipelineDataUtil.createProperty("splitFilter", "splitCount", 1));
+        pipelineData.addProperty(PipelineDataUtil.createProperty("translationFilter", "maxParallelRecords", 4));
+        return pipelineEntityService.save(pipelineEntity);
+    }
+
     private void testXMLTransformer(final String inputResource, final String encoding) throws Exception {
         final PipelineEntity pipelineEntity = createTransformerPipeline();
         test(pipelineEntity, inputResource, encoding);
@@ -152,8 +223,12 @@ public class TestXMLTransformer extends AbstractProcessIntegrationTest {
     }
 
     private PipelineEntity createTransformerPipeline() {
+        return createTransformerPipeline(XSLT_PATH);
+    }
+
+    private PipelineEntity createTransformerPipeline(final String xsltPath) {
         // Create a record for the XSLT.
-        final InputStream xsltInputStream = StroomProcessTestFileUtil.getInputStream(XSLT_PATH);
+        final InputStream xsltInputStream = StroomProcessTestFileUtil.getInputStream(xsltPath);
         XSLT xslt = xsltService.create(null, "Test XSLT");
         xslt.setData(StreamUtil.streamToString(xsltInputStream));
         xslt = xsltService.save(xslt);
@@ -168,6 +243,28 @@ public class TestXMLTransformer extends AbstractProcessIntegrationTest {
 
     private void test(final PipelineEntity pipelineEntity, final String inputResource, final String encoding)
             throws Exception {
+        final LoggingErrorReceiver loggingErrorReceiver = process(pipelineEntity, inputResource, encoding);
+
+        Assert.assertTrue(recordCount.getRead() > 0);
+        Assert.assertTrue(recordCount.getWritten() > 0);
+        Assert.assertEquals(recordCount.getRead(), recordCount.getWritten());
+        Assert.assertEquals(NUMBER_OF_RECORDS, recordCount.getRead());
+        Assert.assertEquals(NUMBER_OF_RECORDS, recordCount.getWritten());
+        Assert.assertEquals(0, loggingErrorReceiver.getRecords(Severity.WARNING));
+        Assert.assertEquals(0, loggingErrorReceiver.getRecords(Severity.ERROR));
+        Assert.assertEquals(0, loggingErrorReceiver.getRecords(Severity.FATAL_ERROR));
+
+        if (!loggingErrorReceiver.isAllOk()) {
+            Assert.fail(loggingErrorReceiver.toString());
+        }
+
+        final File outputFile = new File(getCurrentTestDir(), "TestXMLTransformer.xml");
+        final File refFile = StroomProcessTestFileUtil.getTestResourcesFile(REFERENCE);
+        ComparisonHelper.compareFiles(refFile, outputFile);
+    }
+
+    private LoggingErrorReceiver process(final PipelineEntity pipelineEntity, final String inputResource,
+                                         final String encoding) throws Exception {
         final File tempDir = getCurrentTestDir();
 
         // Make sure the config dir is set.
@@ -192,27 +289,15 @@ public class TestXMLTransformer extends AbstractProcessIntegrationTest {
 
         pipeline.startProcessing();
 
-        pipeline.process(inputStream, encoding);
-
-        pipeline.endProcessing();
-
-        // Close all streams that have been written.,
-        streamCloser.close();
+        try {
+            pipeline.process(inputStream, encoding);
+        } finally {
+            pipeline.endProcessing();
 
-        Assert.assertTrue(recordCount.getRead() > 0);
-        Assert.assertTrue(recordCount.getWritten() > 0);
-        Assert.assertEquals(recordCount.getRead(), recordCount.getWritten());
-        Assert.assertEquals(NUMBER_OF_RECORDS, recordCount.getRead());
-        Assert.assertEquals(NUMBER_OF_RECORDS, recordCount.getWritten());
-        Assert.assertEquals(0, loggingErrorReceiver.getRecords(Severity.WARNING));
-        Assert.assertEquals(0, loggingErrorReceiver.getRecords(Severity.ERROR));
-        Assert.assertEquals(0, loggingErrorReceiver.getRecords(Severity.FATAL_ERROR));
-
-        if (!loggingErrorReceiver.isAllOk()) {
-            Assert.fail(loggingErrorReceiver.toString());
+            // Close all streams that have been written.,
+            streamCloser.close();
         }
 
-        final File refFile = StroomProcessTestFileUtil.getTestResourcesFile(REFERENCE);
-        ComparisonHelper.compareFiles(refFile, outputFile);
+        return loggingErrorReceiver;
     }
 }
@@ -97,7 +97,7 @@ public class MockPipelineElementRegistryFactory implements ElementRegistryFactor
                 return (T) new SplitFilter();
             }
             if (elementClass.equals(XSLTFilter.class)) {
-                return (T) new XSLTFilter(null, null, null, null, null, null, null);
+                return (T) new XSLTFilter(null, null, null, null, null, null, null, null);
             }
             if (elementClass.equals(SchemaFilterSplit.class)) {
                 return (T) new SchemaFilterSplit(
@@ -77,6 +77,8 @@ public class TestSQLStatisticAggregationManager extends AbstractCoreIntegrationT
                         .clearTable(SQLStatisticNames.SQL_STATISTIC_VALUE_SOURCE_TABLE_NAME);
                 sqlStatisticAggregationTransactionHelper.clearTable(SQLStatisticNames.SQL_STATISTIC_VALUE_TABLE_NAME);
                 sqlStatisticAggregationTransactionHelper.clearTable(SQLStatisticNames.SQL_STATISTIC_KEY_TABLE_NAME);
+                sqlStatisticAggregationTransactionHelper
+                        .clearTable(SQLStatisticNames.SQL_STATISTIC_DICTIONARY_TABLE_NAME);
             } catch (final SQLException e) {
                 throw new RuntimeException("Error tearing down tables", e);
             }
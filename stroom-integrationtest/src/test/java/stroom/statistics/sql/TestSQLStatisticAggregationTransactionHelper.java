@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.statistics.sql;
+
+import org.junit.Assert;
+import org.junit.Test;
+import stroom.AbstractCoreIntegrationTest;
+import stroom.CommonTestControl;
+import stroom.entity.server.util.StroomDatabaseInfo;
+import stroom.node.server.StroomPropertyService;
+import stroom.statistics.common.RolledUpStatisticEvent;
+import stroom.statistics.common.StatisticEvent;
+import stroom.statistics.common.exception.StatisticsEventValidationException;
+import stroom.task.server.TaskMonitorImpl;
+import stroom.util.logging.StroomLogger;
+
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that aggregating values into rows that already exist adds the new
+ * values to the existing ones.
+ */
+public class TestSQLStatisticAggregationTransactionHelper extends AbstractCoreIntegrationTest {
+    private static final StroomLogger LOGGER = StroomLogger.getLogger(TestSQLStatisticAggregationTransactionHelper.class);
+
+    private static final String STAT_NAME = "stat";
+    private static final long STAT_VALUE = 10L;
+
+    @Resource
+    private CommonTestControl commonTestControl;
+    @Resource
+    private DataSource statisticsDataSource;
+    @Resource
+    private SQLStatisticValueBatchSaveService sqlStatisticValueBatchSaveService;
+    @Resource
+    private SQLStatisticAggregationManager sqlStatisticAggregationManager;
+    @Resource
+    private SQLStatisticAggregationTransactionHelper sqlStatisticAggregationTransactionHelper;
+    @Resource
+    private StroomDatabaseInfo stroomDatabaseInfo;
+    @Resource
+    private StroomPropertyService stroomPropertyService;
+
+    @Override
+    public void onBefore() {
+        if (!stroomDatabaseInfo.isMysql()) {
+            LOGGER.warn("Database is not MySQL, skipping test");
+        } else {
+            try {
+                sqlStatisticAggregationTransactionHelper
+                        .clearTable(SQLStatisticNames.SQL_STATISTIC_VALUE_SOURCE_TABLE_NAME);
+                sqlStatisticAggregationTransactionHelper.clearTable(SQLStatisticNames.SQL_STATISTIC_VALUE_TABLE_NAME);
+                sqlStatisticAggregationTransactionHelper.clearTable(SQLStatisticNames.SQL_STATISTIC_KEY_TABLE_NAME);
+                sqlStatisticAggregationTransactionHelper
+                        .clearTable(SQLStatisticNames.SQL_STATISTIC_DICTIONARY_TABLE_NAME);
+            } catch (final SQLException e) {
+                throw new RuntimeException("Error tearing down tables", e);
+            }
+
+            commonTestControl.teardown();
+            commonTestControl.setup();
+        }
+    }
+
+    /**
+     * The second run adds to the default precision row written by the first
+     * run so exercises the stage 1 upsert.
+     */
+    @Test
+    public void testSameBucketAddedInStage1() throws SQLException {
+        if (!stroomDatabaseInfo.isMysql()) {
+            LOGGER.warn("Database is not MySQL, skipping test");
+        } else {
+            final long timeMs = LocalDateTime.of(2016, 12, 13, 11, 59, 3).toInstant(ZoneOffset.UTC).toEpochMilli();
+
+            fillStatValSrc(timeMs);
+            sqlStatisticAggregationManager.aggregate(timeMs);
+            assertPrecision(SQLStatisticAggregationTransactionHelper.DEFAULT_PRECISION, 1, 1);
+
+            fillStatValSrc(timeMs);
+            sqlStatisticAggregationManager.aggregate(timeMs);
+            assertPrecision(SQLStatisticAggregationTransactionHelper.DEFAULT_PRECISION, 1, 2);
+        }
+    }
+
+    /**
+     * Values two days old are rolled up to day precision so the second run
+     * adds to the day row written by the first run, exercising the stage 2
+     * upsert.
+     */
+    @Test
+    public void testSameBucketAddedInStage2() throws SQLException {
+        if (!stroomDatabaseInfo.isMysql()) {
+            LOGGER.warn("Database is not MySQL, skipping test");
+        } else {
+            final long nowMs = LocalDateTime.of(2016, 12, 13, 11, 59, 3).toInstant(ZoneOffset.UTC).toEpochMilli();
+            final long timeMs = nowMs - TimeUnit.DAYS.toMillis(2);
+
+            fillStatValSrc(timeMs);
+            sqlStatisticAggregationManager.aggregate(nowMs);
+            assertPrecision(SQLStatisticAggregationTransactionHelper.DAY_PRECISION, 1, 1);
+
+            fillStatValSrc(timeMs);
+            sqlStatisticAggregationManager.aggregate(nowMs);
+            assertPrecision(SQLStatisticAggregationTransactionHelper.DAY_PRECISION, 1, 2);
+        }
+    }
+
+    /**
+     * Another node with a clock an hour behind ours aggregates a value into
+     * hour precision just before the time we last moved hour precision values
+     * to day precision. Our next pass must still move it.
+     */
+    @Test
+    public void testStage2AfterSlowerNode() throws SQLException {
+        if (!stroomDatabaseInfo.isMysql()) {
+            LOGGER.warn("Database is not MySQL, skipping test");
+        } else {
+            final long dayBucketSize = (long) Math.pow(10, SQLStatisticAggregationTransactionHelper.DAY_PRECISION);
+            final long thresholdMs = SQLStatisticAggregationTransactionHelper.round(
+                    LocalDateTime.of(2016, 12, 13, 11, 59, 3).toInstant(ZoneOffset.UTC).toEpochMilli(),
+                    SQLStatisticAggregationTransactionHelper.DAY_PRECISION);
+            final long nowMs = thresholdMs + SQLStatisticAggregationTransactionHelper.MS_DAY + 1000;
+            final long slowNowMs = nowMs - SQLStatisticAggregationTransactionHelper.MS_HOUR;
+            final long timeMs = thresholdMs - TimeUnit.MINUTES.toMillis(1);
+            Assert.assertTrue(timeMs >= thresholdMs - dayBucketSize);
+
+            // Records the day precision threshold on this node.
+            sqlStatisticAggregationManager.aggregate(nowMs);
+
+            final SQLStatisticAggregationTransactionHelper otherNode = new SQLStatisticAggregationTransactionHelper(
+                    statisticsDataSource, stroomDatabaseInfo, stroomPropertyService);
+            fillStatValSrc(timeMs);
+            otherNode.aggregateConfigStage1(new TaskMonitorImpl(), "Other node", 1000, slowNowMs);
+            otherNode.aggregateConfigStage2(new TaskMonitorImpl(), "Other node", slowNowMs);
+            assertPrecision(SQLStatisticAggregationTransactionHelper.HOUR_PRECISION, 1, 1);
+
+            sqlStatisticAggregationManager.aggregate(nowMs);
+            assertPrecision(SQLStatisticAggregationTransactionHelper.HOUR_PRECISION, 0, 0);
+            assertPrecision(SQLStatisticAggregationTransactionHelper.DAY_PRECISION, 1, 1);
+        }
+    }
+
+    private void fillStatValSrc(final long timeMs) {
+        final SQLStatisticAggregateMap sqlStatisticAggregateMap = new SQLStatisticAggregateMap();
+        final StatisticEvent statisticEvent = StatisticEvent.createCount(timeMs, STAT_NAME, Collections.emptyList(),
+                STAT_VALUE);
+        try {
+            sqlStatisticAggregateMap.addRolledUpEvent(new RolledUpStatisticEvent(statisticEvent), 0L);
+        } catch (final StatisticsEventValidationException e) {
+            throw new RuntimeException("error", e);
+        }
+
+        final SQLStatisticFlushTaskHandler taskHandler = new SQLStatisticFlushTaskHandler(
+                sqlStatisticValueBatchSaveService, new TaskMonitorImpl());
+        taskHandler.exec(new SQLStatisticFlushTask(sqlStatisticAggregateMap));
+    }
+
+    private void assertPrecision(final byte precision, final int expectedRows, final int expectedRuns)
+            throws SQLException {
+        final String sql = "select count(*), sum(VAL), sum(CT) from "
+                + SQLStatisticNames.SQL_STATISTIC_VALUE_TABLE_NAME + " where PRES = " + precision;
+        try (final Connection connection = statisticsDataSource.getConnection();
+             final PreparedStatement preparedStatement = connection.prepareStatement(sql);
+             final ResultSet resultSet = preparedStatement.executeQuery()) {
+            resultSet.next();
+            Assert.assertEquals(expectedRows, resultSet.getInt(1));
+            Assert.assertEquals(STAT_VALUE * expectedRuns, resultSet.getLong(2));
+            Assert.assertEquals(STAT_VALUE * expectedRuns, resultSet.getLong(3));
+        }
+    }
+}
@@ -46,9 +46,13 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class TestSQLStatisticEventStoreWithDB extends AbstractCoreIntegrationTest {
     private static final StroomLogger LOGGER = StroomLogger.getLogger(TestSQLStatisticEventStoreWithDB.class);
@@ -87,6 +91,8 @@ public class TestSQLStatisticEventStoreWithDB extends AbstractCoreIntegrationTes
                         .clearTable(SQLStatisticNames.SQL_STATISTIC_VALUE_SOURCE_TABLE_NAME);
                 sqlStatisticAggregationTransactionHelper.clearTable(SQLStatisticNames.SQL_STATISTIC_VALUE_TABLE_NAME);
                 sqlStatisticAggregationTransactionHelper.clearTable(SQLStatisticNames.SQL_STATISTIC_KEY_TABLE_NAME);
+                sqlStatisticAggregationTransactionHelper
+                        .clearTable(SQLStatisticNames.SQL_STATISTIC_DICTIONARY_TABLE_NAME);
             } catch (final SQLException e) {
                 throw new RuntimeException("Error tearing down tables", e);
             }
@@ -188,6 +194,51 @@ public class TestSQLStatisticEventStoreWithDB extends AbstractCoreIntegrationTes
         }
     }
 
+    /**
+     * Searching over a long period sums values into day buckets. Recent values
+     * are stored at ms precision so are summed into their day but older
+     * values have been rolled up to a precision that straddles days so are
+     * returned at their own precision.
+     */
+    @Test
+    public void testSearchStatisticsData_TimeBuckets() throws SQLException {
+        if (!ignoreAllTests) {
+            final long nowMs = LocalDateTime.of(2016, 12, 13, 11, 59, 3).toInstant(ZoneOffset.UTC).toEpochMilli();
+            final long recentMs = nowMs - TimeUnit.MINUTES.toMillis(1);
+            final long oldMs = nowMs - TimeUnit.DAYS.toMillis(2);
+
+            final SQLStatisticAggregateMap sqlStatisticAggregateMap = new SQLStatisticAggregateMap();
+            try {
+                for (final long timeMs : new long[]{recentMs, recentMs - 1000, oldMs}) {
+                    sqlStatisticAggregateMap.addRolledUpEvent(new RolledUpStatisticEvent(
+                            StatisticEvent.createCount(timeMs, STAT_NAME, Collections.emptyList(), 1L)), 0L);
+                }
+            } catch (final StatisticsEventValidationException e) {
+                throw new RuntimeException("error", e);
+            }
+            final SQLStatisticFlushTaskHandler taskHandler = new SQLStatisticFlushTaskHandler(
+                    sqlStatisticValueBatchSaveService, new TaskMonitorImpl());
+            taskHandler.exec(new SQLStatisticFlushTask(sqlStatisticAggregateMap));
+            sqlStatisticAggregationManager.aggregate(nowMs);
+
+            final StatisticDataSet dataSet = doSearch(Collections.emptyList());
+            assertDataSetSize(dataSet, 2);
+
+            final long dayMs = TimeUnit.DAYS.toMillis(1);
+            final long oldPrecisionMs = (long) Math.pow(10, SQLStatisticAggregationTransactionHelper.DAY_PRECISION);
+            for (final StatisticDataPoint dataPoint : dataSet) {
+                if (dataPoint.getPrecisionMs() == dayMs) {
+                    Assert.assertEquals(recentMs - (recentMs % dayMs), dataPoint.getTimeMs());
+                    Assert.assertEquals(2L, dataPoint.getCount().longValue());
+                } else {
+                    Assert.assertEquals(oldPrecisionMs, dataPoint.getPrecisionMs());
+                    Assert.assertEquals(oldMs - (oldMs % oldPrecisionMs), dataPoint.getTimeMs());
+                    Assert.assertEquals(1L, dataPoint.getCount().longValue());
+                }
+            }
+        }
+    }
+
     private StatisticDataSet doSearch(final List<StatisticTag> searchTags) {
         return doSearch(searchTags, ExpressionOperator.Op.AND);
     }
@@ -25,6 +25,9 @@ import stroom.entity.shared.BaseEntity;
 import stroom.entity.shared.DocRef;
 import stroom.pipeline.destination.DestinationProvider;
 import stroom.pipeline.server.SupportsCodeInjection;
+import stroom.pipeline.server.factory.PipelineTemplate.ElementTemplate;
+import stroom.pipeline.server.factory.PipelineTemplate.PropertyTemplate;
+import stroom.pipeline.server.factory.PipelineTemplate.ReferenceTemplate;
 import stroom.pipeline.server.filter.SAXEventRecorder;
 import stroom.pipeline.server.filter.SAXRecordDetector;
 import stroom.pipeline.server.filter.SplitFilter;
@@ -41,22 +44,15 @@ import stroom.pipeline.server.task.SteppingTask;
 import stroom.pipeline.server.writer.OutputRecorder;
 import stroom.pipeline.shared.SteppingFilterSettings;
 import stroom.pipeline.shared.data.PipelineData;
-import stroom.pipeline.shared.data.PipelineElement;
 import stroom.pipeline.shared.data.PipelineElementType;
-import stroom.pipeline.shared.data.PipelineLink;
-import stroom.pipeline.shared.data.PipelineProperty;
-import stroom.pipeline.shared.data.PipelinePropertyValue;
-import stroom.pipeline.shared.data.PipelineReference;
 import stroom.util.logging.StroomLogger;
 import stroom.util.spring.StroomScope;
 
 import javax.inject.Inject;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -69,16 +65,26 @@ public class PipelineFactory {
     private final ElementFactory elementFactory;
     private final ProcessorFactory processorFactory;
     private final GenericEntityService genericEntityService;
+    private final PipelineTemplateCache pipelineTemplateCache;
 
-    @Inject
     public PipelineFactory(final ElementRegistryFactory pipelineElementRegistryFactory,
                            final ElementFactory elementFactory,
                            final ProcessorFactory processorFactory,
                            final GenericEntityService genericEntityService) {
+        this(pipelineElementRegistryFactory, elementFactory, processorFactory, genericEntityService, null);
+    }
+
+    @Inject
+    public PipelineFactory(final ElementRegistryFactory pipelineElementRegistryFactory,
+                           final ElementFactory elementFactory,
+                           final ProcessorFactory processorFactory,
+                           final GenericEntityService genericEntityService,
+                           final PipelineTemplateCache pipelineTemplateCache) {
         this.pipelineElementRegistryFactory = pipelineElementRegistryFactory;
         this.elementFactory = elementFactory;
         this.processorFactory = processorFactory;
         this.genericEntityService = genericEntityService;
+        this.pipelineTemplateCache = pipelineTemplateCache;
 
         if (processorFactory == null) {
             throw new NullPointerException("processorFactory is null");
@@ -94,27 +100,28 @@ public class PipelineFactory {
 
     public Pipeline create(final PipelineData pipelineData,
                            final SteppingController controller) {
+        final long startTime = System.currentTimeMillis();
         final ElementRegistry pipelineElementRegistry = pipelineElementRegistryFactory.get();
 
         // If we are stepping then we don't want to use the cache.
+        final PipelineTemplate template;
+        if (controller == null && pipelineTemplateCache != null) {
+            template = pipelineTemplateCache.get(pipelineElementRegistry, pipelineData);
+        } else {
+            template = new PipelineTemplate(pipelineElementRegistry, pipelineData);
+        }
+
         // Create an instance of each element.
         final Map<String, Element> elementInstances = new HashMap<>();
         final Map<Element, PipelineElementType> elementTypeMap = new HashMap<>();
-        final Map<String, Set<String>> linkSets = new HashMap<>();
 
-        for (final PipelineElement element : pipelineData.getElements().getAdd()) {
-            LOGGER.debug("create() - loading element %s", element);
+        for (final ElementTemplate element : template.getElements()) {
+            LOGGER.debug("create() - loading element %s", element.getId());
 
-            final Class<Element> elementClass = pipelineElementRegistry.getElementClass(element.getType());
-
-            if (elementClass == null) {
-                throw new PipelineFactoryException("Unable to load elementClass for type " + element.getType());
-            }
-
-            final Element elementInstance = elementFactory.getElementInstance(elementClass);
+            final Element elementInstance = elementFactory.getElementInstance(element.getElementClass());
 
             if (elementInstance == null) {
-                throw new PipelineFactoryException("Unable to load elementInstance for class " + elementClass);
+                throw new PipelineFactoryException("Unable to load elementInstance for class " + element.getElementClass());
             }
 
             // Set the id on the pipeline element for use in tracing
@@ -122,25 +129,18 @@ public class PipelineFactory {
             elementInstance.setElementId(element.getId());
 
             // Set the properties on this instance.
-            setProperties(pipelineElementRegistry, element.getId(), element.getType(), elementInstance, pipelineData,
-                    controller);
+            for (final PropertyTemplate property : element.getProperties()) {
+                setProperty(element.getId(), elementInstance, property, controller);
+            }
 
             // Set the pipeline references on this instance.
-            setPipelineReferences(pipelineElementRegistry, element.getId(), element.getType(), elementInstance,
-                    pipelineData);
+            for (final ReferenceTemplate reference : element.getReferences()) {
+                setPipelineReference(elementInstance, reference);
+            }
 
             // Store the instance.
             elementInstances.put(element.getId(), elementInstance);
-            elementTypeMap.put(elementInstance, pipelineElementRegistry.getElementType(element.getType()));
-
-            // Record links.
-            final Set<String> linkSet = new HashSet<>();
-            linkSets.put(element.getId(), linkSet);
-            for (final PipelineLink link : pipelineData.getLinks().getAdd()) {
-                if (link.getFrom().equals(element.getId())) {
-                    linkSet.add(link.getTo());
-                }
-            }
+            elementTypeMap.put(elementInstance, element.getElementType());
         }
 
         // Get the source element.
@@ -150,7 +150,8 @@ public class PipelineFactory {
         }
 
         // Link the instances.
-        link(elementInstances, elementTypeMap, linkSets, controller, sourceElement, sourceElement.getElementId());
+        link(elementInstances, elementTypeMap, template.getLinkSets(), controller, sourceElement,
+                sourceElement.getElementId());
 
         // We need to create a root element that will be a target for the input
         // stream.
@@ -170,133 +171,72 @@ public class PipelineFactory {
             controller.getRecordDetector().setController(controller);
         }
 
-        return new PipelineImpl(processorFactory, elementInstances, root, controller != null);
-    }
-
-    /**
-     * Set the properties on the newly created element instance.
-     */
-    private void setProperties(final ElementRegistry pipelineElementRegistry,
-                               final String id,
-                               final String elementType,
-                               final Object elementInstance,
-                               final PipelineData pipelineData,
-                               final SteppingController controller) {
-        // Set the properties on this instance.
-        for (final PipelineProperty property : pipelineData.getProperties().getAdd()) {
-            if (property.getElement().equals(id)) {
-                setProperty(pipelineElementRegistry, id, elementType, elementInstance, property.getName(),
-                        property.getValue(), controller);
-            }
+        // Track how long it takes to create each pipeline.
+        template.getCreationTime().record(System.currentTimeMillis() - startTime);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("create() - created pipeline with %s elements (%s)", elementInstances.size(),
+                    template.getCreationTime());
         }
+
+        return new PipelineImpl(processorFactory, elementInstances, root, controller != null);
     }
 
     /**
-     * Code for properties.
+     * Set a property on a newly created element instance.
      */
-    private void setProperty(final ElementRegistry pipelineElementRegistry,
-                             final String id,
-                             final String elementType,
+    private void setProperty(final String id,
                              final Object elementInstance,
-                             final String propertyName,
-                             final PipelinePropertyValue value,
+                             final PropertyTemplate property,
                              final SteppingController controller) {
-        // Some methods might be removed so ignore them if they don't exist.
-        final Method method = pipelineElementRegistry.getMethod(elementType, propertyName);
-
-        if (method != null) {
-            try {
-                // Allow this method to be invoked.
-                method.setAccessible(true);
-
-                Object obj = null;
-                if (value != null) {
-                    final Class<?> paramType = method.getParameterTypes()[0];
-                    if (boolean.class.isAssignableFrom(paramType) || Boolean.class.isAssignableFrom(paramType)) {
-                        obj = value.isBoolean();
-                    } else if (int.class.isAssignableFrom(paramType) || Integer.class.isAssignableFrom(paramType)) {
-                        obj = value.getInteger();
-                    } else if (long.class.isAssignableFrom(paramType) || Long.class.isAssignableFrom(paramType)) {
-                        obj = value.getLong();
-                    } else if (String.class.isAssignableFrom(paramType)) {
-                        obj = value.getString();
-                    } else if (BaseEntity.class.isAssignableFrom(paramType)) {
-                        // Load an entity by id.
-                        final DocRef docRef = value.getEntity();
-                        if (docRef != null) {
-                            BaseEntity entity = null;
-                            if (genericEntityService != null) {
-                                entity = genericEntityService.loadByUuid(docRef.getType(), docRef.getUuid());
-                                if (entity == null) {
-                                    throw new PipelineFactoryException(
-                                            "Unable to resolve entity reference from element '" + id + "' to "
-                                                    + docRef.toString());
-                                }
-                                obj = entity;
-                            }
+        try {
+            Object obj = property.getValue();
+
+            final DocRef docRef = property.getEntityRef();
+            if (docRef != null) {
+                // Load an entity by id.
+                BaseEntity entity = null;
+                if (genericEntityService != null) {
+                    entity = genericEntityService.loadByUuid(docRef.getType(), docRef.getUuid());
+                    if (entity == null) {
+                        throw new PipelineFactoryException(
+                                "Unable to resolve entity reference from element '" + id + "' to "
+                                        + docRef.toString());
+                    }
+                    obj = entity;
+                }
 
-                            // Modify properties of element instance if we are
-                            // stepping and have code to insert.
-                            if (controller != null && entity != null) {
-                                final SteppingTask request = controller.getRequest();
-                                if (request.getCode() != null && request.getCode().size() > 0) {
-                                    final String code = request.getCode().get(id);
-                                    if (code != null) {
-                                        if (elementInstance instanceof SupportsCodeInjection) {
-                                            final SupportsCodeInjection supportsCodeInjection = (SupportsCodeInjection) elementInstance;
-                                            supportsCodeInjection.setInjectedCode(code);
-                                        }
-                                    }
-                                }
+                // Modify properties of element instance if we are
+                // stepping and have code to insert.
+                if (controller != null && entity != null) {
+                    final SteppingTask request = controller.getRequest();
+                    if (request.getCode() != null && request.getCode().size() > 0) {
+                        final String code = request.getCode().get(id);
+                        if (code != null) {
+                            if (elementInstance instanceof SupportsCodeInjection) {
+                                final SupportsCodeInjection supportsCodeInjection = (SupportsCodeInjection) elementInstance;
+                                supportsCodeInjection.setInjectedCode(code);
                             }
                         }
                     }
                 }
-
-                method.invoke(elementInstance, obj);
-
-            } catch (final InvocationTargetException | IllegalAccessException e) {
-                throw new PipelineFactoryException(e);
             }
-        }
-    }
 
-    /**
-     * Set the pipeline references on the newly created element instance.
-     */
-    private void setPipelineReferences(final ElementRegistry pipelineElementRegistry,
-                                       final String id,
-                                       final String elementType,
-                                       final Object elementInstance,
-                                       final PipelineData pipelineData) {
-        // Set the properties on this instance.
-        for (final PipelineReference pipelineReference : pipelineData.getPipelineReferences().getAdd()) {
-            if (pipelineReference.getElement().equals(id)) {
-                setPipelineReference(pipelineElementRegistry, elementType, elementInstance, pipelineReference.getName(),
-                        pipelineReference);
-            }
+            property.getMethod().invoke(elementInstance, obj);
+
+        } catch (final InvocationTargetException | IllegalAccessException e) {
+            throw new PipelineFactoryException(e);
         }
     }
 
     /**
-     * Code for pipeline references.
+     * Set a pipeline reference on a newly created element instance.
      */
-    private void setPipelineReference(final ElementRegistry pipelineElementRegistry,
-                                      final String elementType,
-                                      final Object elementInstance,
-                                      final String propertyName,
-                                      final PipelineReference pipelineReference) {
-        final Method method = pipelineElementRegistry.getMethod(elementType, propertyName);
-
-        if (method != null) {
-            try {
-                // Allow this method to be invoked.
-                method.setAccessible(true);
-                method.invoke(elementInstance, pipelineReference);
-
-            } catch (final InvocationTargetException | IllegalAccessException e) {
-                throw new PipelineFactoryException(e);
-            }
+    private void setPipelineReference(final Object elementInstance,
+                                      final ReferenceTemplate reference) {
+        try {
+            reference.getMethod().invoke(elementInstance, reference.getPipelineReference());
+        } catch (final InvocationTargetException | IllegalAccessException e) {
+            throw new PipelineFactoryException(e);
         }
     }
 
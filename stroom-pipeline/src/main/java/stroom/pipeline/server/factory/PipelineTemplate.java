@@ -0,0 +1,228 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.pipeline.server.factory;
+
+import stroom.entity.shared.BaseEntity;
+import stroom.entity.shared.DocRef;
+import stroom.pipeline.shared.data.PipelineData;
+import stroom.pipeline.shared.data.PipelineElement;
+import stroom.pipeline.shared.data.PipelineElementType;
+import stroom.pipeline.shared.data.PipelineLink;
+import stroom.pipeline.shared.data.PipelineProperty;
+import stroom.pipeline.shared.data.PipelinePropertyValue;
+import stroom.pipeline.shared.data.PipelineReference;
+import stroom.util.concurrent.DurationHistogram;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Everything about how to build a pipeline that can be worked out from the
+ * pipeline data alone, i.e. the element classes, the setter methods to call and
+ * converted property values and the links between elements. Creating a
+ * pipeline from a template only requires element instances to be created and
+ * wired together.
+ * <p>
+ * Element instances themselves can't be shared between tasks as they are
+ * injected with task scoped state so they are still created for each task.
+ * Entity properties are still loaded for each task so that changes to
+ * referenced entities, e.g. XSLT, are picked up.
+ */
+class PipelineTemplate {
+    private final List<ElementTemplate> elements;
+    private final Map<String, Set<String>> linkSets;
+    private final DurationHistogram creationTime = new DurationHistogram();
+
+    PipelineTemplate(final ElementRegistry pipelineElementRegistry, final PipelineData pipelineData) {
+        // Group links by the element they are from.
+        final Map<String, Set<String>> linkSets = new HashMap<>();
+        for (final PipelineLink link : pipelineData.getLinks().getAdd()) {
+            linkSets.computeIfAbsent(link.getFrom(), k -> new HashSet<>()).add(link.getTo());
+        }
+
+        // Group properties and references by the element they belong to.
+        final Map<String, List<PipelineProperty>> propertyMap = new HashMap<>();
+        for (final PipelineProperty property : pipelineData.getProperties().getAdd()) {
+            propertyMap.computeIfAbsent(property.getElement(), k -> new ArrayList<>()).add(property);
+        }
+        final Map<String, List<PipelineReference>> referenceMap = new HashMap<>();
+        for (final PipelineReference reference : pipelineData.getPipelineReferences().getAdd()) {
+            referenceMap.computeIfAbsent(reference.getElement(), k -> new ArrayList<>()).add(reference);
+        }
+
+        final List<ElementTemplate> elements = new ArrayList<>();
+        final Map<String, Set<String>> elementLinkSets = new HashMap<>();
+        for (final PipelineElement element : pipelineData.getElements().getAdd()) {
+            final Class<Element> elementClass = pipelineElementRegistry.getElementClass(element.getType());
+            if (elementClass == null) {
+                throw new PipelineFactoryException("Unable to load elementClass for type " + element.getType());
+            }
+
+            final List<PropertyTemplate> properties = new ArrayList<>();
+            for (final PipelineProperty property : propertyMap.getOrDefault(element.getId(), Collections.emptyList())) {
+                // Some methods might be removed so ignore them if they don't
+                // exist.
+                final Method method = pipelineElementRegistry.getMethod(element.getType(), property.getName());
+                if (method != null) {
+                    method.setAccessible(true);
+                    properties.add(new PropertyTemplate(method, property.getValue()));
+                }
+            }
+
+            final List<ReferenceTemplate> references = new ArrayList<>();
+            for (final PipelineReference reference : referenceMap.getOrDefault(element.getId(), Collections.emptyList())) {
+                final Method method = pipelineElementRegistry.getMethod(element.getType(), reference.getName());
+                if (method != null) {
+                    method.setAccessible(true);
+                    references.add(new ReferenceTemplate(method, reference));
+                }
+            }
+
+            elements.add(new ElementTemplate(element.getId(), elementClass,
+                    pipelineElementRegistry.getElementType(element.getType()), properties, references));
+            elementLinkSets.put(element.getId(), linkSets.getOrDefault(element.getId(), Collections.emptySet()));
+        }
+
+        this.elements = elements;
+        this.linkSets = elementLinkSets;
+    }
+
+    List<ElementTemplate> getElements() {
+        return elements;
+    }
+
+    Map<String, Set<String>> getLinkSets() {
+        return linkSets;
+    }
+
+    /**
+     * @return The time taken to create pipelines from this template.
+     */
+    DurationHistogram getCreationTime() {
+        return creationTime;
+    }
+
+    static class ElementTemplate {
+        private final String id;
+        private final Class<Element> elementClass;
+        private final PipelineElementType elementType;
+        private final List<PropertyTemplate> properties;
+        private final List<ReferenceTemplate> references;
+
+        ElementTemplate(final String id, final Class<Element> elementClass, final PipelineElementType elementType,
+                        final List<PropertyTemplate> properties, final List<ReferenceTemplate> references) {
+            this.id = id;
+            this.elementClass = elementClass;
+            this.elementType = elementType;
+            this.properties = properties;
+            this.references = references;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        Class<Element> getElementClass() {
+            return elementClass;
+        }
+
+        PipelineElementType getElementType() {
+            return elementType;
+        }
+
+        List<PropertyTemplate> getProperties() {
+            return properties;
+        }
+
+        List<ReferenceTemplate> getReferences() {
+            return references;
+        }
+    }
+
+    static class PropertyTemplate {
+        private final Method method;
+        private final Object value;
+        private final DocRef entityRef;
+
+        PropertyTemplate(final Method method, final PipelinePropertyValue value) {
+            this.method = method;
+
+            Object obj = null;
+            DocRef docRef = null;
+            if (value != null) {
+                final Class<?> paramType = method.getParameterTypes()[0];
+                if (boolean.class.isAssignableFrom(paramType) || Boolean.class.isAssignableFrom(paramType)) {
+                    obj = value.isBoolean();
+                } else if (int.class.isAssignableFrom(paramType) || Integer.class.isAssignableFrom(paramType)) {
+                    obj = value.getInteger();
+                } else if (long.class.isAssignableFrom(paramType) || Long.class.isAssignableFrom(paramType)) {
+                    obj = value.getLong();
+                } else if (String.class.isAssignableFrom(paramType)) {
+                    obj = value.getString();
+                } else if (BaseEntity.class.isAssignableFrom(paramType)) {
+                    docRef = value.getEntity();
+                }
+            }
+            this.value = obj;
+            this.entityRef = docRef;
+        }
+
+        Method getMethod() {
+            return method;
+        }
+
+        /**
+         * @return The converted value to set or null if the value is an
+         * entity reference or there is no value.
+         */
+        Object getValue() {
+            return value;
+        }
+
+        /**
+         * @return A reference to the entity that needs to be loaded and set or
+         * null if this is not an entity property.
+         */
+        DocRef getEntityRef() {
+            return entityRef;
+        }
+    }
+
+    static class ReferenceTemplate {
+        private final Method method;
+        private final PipelineReference pipelineReference;
+
+        ReferenceTemplate(final Method method, final PipelineReference pipelineReference) {
+            this.method = method;
+            this.pipelineReference = pipelineReference;
+        }
+
+        Method getMethod() {
+            return method;
+        }
+
+        PipelineReference getPipelineReference() {
+            return pipelineReference;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.pipeline.server.factory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.springframework.stereotype.Component;
+import stroom.pipeline.shared.data.PipelineData;
+import stroom.util.cache.CacheManager;
+
+import javax.inject.Inject;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches pipeline templates against the merged pipeline data that they were
+ * built from. {@link PipelineDataCache} holds a single instance of merged
+ * pipeline data for each pipeline version so the data is used by identity as
+ * the key, which means a new template is built whenever a pipeline changes.
+ */
+@Component
+public class PipelineTemplateCache {
+    private static final int MAX_CACHE_ENTRIES = 1000;
+
+    private final Cache<PipelineData, PipelineTemplate> cache;
+
+    @Inject
+    @SuppressWarnings("unchecked")
+    public PipelineTemplateCache(final CacheManager cacheManager) {
+        final CacheBuilder cacheBuilder = CacheBuilder.newBuilder()
+                .weakKeys()
+                .maximumSize(MAX_CACHE_ENTRIES)
+                .expireAfterAccess(10, TimeUnit.MINUTES);
+        cache = cacheBuilder.build();
+        cacheManager.registerCache("Pipeline Template Cache", cacheBuilder, cache);
+    }
+
+    PipelineTemplate get(final ElementRegistry pipelineElementRegistry, final PipelineData pipelineData) {
+        try {
+            return cache.get(pipelineData, () -> new PipelineTemplate(pipelineElementRegistry, pipelineData));
+        } catch (final ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new PipelineFactoryException(e.getCause());
+        }
+    }
+}
@@ -25,12 +25,14 @@ import net.sf.saxon.s9api.XsltExecutable;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 import stroom.cache.server.StoredXsltExecutable;
 import stroom.cache.server.XSLTPool;
 import stroom.entity.shared.StringCriteria;
 import stroom.node.server.StroomPropertyService;
+import stroom.pipeline.server.LocationFactory;
 import stroom.pipeline.server.LocationFactoryProxy;
 import stroom.pipeline.server.SupportsCodeInjection;
 import stroom.pipeline.server.errorhandler.ErrorListenerAdaptor;
@@ -57,17 +59,30 @@ import stroom.util.logging.StroomLogger;
 import stroom.util.shared.Location;
 import stroom.util.shared.Severity;
 import stroom.util.spring.StroomScope;
+import stroom.xml.event.EventList;
+import stroom.xml.event.simple.SimpleEventListBuilder;
 
 import javax.inject.Inject;
 import javax.xml.transform.ErrorListener;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.sax.TransformerHandler;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * An XML filter for performing inline XSLT transformation of XML.
+ * <p>
+ * If more than one parallel record is configured then each record (i.e. each
+ * document split out by a split filter) is buffered and transformed on a
+ * shared pool of threads. Transformed records are passed to the next filter in
+ * the same order that they were received and errors are reported against the
+ * location of the start of the record. XSLT that calls stroom functions is
+ * always transformed one record at a time.
  */
 @Component
 @Scope(StroomScope.PROTOTYPE)
@@ -86,6 +101,7 @@ public class XSLTFilter extends AbstractXMLFilter implements SupportsCodeInjecti
     private final LocationFactoryProxy locationFactory;
     private final PipelineContext pipelineContext;
     private final PathCreator pathCreator;
+    private final XSLTRecordExecutor recordExecutor;
 
     private ErrorListener errorListener;
 
@@ -99,13 +115,20 @@ public class XSLTFilter extends AbstractXMLFilter implements SupportsCodeInjecti
      */
     private PoolItem<StoredXsltExecutable> poolItem;
     private XsltExecutable xsltExecutable;
-    private TransformerHandler handler;
+    private ContentHandler handler;
     private Locator locator;
     private boolean xsltRequired = false;
     private boolean passThrough = true;
     private String injectedCode;
     private boolean usePool = true;
     private List<PipelineReference> pipelineReferences;
+    private int maxParallelRecords = 1;
+    private boolean functionsInUse;
+
+    private boolean parallel;
+    private Location recordLocation;
+    private final ArrayDeque<PendingRecord> pendingRecords = new ArrayDeque<>();
+    private final ConcurrentLinkedQueue<TransformerImpl> recordTransformers = new ConcurrentLinkedQueue<>();
 
     private int elementCount;
     private int maxElementCount;
@@ -117,7 +140,8 @@ public class XSLTFilter extends AbstractXMLFilter implements SupportsCodeInjecti
                       final StroomPropertyService stroomPropertyService,
                       final LocationFactoryProxy locationFactory,
                       final PipelineContext pipelineContext,
-                      final PathCreator pathCreator) {
+                      final PathCreator pathCreator,
+                      final XSLTRecordExecutor recordExecutor) {
         this.xsltPool = xsltPool;
         this.errorReceiverProxy = errorReceiverProxy;
         this.xsltService = xsltService;
@@ -125,6 +149,7 @@ public class XSLTFilter extends AbstractXMLFilter implements SupportsCodeInjecti
         this.locationFactory = locationFactory;
         this.pipelineContext = pipelineContext;
         this.pathCreator = pathCreator;
+        this.recordExecutor = recordExecutor;
     }
 
     @Override
@@ -239,6 +264,8 @@ public class XSLTFilter extends AbstractXMLFilter implements SupportsCodeInjecti
                     final StoredErrorReceiver storedErrors = storedXsltExecutable.getErrorReceiver();
                     // Get the XSLT executable.
                     xsltExecutable = storedXsltExecutable.getXsltExecutable();
+                    functionsInUse = storedXsltExecutable.getFunctionLibrary() != null
+                            && storedXsltExecutable.getFunctionLibrary().isInUse();
 
                     if (storedErrors.getTotalErrors() > 0) {
                         // Replay any exceptions that were created when
@@ -265,6 +292,14 @@ public class XSLTFilter extends AbstractXMLFilter implements SupportsCodeInjecti
                 final String msg = "XSLT is required but either no XSLT was found or there is an error in the XSLT";
                 throw new ProcessException(msg);
             }
+
+            // Records can only be transformed in parallel if we aren't
+            // stepping as stepping needs to see the output of each record
+            // as it is produced. Stroom functions report errors and
+            // locations through the pipeline and may hold state between
+            // calls so XSLT that uses them is always run on this thread.
+            parallel = maxParallelRecords > 1 && xsltExecutable != null && recordExecutor != null
+                    && !functionsInUse && !pipelineContext.isStepping();
         } catch (final Exception e) {
             errorReceiverProxy.log(Severity.FATAL_ERROR, null, getElementId(), e.getMessage(), e);
             // If we aren't stepping then throw an exception to terminate early.
@@ -279,6 +314,11 @@ public class XSLTFilter extends AbstractXMLFilter implements SupportsCodeInjecti
     @Override
     public void endProcessing() {
         try {
+            // Discard any records that are still being transformed if
+            // processing terminated early.
+            cancelPendingRecords();
+            recordTransformers.clear();
+
             if (poolItem != null) {
                 xsltPool.returnObject(poolItem, usePool);
                 poolItem = null;
@@ -310,7 +350,14 @@ public class XSLTFilter extends AbstractXMLFilter implements SupportsCodeInjecti
     @Override
     public void startDocument() throws SAXException {
         try {
-            if (xsltExecutable != null) {
+            if (parallel) {
+                // Buffer the record so that it can be transformed on another
+                // thread and remember where it started for error reporting.
+                recordLocation = locationFactory.create(locator);
+                handler = new SimpleEventListBuilder();
+                handler.startDocument();
+
+            } else if (xsltExecutable != null) {
                 // Make sure the executable points at the local error handler.
                 final Configuration configuration = xsltExecutable.getUnderlyingCompiledStylesheet().getConfiguration();
                 configuration.setErrorListener(errorListener);
@@ -321,11 +368,12 @@ public class XSLTFilter extends AbstractXMLFilter implements SupportsCodeInjecti
                 final TransformerImpl transformer = (TransformerImpl) templates.newTransformer();
                 transformer.setErrorListener(errorListener);
 
-                handler = transformer.newTransformerHandler();
-                handler.setResult(new SAXResult(getFilter()));
+                final TransformerHandler transformerHandler = transformer.newTransformerHandler();
+                transformerHandler.setResult(new SAXResult(getFilter()));
                 if (locator != null) {
-                    handler.setDocumentLocator(locator);
+                    transformerHandler.setDocumentLocator(locator);
                 }
+                handler = transformerHandler;
                 handler.startDocument();
 
             } else if (passThrough) {
@@ -350,7 +398,15 @@ public class XSLTFilter extends AbstractXMLFilter implements SupportsCodeInjecti
      */
     @Override
     public void endDocument() throws SAXException {
-        if (handler != null) {
+        if (handler != null && parallel) {
+            try {
+                handler.endDocument();
+                submitRecord(((SimpleEventListBuilder) handler).getEventList());
+            } finally {
+                handler = null;
+                elementCount = 0;
+            }
+        } else if (handler != null) {
             try {
                 handler.endDocument();
             } catch (final Throwable throwable) {
@@ -377,6 +433,117 @@ public class XSLTFilter extends AbstractXMLFilter implements SupportsCodeInjecti
         }
     }
 
+    /**
+     * Flush all records that are still being transformed before the end of the
+     * stream so that downstream filters receive every record for the stream.
+     */
+    @Override
+    public void endStream() {
+        try {
+            if (parallel) {
+                while (pendingRecords.size() > 0) {
+                    outputRecord(pendingRecords.poll());
+                }
+            }
+        } catch (final SAXException e) {
+            throw new ProcessException(e.getMessage(), e);
+        } finally {
+            super.endStream();
+        }
+    }
+
+    private void submitRecord(final EventList input) throws SAXException {
+        final Location location = recordLocation;
+        pendingRecords.add(new PendingRecord(location, recordExecutor.submit(() -> transformRecord(input, location))));
+
+        // Limit the number of records in flight so that memory use is bounded.
+        while (pendingRecords.size() > maxParallelRecords) {
+            outputRecord(pendingRecords.poll());
+        }
+    }
+
+    /**
+     * Transforms a buffered record. This is called on a record executor thread
+     * so must not touch any state that is used by the pipeline thread. Errors
+     * are stored so that they can be replayed in order on the pipeline thread.
+     * Transformers are reused between records as creating one for every record
+     * is expensive. A transformer is only returned for reuse if the record was
+     * transformed successfully.
+     */
+    private TransformedRecord transformRecord(final EventList input, final Location location) {
+        final StoredErrorReceiver storedErrors = new StoredErrorReceiver();
+        final RecordOutputBuilder output = new RecordOutputBuilder();
+        Throwable throwable = null;
+        try {
+            TransformerImpl transformer = recordTransformers.poll();
+            if (transformer == null) {
+                final TemplatesImpl templates = new TemplatesImpl(xsltExecutable);
+                transformer = (TransformerImpl) templates.newTransformer();
+            }
+
+            final ErrorListener recordErrorListener = new ErrorListenerAdaptor(getElementId(),
+                    new RecordLocationFactory(location), storedErrors);
+            transformer.setErrorListener(recordErrorListener);
+
+            final TransformerHandler transformerHandler = transformer.newTransformerHandler();
+            transformerHandler.setResult(new SAXResult(output));
+            input.fire(transformerHandler);
+
+            recordTransformers.offer(transformer);
+        } catch (final Throwable t) {
+            throwable = t;
+        }
+        return new TransformedRecord(output, storedErrors, throwable);
+    }
+
+    private void outputRecord(final PendingRecord pendingRecord) throws SAXException {
+        TransformedRecord record;
+        try {
+            record = pendingRecord.future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelPendingRecords();
+            throw new LoggedException(e.getMessage(), e);
+        } catch (final ExecutionException e) {
+            record = new TransformedRecord(null, null, e.getCause());
+        }
+
+        if (record.errors != null) {
+            record.errors.replay(errorReceiverProxy);
+        }
+        if (record.output != null) {
+            record.output.getEventList().fire(getFilter());
+        }
+
+        if (record.throwable != null) {
+            try {
+                final Throwable e = unwrapException(record.throwable);
+                Location location = getLocation(e);
+                if (location == null) {
+                    location = pendingRecord.location;
+                }
+
+                errorReceiverProxy.log(Severity.FATAL_ERROR, location, getElementId(), e.toString(), e);
+                cancelPendingRecords();
+                throw new LoggedException(e.getMessage(), e);
+
+            } finally {
+                // Make sure the document is closed off for downstream filters
+                // as we would in the serial case.
+                if (record.output == null || record.output.isOpen()) {
+                    super.endDocument();
+                }
+            }
+        }
+    }
+
+    private void cancelPendingRecords() {
+        for (final PendingRecord pendingRecord : pendingRecords) {
+            pendingRecord.future.cancel(true);
+        }
+        pendingRecords.clear();
+    }
+
     private Location getLocation(final Throwable e) {
         if (e instanceof TransformerException) {
             return locationFactory.create(((TransformerException) e).getLocator());
@@ -637,8 +804,86 @@ public class XSLTFilter extends AbstractXMLFilter implements SupportsCodeInjecti
         this.usePool = usePool;
     }
 
+    @PipelineProperty(description = "Advanced: The number of split records that can be transformed in parallel. Only use values greater than 1 if the XSLT does not depend on state from previous records. Ignored if the XSLT calls stroom functions.", defaultValue = "1")
+    public void setMaxParallelRecords(final int maxParallelRecords) {
+        this.maxParallelRecords = maxParallelRecords;
+    }
+
     @Override
     public void setInjectedCode(final String injectedCode) {
         this.injectedCode = injectedCode;
     }
+
+    private static class PendingRecord {
+        private final Location location;
+        private final Future<TransformedRecord> future;
+
+        PendingRecord(final Location location, final Future<TransformedRecord> future) {
+            this.location = location;
+            this.future = future;
+        }
+    }
+
+    private static class TransformedRecord {
+        private final RecordOutputBuilder output;
+        private final StoredErrorReceiver errors;
+        private final Throwable throwable;
+
+        TransformedRecord(final RecordOutputBuilder output, final StoredErrorReceiver errors,
+                          final Throwable throwable) {
+            this.output = output;
+            this.errors = errors;
+            this.throwable = throwable;
+        }
+    }
+
+    /**
+     * Records the output of a transformed record. The transformer's locator is
+     * not recorded as it is meaningless once the transformation has finished.
+     */
+    private static class RecordOutputBuilder extends SimpleEventListBuilder {
+        private boolean open;
+
+        @Override
+        public void setDocumentLocator(final Locator locator) {
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            open = true;
+            super.startDocument();
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            open = false;
+            super.endDocument();
+        }
+
+        boolean isOpen() {
+            return open;
+        }
+    }
+
+    /**
+     * Buffered records have no locator so all errors are reported against the
+     * location where the record started.
+     */
+    private static class RecordLocationFactory implements LocationFactory {
+        private final Location location;
+
+        RecordLocationFactory(final Location location) {
+            this.location = location;
+        }
+
+        @Override
+        public Location create(final int colNo, final int lineNo) {
+            return location;
+        }
+
+        @Override
+        public Location create() {
+            return location;
+        }
+    }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.pipeline.server.filter;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import stroom.task.server.GenericServerTask;
+import stroom.task.server.TaskCallback;
+import stroom.task.server.TaskManager;
+import stroom.task.server.ThreadPoolImpl;
+import stroom.util.config.PropertyUtil;
+import stroom.util.shared.Task;
+import stroom.util.shared.ThreadPool;
+import stroom.util.shared.VoidResult;
+import stroom.util.task.TaskScopeContextHolder;
+
+import javax.inject.Inject;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the transformation of split records for XSLT filters that transform
+ * records in parallel. Each record is executed by the task manager as a child
+ * of the current task so it is terminated along with the task and shares the
+ * task manager's threads.
+ */
+@Component
+public class XSLTRecordExecutor {
+    private final TaskManager taskManager;
+    private final ThreadPool threadPool;
+
+    @Inject
+    public XSLTRecordExecutor(final TaskManager taskManager,
+                              @Value("#{propertyConfigurer.getProperty('stroom.pipeline.xslt.parallelThreads')}") final String threadCount) {
+        int count = PropertyUtil.toInt(threadCount, 0);
+        if (count <= 0) {
+            count = Runtime.getRuntime().availableProcessors();
+        }
+        this.taskManager = taskManager;
+        this.threadPool = new ThreadPoolImpl("XSLT Record", 5, count, count);
+    }
+
+    public <T> Future<T> submit(final Callable<T> callable) {
+        Task<?> parentTask = null;
+        if (TaskScopeContextHolder.contextExists()) {
+            parentTask = TaskScopeContextHolder.getContext().getTask();
+        }
+
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final GenericServerTask task = GenericServerTask.create(parentTask, "Transform record", null);
+        task.setRunnable(() -> {
+            try {
+                future.complete(callable.call());
+            } catch (final Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+
+        // Terminate the task if the record is cancelled so that it is not run
+        // if it has not started yet.
+        future.whenComplete((result, t) -> {
+            if (future.isCancelled()) {
+                task.terminate();
+            }
+        });
+
+        taskManager.execAsync(task, new TaskCallback<VoidResult>() {
+            @Override
+            public void onSuccess(final VoidResult result) {
+            }
+
+            @Override
+            public void onFailure(final Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, threadPool);
+
+        return future;
+    }
+}
@@ -83,6 +83,14 @@ public class StroomXSLTFunctionLibrary {
         callsInUse.add(call);
     }
 
+    /**
+     * @return True if the compiled XSLT calls any stroom functions. These
+     * functions are bound to the state of the pipeline that configured them.
+     */
+    public boolean isInUse() {
+        return callsInUse.size() > 0;
+    }
+
     public void configure(final StroomBeanStore beanStore, final ErrorReceiver errorReceiver,
                           final LocationFactory locationFactory, final List<PipelineReference> pipelineReferences) {
         if (beanStore != null) {
@@ -611,6 +611,10 @@ public class DS3Parser extends AbstractParser {
                     debugLine.append(ModelStringUtil.formatCsv(ex.getTotalExecutionCount()));
                     debugLine.append(") ");
                     debugLine.append(ModelStringUtil.formatDurationString(ex.getTotalExecutionTime()));
+                    if (ex.getTotalSkipCount() > 0) {
+                        debugLine.append(" skipped ");
+                        debugLine.append(ModelStringUtil.formatCsv(ex.getTotalSkipCount()));
+                    }
                 }
                 LOGGER.debug(debugLine);
             };
@@ -25,5 +25,12 @@ public interface ExecutionProfiler {
 
     long getTotalExecutionCount();
 
+    /**
+     * @return The number of executions that were avoided by cheaper checks,
+     * e.g. a regex that was not run as the input did not contain a literal
+     * that the regex requires.
+     */
+    long getTotalSkipCount();
+
     String getExecutionString();
 }
@@ -27,30 +27,41 @@ public class Regex extends Expression implements ExecutionProfiler, Match {
     private static final StroomLogger LOGGER = StroomLogger.getLogger(Regex.class);
 
     private final Pattern pattern;
+    private final RegexPrefilter prefilter;
+    private CharSequence cs;
     private Matcher matcher;
 
     private long totalExecutionTime = 0;
     private long totalExecutionCount = 0;
+    private long totalSkipCount = 0;
     private long execStartTime = -1;
 
     Regex(final VarMap varMap, final RegexFactory factory) {
         super(varMap, factory);
         pattern = factory.getPattern();
+        prefilter = factory.getPrefilter();
     }
 
     @Override
     public void setInput(final CharSequence cs) {
-        if (LOGGER.isDebugEnabled()) {
-            long startTime = System.currentTimeMillis();
-            matcher = pattern.matcher(cs);
-            totalExecutionTime += System.currentTimeMillis() - startTime;
-        } else {
-            matcher = pattern.matcher(cs);
-        }
+        this.cs = cs;
     }
 
     @Override
     public Match match() {
+        // Don't bother running the regex if the input can't match.
+        if (prefilter != null && !prefilter.mayMatch(cs)) {
+            totalSkipCount++;
+            return null;
+        }
+
+        // Reuse the matcher rather than creating a new one for every input.
+        if (matcher == null) {
+            matcher = pattern.matcher(cs);
+        } else {
+            matcher.reset(cs);
+        }
+
         if (LOGGER.isDebugEnabled()) {
             totalExecutionCount++;
             execStartTime = System.currentTimeMillis();
@@ -78,6 +89,9 @@ public class Regex extends Expression implements ExecutionProfiler, Match {
 
     @Override
     public String getExecutionString() {
+        if (prefilter != null) {
+            return getNodeType().getName() + "'" + pattern.pattern() + "' [" + prefilter + "]";
+        }
         return getNodeType().getName() + "'" + pattern.pattern() + "'";
     }
 
@@ -86,6 +100,11 @@ public class Regex extends Expression implements ExecutionProfiler, Match {
         return totalExecutionCount;
     }
 
+    @Override
+    public long getTotalSkipCount() {
+        return totalSkipCount;
+    }
+
     @Override
     public long getTotalExecutionTime() {
         // If we are still mid execution then add the current execution time on.
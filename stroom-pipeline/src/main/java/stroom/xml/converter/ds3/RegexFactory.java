@@ -23,6 +23,7 @@ import stroom.xml.converter.ds3.ref.VarMap;
 
 public class RegexFactory extends ExpressionFactory {
     private final Pattern pattern;
+    private final RegexPrefilter prefilter;
 
     public RegexFactory(final NodeFactory parent, final String id, final String pattern) {
         this(parent, id, 0, -1, null, -1, pattern, 0);
@@ -33,8 +34,10 @@ public class RegexFactory extends ExpressionFactory {
         super(parent, id, minMatch, maxMatch, onlyMatch, advance);
         if (pattern != null) {
             this.pattern = Pattern.compile(pattern, flags);
+            this.prefilter = RegexPrefilter.create(pattern, flags);
         } else {
             this.pattern = null;
+            this.prefilter = null;
         }
 
         final StringBuilder sb = new StringBuilder();
@@ -61,6 +64,10 @@ public class RegexFactory extends ExpressionFactory {
         return pattern;
     }
 
+    RegexPrefilter getPrefilter() {
+        return prefilter;
+    }
+
     @Override
     public Regex newInstance(final VarMap varMap) {
         return new Regex(varMap, this);
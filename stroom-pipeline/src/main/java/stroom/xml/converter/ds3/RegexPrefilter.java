@@ -0,0 +1,367 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.xml.converter.ds3;
+
+import java.util.regex.Pattern;
+
+/**
+ * A cheap test that is performed before a regex is run to rule out input that
+ * the regex cannot possibly match. The test is derived from the literal text
+ * in the pattern when the configuration is compiled:
+ * <ul>
+ * <li>the literal text that an anchored pattern must start with</li>
+ * <li>the longest literal text that any match must contain</li>
+ * </ul>
+ * Only literal text outside of groups is used and patterns containing
+ * alternation, quoting or flags that change how characters compare are not
+ * pre-filtered, so a prefilter that rejects input always agrees with the
+ * regex.
+ */
+final class RegexPrefilter {
+    private static final int UNSUPPORTED_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.COMMENTS
+            | Pattern.CANON_EQ;
+
+    private final char[] prefix;
+    private final char[] literal;
+
+    private RegexPrefilter(final char[] prefix, final char[] literal) {
+        this.prefix = prefix;
+        this.literal = literal;
+    }
+
+    /**
+     * @return A prefilter for the pattern or null if no useful prefilter can
+     * be derived from it.
+     */
+    static RegexPrefilter create(final String pattern, final int flags) {
+        if (pattern == null || pattern.length() == 0 || (flags & UNSUPPORTED_FLAGS) != 0) {
+            return null;
+        }
+        if ((flags & Pattern.LITERAL) != 0) {
+            return new RegexPrefilter(null, pattern.toCharArray());
+        }
+        if (pattern.indexOf('|') != -1 || pattern.contains("\\Q") || hasInlineFlags(pattern)) {
+            return null;
+        }
+
+        final Parser parser = new Parser(pattern, (flags & Pattern.MULTILINE) == 0);
+        if (!parser.parse()) {
+            return null;
+        }
+
+        String prefix = parser.prefix;
+        String literal = parser.longest;
+        if (prefix != null && prefix.length() == 0) {
+            prefix = null;
+        }
+        if (prefix != null && literal.length() <= prefix.length()) {
+            // The prefix test is more specific so there is no point looking
+            // for a literal that is no longer.
+            literal = null;
+        } else if (literal.length() == 0) {
+            literal = null;
+        }
+
+        if (prefix == null && literal == null) {
+            return null;
+        }
+
+        return new RegexPrefilter(prefix == null ? null : prefix.toCharArray(),
+                literal == null ? null : literal.toCharArray());
+    }
+
+    private static boolean hasInlineFlags(final String pattern) {
+        int index = pattern.indexOf("(?");
+        while (index != -1) {
+            if (index + 2 < pattern.length()) {
+                final char c = pattern.charAt(index + 2);
+                if (Character.isLetter(c) || c == '-') {
+                    return true;
+                }
+            }
+            index = pattern.indexOf("(?", index + 2);
+        }
+        return false;
+    }
+
+    /**
+     * @return False if the regex cannot match the supplied input.
+     */
+    boolean mayMatch(final CharSequence cs) {
+        if (prefix != null && !startsWith(cs, prefix)) {
+            return false;
+        }
+        return literal == null || contains(cs, literal);
+    }
+
+    private static boolean startsWith(final CharSequence cs, final char[] chars) {
+        if (cs.length() < chars.length) {
+            return false;
+        }
+        for (int i = 0; i < chars.length; i++) {
+            if (cs.charAt(i) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(final CharSequence cs, final char[] chars) {
+        final char first = chars[0];
+        final int max = cs.length() - chars.length;
+        for (int i = 0; i <= max; i++) {
+            if (cs.charAt(i) == first) {
+                int j = 1;
+                while (j < chars.length && cs.charAt(i + j) == chars[j]) {
+                    j++;
+                }
+                if (j == chars.length) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        if (prefix != null) {
+            sb.append("prefix='");
+            sb.append(prefix);
+            sb.append("'");
+        }
+        if (literal != null) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append("literal='");
+            sb.append(literal);
+            sb.append("'");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Walks the top level of a pattern collecting runs of literal characters.
+     * Every character in a top level run must appear in a match as there is no
+     * alternation.
+     */
+    private static class Parser {
+        private final String pattern;
+        private final StringBuilder run = new StringBuilder();
+        private int pos;
+        private boolean atAnchor;
+
+        private String prefix;
+        private String longest = "";
+
+        Parser(final String pattern, final boolean allowAnchor) {
+            this.pattern = pattern;
+            if (allowAnchor && pattern.charAt(0) == '^') {
+                pos = 1;
+                atAnchor = true;
+            }
+        }
+
+        boolean parse() {
+            final int len = pattern.length();
+            while (pos < len) {
+                final char c = pattern.charAt(pos);
+                switch (c) {
+                    case '\\':
+                        if (pos + 1 >= len) {
+                            return false;
+                        }
+                        final char next = pattern.charAt(pos + 1);
+                        if (Character.isLetterOrDigit(next)) {
+                            endRun();
+                            pos = skipEscape(pos + 1);
+                        } else {
+                            run.append(next);
+                            pos += 2;
+                        }
+                        break;
+                    case '[':
+                        endRun();
+                        pos = skipClass(pos);
+                        break;
+                    case '(':
+                        endRun();
+                        pos = skipGroup(pos);
+                        break;
+                    case '*':
+                    case '?':
+                    case '{':
+                        // The preceding character is optional.
+                        if (run.length() > 0) {
+                            run.setLength(run.length() - 1);
+                        }
+                        endRun();
+                        pos = skipQuantifier(pos);
+                        break;
+                    case '+':
+                        endRun();
+                        pos = skipQuantifier(pos);
+                        break;
+                    case ')':
+                    case '.':
+                    case '^':
+                    case '$':
+                        endRun();
+                        pos++;
+                        break;
+                    default:
+                        run.append(c);
+                        pos++;
+                        break;
+                }
+
+                if (pos < 0) {
+                    return false;
+                }
+            }
+            endRun();
+            return true;
+        }
+
+        private void endRun() {
+            if (atAnchor) {
+                prefix = run.toString();
+                atAnchor = false;
+            }
+            if (run.length() > longest.length()) {
+                longest = run.toString();
+            }
+            run.setLength(0);
+        }
+
+        private int skipEscape(final int index) {
+            final char c = pattern.charAt(index);
+            int i = index + 1;
+            switch (c) {
+                case 'p':
+                case 'P':
+                case 'x':
+                    if (i < pattern.length() && pattern.charAt(i) == '{') {
+                        return skipTo(i, '}');
+                    }
+                    return c == 'x' ? i + 2 : i + 1;
+                case 'u':
+                    return i + 4;
+                case 'c':
+                    return i + 1;
+                case 'k':
+                    return skipTo(i, '>');
+                case '0':
+                    while (i < pattern.length() && i < index + 4 && pattern.charAt(i) >= '0' && pattern.charAt(i) <= '7') {
+                        i++;
+                    }
+                    return i;
+                default:
+                    while (Character.isDigit(c) && i < pattern.length() && Character.isDigit(pattern.charAt(i))) {
+                        i++;
+                    }
+                    return i;
+            }
+        }
+
+        private int skipClass(final int index) {
+            int i = index + 1;
+            int depth = 1;
+            // A closing bracket straight after the opening one (or after a
+            // negation) is a literal.
+            if (i < pattern.length() && pattern.charAt(i) == '^') {
+                i++;
+            }
+            if (i < pattern.length() && pattern.charAt(i) == ']') {
+                i++;
+            }
+            while (i < pattern.length()) {
+                final char c = pattern.charAt(i);
+                if (c == '\\') {
+                    i += 2;
+                } else if (c == '[') {
+                    depth++;
+                    i++;
+                } else if (c == ']') {
+                    depth--;
+                    i++;
+                    if (depth == 0) {
+                        return i;
+                    }
+                } else {
+                    i++;
+                }
+            }
+            return -1;
+        }
+
+        private int skipGroup(final int index) {
+            int i = index + 1;
+            int depth = 1;
+            while (i < pattern.length()) {
+                final char c = pattern.charAt(i);
+                if (c == '\\') {
+                    i += 2;
+                } else if (c == '[') {
+                    i = skipClass(i);
+                    if (i < 0) {
+                        return -1;
+                    }
+                } else if (c == '(') {
+                    depth++;
+                    i++;
+                } else if (c == ')') {
+                    depth--;
+                    i++;
+                    if (depth == 0) {
+                        return i;
+                    }
+                } else {
+                    i++;
+                }
+            }
+            return -1;
+        }
+
+        private int skipQuantifier(final int index) {
+            int i = index;
+            if (pattern.charAt(i) == '{') {
+                i = skipTo(i, '}');
+                if (i < 0) {
+                    return -1;
+                }
+            } else {
+                i++;
+            }
+            // Skip lazy and possessive modifiers.
+            if (i < pattern.length() && (pattern.charAt(i) == '?' || pattern.charAt(i) == '+')) {
+                i++;
+            }
+            return i;
+        }
+
+        private int skipTo(final int index, final char end) {
+            final int i = pattern.indexOf(end, index);
+            if (i < 0) {
+                return -1;
+            }
+            return i + 1;
+        }
+    }
+}
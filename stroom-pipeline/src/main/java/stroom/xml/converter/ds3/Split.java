@@ -23,6 +23,7 @@ public class Split extends Expression implements Match {
     private static final char SPACE = ' ';
 
     private final SplitFactory factory;
+    private final char[] firstChars;
     private CharSequence cs;
     private int[] start = new int[2];
     private int[] end = new int[2];
@@ -31,6 +32,7 @@ public class Split extends Expression implements Match {
     public Split(final VarMap varMap, final SplitFactory factory) {
         super(varMap, factory);
         this.factory = factory;
+        this.firstChars = factory.getFirstChars();
     }
 
     @Override
@@ -69,7 +71,11 @@ public class Split extends Expression implements Match {
         for (; outerEnd < cs.length();) {
             // See if we have a delimiter.
             if (!escape) {
-                if (!inContainer && isSubstring(cs, outerEnd, factory.getDelimiter())) {
+                if (firstChars != null && !isFirstChar(cs.charAt(outerEnd))) {
+                    // This character can't start any token so move on without
+                    // testing each token in turn.
+                    outerEnd++;
+                } else if (!inContainer && isSubstring(cs, outerEnd, factory.getDelimiter())) {
                     // We are at the end so don't need to add further content.
                     innerEnd = outerEnd;
                     outerEnd += factory.getDelimiter().length;
@@ -139,6 +145,15 @@ public class Split extends Expression implements Match {
         return end[0] > start[0];
     }
 
+    private boolean isFirstChar(final char c) {
+        for (final char firstChar : firstChars) {
+            if (c == firstChar) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     boolean isSubstring(final CharSequence cs, final int offset, final char[] sub) {
         if (sub == null) {
             return false;
@@ -27,6 +27,7 @@ public class SplitFactory extends ExpressionFactory {
     private final char[] escape;
     private final char[] containerStart;
     private final char[] containerEnd;
+    private final char[] firstChars;
 
     public SplitFactory(final NodeFactory parent, final String id, final String delimiter) {
         this(parent, id, 0, -1, null, delimiter, null, null, null);
@@ -56,6 +57,7 @@ public class SplitFactory extends ExpressionFactory {
         } else {
             this.containerEnd = null;
         }
+        this.firstChars = createFirstChars(this.delimiter, this.escape, this.containerStart, this.containerEnd);
 
         final StringBuilder sb = new StringBuilder();
         if (delimiter != null) {
@@ -81,6 +83,27 @@ public class SplitFactory extends ExpressionFactory {
         setAttributes(sb.toString());
     }
 
+    /**
+     * Get the distinct first characters of the delimiter, escape and container
+     * tokens so that a split can quickly skip characters that cannot start any
+     * of them. Returns null if any token is empty as an empty token matches
+     * everywhere.
+     */
+    private static char[] createFirstChars(final char[]... tokens) {
+        final StringBuilder sb = new StringBuilder();
+        for (final char[] token : tokens) {
+            if (token != null) {
+                if (token.length == 0) {
+                    return null;
+                }
+                if (sb.indexOf(String.valueOf(token[0])) == -1) {
+                    sb.append(token[0]);
+                }
+            }
+        }
+        return sb.toString().toCharArray();
+    }
+
     public char[] getDelimiter() {
         return delimiter;
     }
@@ -97,6 +120,10 @@ public class SplitFactory extends ExpressionFactory {
         return containerEnd;
     }
 
+    char[] getFirstChars() {
+        return firstChars;
+    }
+
     @Override
     public Split newInstance(final VarMap varMap) {
         return new Split(varMap, this);
@@ -50,6 +50,11 @@ public class TestExecutionProfilerTopN extends StroomUnitTest {
             return id;
         }
 
+        @Override
+        public long getTotalSkipCount() {
+            return 0;
+        }
+
     }
 
     @Test
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.xml.converter.ds3;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import stroom.util.test.StroomJUnit4ClassRunner;
+import stroom.util.test.StroomUnitTest;
+
+import java.util.regex.Pattern;
+
+@RunWith(StroomJUnit4ClassRunner.class)
+public class TestRegexPrefilter extends StroomUnitTest {
+    @Test
+    public void testNoPrefilter() {
+        Assert.assertNull(RegexPrefilter.create("(.*?)\\n", 0));
+        Assert.assertNull(RegexPrefilter.create("abc|def", 0));
+        Assert.assertNull(RegexPrefilter.create("abc", Pattern.CASE_INSENSITIVE));
+        Assert.assertNull(RegexPrefilter.create("(?i)abc", 0));
+        Assert.assertNull(RegexPrefilter.create("\\Qabc\\E", 0));
+        Assert.assertNull(RegexPrefilter.create("a?", 0));
+    }
+
+    @Test
+    public void testPrefix() {
+        final RegexPrefilter prefilter = RegexPrefilter.create("^Date: ([^,]*),", 0);
+        Assert.assertNotNull(prefilter);
+        Assert.assertTrue(prefilter.mayMatch("Date: 2017-01-01,"));
+        Assert.assertFalse(prefilter.mayMatch(" Date: 2017-01-01,"));
+        Assert.assertFalse(prefilter.mayMatch("Time: 12:00,"));
+    }
+
+    @Test
+    public void testLiteral() {
+        final RegexPrefilter prefilter = RegexPrefilter.create("\\d+ User=(\\w+) action\\.", 0);
+        Assert.assertNotNull(prefilter);
+        Assert.assertTrue(prefilter.mayMatch("123 User=bob action."));
+        Assert.assertFalse(prefilter.mayMatch("123 User=bob acted."));
+    }
+
+    @Test
+    public void testOptionalCharacters() {
+        // The 'c' and 'f' are optional so must not be required.
+        final RegexPrefilter prefilter = RegexPrefilter.create("abc?def*g", 0);
+        Assert.assertNotNull(prefilter);
+        Assert.assertTrue(prefilter.mayMatch("xxabdeg"));
+        Assert.assertTrue(Pattern.compile("abc?def*g").matcher("xxabdeg").find());
+        Assert.assertFalse(prefilter.mayMatch("xxadeg"));
+    }
+
+    @Test
+    public void testAgreesWithRegex() {
+        final String[] patterns = {"^([^,]*),", "a\\.b[.c]d(e)?f", "^\\x41bc", "x{2,3}yz", "(a)b+c", "^\\u0041\\.Z",
+                "k\\]l[]m]n", "\\p{Alpha}+:=", "([a-z]+)\\1!"};
+        final String[] inputs = {"", "abc,", ",", "a.bcdf", "a.b.dexf", "Abc", "xxyz", "xxxyz", "abbc", "bc",
+                "A.Z", "k]l]n", "abc:=", "abab!", "aa!"};
+        for (final String pattern : patterns) {
+            final RegexPrefilter prefilter = RegexPrefilter.create(pattern, 0);
+            if (prefilter != null) {
+                for (final String input : inputs) {
+                    if (Pattern.compile(pattern).matcher(input).find()) {
+                        Assert.assertTrue(pattern + " " + input, prefilter.mayMatch(input));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -16,6 +16,9 @@
 
 package stroom.query.shared;
 
+import stroom.util.shared.EqualsBuilder;
+import stroom.util.shared.HashCodeBuilder;
+
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
@@ -55,4 +58,27 @@ public class DateTimeFormatSettings implements FormatSettings {
     public boolean isDefault() {
         return pattern == null || pattern.equals(DEFAULT_PATTERN);
     }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof DateTimeFormatSettings)) {
+            return false;
+        }
+
+        final DateTimeFormatSettings dateTimeFormatSettings = (DateTimeFormatSettings) o;
+        final EqualsBuilder builder = new EqualsBuilder();
+        builder.append(pattern, dateTimeFormatSettings.pattern);
+        builder.append(timeZone, dateTimeFormatSettings.timeZone);
+        return builder.isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+        final HashCodeBuilder builder = new HashCodeBuilder();
+        builder.append(pattern);
+        builder.append(timeZone);
+        return builder.toHashCode();
+    }
 }
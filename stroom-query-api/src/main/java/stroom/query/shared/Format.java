@@ -16,6 +16,8 @@
 
 package stroom.query.shared;
 
+import stroom.util.shared.EqualsBuilder;
+import stroom.util.shared.HashCodeBuilder;
 import stroom.util.shared.HasDisplayValue;
 import stroom.util.shared.SharedObject;
 
@@ -77,6 +79,31 @@ public class Format implements SharedObject {
         this.wrap = wrap;
     }
 
+    @Override
+    public boolean equals(final Object o) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof Format)) {
+            return false;
+        }
+
+        final Format format = (Format) o;
+        final EqualsBuilder builder = new EqualsBuilder();
+        builder.append(type, format.type);
+        builder.append(settings, format.settings);
+        builder.append(wrap, format.wrap);
+        return builder.isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+        final HashCodeBuilder builder = new HashCodeBuilder();
+        builder.append(type);
+        builder.append(settings);
+        builder.append(wrap);
+        return builder.toHashCode();
+    }
+
     public enum Type implements HasDisplayValue {
         GENERAL("General"), NUMBER("Number"), DATE_TIME("Date Time"), TEXT("Text");
 
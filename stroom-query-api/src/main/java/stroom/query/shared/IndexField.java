@@ -34,8 +34,8 @@ import stroom.util.shared.SharedObject;
  * </p>
  */
 @XmlAccessorType(XmlAccessType.FIELD)
-@XmlType(name = "indexField", propOrder = { "analyzerType", "caseSensitive", "fieldName", "fieldType", "indexed",
-        "stored", "termPositions" })
+@XmlType(name = "indexField", propOrder = { "analyzerType", "caseSensitive", "docValues", "fieldName", "fieldType",
+        "indexed", "stored", "termPositions" })
 public class IndexField implements HasDisplayValue, Comparable<IndexField>, SharedObject {
     private static final long serialVersionUID = 3100770758821157580L;
 
@@ -74,6 +74,14 @@ public class IndexField implements HasDisplayValue, Comparable<IndexField>, Shar
     @XmlElement(name = "caseSensitive")
     private boolean caseSensitive = false;
 
+    /**
+     * Determines whether numeric and date values are also written as a column
+     * so that search can read them by document id without loading stored
+     * fields
+     */
+    @XmlElement(name = "docValues")
+    private boolean docValues = false;
+
     /**
      * Defines a list of the {@link Condition} values supported by this field,
      * can be null in which case a default set will be returned. Not persisted
@@ -211,6 +219,14 @@ public class IndexField implements HasDisplayValue, Comparable<IndexField>, Shar
         this.termPositions = termPositions;
     }
 
+    public boolean isDocValues() {
+        return docValues;
+    }
+
+    public void setDocValues(final boolean docValues) {
+        this.docValues = docValues;
+    }
+
     public List<Condition> getSupportedConditions() {
         if (supportedConditions == null) {
             return getDefaultConditions();
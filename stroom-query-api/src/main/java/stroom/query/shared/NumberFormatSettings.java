@@ -16,6 +16,9 @@
 
 package stroom.query.shared;
 
+import stroom.util.shared.EqualsBuilder;
+import stroom.util.shared.HashCodeBuilder;
+
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
@@ -57,4 +60,27 @@ public class NumberFormatSettings implements FormatSettings {
         return (decimalPlaces == null || decimalPlaces.equals(DEFAULT_DECIMAL_PLACES))
                 && (useSeparator == null || useSeparator.equals(DEFAULT_USE_SEPARATOR));
     }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof NumberFormatSettings)) {
+            return false;
+        }
+
+        final NumberFormatSettings numberFormatSettings = (NumberFormatSettings) o;
+        final EqualsBuilder builder = new EqualsBuilder();
+        builder.append(decimalPlaces, numberFormatSettings.decimalPlaces);
+        builder.append(useSeparator, numberFormatSettings.useSeparator);
+        return builder.isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+        final HashCodeBuilder builder = new HashCodeBuilder();
+        builder.append(decimalPlaces);
+        builder.append(useSeparator);
+        return builder.toHashCode();
+    }
 }
@@ -22,7 +22,7 @@ import stroom.util.shared.SharedObject;
 import javax.xml.bind.annotation.*;
 
 @XmlAccessorType(XmlAccessType.FIELD)
-@XmlType(name = "query", propOrder = {"dataSource", "expression", "limits", "automate"})
+@XmlType(name = "query", propOrder = {"dataSource", "expression", "limits", "automate", "sampling"})
 @XmlRootElement(name = "query")
 public class QueryData extends ComponentSettings implements SharedObject {
     private static final long serialVersionUID = -2530827581046882396L;
@@ -35,6 +35,8 @@ public class QueryData extends ComponentSettings implements SharedObject {
     private Limits limits;
     @XmlElement(name = "automate")
     private Automate automate;
+    @XmlElement(name = "sampling")
+    private Sampling sampling;
 
     public QueryData() {
         // Default constructor necessary for GWT serialisation.
@@ -71,4 +73,12 @@ public class QueryData extends ComponentSettings implements SharedObject {
     public void setAutomate(final Automate automate) {
         this.automate = automate;
     }
+
+    public Sampling getSampling() {
+        return sampling;
+    }
+
+    public void setSampling(final Sampling sampling) {
+        this.sampling = sampling;
+    }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.query.shared;
+
+import stroom.util.shared.SharedObject;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+
+/**
+ * Options for exploratory searches that don't need every result. A search can
+ * stop once it has found the first N results, searching the most recent time
+ * partitions first, and/or only look at a uniform sample of the matching
+ * events.
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(name = "sampling", propOrder = {"firstResults", "samplePercent"})
+@XmlRootElement(name = "sampling")
+public class Sampling extends ComponentSettings implements SharedObject {
+    private static final long serialVersionUID = -6173457811264839172L;
+
+    @XmlElement(name = "firstResults")
+    private Long firstResults;
+
+    @XmlElement(name = "samplePercent")
+    private Double samplePercent;
+
+    public Sampling() {
+        // Default constructor necessary for GWT serialisation.
+    }
+
+    public Sampling(final Long firstResults, final Double samplePercent) {
+        this.firstResults = firstResults;
+        this.samplePercent = samplePercent;
+    }
+
+    /**
+     * @return The number of results to stop searching after or null to find
+     * all results.
+     */
+    public Long getFirstResults() {
+        return firstResults;
+    }
+
+    public void setFirstResults(final Long firstResults) {
+        this.firstResults = firstResults;
+    }
+
+    /**
+     * @return The percentage of matching events to include or null to include
+     * all of them.
+     */
+    public Double getSamplePercent() {
+        return samplePercent;
+    }
+
+    public void setSamplePercent(final Double samplePercent) {
+        this.samplePercent = samplePercent;
+    }
+
+    public boolean isLimited() {
+        return (firstResults != null && firstResults > 0) || (samplePercent != null && samplePercent < 100);
+    }
+}
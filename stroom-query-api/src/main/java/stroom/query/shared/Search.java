@@ -34,6 +34,7 @@ public class Search implements SharedObject {
     private String dateTimeLocale;
     private boolean incremental;
     private boolean storeHistory;
+    private Sampling sampling;
 
     public Search() {
         // Default constructor necessary for GWT serialisation.
@@ -64,6 +65,18 @@ public class Search implements SharedObject {
         this.storeHistory = storeHistory;
     }
 
+    public Search(final DocRef dataSourceRef,
+                  final ExpressionOperator expression,
+                  final Map<String, ComponentSettings> componentSettingsMap,
+                  final Map<String, String> paramMap,
+                  final String dateTimeLocale,
+                  final boolean incremental,
+                  final boolean storeHistory,
+                  final Sampling sampling) {
+        this(dataSourceRef, expression, componentSettingsMap, paramMap, dateTimeLocale, incremental, storeHistory);
+        this.sampling = sampling;
+    }
+
     public DocRef getDataSourceRef() {
         return dataSourceRef;
     }
@@ -91,4 +104,12 @@ public class Search implements SharedObject {
     public boolean isStoreHistory() {
         return storeHistory;
     }
+
+    /**
+     * @return Options to limit the results of an exploratory search or null
+     * if all results are wanted.
+     */
+    public Sampling getSampling() {
+        return sampling;
+    }
 }
@@ -21,6 +21,8 @@ import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlType;
 
+import stroom.util.shared.EqualsBuilder;
+import stroom.util.shared.HashCodeBuilder;
 import stroom.util.shared.HasDisplayValue;
 import stroom.util.shared.SharedObject;
 
@@ -111,4 +113,31 @@ public class TimeZone implements SharedObject {
     public Integer getOffsetMinutes() {
         return offsetMinutes;
     }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof TimeZone)) {
+            return false;
+        }
+
+        final TimeZone timeZone = (TimeZone) o;
+        final EqualsBuilder builder = new EqualsBuilder();
+        builder.append(use, timeZone.use);
+        builder.append(id, timeZone.id);
+        builder.append(offsetHours, timeZone.offsetHours);
+        builder.append(offsetMinutes, timeZone.offsetMinutes);
+        return builder.isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+        final HashCodeBuilder builder = new HashCodeBuilder();
+        builder.append(use);
+        builder.append(id);
+        builder.append(offsetHours);
+        builder.append(offsetMinutes);
+        return builder.toHashCode();
+    }
 }
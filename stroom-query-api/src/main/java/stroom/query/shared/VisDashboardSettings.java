@@ -17,6 +17,8 @@
 package stroom.query.shared;
 
 import stroom.entity.shared.DocRef;
+import stroom.util.shared.EqualsBuilder;
+import stroom.util.shared.HashCodeBuilder;
 import stroom.util.shared.SharedObject;
 
 import javax.xml.bind.annotation.XmlAccessType;
@@ -74,4 +76,31 @@ public class VisDashboardSettings extends ComponentSettings implements SharedObj
     public void setTableSettings(final TableSettings tableSettings) {
         this.tableSettings = tableSettings;
     }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof VisDashboardSettings)) {
+            return false;
+        }
+
+        final VisDashboardSettings visDashboardSettings = (VisDashboardSettings) o;
+        final EqualsBuilder builder = new EqualsBuilder();
+        builder.append(tableId, visDashboardSettings.tableId);
+        builder.append(visualisation, visDashboardSettings.visualisation);
+        builder.append(json, visDashboardSettings.json);
+        builder.append(tableSettings, visDashboardSettings.tableSettings);
+        return builder.isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+        final HashCodeBuilder builder = new HashCodeBuilder();
+        builder.append(tableId);
+        builder.append(visualisation);
+        builder.append(json);
+        builder.append(tableSettings);
+        return builder.toHashCode();
+    }
 }
@@ -47,6 +47,7 @@ public class CompiledFields implements Iterable<CompiledField> {
             if (fieldIndexMap != null && field.getExpression() != null && field.getExpression().trim().length() > 0) {
                 try {
                     expression = expressionParser.parse(fieldIndexMap, field.getExpression());
+                    expression.compile();
                 } catch (final ParseException e) {
                     throw new RuntimeException(e.getMessage(), e);
                 }
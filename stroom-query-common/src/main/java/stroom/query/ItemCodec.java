@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.query;
+
+import stroom.dashboard.expression.Generator;
+import stroom.dashboard.expression.GeneratorCodec;
+import stroom.mapreduce.Pair;
+import stroom.mapreduce.UnsafePairQueue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Encodes the items of a table payload, see {@link GeneratorCodec}.
+ */
+public final class ItemCodec {
+    private static final int VERSION = 1;
+
+    private ItemCodec() {
+        // Utility class
+    }
+
+    public static byte[] encode(final UnsafePairQueue<String, Item> queue) {
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (final DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeByte(VERSION);
+                GeneratorCodec.writeVarLong(out, queue.size());
+                for (final Pair<String, Item> pair : queue) {
+                    final Item item = pair.getValue();
+                    GeneratorCodec.writeString(out, pair.getKey());
+                    GeneratorCodec.writeString(out, item.parentKey);
+                    GeneratorCodec.writeString(out, item.groupKey);
+                    GeneratorCodec.writeVarLong(out, item.depth);
+                    GeneratorCodec.writeVarLong(out, item.values.length);
+                    for (final Object value : item.values) {
+                        GeneratorCodec.write(out, (Generator) value);
+                    }
+                }
+            }
+            return bytes.toByteArray();
+        } catch (final IOException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    public static UnsafePairQueue<String, Item> decode(final byte[] data) {
+        try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            final int version = in.readByte();
+            if (version != VERSION) {
+                throw new RuntimeException("Unsupported table payload version " + version);
+            }
+
+            final UnsafePairQueue<String, Item> queue = new UnsafePairQueue<>();
+            final long size = GeneratorCodec.readVarLong(in);
+            for (long i = 0; i < size; i++) {
+                final String key = GeneratorCodec.readString(in);
+                final String parentKey = GeneratorCodec.readString(in);
+                final String groupKey = GeneratorCodec.readString(in);
+                final int depth = (int) GeneratorCodec.readVarLong(in);
+                final Generator[] values = new Generator[(int) GeneratorCodec.readVarLong(in)];
+                for (int j = 0; j < values.length; j++) {
+                    values[j] = GeneratorCodec.read(in);
+                }
+                queue.collect(key, new Item(parentKey, groupKey, values, depth));
+            }
+            return queue;
+        } catch (final IOException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+}
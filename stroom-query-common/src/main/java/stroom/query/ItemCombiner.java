@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.query;
+
+import stroom.mapreduce.OutputCollector;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Merges items with the same group key as they are collected so that only one
+ * partially aggregated item per key is passed on to the output collector. Items
+ * without a group key are passed straight through. Combined items are held
+ * until {@link #flush()} is called or the number of keys held reaches the
+ * maximum size.
+ */
+public class ItemCombiner implements OutputCollector<String, Item> {
+    private final ItemReducer itemReducer;
+    private final int maxSize;
+    private final OutputCollector<String, Item> outputCollector;
+    private final Map<String, Item> items = new HashMap<>();
+
+    public ItemCombiner(final int[] depths, final int maxDepth, final int maxSize,
+                        final OutputCollector<String, Item> outputCollector) {
+        this.itemReducer = new ItemReducer(depths, maxDepth);
+        this.maxSize = maxSize;
+        this.outputCollector = outputCollector;
+    }
+
+    @Override
+    public void collect(final String key, final Item value) {
+        if (key == null) {
+            outputCollector.collect(key, value);
+            return;
+        }
+
+        final Item existing = items.get(key);
+        if (existing == null) {
+            if (items.size() >= maxSize) {
+                flush();
+            }
+            items.put(key, value);
+        } else {
+            itemReducer.merge(existing, value);
+        }
+    }
+
+    public void flush() {
+        for (final Map.Entry<String, Item> entry : items.entrySet()) {
+            outputCollector.collect(entry.getKey(), entry.getValue());
+        }
+        items.clear();
+    }
+
+    public int size() {
+        return items.size();
+    }
+}
@@ -37,16 +37,23 @@ public class ItemReducer implements Reducer<String, Item, String, Item> {
                 dest = item;
 
             } else {
-                // Combine new values into original item values.
-                for (int i = 0; i < depths.length; i++) {
-                    dest.values[i] = combine(depths[i], maxDepth, dest.values[i], item.values[i], item.depth);
-                }
+                merge(dest, item);
             }
         }
 
         output.collect(key, dest);
     }
 
+    /**
+     * Combine the values of an item into the values of an item with the same
+     * key.
+     */
+    void merge(final Item dest, final Item item) {
+        for (int i = 0; i < depths.length; i++) {
+            dest.values[i] = combine(depths[i], maxDepth, dest.values[i], item.values[i], item.depth);
+        }
+    }
+
     private Object combine(final int groupDepth, final int maxDepth, final Object existingValue,
             final Object addedValue, final int depth) {
         Object output = null;
@@ -22,6 +22,7 @@ import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import stroom.query.shared.CoprocessorSettings;
+import stroom.query.shared.Sampling;
 import stroom.query.shared.TableSettings;
 import stroom.mapreduce.UnsafePairQueue;
 import stroom.util.shared.HasTerminate;
@@ -32,15 +33,24 @@ public class SearchResultHandler implements ResultHandler {
     private final AtomicBoolean complete = new AtomicBoolean();
 
     public SearchResultHandler(final CoprocessorMap coprocessorMap) {
+        this(coprocessorMap, null);
+    }
+
+    public SearchResultHandler(final CoprocessorMap coprocessorMap, final Sampling sampling) {
         this.coprocessorMap = coprocessorMap;
 
+        long resultLimit = 0;
+        if (sampling != null && sampling.getFirstResults() != null) {
+            resultLimit = Math.max(0, sampling.getFirstResults());
+        }
+
         for (final Entry<Integer, CoprocessorSettings> entry : coprocessorMap.getMap().entrySet()) {
             final CoprocessorSettings coprocessorSettings = entry.getValue();
             if (coprocessorSettings instanceof TableCoprocessorSettings) {
                 final TableCoprocessorSettings tableCoprocessorSettings = (TableCoprocessorSettings) entry.getValue();
                 final TableSettings tableSettings = tableCoprocessorSettings.getTableSettings();
                 handlerMap.put(entry.getKey(), new TablePayloadHandler(tableSettings.getFields(),
-                        tableSettings.showDetail(), tableSettings.getMaxResults()));
+                        tableSettings.showDetail(), tableSettings.getMaxResults(), resultLimit));
             }
         }
     }
@@ -19,18 +19,26 @@ package stroom.query;
 import stroom.mapreduce.UnsafePairQueue;
 
 public class TablePayload implements Payload {
-    private static final long serialVersionUID = 5271438218782010968L;
+    private static final long serialVersionUID = -3116203460516512460L;
 
-    private UnsafePairQueue<String, Item> queue;
+    // The items are encoded when the payload is created as it is much smaller
+    // and quicker to send than the graph of generators.
+    private byte[] data;
 
     public TablePayload() {
     }
 
     public TablePayload(final UnsafePairQueue<String, Item> queue) {
-        this.queue = queue;
+        this.data = ItemCodec.encode(queue);
     }
 
+    /**
+     * @return The items of the payload, decoded each time this is called.
+     */
     public UnsafePairQueue<String, Item> getQueue() {
-        return queue;
+        if (data == null) {
+            return null;
+        }
+        return ItemCodec.decode(data);
     }
 }
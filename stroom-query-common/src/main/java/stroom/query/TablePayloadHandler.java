@@ -129,6 +129,7 @@ public class TablePayloadHandler implements PayloadHandler {
     private final CompiledSorter compiledSorter;
     private final CompiledDepths compiledDepths;
     private final int[] storeTrimSizes;
+    private final long resultLimit;
     private volatile PairQueue<String, Item> currentQueue;
     private volatile ResultStore resultStore;
     private final AtomicLong totalResults = new AtomicLong();
@@ -137,9 +138,19 @@ public class TablePayloadHandler implements PayloadHandler {
     private final AtomicBoolean merging = new AtomicBoolean();
 
     public TablePayloadHandler(final List<Field> fields, final boolean showDetails, final int[] storeTrimSizes) {
+        this(fields, showDetails, storeTrimSizes, 0);
+    }
+
+    /**
+     * @param resultLimit The number of results that the search should stop
+     *                    after or 0 to receive all results.
+     */
+    public TablePayloadHandler(final List<Field> fields, final boolean showDetails, final int[] storeTrimSizes,
+                               final long resultLimit) {
         this.compiledSorter = new CompiledSorter(fields);
         this.compiledDepths = new CompiledDepths(fields, showDetails);
         this.storeTrimSizes = getStoreTrimSizes(storeTrimSizes);
+        this.resultLimit = resultLimit;
     }
 
     private int[] getStoreTrimSizes(final int[] storeTrimSizes) {
@@ -305,8 +316,16 @@ public class TablePayloadHandler implements PayloadHandler {
 
     @Override
     public boolean shouldTerminateSearch() {
-        if (!compiledSorter.hasSort() && !compiledDepths.hasGroupBy()) {
-            if (resultStore != null && resultStore.getTotalSize() >= storeTrimSizes[0]) {
+        if (!compiledDepths.hasGroupBy() && resultStore != null) {
+            // Without a sort the first results received are the ones that
+            // are kept so nothing more is needed once the store is full.
+            if (!compiledSorter.hasSort() && resultStore.getTotalSize() >= storeTrimSizes[0]) {
+                return true;
+            }
+
+            // If the search only wants the first results then whatever the
+            // sort we are done once we have received that many.
+            if (resultLimit > 0 && resultStore.getTotalSize() >= resultLimit) {
                 return true;
             }
         }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.query;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import stroom.dashboard.expression.FieldIndexMap;
+import stroom.mapreduce.UnsafePairQueue;
+import stroom.query.shared.Field;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding table payload items with {@link ItemCodec} against Java
+ * serialisation of the items. The encoded sizes are printed before the
+ * benchmarks run. This is not a unit test so isn't run by the build, run it
+ * with the main method.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TablePayloadBenchmark {
+    private static final String[] EXPRESSIONS = {
+            "${Type}",
+            "count()",
+            "sum(${Size})",
+            "max(${Size})",
+            "average(${Size})",
+            "countGroups()"};
+
+    @Param({"100", "10000"})
+    public int groups;
+
+    private UnsafePairQueue<String, Item> queue;
+    private byte[] encoded;
+    private byte[] serialised;
+
+    @Setup
+    public void setup() throws IOException {
+        final List<Field> fields = new ArrayList<>();
+        for (final String expression : EXPRESSIONS) {
+            final Field field = new Field(expression);
+            field.setExpression(expression);
+            fields.add(field);
+        }
+        fields.get(0).setGroup(0);
+
+        final FieldIndexMap fieldIndexMap = new FieldIndexMap(true);
+        final CompiledDepths compiledDepths = new CompiledDepths(fields, false);
+        final CompiledFields compiledFields = new CompiledFields(fields, fieldIndexMap, null);
+
+        queue = new UnsafePairQueue<>();
+        final ItemCombiner itemCombiner = new ItemCombiner(compiledDepths.getDepths(), compiledDepths.getMaxDepth(),
+                groups, queue);
+        final ItemMapper itemMapper = new ItemMapper(itemCombiner, compiledFields, compiledDepths.getMaxDepth(),
+                compiledDepths.getMaxGroupDepth());
+
+        final String[] values = new String[fieldIndexMap.size()];
+        final int typeIndex = fieldIndexMap.get("Type");
+        final int sizeIndex = fieldIndexMap.get("Size");
+        for (int i = 0; i < groups * 10; i++) {
+            values[typeIndex] = "type" + (i % groups);
+            values[sizeIndex] = String.valueOf(i);
+            itemMapper.collect(null, values.clone());
+        }
+        itemCombiner.flush();
+
+        encoded = ItemCodec.encode(queue);
+        serialised = serialise(queue);
+        System.out.println(groups + " groups: encoded " + encoded.length + " bytes, serialised "
+                + serialised.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return ItemCodec.encode(queue);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return ItemCodec.decode(encoded);
+    }
+
+    @Benchmark
+    public byte[] serialise() throws IOException {
+        return serialise(queue);
+    }
+
+    @Benchmark
+    public Object deserialise() throws IOException, ClassNotFoundException {
+        try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialised))) {
+            return in.readObject();
+        }
+    }
+
+    private byte[] serialise(final Object object) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(TablePayloadBenchmark.class.getSimpleName()).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.query;
+
+import org.junit.Assert;
+import org.junit.Test;
+import stroom.dashboard.expression.FieldIndexMap;
+import stroom.dashboard.expression.Generator;
+import stroom.mapreduce.Pair;
+import stroom.mapreduce.UnsafePairQueue;
+import stroom.query.shared.Field;
+import stroom.util.test.StroomUnitTest;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestItemCombiner extends StroomUnitTest {
+    @Test
+    public void testCountByGroup() {
+        final Field type = new Field("Type");
+        type.setExpression("${Type}");
+        type.setGroup(0);
+        final Field count = new Field("Count");
+        count.setExpression("count()");
+        final Field max = new Field("Max");
+        max.setExpression("max(${Size})");
+        final List<Field> fields = Arrays.asList(type, count, max);
+
+        final FieldIndexMap fieldIndexMap = new FieldIndexMap(true);
+        final CompiledDepths compiledDepths = new CompiledDepths(fields, false);
+        final CompiledFields compiledFields = new CompiledFields(fields, fieldIndexMap, null);
+
+        final UnsafePairQueue<String, Item> queue = new UnsafePairQueue<>();
+        final ItemCombiner itemCombiner = new ItemCombiner(compiledDepths.getDepths(), compiledDepths.getMaxDepth(),
+                2, queue);
+        final ItemMapper itemMapper = new ItemMapper(itemCombiner, compiledFields, compiledDepths.getMaxDepth(),
+                compiledDepths.getMaxGroupDepth());
+
+        final String[] values = new String[fieldIndexMap.size()];
+        final int typeIndex = fieldIndexMap.get("Type");
+        final int sizeIndex = fieldIndexMap.get("Size");
+        for (int i = 0; i < 10; i++) {
+            values[typeIndex] = i % 2 == 0 ? "even" : "odd";
+            values[sizeIndex] = String.valueOf(i);
+            itemMapper.collect(null, values.clone());
+        }
+
+        // Nothing is passed on until the combiner is flushed.
+        Assert.assertEquals(0, queue.size());
+        Assert.assertEquals(2, itemCombiner.size());
+
+        itemCombiner.flush();
+        Assert.assertEquals(2, queue.size());
+        Assert.assertEquals(0, itemCombiner.size());
+
+        final Map<String, Item> items = new HashMap<>();
+        for (final Pair<String, Item> pair : queue) {
+            items.put(pair.getKey(), pair.getValue());
+        }
+        assertItem(items.get("even"), 5D, 8D);
+        assertItem(items.get("odd"), 5D, 9D);
+    }
+
+    private void assertItem(final Item item, final double count, final double max) {
+        Assert.assertEquals(count, ((Generator) item.getValues()[1]).eval());
+        Assert.assertEquals(max, ((Generator) item.getValues()[2]).eval());
+    }
+}
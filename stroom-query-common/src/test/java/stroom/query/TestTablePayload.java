@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.query;
+
+import org.junit.Assert;
+import org.junit.Test;
+import stroom.dashboard.expression.FieldIndexMap;
+import stroom.dashboard.expression.Generator;
+import stroom.mapreduce.Pair;
+import stroom.mapreduce.UnsafePairQueue;
+import stroom.query.shared.Field;
+import stroom.util.test.StroomUnitTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestTablePayload extends StroomUnitTest {
+    // Fields that aren't grouped or aggregated have no value in grouped items.
+    private static final String[] EXPRESSIONS = {
+            "${Type}",
+            "count()",
+            "sum(${Size})",
+            "min(${Size})",
+            "max(${Size})",
+            "average(${Size})",
+            "countGroups()",
+            "max(${Size})-min(${Size})",
+            "concat(${Type}, '!')"};
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final UnsafePairQueue<String, Item> queue = createQueue(0, 10);
+
+        final TablePayload payload = serialise(new TablePayload(queue));
+        final Map<String, Item> items = getItems(payload.getQueue());
+
+        Assert.assertEquals(2, items.size());
+        assertItem(items.get("even"), "even", 5D, 20D, 0D, 8D, 4D, null, 8D, null);
+        assertItem(items.get("odd"), "odd", 5D, 25D, 1D, 9D, 5D, null, 8D, null);
+    }
+
+    @Test
+    public void testMergeDecoded() {
+        final Map<String, Item> items1 = getItems(new TablePayload(createQueue(0, 10)).getQueue());
+        final Map<String, Item> items2 = getItems(new TablePayload(createQueue(10, 20)).getQueue());
+
+        final Item even = items1.get("even");
+        final Object[] values = items2.get("even").getValues();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                ((Generator) even.getValues()[i]).merge((Generator) values[i]);
+            }
+        }
+        assertItem(even, "even", 10D, 90D, 0D, 18D, 9D, null, 18D, null);
+    }
+
+    @Test
+    public void testNoItems() {
+        Assert.assertEquals(0, new TablePayload(new UnsafePairQueue<>()).getQueue().size());
+    }
+
+    private UnsafePairQueue<String, Item> createQueue(final int from, final int to) {
+        final List<Field> fields = new ArrayList<>();
+        for (final String expression : EXPRESSIONS) {
+            final Field field = new Field(expression);
+            field.setExpression(expression);
+            fields.add(field);
+        }
+        fields.get(0).setGroup(0);
+
+        final FieldIndexMap fieldIndexMap = new FieldIndexMap(true);
+        final CompiledDepths compiledDepths = new CompiledDepths(fields, false);
+        final CompiledFields compiledFields = new CompiledFields(fields, fieldIndexMap, null);
+
+        final UnsafePairQueue<String, Item> queue = new UnsafePairQueue<>();
+        final ItemCombiner itemCombiner = new ItemCombiner(compiledDepths.getDepths(), compiledDepths.getMaxDepth(),
+                100, queue);
+        final ItemMapper itemMapper = new ItemMapper(itemCombiner, compiledFields, compiledDepths.getMaxDepth(),
+                compiledDepths.getMaxGroupDepth());
+
+        final String[] values = new String[fieldIndexMap.size()];
+        final int typeIndex = fieldIndexMap.get("Type");
+        final int sizeIndex = fieldIndexMap.get("Size");
+        for (int i = from; i < to; i++) {
+            values[typeIndex] = i % 2 == 0 ? "even" : "odd";
+            values[sizeIndex] = String.valueOf(i);
+            itemMapper.collect(null, values.clone());
+        }
+        itemCombiner.flush();
+        return queue;
+    }
+
+    private Map<String, Item> getItems(final UnsafePairQueue<String, Item> queue) {
+        final Map<String, Item> items = new HashMap<>();
+        for (final Pair<String, Item> pair : queue) {
+            items.put(pair.getKey(), pair.getValue());
+        }
+        return items;
+    }
+
+    private TablePayload serialise(final TablePayload payload) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(payload);
+        }
+        try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (TablePayload) in.readObject();
+        }
+    }
+
+    private void assertItem(final Item item, final Object... expected) {
+        Assert.assertEquals(expected.length, item.getValues().length);
+        for (int i = 0; i < expected.length; i++) {
+            final Generator generator = (Generator) item.getValues()[i];
+            Assert.assertEquals(EXPRESSIONS[i], expected[i], generator == null ? null : generator.eval());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.statistics.columnar;
+
+import java.io.Serializable;
+
+/**
+ * The aggregated count, sum, min and max of the events for a
+ * {@link ColumnarStatKey}. For count statistics only the count is used.
+ */
+class ColumnarStatAggregate implements Serializable {
+    private static final long serialVersionUID = 6209217845734951873L;
+
+    private long count;
+    private double value;
+    private double minValue;
+    private double maxValue;
+
+    ColumnarStatAggregate() {
+        this(0, 0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY);
+    }
+
+    ColumnarStatAggregate(final long count, final double value, final double minValue, final double maxValue) {
+        this.count = count;
+        this.value = value;
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+    }
+
+    void addCount(final long count) {
+        this.count += count;
+    }
+
+    void addValue(final double value) {
+        this.count++;
+        this.value += value;
+        this.minValue = Math.min(this.minValue, value);
+        this.maxValue = Math.max(this.maxValue, value);
+    }
+
+    void add(final ColumnarStatAggregate aggregate) {
+        this.count += aggregate.count;
+        this.value += aggregate.value;
+        this.minValue = Math.min(this.minValue, aggregate.minValue);
+        this.maxValue = Math.max(this.maxValue, aggregate.maxValue);
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    double getValue() {
+        return value;
+    }
+
+    double getMinValue() {
+        return minValue;
+    }
+
+    double getMaxValue() {
+        return maxValue;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + ",value=" + value + ",min=" + minValue + ",max=" + maxValue;
+    }
+}
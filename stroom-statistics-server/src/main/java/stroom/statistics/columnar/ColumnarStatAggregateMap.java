@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.statistics.columnar;
+
+import stroom.util.shared.SharedObject;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * The aggregated values of one partition, either buffered in memory or read
+ * back from its segment files. Also used to return the values read by each
+ * node of the cluster to the node performing a search.
+ */
+class ColumnarStatAggregateMap implements SharedObject {
+    private static final long serialVersionUID = -4381512960591282247L;
+
+    private final String[] tagNames;
+    private final Map<ColumnarStatKey, ColumnarStatAggregate> map = new HashMap<>();
+
+    ColumnarStatAggregateMap(final String[] tagNames) {
+        this.tagNames = tagNames;
+    }
+
+    /**
+     * @return The aggregate for the key, creating an empty one if there isn't
+     * one already.
+     */
+    ColumnarStatAggregate get(final ColumnarStatKey key) {
+        return map.computeIfAbsent(key, k -> new ColumnarStatAggregate());
+    }
+
+    void add(final ColumnarStatKey key, final ColumnarStatAggregate aggregate) {
+        final ColumnarStatAggregate existing = map.get(key);
+        if (existing == null) {
+            map.put(key, aggregate);
+        } else {
+            existing.add(aggregate);
+        }
+    }
+
+    /**
+     * Adds the entries of another map into this one. The other map may have
+     * been written when the statistic had different tags, in which case its
+     * tag values are moved to the position of the same tag in this map and
+     * any tags this map doesn't have are dropped.
+     */
+    void add(final ColumnarStatAggregateMap aggregateMap) {
+        if (Arrays.equals(tagNames, aggregateMap.tagNames)) {
+            for (final Entry<ColumnarStatKey, ColumnarStatAggregate> entry : aggregateMap.map.entrySet()) {
+                add(entry.getKey(), entry.getValue());
+            }
+        } else {
+            final int[] positions = new int[tagNames.length];
+            for (int i = 0; i < tagNames.length; i++) {
+                positions[i] = Arrays.asList(aggregateMap.tagNames).indexOf(tagNames[i]);
+            }
+
+            for (final Entry<ColumnarStatKey, ColumnarStatAggregate> entry : aggregateMap.map.entrySet()) {
+                final ColumnarStatKey key = entry.getKey();
+                final String[] tagValues = new String[tagNames.length];
+                for (int i = 0; i < positions.length; i++) {
+                    if (positions[i] != -1) {
+                        tagValues[i] = key.getTagValues()[positions[i]];
+                    }
+                }
+                add(new ColumnarStatKey(key.getTimeMs(), key.getMask(), tagValues), entry.getValue());
+            }
+        }
+    }
+
+    String[] getTagNames() {
+        return tagNames;
+    }
+
+    Set<Entry<ColumnarStatKey, ColumnarStatAggregate>> entrySet() {
+        return map.entrySet();
+    }
+
+    int size() {
+        return map.size();
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarStatAggregateMap size=" + size();
+    }
+}
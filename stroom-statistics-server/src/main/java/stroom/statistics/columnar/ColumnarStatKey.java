@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.statistics.columnar;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Identifies one aggregated value in a partition, i.e. a time bucket, the roll
+ * up mask and the tag values in the order of the partition's tag names. A null
+ * tag value means the tag was not present or had no value.
+ */
+class ColumnarStatKey implements Serializable {
+    private static final long serialVersionUID = -1926354890362316645L;
+
+    private final long timeMs;
+    private final short mask;
+    private final String[] tagValues;
+    private final int hashCode;
+
+    ColumnarStatKey(final long timeMs, final short mask, final String[] tagValues) {
+        this.timeMs = timeMs;
+        this.mask = mask;
+        this.tagValues = tagValues;
+
+        int code = Long.hashCode(timeMs);
+        code = code * 31 + mask;
+        code = code * 31 + Arrays.hashCode(tagValues);
+        hashCode = code;
+    }
+
+    long getTimeMs() {
+        return timeMs;
+    }
+
+    short getMask() {
+        return mask;
+    }
+
+    String[] getTagValues() {
+        return tagValues;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof ColumnarStatKey)) {
+            return false;
+        }
+
+        final ColumnarStatKey key = (ColumnarStatKey) o;
+        return timeMs == key.timeMs && mask == key.mask && Arrays.equals(tagValues, key.tagValues);
+    }
+
+    @Override
+    public String toString() {
+        return timeMs + ":" + mask + ":" + Arrays.toString(tagValues);
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.statistics.columnar;
+
+import stroom.statistics.shared.EventStoreTimeIntervalEnum;
+import stroom.streamstore.server.fs.FileSystemUtil;
+import stroom.util.logging.StroomLogger;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A directory holding the segment files for one statistic, precision and
+ * period of time, i.e. the row key interval of the precision. New values are
+ * only ever appended as new segment files and once there are too many
+ * segments they are compacted into one.
+ * <p>
+ * Partitions are only written by one thread at a time but may be read by
+ * searches at any time. Segments are written to a temporary file and moved
+ * into place so readers never see a partial segment, and a segment written by
+ * compaction is in place before the segments it replaces are deleted.
+ */
+class ColumnarStatPartition {
+    private static final StroomLogger LOGGER = StroomLogger.getLogger(ColumnarStatPartition.class);
+
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final int MAX_READ_ATTEMPTS = 3;
+
+    private final Path dir;
+
+    ColumnarStatPartition(final Path dir) {
+        this.dir = dir;
+    }
+
+    static ColumnarStatPartition create(final Path rootDir, final String statisticUuid,
+                                        final EventStoreTimeIntervalEnum interval, final long partitionStartMs) {
+        return new ColumnarStatPartition(rootDir.resolve(statisticUuid).resolve(interval.shortName())
+                .resolve(String.valueOf(partitionStartMs)));
+    }
+
+    /**
+     * Write the values to a new segment.
+     */
+    void append(final ColumnarStatAggregateMap aggregateMap) throws IOException {
+        Files.createDirectories(dir);
+        final long seq = getNextSeq();
+        write(seq, seq, aggregateMap);
+    }
+
+    /**
+     * Merge all of the segments into one if there are more than the maximum.
+     *
+     * @return True if the segments were compacted.
+     */
+    boolean compact(final int maxSegments) throws IOException {
+        final List<ColumnarStatSegment> segments = getSegments();
+        if (segments.size() <= maxSegments) {
+            return false;
+        }
+
+        // Use the tags of the newest segment.
+        final ColumnarStatSegment newest = segments.get(segments.size() - 1);
+        final ColumnarStatAggregateMap aggregateMap = new ColumnarStatAggregateMap(
+                newest.getTagNames());
+        long firstSeq = Long.MAX_VALUE;
+        for (final ColumnarStatSegment segment : segments) {
+            aggregateMap.add(segment.read());
+            firstSeq = Math.min(firstSeq, segment.getFirstSeq());
+        }
+
+        final ColumnarStatSegment compacted = write(firstSeq, getNextSeq(), aggregateMap);
+        LOGGER.debug("compact() - Compacted %s segments into %s", segments.size(), compacted);
+
+        // The compacted segment is in place so the old ones can go.
+        for (final Path file : listFiles(ColumnarStatSegment.EXTENSION)) {
+            final long seq = getSeq(file);
+            if (seq >= compacted.getFirstSeq() && seq < compacted.getSeq()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read all of the values in the time range.
+     */
+    ColumnarStatAggregateMap read(final String[] tagNames, final long fromMs, final long toMs) throws IOException {
+        return read(tagNames, fromMs, toMs, null);
+    }
+
+    /**
+     * Read the values in the time range with the roll up mask, or all masks if
+     * the mask is null.
+     */
+    ColumnarStatAggregateMap read(final String[] tagNames, final long fromMs, final long toMs, final Short mask)
+            throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                final ColumnarStatAggregateMap aggregateMap = new ColumnarStatAggregateMap(tagNames);
+                for (final ColumnarStatSegment segment : getSegments()) {
+                    if (segment.overlaps(fromMs, toMs)) {
+                        aggregateMap.add(segment.read(fromMs, toMs, mask));
+                    }
+                }
+                return aggregateMap;
+            } catch (final NoSuchFileException e) {
+                // The segment has been compacted since we listed the
+                // directory so try again.
+                if (attempt == MAX_READ_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the values of a tag that contain the partial value, or all values if
+     * the partial value is null, to the supplied set.
+     */
+    void readTagValues(final String tagName, final String partialValue, final Set<String> tagValues)
+            throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                for (final ColumnarStatSegment segment : getSegments()) {
+                    segment.readTagValues(tagName, partialValue, tagValues);
+                }
+                return;
+            } catch (final NoSuchFileException e) {
+                // The segment has been compacted since we listed the
+                // directory so try again.
+                if (attempt == MAX_READ_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The segments that hold the current values of the partition,
+     * i.e. not those that have been compacted but not yet deleted, oldest
+     * first.
+     */
+    List<ColumnarStatSegment> getSegments() throws IOException {
+        final List<ColumnarStatSegment> all = new ArrayList<>();
+        for (final Path file : listFiles(ColumnarStatSegment.EXTENSION)) {
+            all.add(ColumnarStatSegment.readHeader(file));
+        }
+
+        final List<ColumnarStatSegment> segments = new ArrayList<>();
+        for (final ColumnarStatSegment segment : all) {
+            boolean covered = false;
+            for (final ColumnarStatSegment other : all) {
+                if (other.covers(segment)) {
+                    covered = true;
+                    break;
+                }
+            }
+            if (!covered) {
+                segments.add(segment);
+            }
+        }
+        segments.sort((s1, s2) -> Long.compare(s1.getSeq(), s2.getSeq()));
+        return segments;
+    }
+
+    Path getDir() {
+        return dir;
+    }
+
+    @Override
+    public int hashCode() {
+        return dir.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof ColumnarStatPartition)) {
+            return false;
+        }
+        return dir.equals(((ColumnarStatPartition) o).dir);
+    }
+
+    @Override
+    public String toString() {
+        return dir.toString();
+    }
+
+    /**
+     * Delete the partitions of all statistics that end before the supplied
+     * time.
+     *
+     * @return The number of partitions deleted.
+     */
+    static int deleteOlderThan(final Path rootDir, final long timeMs) throws IOException {
+        int count = 0;
+        if (Files.isDirectory(rootDir)) {
+            for (final Path statisticDir : list(rootDir)) {
+                for (final Path intervalDir : list(statisticDir)) {
+                    final EventStoreTimeIntervalEnum interval = EventStoreTimeIntervalEnum
+                            .fromShortName(intervalDir.getFileName().toString());
+                    if (interval != null) {
+                        for (final Path partitionDir : list(intervalDir)) {
+                            try {
+                                final long partitionStartMs = Long.parseLong(partitionDir.getFileName().toString());
+                                if (partitionStartMs + interval.rowKeyInterval() <= timeMs) {
+                                    FileSystemUtil.deleteDirectory(partitionDir.toFile());
+                                    count++;
+                                }
+                            } catch (final NumberFormatException e) {
+                                LOGGER.warn("deleteOlderThan() - Unexpected directory %s", partitionDir);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Add the values of a tag held by any statistic that contain the partial
+     * value, or all values if the partial value is null, to the supplied set.
+     * Every value is written to the day interval whatever the precision of the
+     * statistic so only the day partitions are read.
+     */
+    static void readTagValues(final Path rootDir, final String tagName, final String partialValue,
+                              final Set<String> tagValues) throws IOException {
+        if (Files.isDirectory(rootDir)) {
+            for (final Path statisticDir : list(rootDir)) {
+                final Path intervalDir = statisticDir.resolve(EventStoreTimeIntervalEnum.DAY.shortName());
+                if (Files.isDirectory(intervalDir)) {
+                    for (final Path partitionDir : list(intervalDir)) {
+                        new ColumnarStatPartition(partitionDir).readTagValues(tagName, partialValue, tagValues);
+                    }
+                }
+            }
+        }
+    }
+
+    private ColumnarStatSegment write(final long firstSeq, final long seq,
+                                      final ColumnarStatAggregateMap aggregateMap) throws IOException {
+        final String fileName = ColumnarStatSegment.getFileName(seq);
+        final Path tempFile = dir.resolve(fileName + TEMP_EXTENSION);
+        try {
+            ColumnarStatSegment.write(tempFile, firstSeq, seq, aggregateMap);
+            final Path file = dir.resolve(fileName);
+            Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+            return ColumnarStatSegment.readHeader(file);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private long getNextSeq() throws IOException {
+        long seq = 0;
+        for (final Path file : listFiles(ColumnarStatSegment.EXTENSION)) {
+            seq = Math.max(seq, getSeq(file));
+        }
+        return seq + 1;
+    }
+
+    private long getSeq(final Path file) {
+        final String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - ColumnarStatSegment.EXTENSION.length()));
+    }
+
+    private List<Path> listFiles(final String extension) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(dir)) {
+            try (final DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + extension)) {
+                stream.forEach(files::add);
+            }
+        }
+        return files;
+    }
+
+    private static List<Path> list(final Path dir) throws IOException {
+        final List<Path> dirs = new ArrayList<>();
+        try (final DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (final Path path : stream) {
+                if (Files.isDirectory(path)) {
+                    dirs.add(path);
+                }
+            }
+        }
+        return dirs;
+    }
+}
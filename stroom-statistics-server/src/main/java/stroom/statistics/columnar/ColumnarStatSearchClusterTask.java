@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.statistics.columnar;
+
+import stroom.statistics.shared.EventStoreTimeIntervalEnum;
+import stroom.task.cluster.ClusterTask;
+
+/**
+ * Reads the values of a statistic held in the local partitions of a node so
+ * they can be merged with those of the other nodes.
+ */
+class ColumnarStatSearchClusterTask extends ClusterTask<ColumnarStatAggregateMap> {
+    private static final long serialVersionUID = 3118906232498317722L;
+
+    private final String statisticUuid;
+    private final EventStoreTimeIntervalEnum interval;
+    private final String[] tagNames;
+    private final long fromMs;
+    private final long toMs;
+    private final short mask;
+
+    ColumnarStatSearchClusterTask(final String userToken, final String statisticUuid,
+                                  final EventStoreTimeIntervalEnum interval, final String[] tagNames,
+                                  final long fromMs, final long toMs, final short mask) {
+        super(userToken, "Columnar Statistics Search");
+        this.statisticUuid = statisticUuid;
+        this.interval = interval;
+        this.tagNames = tagNames;
+        this.fromMs = fromMs;
+        this.toMs = toMs;
+        this.mask = mask;
+    }
+
+    String getStatisticUuid() {
+        return statisticUuid;
+    }
+
+    EventStoreTimeIntervalEnum getInterval() {
+        return interval;
+    }
+
+    String[] getTagNames() {
+        return tagNames;
+    }
+
+    long getFromMs() {
+        return fromMs;
+    }
+
+    long getToMs() {
+        return toMs;
+    }
+
+    short getMask() {
+        return mask;
+    }
+}
@@ -0,0 +1,446 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.statistics.columnar;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * An immutable file holding the aggregated values of a partition in columnar
+ * form. The file starts with an uncompressed header giving the range of
+ * segment sequence numbers it holds the data of, the time range of its values
+ * and the tag names. The header is followed by a deflate compressed block for
+ * the dictionary of tag values and one for each column: times (delta
+ * encoded), counts, values, min values, max values, roll up masks and the
+ * dictionary ids of each tag's values.
+ * <p>
+ * A segment written by compaction holds the data of all the segments from
+ * its first sequence number up to, but not including, its own so readers
+ * ignore those segments until they are deleted.
+ */
+class ColumnarStatSegment {
+    static final String EXTENSION = ".seg";
+
+    private static final int MAGIC = 0x53544353;
+    private static final byte VERSION = 1;
+    // Times, counts, values, min values, max values and masks.
+    private static final int NON_TAG_COLUMNS = 6;
+
+    private final Path file;
+    private final long firstSeq;
+    private final long seq;
+    private final int rowCount;
+    private final long minTimeMs;
+    private final long maxTimeMs;
+    private final String[] tagNames;
+
+    private ColumnarStatSegment(final Path file, final long firstSeq, final long seq, final int rowCount,
+                                final long minTimeMs, final long maxTimeMs, final String[] tagNames) {
+        this.file = file;
+        this.firstSeq = firstSeq;
+        this.seq = seq;
+        this.rowCount = rowCount;
+        this.minTimeMs = minTimeMs;
+        this.maxTimeMs = maxTimeMs;
+        this.tagNames = tagNames;
+    }
+
+    static String getFileName(final long seq) {
+        return String.format("%019d", seq) + EXTENSION;
+    }
+
+    /**
+     * Write the map to a new segment file.
+     */
+    static ColumnarStatSegment write(final Path file, final long firstSeq, final long seq,
+                                     final ColumnarStatAggregateMap aggregateMap) throws IOException {
+        final List<Entry<ColumnarStatKey, ColumnarStatAggregate>> rows = new ArrayList<>(aggregateMap.entrySet());
+        rows.sort(Comparator.comparingLong((Entry<ColumnarStatKey, ColumnarStatAggregate> e) -> e.getKey().getTimeMs())
+                .thenComparingInt(e -> e.getKey().getMask()));
+
+        final String[] tagNames = aggregateMap.getTagNames();
+        final long minTimeMs = rows.isEmpty() ? 0 : rows.get(0).getKey().getTimeMs();
+        final long maxTimeMs = rows.isEmpty() ? 0 : rows.get(rows.size() - 1).getKey().getTimeMs();
+
+        // Give every distinct tag value an id, 0 is used for null.
+        final Map<String, Integer> dictionary = new HashMap<>();
+        final List<String> dictionaryValues = new ArrayList<>();
+
+        final ColumnWriter times = new ColumnWriter();
+        final ColumnWriter counts = new ColumnWriter();
+        final ColumnWriter values = new ColumnWriter();
+        final ColumnWriter minValues = new ColumnWriter();
+        final ColumnWriter maxValues = new ColumnWriter();
+        final ColumnWriter masks = new ColumnWriter();
+        final ColumnWriter[] tags = new ColumnWriter[tagNames.length];
+        for (int i = 0; i < tags.length; i++) {
+            tags[i] = new ColumnWriter();
+        }
+
+        long lastTimeMs = 0;
+        for (final Entry<ColumnarStatKey, ColumnarStatAggregate> row : rows) {
+            final ColumnarStatKey key = row.getKey();
+            final ColumnarStatAggregate aggregate = row.getValue();
+
+            times.writeVarLong(key.getTimeMs() - lastTimeMs);
+            lastTimeMs = key.getTimeMs();
+            counts.writeVarLong(aggregate.getCount());
+            values.writeDouble(aggregate.getValue());
+            minValues.writeDouble(aggregate.getMinValue());
+            maxValues.writeDouble(aggregate.getMaxValue());
+            masks.writeVarLong(key.getMask());
+
+            for (int i = 0; i < tags.length; i++) {
+                final String value = key.getTagValues()[i];
+                int id = 0;
+                if (value != null) {
+                    id = dictionary.computeIfAbsent(value, k -> {
+                        dictionaryValues.add(k);
+                        return dictionaryValues.size();
+                    });
+                }
+                tags[i].writeVarLong(id);
+            }
+        }
+
+        final ColumnWriter dictionaryColumn = new ColumnWriter();
+        dictionaryColumn.writeVarLong(dictionaryValues.size());
+        for (final String value : dictionaryValues) {
+            dictionaryColumn.writeString(value);
+        }
+
+        try (final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(firstSeq);
+            out.writeLong(seq);
+            out.writeInt(rows.size());
+            out.writeLong(minTimeMs);
+            out.writeLong(maxTimeMs);
+            out.writeInt(tagNames.length);
+            for (final String tagName : tagNames) {
+                writeString(out, tagName);
+            }
+
+            dictionaryColumn.writeTo(out);
+            times.writeTo(out);
+            counts.writeTo(out);
+            values.writeTo(out);
+            minValues.writeTo(out);
+            maxValues.writeTo(out);
+            masks.writeTo(out);
+            for (final ColumnWriter tag : tags) {
+                tag.writeTo(out);
+            }
+        }
+
+        return new ColumnarStatSegment(file, firstSeq, seq, rows.size(), minTimeMs, maxTimeMs, tagNames);
+    }
+
+    /**
+     * Read just the header of a segment file.
+     */
+    static ColumnarStatSegment readHeader(final Path file) throws IOException {
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return readHeader(file, in);
+        }
+    }
+
+    private static ColumnarStatSegment readHeader(final Path file, final DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a statistics segment file " + file);
+        }
+        final byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported statistics segment version " + version + " in " + file);
+        }
+
+        final long firstSeq = in.readLong();
+        final long seq = in.readLong();
+        final int rowCount = in.readInt();
+        final long minTimeMs = in.readLong();
+        final long maxTimeMs = in.readLong();
+        final String[] tagNames = new String[in.readInt()];
+        for (int i = 0; i < tagNames.length; i++) {
+            tagNames[i] = readString(in);
+        }
+        return new ColumnarStatSegment(file, firstSeq, seq, rowCount, minTimeMs, maxTimeMs, tagNames);
+    }
+
+    /**
+     * Read all of the values held in the segment.
+     */
+    ColumnarStatAggregateMap read() throws IOException {
+        return read(Long.MIN_VALUE, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Read the values held in the segment for a time range and, if supplied,
+     * a roll up mask. Other rows are skipped without being added to the map.
+     */
+    ColumnarStatAggregateMap read(final long fromMs, final long toMs, final Short mask) throws IOException {
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            // Skip over the header.
+            readHeader(file, in);
+
+            final DataInputStream dictionaryColumn = readColumn(in);
+            final String[] dictionary = new String[(int) readVarLong(dictionaryColumn) + 1];
+            for (int i = 1; i < dictionary.length; i++) {
+                dictionary[i] = readString(dictionaryColumn);
+            }
+
+            final DataInputStream times = readColumn(in);
+            final DataInputStream counts = readColumn(in);
+            final DataInputStream values = readColumn(in);
+            final DataInputStream minValues = readColumn(in);
+            final DataInputStream maxValues = readColumn(in);
+            final DataInputStream masks = readColumn(in);
+            final DataInputStream[] tags = new DataInputStream[tagNames.length];
+            for (int i = 0; i < tags.length; i++) {
+                tags[i] = readColumn(in);
+            }
+
+            final ColumnarStatAggregateMap aggregateMap = new ColumnarStatAggregateMap(tagNames);
+            long timeMs = 0;
+            for (int row = 0; row < rowCount; row++) {
+                timeMs += readVarLong(times);
+                final ColumnarStatAggregate aggregate = new ColumnarStatAggregate(readVarLong(counts),
+                        values.readDouble(), minValues.readDouble(), maxValues.readDouble());
+                final short rowMask = (short) readVarLong(masks);
+                final String[] tagValues = new String[tags.length];
+                for (int i = 0; i < tags.length; i++) {
+                    tagValues[i] = dictionary[(int) readVarLong(tags[i])];
+                }
+                if (timeMs >= fromMs && timeMs < toMs && (mask == null || mask == rowMask)) {
+                    aggregateMap.add(new ColumnarStatKey(timeMs, rowMask, tagValues), aggregate);
+                }
+            }
+            return aggregateMap;
+        }
+    }
+
+    /**
+     * Add the values of a tag that contain the partial value, or all values if
+     * the partial value is null, to the supplied set. Only the dictionary and
+     * the column of the tag are decompressed.
+     */
+    void readTagValues(final String tagName, final String partialValue, final Set<String> tagValues)
+            throws IOException {
+        final int position = Arrays.asList(tagNames).indexOf(tagName);
+        if (position == -1) {
+            return;
+        }
+
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            // Skip over the header.
+            readHeader(file, in);
+
+            final DataInputStream dictionaryColumn = readColumn(in);
+            final String[] dictionary = new String[(int) readVarLong(dictionaryColumn) + 1];
+            for (int i = 1; i < dictionary.length; i++) {
+                dictionary[i] = readString(dictionaryColumn);
+            }
+
+            // Skip the times, counts, values, min values, max values, masks
+            // and the columns of the tags before this one.
+            for (int i = 0; i < NON_TAG_COLUMNS + position; i++) {
+                skipColumn(in);
+            }
+
+            final DataInputStream tag = readColumn(in);
+            for (int row = 0; row < rowCount; row++) {
+                final String value = dictionary[(int) readVarLong(tag)];
+                if (value != null && (partialValue == null || value.contains(partialValue))) {
+                    tagValues.add(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return True if this segment was written by compaction and holds the
+     * data of the other segment.
+     */
+    boolean covers(final ColumnarStatSegment segment) {
+        return firstSeq <= segment.seq && segment.seq < seq;
+    }
+
+    /**
+     * @return True if the segment might hold values in the time range.
+     */
+    boolean overlaps(final long fromMs, final long toMs) {
+        return rowCount > 0 && minTimeMs < toMs && maxTimeMs >= fromMs;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    long getFirstSeq() {
+        return firstSeq;
+    }
+
+    long getSeq() {
+        return seq;
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    String[] getTagNames() {
+        return tagNames;
+    }
+
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+
+    private static void skipColumn(final DataInputStream in) throws IOException {
+        // Skip the raw length.
+        in.readInt();
+        final int length = in.readInt();
+        if (in.skipBytes(length) != length) {
+            throw new IOException("Truncated statistics segment column");
+        }
+    }
+
+    private static DataInputStream readColumn(final DataInputStream in) throws IOException {
+        final byte[] raw = new byte[in.readInt()];
+        final byte[] compressed = new byte[in.readInt()];
+        in.readFully(compressed);
+
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                length += inflater.inflate(raw, length, raw.length - length);
+                if (length < raw.length && inflater.needsInput()) {
+                    throw new IOException("Truncated statistics segment column");
+                }
+            }
+        } catch (final DataFormatException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+        return new DataInputStream(new ByteArrayInputStream(raw));
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarLong(final OutputStream out, final long value) throws IOException {
+        long v = value;
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long readVarLong(final InputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.read();
+            if (b == -1) {
+                throw new IOException("Unexpected end of statistics segment column");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Buffers the values of a column so it can be compressed as one block.
+     */
+    private static class ColumnWriter {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        void writeVarLong(final long value) throws IOException {
+            ColumnarStatSegment.writeVarLong(out, value);
+        }
+
+        void writeDouble(final double value) throws IOException {
+            out.writeDouble(value);
+        }
+
+        void writeString(final String value) throws IOException {
+            ColumnarStatSegment.writeString(out, value);
+        }
+
+        void writeTo(final DataOutputStream target) throws IOException {
+            out.flush();
+            final byte[] raw = bytes.toByteArray();
+
+            final Deflater deflater = new Deflater();
+            try {
+                deflater.setInput(raw);
+                deflater.finish();
+                final ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 16);
+                final byte[] buffer = new byte[8192];
+                while (!deflater.finished()) {
+                    final int length = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, length);
+                }
+
+                target.writeInt(raw.length);
+                target.writeInt(compressed.size());
+                compressed.writeTo(target);
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+}
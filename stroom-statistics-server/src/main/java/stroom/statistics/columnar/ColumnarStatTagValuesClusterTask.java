@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.statistics.columnar;
+
+import stroom.task.cluster.ClusterTask;
+import stroom.util.shared.SharedList;
+import stroom.util.shared.SharedString;
+
+/**
+ * Finds the values of a tag held in the local partitions of a node.
+ */
+class ColumnarStatTagValuesClusterTask extends ClusterTask<SharedList<SharedString>> {
+    private static final long serialVersionUID = -7045190214683377815L;
+
+    private final String tagName;
+    private final String partialValue;
+
+    ColumnarStatTagValuesClusterTask(final String userToken, final String tagName, final String partialValue) {
+        super(userToken, "Columnar Statistics Tag Values");
+        this.tagName = tagName;
+        this.partialValue = partialValue;
+    }
+
+    String getTagName() {
+        return tagName;
+    }
+
+    String getPartialValue() {
+        return partialValue;
+    }
+}
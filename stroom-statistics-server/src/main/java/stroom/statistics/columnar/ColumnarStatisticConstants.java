@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.statistics.columnar;
+
+public interface ColumnarStatisticConstants {
+    /**
+     * The local directory that holds the statistic files of this node. There
+     * is no default as it must be somewhere persistent.
+     */
+    String PROP_KEY_DIR = "stroom.statistics.columnar.dir";
+
+    /**
+     * The number of aggregated values to hold in memory before they are
+     * written to disk
+     */
+    String PROP_KEY_MAX_BUFFERED_VALUES = "stroom.statistics.columnar.maxBufferedValues";
+
+    /**
+     * The number of segment files a partition can have before they are
+     * compacted into one
+     */
+    String PROP_KEY_MAX_SEGMENTS = "stroom.statistics.columnar.maxSegmentsPerPartition";
+
+    /**
+     * The age after which partitions are deleted, blank to keep everything
+     */
+    String PROP_KEY_RETENTION_AGE = "stroom.statistics.columnar.retentionAge";
+
+    int DEFAULT_MAX_BUFFERED_VALUES = 1000000;
+    int DEFAULT_MAX_SEGMENTS = 10;
+}
@@ -0,0 +1,502 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.statistics.columnar;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import stroom.jobsystem.server.JobTrackedSchedule;
+import stroom.node.server.StroomPropertyService;
+import stroom.node.shared.Node;
+import stroom.query.shared.Search;
+import stroom.statistics.common.FilterTermsTree;
+import stroom.statistics.common.FindEventCriteria;
+import stroom.statistics.common.PrintableNode;
+import stroom.statistics.common.RolledUpStatisticEvent;
+import stroom.statistics.common.StatisticDataPoint;
+import stroom.statistics.common.StatisticDataSet;
+import stroom.statistics.common.StatisticEvent;
+import stroom.statistics.common.StatisticStoreCache;
+import stroom.statistics.common.StatisticStoreValidator;
+import stroom.statistics.common.StatisticTag;
+import stroom.statistics.common.TimeAgnosticStatisticEvent;
+import stroom.statistics.common.rollup.RollUpBitMask;
+import stroom.statistics.server.common.AbstractStatistics;
+import stroom.statistics.server.common.StatisticQueryPlan;
+import stroom.statistics.shared.EventStoreTimeIntervalEnum;
+import stroom.statistics.shared.StatisticStore;
+import stroom.statistics.shared.StatisticStoreEntity;
+import stroom.statistics.shared.StatisticType;
+import stroom.task.cluster.ClusterCallEntry;
+import stroom.task.cluster.ClusterDispatchAsyncHelper;
+import stroom.task.cluster.ClusterTask;
+import stroom.task.cluster.DefaultClusterResultCollector;
+import stroom.task.cluster.TargetNodeSetFactory.TargetType;
+import stroom.util.logging.StroomLogger;
+import stroom.util.shared.ModelStringUtil;
+import stroom.util.shared.SharedList;
+import stroom.util.shared.SharedObject;
+import stroom.util.shared.SharedString;
+import stroom.util.spring.StroomShutdown;
+import stroom.util.spring.StroomSimpleCronSchedule;
+import stroom.util.task.ServerTask;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A statistics store that keeps its values in local columnar files rather than
+ * a database. Every event is aggregated into each of the time intervals that
+ * are at least as coarse as the precision of the statistic when it is written,
+ * so searches over long periods can read a coarse interval rather than
+ * aggregating fine grained values on the fly.
+ * <p>
+ * Values are held in memory until there are too many of them or the flush job
+ * runs. They are then appended to the partition of the statistic, interval and
+ * period they belong to (see {@link ColumnarStatPartition}).
+ * <p>
+ * Each node only holds the values of the events that it received so searches
+ * and tag value lookups are sent to every enabled node and their results
+ * merged. The files must be kept in a persistent directory on each node.
+ */
+@Component
+public class ColumnarStatisticEventStore extends AbstractStatistics {
+    private static final StroomLogger LOGGER = StroomLogger.getLogger(ColumnarStatisticEventStore.class);
+
+    public static final String ENGINE_NAME = "columnar";
+
+    private final StroomPropertyService propertyService;
+    private final Provider<ClusterDispatchAsyncHelper> dispatchHelperProvider;
+
+    private final ReentrantLock bufferLock = new ReentrantLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private Map<ColumnarStatPartition, ColumnarStatAggregateMap> buffer = new HashMap<>();
+    private int bufferSize;
+
+    @Inject
+    public ColumnarStatisticEventStore(final StatisticStoreValidator statisticsDataSourceValidator,
+                                       final StatisticStoreCache statisticsDataSourceCache,
+                                       final StroomPropertyService propertyService,
+                                       final Provider<ClusterDispatchAsyncHelper> dispatchHelperProvider) {
+        super(statisticsDataSourceValidator, statisticsDataSourceCache, propertyService);
+        this.propertyService = propertyService;
+        this.dispatchHelperProvider = dispatchHelperProvider;
+    }
+
+    @Override
+    public String getEngineName() {
+        return ENGINE_NAME;
+    }
+
+    @Override
+    public boolean putEvent(final StatisticEvent statisticEvent, final StatisticStore statisticStore) {
+        return putEvents(Collections.singletonList(statisticEvent), statisticStore);
+    }
+
+    @Override
+    public boolean putEvents(final List<StatisticEvent> statisticEvents, final StatisticStore statisticStore) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("putEvents - count=%s", statisticEvents.size());
+        }
+
+        final StatisticStoreEntity entity = (StatisticStoreEntity) statisticStore;
+
+        // validate the first stat in the batch to check we have a statistic
+        // data source for it.
+        if (validateStatisticDataSource(statisticEvents.iterator().next(), entity) == false) {
+            // no StatisticsDataSource entity so don't record the stat as we
+            // will have no way of querying the stat
+            return false;
+        }
+
+        if (!StringUtils.hasText(propertyService.getProperty(ColumnarStatisticConstants.PROP_KEY_DIR))) {
+            LOGGER.error("putEvents() - %s is not set so statistics can't be stored",
+                    ColumnarStatisticConstants.PROP_KEY_DIR);
+            return false;
+        }
+
+        final String[] tagNames = getTagNames(entity);
+        final List<EventStoreTimeIntervalEnum> intervals = StatisticQueryPlan.getIntervals(entity.getPrecision());
+
+        boolean flush = false;
+        bufferLock.lock();
+        try {
+            for (final StatisticEvent statisticEvent : statisticEvents) {
+                final RolledUpStatisticEvent rolledUpStatisticEvent = generateTagRollUps(statisticEvent, entity);
+                for (final EventStoreTimeIntervalEnum interval : intervals) {
+                    final ColumnarStatAggregateMap aggregateMap = getBufferedMap(entity, interval,
+                            rolledUpStatisticEvent.getTimeMs(), tagNames);
+                    final long timeMs = interval.roundTimeToColumnInterval(rolledUpStatisticEvent.getTimeMs());
+
+                    for (final TimeAgnosticStatisticEvent event : rolledUpStatisticEvent) {
+                        final ColumnarStatKey key = createKey(timeMs, event.getTagList(), entity, tagNames);
+                        final int size = aggregateMap.size();
+                        final ColumnarStatAggregate aggregate = aggregateMap.get(key);
+                        bufferSize += aggregateMap.size() - size;
+
+                        if (StatisticType.COUNT.equals(rolledUpStatisticEvent.getType())) {
+                            aggregate.addCount(rolledUpStatisticEvent.getCount());
+                        } else {
+                            aggregate.addValue(rolledUpStatisticEvent.getValue());
+                        }
+                    }
+                }
+            }
+            flush = bufferSize > propertyService.getIntProperty(ColumnarStatisticConstants.PROP_KEY_MAX_BUFFERED_VALUES,
+                    ColumnarStatisticConstants.DEFAULT_MAX_BUFFERED_VALUES);
+        } finally {
+            bufferLock.unlock();
+        }
+
+        if (flush) {
+            flush();
+        }
+        return true;
+    }
+
+    @Override
+    public StatisticDataSet searchStatisticsData(final Search search, final StatisticStoreEntity dataSource,
+                                                 final Set<String> requestedFieldNames) {
+        final FindEventCriteria criteria = buildCriteria(search, dataSource);
+        final long fromMs = criteria.getPeriod().getFromMs();
+        final long toMs = criteria.getPeriod().getToMs();
+
+        // Values are stored for every interval coarser than the precision so
+        // read the one the plan buckets by.
+        final StatisticQueryPlan queryPlan = buildQueryPlan(criteria, dataSource, requestedFieldNames);
+        final short mask = queryPlan.getRollUpBitMask().asShort();
+        final EventStoreTimeIntervalEnum interval = queryPlan.getInterval();
+        final String[] tagNames = getTagNames(dataSource);
+        final Map<String, Integer> tagPositions = new HashMap<>();
+        for (int i = 0; i < tagNames.length; i++) {
+            tagPositions.put(tagNames[i], i);
+        }
+        final PrintableNode filter = criteria.getFilterTermsTree().getRootNode();
+
+        LOGGER.debug("searchStatisticsData() - Searching %s at %s precision", dataSource.getName(), interval);
+
+        // Each node only holds the values of the events it received so read
+        // the partitions of every node and merge them.
+        final ColumnarStatSearchClusterTask task = new ColumnarStatSearchClusterTask(
+                ServerTask.INTERNAL_PROCESSING_USER_TOKEN, dataSource.getUuid(), interval, tagNames, fromMs, toMs,
+                mask);
+        final ColumnarStatAggregateMap aggregateMap = new ColumnarStatAggregateMap(tagNames);
+        for (final ColumnarStatAggregateMap nodeAggregateMap : execOnAllNodes(task)) {
+            aggregateMap.add(nodeAggregateMap);
+        }
+
+        final StatisticDataSet statisticDataSet = new StatisticDataSet(dataSource.getName(),
+                dataSource.getStatisticType(), interval.columnInterval());
+        for (final Entry<ColumnarStatKey, ColumnarStatAggregate> entry : aggregateMap.entrySet()) {
+            final ColumnarStatKey key = entry.getKey();
+            if (matches(filter, key.getTagValues(), tagPositions)) {
+                statisticDataSet.addDataPoint(createDataPoint(dataSource, interval, tagNames, key,
+                        entry.getValue()));
+            }
+        }
+
+        return statisticDataSet;
+    }
+
+    /**
+     * Read the values of a statistic held by this node.
+     */
+    ColumnarStatAggregateMap readLocal(final String statisticUuid, final EventStoreTimeIntervalEnum interval,
+                                       final String[] tagNames, final long fromMs, final long toMs,
+                                       final short mask) {
+        final ColumnarStatAggregateMap aggregateMap = new ColumnarStatAggregateMap(tagNames);
+        final Path rootDir = getRootDir();
+        for (long partitionStartMs = interval.roundTimeToRowKeyInterval(fromMs); partitionStartMs < toMs;
+             partitionStartMs += interval.rowKeyInterval()) {
+            final ColumnarStatPartition partition = ColumnarStatPartition.create(rootDir, statisticUuid, interval,
+                    partitionStartMs);
+            try {
+                aggregateMap.add(partition.read(tagNames, fromMs, toMs, mask));
+            } catch (final IOException e) {
+                LOGGER.error("readLocal() - Unable to read %s", partition.getDir(), e);
+                throw new RuntimeException(e.getMessage(), e);
+            }
+        }
+        return aggregateMap;
+    }
+
+    @Override
+    public List<String> getValuesByTag(final String tagName) {
+        return getValuesByTagAndPartialValue(tagName, null);
+    }
+
+    @Override
+    public List<String> getValuesByTagAndPartialValue(final String tagName, final String partialValue) {
+        final ColumnarStatTagValuesClusterTask task = new ColumnarStatTagValuesClusterTask(
+                ServerTask.INTERNAL_PROCESSING_USER_TOKEN, tagName, partialValue);
+        final Set<String> tagValues = new TreeSet<>();
+        for (final SharedList<SharedString> nodeTagValues : execOnAllNodes(task)) {
+            for (final SharedString tagValue : nodeTagValues) {
+                tagValues.add(tagValue.toString());
+            }
+        }
+        return new ArrayList<>(tagValues);
+    }
+
+    /**
+     * Find the values of a tag held by this node from the dictionaries of its
+     * segments.
+     */
+    List<String> getLocalValuesByTag(final String tagName, final String partialValue) {
+        final Set<String> tagValues = new TreeSet<>();
+        try {
+            ColumnarStatPartition.readTagValues(getRootDir(), tagName, partialValue, tagValues);
+        } catch (final IOException e) {
+            LOGGER.error("getLocalValuesByTag() - Unable to read values of %s", tagName, e);
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        return new ArrayList<>(tagValues);
+    }
+
+    /**
+     * Run the task on every enabled node. Results are only complete if every
+     * node answers so a node that fails or doesn't respond fails the whole
+     * request.
+     */
+    private <R extends SharedObject> List<R> execOnAllNodes(final ClusterTask<R> task) {
+        final DefaultClusterResultCollector<R> collector = dispatchHelperProvider.get().execAsync(task,
+                TargetType.ENABLED);
+
+        final List<R> results = new ArrayList<>();
+        for (final Node node : collector.getTargetNodes()) {
+            final ClusterCallEntry<R> response = collector.getResponse(node);
+            if (response == null) {
+                throw new RuntimeException("No response from node " + node.getName() + " to " + task.getTaskName());
+            } else if (response.getError() != null) {
+                throw new RuntimeException("Error from node " + node.getName() + " - "
+                        + response.getError().getMessage(), response.getError());
+            } else if (response.getResult() != null) {
+                results.add(response.getResult());
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void flushAllEvents() {
+        flush();
+    }
+
+    @StroomShutdown
+    public void shutdown() {
+        // Do a final flush.
+        flush();
+    }
+
+    @StroomSimpleCronSchedule(cron = "0,10,20,30,40,50 * *")
+    @JobTrackedSchedule(jobName = "Columnar Stats In Memory Flush", description = "Columnar Stats In Memory Flush (Cache to disk)")
+    public void execute() {
+        flush();
+    }
+
+    @StroomSimpleCronSchedule(cron = "0 2 *")
+    @JobTrackedSchedule(jobName = "Columnar Stats Retention", description = "Delete columnar statistics partitions that are older than the retention age")
+    public void deleteOldPartitions() {
+        final String retentionAge = propertyService.getProperty(ColumnarStatisticConstants.PROP_KEY_RETENTION_AGE);
+        if (StringUtils.hasText(retentionAge)) {
+            final long timeMs = System.currentTimeMillis() - ModelStringUtil.parseDurationString(retentionAge);
+
+            flushLock.lock();
+            try {
+                final int count = ColumnarStatPartition.deleteOlderThan(getRootDir(), timeMs);
+                LOGGER.info("deleteOldPartitions() - Deleted %s partitions", count);
+            } catch (final IOException e) {
+                LOGGER.error("deleteOldPartitions()", e);
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Write all of the buffered values to disk.
+     */
+    public void flush() {
+        final Map<ColumnarStatPartition, ColumnarStatAggregateMap> flushBuffer;
+
+        bufferLock.lock();
+        try {
+            // Switch out the current buffer under lock.
+            flushBuffer = buffer;
+            buffer = new HashMap<>();
+            bufferSize = 0;
+        } finally {
+            bufferLock.unlock();
+        }
+
+        if (flushBuffer.size() > 0) {
+            final int maxSegments = propertyService.getIntProperty(ColumnarStatisticConstants.PROP_KEY_MAX_SEGMENTS,
+                    ColumnarStatisticConstants.DEFAULT_MAX_SEGMENTS);
+
+            // Partitions must only be written by one thread at a time.
+            flushLock.lock();
+            try {
+                LOGGER.debug("flush() - Writing %s partitions", flushBuffer.size());
+                for (final Entry<ColumnarStatPartition, ColumnarStatAggregateMap> entry : flushBuffer.entrySet()) {
+                    final ColumnarStatPartition partition = entry.getKey();
+                    try {
+                        partition.append(entry.getValue());
+                        partition.compact(maxSegments);
+                    } catch (final IOException e) {
+                        LOGGER.error("flush() - Unable to write %s", partition.getDir(), e);
+                    }
+                }
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    private ColumnarStatAggregateMap getBufferedMap(final StatisticStoreEntity entity,
+                                                    final EventStoreTimeIntervalEnum interval, final long timeMs,
+                                                    final String[] tagNames) {
+        final ColumnarStatPartition partition = ColumnarStatPartition.create(getRootDir(), entity.getUuid(),
+                interval, interval.roundTimeToRowKeyInterval(timeMs));
+
+        ColumnarStatAggregateMap aggregateMap = buffer.get(partition);
+        if (aggregateMap == null) {
+            aggregateMap = new ColumnarStatAggregateMap(tagNames);
+            buffer.put(partition, aggregateMap);
+        } else if (!Arrays.equals(tagNames, aggregateMap.getTagNames())) {
+            // The fields of the statistic have changed since we started
+            // buffering so move the buffered values to the new fields.
+            final ColumnarStatAggregateMap newMap = new ColumnarStatAggregateMap(tagNames);
+            newMap.add(aggregateMap);
+            bufferSize += newMap.size() - aggregateMap.size();
+            aggregateMap = newMap;
+            buffer.put(partition, aggregateMap);
+        }
+        return aggregateMap;
+    }
+
+    private ColumnarStatKey createKey(final long timeMs, final List<StatisticTag> tags,
+                                      final StatisticStoreEntity entity, final String[] tagNames) {
+        final String[] tagValues = new String[tagNames.length];
+        final List<Integer> rolledUpPositions = new ArrayList<>();
+        if (tags != null) {
+            for (final StatisticTag tag : tags) {
+                final Integer position = entity.getPositionInFieldList(tag.getTag());
+                if (position != null) {
+                    tagValues[position] = tag.getValue();
+                    if (RollUpBitMask.ROLL_UP_TAG_VALUE.equals(tag.getValue())) {
+                        rolledUpPositions.add(position);
+                    }
+                }
+            }
+        }
+        return new ColumnarStatKey(timeMs, RollUpBitMask.fromTagPositions(rolledUpPositions).asShort(), tagValues);
+    }
+
+    private StatisticDataPoint createDataPoint(final StatisticStoreEntity dataSource,
+                                               final EventStoreTimeIntervalEnum interval, final String[] tagNames,
+                                               final ColumnarStatKey key, final ColumnarStatAggregate aggregate) {
+        final List<StatisticTag> tags = new ArrayList<>(tagNames.length);
+        for (int i = 0; i < tagNames.length; i++) {
+            tags.add(new StatisticTag(tagNames[i], key.getTagValues()[i]));
+        }
+
+        if (StatisticType.COUNT.equals(dataSource.getStatisticType())) {
+            return StatisticDataPoint.countInstance(key.getTimeMs(), interval.columnInterval(), tags,
+                    aggregate.getCount());
+        }
+
+        final long count = aggregate.getCount();
+        final double averagedValue = count != 0 ? (aggregate.getValue() / count) : 0;
+        return StatisticDataPoint.valueInstance(key.getTimeMs(), interval.columnInterval(), tags, averagedValue,
+                count, aggregate.getMinValue(), aggregate.getMaxValue());
+    }
+
+    /**
+     * @return True if the tag values match the filter terms. Terms can only
+     * test whether a tag equals a value, with no value matching a null value.
+     */
+    static boolean matches(final PrintableNode node, final String[] tagValues,
+                           final Map<String, Integer> tagPositions) {
+        if (node == null) {
+            return true;
+        }
+
+        if (node instanceof FilterTermsTree.TermNode) {
+            final FilterTermsTree.TermNode termNode = (FilterTermsTree.TermNode) node;
+            final Integer position = tagPositions.get(termNode.getTag());
+            final String tagValue = position == null ? null : tagValues[position];
+            if (termNode.getValue() == null || termNode.getValue().isEmpty()) {
+                return tagValue == null || tagValue.isEmpty();
+            }
+            return termNode.getValue().equals(tagValue);
+        }
+
+        final FilterTermsTree.OperatorNode operatorNode = (FilterTermsTree.OperatorNode) node;
+        switch (operatorNode.getFilterOperationMode()) {
+            case AND:
+                for (final PrintableNode child : operatorNode.getChildren()) {
+                    if (!matches(child, tagValues, tagPositions)) {
+                        return false;
+                    }
+                }
+                return true;
+            case OR:
+                for (final PrintableNode child : operatorNode.getChildren()) {
+                    if (matches(child, tagValues, tagPositions)) {
+                        return true;
+                    }
+                }
+                return operatorNode.getChildren().isEmpty();
+            case NOT:
+                // A NOT with several children negates them all ANDed together.
+                for (final PrintableNode child : operatorNode.getChildren()) {
+                    if (!matches(child, tagValues, tagPositions)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                throw new RuntimeException("Unexpected operator " + operatorNode.getFilterOperationMode());
+        }
+    }
+
+    private String[] getTagNames(final StatisticStoreEntity entity) {
+        final List<String> fieldNames = entity.getFieldNames();
+        return fieldNames.toArray(new String[fieldNames.size()]);
+    }
+
+    private Path getRootDir() {
+        final String dir = propertyService.getProperty(ColumnarStatisticConstants.PROP_KEY_DIR);
+        if (!StringUtils.hasText(dir)) {
+            throw new RuntimeException(ColumnarStatisticConstants.PROP_KEY_DIR
+                    + " must be set to a persistent directory to use the columnar statistics store");
+        }
+        return Paths.get(dir);
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.statistics.columnar;
+
+import stroom.statistics.common.StatisticEvent;
+import stroom.statistics.common.StatisticsEventValidator;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tag names and values are held as length prefixed strings in the columnar
+ * files so there are no characters that need to be cleaned.
+ */
+public class ColumnarStatisticsEventValidator implements StatisticsEventValidator {
+    @Override
+    public List<String> validateEvent(final StatisticEvent statisticEvent) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String cleanString(final String dirtyString) {
+        return dirtyString;
+    }
+}
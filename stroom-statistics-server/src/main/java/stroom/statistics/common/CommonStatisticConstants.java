@@ -18,4 +18,7 @@ package stroom.statistics.common;
 
 public interface CommonStatisticConstants {
     String STROOM_STATISTIC_ENGINES_PROPERTY_NAME = "stroom.statistics.common.statisticEngines";
+    String STROOM_STATISTIC_SEARCH_MAX_TIME_BUCKETS_PROPERTY_NAME = "stroom.statistics.common.search.maxTimeBuckets";
+
+    int DEFAULT_SEARCH_MAX_TIME_BUCKETS = 1000;
 }
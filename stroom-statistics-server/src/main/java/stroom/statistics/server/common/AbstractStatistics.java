@@ -437,5 +437,34 @@ public abstract class AbstractStatistics implements Statistics {
         }
     }
 
-    public abstract StatisticDataSet searchStatisticsData(final Search search, final StatisticStoreEntity dataSource);
+    /**
+     * Decide how to answer the search, see {@link StatisticQueryPlan}.
+     */
+    protected StatisticQueryPlan buildQueryPlan(final FindEventCriteria criteria,
+                                                final StatisticStoreEntity dataSource,
+                                                final Set<String> requestedFieldNames) {
+        final int maxTimeBuckets = propertyService.getIntProperty(
+                CommonStatisticConstants.STROOM_STATISTIC_SEARCH_MAX_TIME_BUCKETS_PROPERTY_NAME,
+                CommonStatisticConstants.DEFAULT_SEARCH_MAX_TIME_BUCKETS);
+        final StatisticQueryPlan queryPlan = StatisticQueryPlan.create(criteria, dataSource, requestedFieldNames,
+                maxTimeBuckets);
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Query plan for statistic %s: %s", dataSource.getName(), queryPlan);
+        }
+
+        return queryPlan;
+    }
+
+    public StatisticDataSet searchStatisticsData(final Search search, final StatisticStoreEntity dataSource) {
+        return searchStatisticsData(search, dataSource, null);
+    }
+
+    /**
+     * @param requestedFieldNames The fields the search returns, or null if they are
+     *                            not known. Tags that are not returned or filtered on
+     *                            may be rolled up.
+     */
+    public abstract StatisticDataSet searchStatisticsData(final Search search, final StatisticStoreEntity dataSource,
+                                                          final Set<String> requestedFieldNames);
 }
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.statistics.server.common;
+
+import stroom.statistics.common.FilterTermsTree;
+import stroom.statistics.common.FindEventCriteria;
+import stroom.statistics.common.PrintableNode;
+import stroom.statistics.common.rollup.RollUpBitMask;
+import stroom.statistics.shared.CustomRollUpMask;
+import stroom.statistics.shared.EventStoreTimeIntervalEnum;
+import stroom.statistics.shared.StatisticRollUpType;
+import stroom.statistics.shared.StatisticStoreEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decides how a statistic store should answer a search, i.e. which roll up to
+ * read and what size of time bucket to aggregate the values into.
+ * <p>
+ * Tags that the search doesn't filter on or return are rolled up if the
+ * statistic has a roll up for them, as the rolled up values have already been
+ * summed over all of the values of those tags. Time buckets are the finest
+ * interval, no finer than the precision of the statistic, that doesn't give
+ * more than the maximum number of buckets for the period of the search.
+ */
+public class StatisticQueryPlan {
+    private static final List<EventStoreTimeIntervalEnum> INTERVALS;
+
+    static {
+        final List<EventStoreTimeIntervalEnum> intervals = new ArrayList<>(
+                Arrays.asList(EventStoreTimeIntervalEnum.values()));
+        intervals.sort((i1, i2) -> Long.compare(i1.columnInterval(), i2.columnInterval()));
+        INTERVALS = Collections.unmodifiableList(intervals);
+    }
+
+    private final RollUpBitMask rollUpBitMask;
+    private final Set<String> rolledUpFieldNames;
+    private final EventStoreTimeIntervalEnum interval;
+
+    private StatisticQueryPlan(final RollUpBitMask rollUpBitMask, final Set<String> rolledUpFieldNames,
+                               final EventStoreTimeIntervalEnum interval) {
+        this.rollUpBitMask = rollUpBitMask;
+        this.rolledUpFieldNames = rolledUpFieldNames;
+        this.interval = interval;
+    }
+
+    /**
+     * @param requestedFieldNames The fields the search returns or null if they
+     *                            are not known, in which case only the tags
+     *                            the search explicitly rolls up are rolled up.
+     */
+    public static StatisticQueryPlan create(final FindEventCriteria criteria, final StatisticStoreEntity dataSource,
+                                            final Set<String> requestedFieldNames, final int maxTimeBuckets) {
+        final Set<String> rolledUpFieldNames = chooseRollUp(criteria, dataSource, requestedFieldNames);
+
+        final RollUpBitMask rollUpBitMask;
+        if (rolledUpFieldNames.isEmpty()) {
+            rollUpBitMask = RollUpBitMask.ZERO_MASK;
+        } else {
+            final List<Integer> positions = new ArrayList<>();
+            for (final String fieldName : rolledUpFieldNames) {
+                positions.add(dataSource.getPositionInFieldList(fieldName));
+            }
+            rollUpBitMask = RollUpBitMask.fromTagPositions(positions);
+        }
+
+        final long periodMs = criteria.getPeriod().getToMs() - criteria.getPeriod().getFromMs();
+        final List<EventStoreTimeIntervalEnum> intervals = getIntervals(dataSource.getPrecision());
+        EventStoreTimeIntervalEnum interval = intervals.get(intervals.size() - 1);
+        for (final EventStoreTimeIntervalEnum candidate : intervals) {
+            if (periodMs / candidate.columnInterval() <= maxTimeBuckets) {
+                interval = candidate;
+                break;
+            }
+        }
+
+        return new StatisticQueryPlan(rollUpBitMask, rolledUpFieldNames, interval);
+    }
+
+    /**
+     * @return The intervals at least as coarse as the supplied precision,
+     * finest first. If the precision is coarser than all of them then the
+     * coarsest interval.
+     */
+    public static List<EventStoreTimeIntervalEnum> getIntervals(final Long precisionMs) {
+        final List<EventStoreTimeIntervalEnum> intervals = new ArrayList<>();
+        for (final EventStoreTimeIntervalEnum interval : INTERVALS) {
+            if (precisionMs == null || interval.columnInterval() >= precisionMs) {
+                intervals.add(interval);
+            }
+        }
+        if (intervals.isEmpty()) {
+            intervals.add(INTERVALS.get(INTERVALS.size() - 1));
+        }
+        return intervals;
+    }
+
+    private static Set<String> chooseRollUp(final FindEventCriteria criteria, final StatisticStoreEntity dataSource,
+                                            final Set<String> requestedFieldNames) {
+        final Set<String> required = new HashSet<>(criteria.getRolledUpFieldNames());
+        if (requestedFieldNames == null || StatisticRollUpType.NONE.equals(dataSource.getRollUpType())) {
+            return required;
+        }
+
+        // Any tag the search doesn't use can be rolled up.
+        final Set<String> filteredFieldNames = new HashSet<>();
+        addTermFieldNames(criteria.getFilterTermsTree().getRootNode(), filteredFieldNames);
+        final List<String> fieldNames = dataSource.getFieldNames();
+        final Set<String> unused = new HashSet<>();
+        for (final String fieldName : fieldNames) {
+            if (!requestedFieldNames.contains(fieldName) && !filteredFieldNames.contains(fieldName)) {
+                unused.add(fieldName);
+            }
+        }
+
+        if (StatisticRollUpType.ALL.equals(dataSource.getRollUpType())) {
+            final Set<String> rolledUp = new HashSet<>(required);
+            rolledUp.addAll(unused);
+            return rolledUp;
+        }
+
+        // Use the custom roll up that rolls up the most tags while still
+        // rolling up those the search asks for and no others that it uses.
+        Set<String> best = required;
+        final Set<CustomRollUpMask> customRollUpMasks = dataSource.getCustomRollUpMasks();
+        if (customRollUpMasks != null) {
+            for (final CustomRollUpMask customRollUpMask : customRollUpMasks) {
+                final Set<String> rolledUp = new HashSet<>();
+                for (final Integer position : customRollUpMask.getRolledUpTagPositions()) {
+                    rolledUp.add(fieldNames.get(position));
+                }
+                if (rolledUp.size() > best.size() && rolledUp.containsAll(required)) {
+                    final Set<String> extra = new HashSet<>(rolledUp);
+                    extra.removeAll(required);
+                    if (unused.containsAll(extra)) {
+                        best = rolledUp;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private static void addTermFieldNames(final PrintableNode node, final Set<String> fieldNames) {
+        if (node instanceof FilterTermsTree.TermNode) {
+            fieldNames.add(((FilterTermsTree.TermNode) node).getTag());
+        } else if (node instanceof FilterTermsTree.OperatorNode) {
+            for (final PrintableNode child : ((FilterTermsTree.OperatorNode) node).getChildren()) {
+                addTermFieldNames(child, fieldNames);
+            }
+        }
+    }
+
+    public RollUpBitMask getRollUpBitMask() {
+        return rollUpBitMask;
+    }
+
+    public Set<String> getRolledUpFieldNames() {
+        return rolledUpFieldNames;
+    }
+
+    /**
+     * @return The size of time bucket to aggregate values into.
+     */
+    public EventStoreTimeIntervalEnum getInterval() {
+        return interval;
+    }
+
+    @Override
+    public String toString() {
+        return "rolledUpFieldNames=" + rolledUpFieldNames + ", interval=" + interval;
+    }
+}
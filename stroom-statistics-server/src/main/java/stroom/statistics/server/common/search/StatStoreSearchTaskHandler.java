@@ -47,9 +47,11 @@ import stroom.util.task.TaskMonitor;
 
 import javax.inject.Inject;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 @TaskHandlerBean(task = StatStoreSearchTask.class)
 @Scope(value = StroomScope.TASK)
@@ -77,23 +79,39 @@ public class StatStoreSearchTaskHandler extends AbstractTaskHandler<StatStoreSea
 
                 final StatisticStoreEntity entity = task.getEntity();
 
+                // Compile the fields of each coprocessor first so we know which
+                // fields the search needs from the store.
+                final FieldIndexMap fieldIndexMap = new FieldIndexMap(true);
+                final Map<Integer, CompiledDepths> compiledDepthsMap = new HashMap<>();
+                final Map<Integer, CompiledFields> compiledFieldsMap = new HashMap<>();
+                for (final Entry<Integer, CoprocessorSettings> entry : task.getCoprocessorMap().entrySet()) {
+                    final TableSettings tableSettings = ((TableCoprocessorSettings) entry.getValue()).getTableSettings();
+                    compiledDepthsMap.put(entry.getKey(), new CompiledDepths(tableSettings.getFields(),
+                            tableSettings.showDetail()));
+                    compiledFieldsMap.put(entry.getKey(), new CompiledFields(tableSettings.getFields(),
+                            fieldIndexMap, task.getSearch().getParamMap()));
+                }
+
+                final Set<String> requestedFieldNames = new HashSet<>();
+                for (final String fieldName : entity.getFieldNames()) {
+                    if (fieldIndexMap.get(fieldName) != -1) {
+                        requestedFieldNames.add(fieldName);
+                    }
+                }
+
                 // Get the statistic store service class based on the engine of the
                 // datasource being searched
                 final AbstractStatistics statisticEventStore = (AbstractStatistics) statisticsFactory
                         .instance(entity.getEngineName());
                 final StatisticDataSet statisticDataSet = statisticEventStore.searchStatisticsData(task.getSearch(),
-                        entity);
+                        entity, requestedFieldNames);
 
                 // Produce payloads for each coprocessor.
                 Map<Integer, Payload> payloadMap = null;
 
-                final FieldIndexMap fieldIndexMap = new FieldIndexMap(true);
                 for (final Entry<Integer, CoprocessorSettings> entry : task.getCoprocessorMap().entrySet()) {
-                    final TableSettings tableSettings = ((TableCoprocessorSettings) entry.getValue()).getTableSettings();
-                    final CompiledDepths compiledDepths = new CompiledDepths(tableSettings.getFields(),
-                            tableSettings.showDetail());
-                    final CompiledFields compiledFields = new CompiledFields(tableSettings.getFields(),
-                            fieldIndexMap, task.getSearch().getParamMap());
+                    final CompiledDepths compiledDepths = compiledDepthsMap.get(entry.getKey());
+                    final CompiledFields compiledFields = compiledFieldsMap.get(entry.getKey());
 
                     // Create a queue of string arrays.
                     final PairQueue<String, Item> queue = new BlockingPairQueue<>(taskMonitor);
@@ -66,24 +66,28 @@ public class SQLStatKey {
                 keyStringBuilder.append(cleanText(tag.getTag()));
                 keyStringBuilder.append(SQLStatisticConstants.NAME_SEPARATOR);
 
-                // handle null/empty values with a magic value
-                final String value = cleanTagValue(tag.getValue());
-                if (value == null || value.isEmpty()) {
-                    keyStringBuilder.append(SQLStatisticConstants.NULL_VALUE_STRING);
-                } else {
-                    keyStringBuilder.append(value);
-                }
+                keyStringBuilder.append(cleanTagValue(tag.getValue()));
             }
         }
         return keyStringBuilder.toString();
     }
 
-    private String cleanTagValue(final String tagValue) {
+    /**
+     * @return The tag value as it is held in the key, null/empty values are
+     *         replaced with a magic value
+     */
+    static String cleanTagValue(final String tagValue) {
+        final String value;
         if (tagValue != null && tagValue.equals(RollUpBitMask.ROLL_UP_TAG_VALUE)) {
-            return tagValue;
+            value = tagValue;
         } else {
-            return cleanText(tagValue);
+            value = cleanText(tagValue);
+        }
+
+        if (value == null || value.isEmpty()) {
+            return SQLStatisticConstants.NULL_VALUE_STRING;
         }
+        return value;
     }
 
     /**
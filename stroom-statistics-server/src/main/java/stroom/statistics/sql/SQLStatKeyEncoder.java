@@ -0,0 +1,291 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.statistics.sql;
+
+import stroom.statistics.common.rollup.RollUpBitMask;
+import stroom.util.logging.StroomLogger;
+
+import javax.xml.bind.DatatypeConverter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Dictionary encodes the composite names held in SQL_STAT_KEY. The stat name,
+ * tags and tag values are each given an integer id in SQL_STAT_DICT, the key
+ * row is given the id of its stat name and its roll up mask and each tag/value
+ * pair of the key is recorded in SQL_STAT_KEY_TAG. Searches can then find keys
+ * with indexed id lookups rather than pattern matching the NAME column.
+ */
+public final class SQLStatKeyEncoder {
+    private static final StroomLogger LOGGER = StroomLogger.getLogger(SQLStatKeyEncoder.class);
+
+    /**
+     * Written to NAME_ID for names that can't be parsed so that they are not
+     * picked up again. Dictionary ids start at 1 so this never matches a
+     * search.
+     */
+    static final int UNPARSABLE_NAME_ID = 0;
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int MASK_HEX_LENGTH = 4;
+
+    // @formatter:off
+    private static final String SELECT_UNENCODED_KEYS = new StringBuilder()
+            .append("SELECT ID, NAME ")
+            .append("FROM SQL_STAT_KEY ")
+            .append("WHERE NAME_ID IS NULL ")
+            .append("LIMIT " + BATCH_SIZE)
+            .toString();
+
+    private static final String SELECT_DICT_ID = new StringBuilder()
+            .append("SELECT ID ")
+            .append("FROM SQL_STAT_DICT ")
+            .append("WHERE VAL = ?")
+            .toString();
+
+    private static final String INSERT_DICT = new StringBuilder()
+            .append("INSERT IGNORE INTO SQL_STAT_DICT (VAL) ")
+            .append("VALUES (?)")
+            .toString();
+
+    private static final String INSERT_KEY_TAG = new StringBuilder()
+            .append("INSERT IGNORE INTO SQL_STAT_KEY_TAG (FK_SQL_STAT_KEY_ID, TAG_ID, VAL_ID) ")
+            .append("VALUES (?, ?, ?)")
+            .toString();
+
+    private static final String UPDATE_KEY = new StringBuilder()
+            .append("UPDATE SQL_STAT_KEY ")
+            .append("SET NAME_ID = ?, MASK = ? ")
+            .append("WHERE ID = ?")
+            .toString();
+    // @formatter:on
+
+    private SQLStatKeyEncoder() {
+        // Utility class.
+    }
+
+    /**
+     * Encode any keys in SQL_STAT_KEY that have not yet been encoded.
+     *
+     * @return The number of keys encoded.
+     */
+    public static int encodeNewKeys(final Connection connection) throws SQLException {
+        final Map<String, Integer> dictionary = new HashMap<>();
+        int count = 0;
+
+        List<KeyParts> keys = selectUnencodedKeys(connection);
+        while (keys.size() > 0) {
+            try (final PreparedStatement insertKeyTag = connection.prepareStatement(INSERT_KEY_TAG);
+                 final PreparedStatement updateKey = connection.prepareStatement(UPDATE_KEY)) {
+                for (final KeyParts key : keys) {
+                    if (key.getStatName() == null) {
+                        updateKey.setInt(1, UNPARSABLE_NAME_ID);
+                        updateKey.setNull(2, Types.SMALLINT);
+                    } else {
+                        for (int i = 0; i < key.getTags().size(); i++) {
+                            insertKeyTag.setLong(1, key.getId());
+                            insertKeyTag.setInt(2, getOrCreateId(connection, dictionary, key.getTags().get(i)));
+                            insertKeyTag.setInt(3, getOrCreateId(connection, dictionary, key.getValues().get(i)));
+                            insertKeyTag.addBatch();
+                        }
+
+                        updateKey.setInt(1, getOrCreateId(connection, dictionary, key.getStatName()));
+                        updateKey.setShort(2, key.getMask());
+                    }
+                    updateKey.setLong(3, key.getId());
+                    updateKey.addBatch();
+                }
+
+                insertKeyTag.executeBatch();
+                updateKey.executeBatch();
+            }
+
+            count += keys.size();
+            keys = selectUnencodedKeys(connection);
+        }
+
+        if (count > 0) {
+            LOGGER.debug("Encoded %s stat keys", count);
+        }
+        return count;
+    }
+
+    /**
+     * Find the dictionary ids of the supplied values. Values that are not in
+     * the dictionary are not in any key and are absent from the returned map.
+     * Like the NAME column of SQL_STAT_KEY the dictionary is not case
+     * sensitive so the returned map isn't either.
+     */
+    public static Map<String, Integer> lookupIds(final Connection connection, final Collection<String> values)
+            throws SQLException {
+        if (values.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        final StringBuilder sql = new StringBuilder("SELECT " + SQLStatisticNames.ID + ", " + SQLStatisticNames.VALUE
+                + " FROM " + SQLStatisticNames.SQL_STATISTIC_DICTIONARY_TABLE_NAME + " WHERE " + SQLStatisticNames.VALUE
+                + " IN (");
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                sql.append(",");
+            }
+            sql.append("?");
+        }
+        sql.append(")");
+
+        final Map<String, Integer> ids = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        try (final PreparedStatement ps = connection.prepareStatement(sql.toString())) {
+            int position = 1;
+            for (final String value : values) {
+                ps.setString(position++, value);
+            }
+            try (final ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.put(rs.getString(2), rs.getInt(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Split a composite key name of the form built by {@link SQLStatKey} into
+     * its stat name, roll up mask and tag/value pairs.
+     *
+     * @return The parts of the name or parts with a null stat name if the name
+     * is not of the expected form.
+     */
+    static KeyParts parse(final long id, final String name) {
+        final String[] tokens = name.split(SQLStatisticConstants.NAME_SEPARATOR, -1);
+        final String nameAndMask = tokens[0];
+        if (tokens.length % 2 == 0 || nameAndMask.length() <= MASK_HEX_LENGTH) {
+            LOGGER.error("Unable to encode stat key %s '%s'", id, name);
+            return new KeyParts(id, null, (short) 0, Collections.emptyList(), Collections.emptyList());
+        }
+
+        final String statName = nameAndMask.substring(0, nameAndMask.length() - MASK_HEX_LENGTH);
+        final short mask;
+        try {
+            mask = RollUpBitMask.fromBytes(
+                    DatatypeConverter.parseHexBinary(nameAndMask.substring(statName.length()))).asShort();
+        } catch (final RuntimeException e) {
+            LOGGER.error("Unable to encode stat key %s '%s'", id, name, e);
+            return new KeyParts(id, null, (short) 0, Collections.emptyList(), Collections.emptyList());
+        }
+
+        final List<String> tags = new ArrayList<>();
+        final List<String> values = new ArrayList<>();
+        for (int i = 1; i < tokens.length; i += 2) {
+            tags.add(tokens[i]);
+            values.add(tokens[i + 1]);
+        }
+        return new KeyParts(id, statName, mask, tags, values);
+    }
+
+    private static List<KeyParts> selectUnencodedKeys(final Connection connection) throws SQLException {
+        final List<KeyParts> keys = new ArrayList<>();
+        try (final PreparedStatement ps = connection.prepareStatement(SELECT_UNENCODED_KEYS)) {
+            try (final ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    keys.add(parse(rs.getLong(1), rs.getString(2)));
+                }
+            }
+        }
+        return keys;
+    }
+
+    private static int getOrCreateId(final Connection connection, final Map<String, Integer> dictionary,
+                                     final String value) throws SQLException {
+        Integer id = dictionary.get(value);
+        if (id == null) {
+            id = selectId(connection, value);
+            if (id == null) {
+                // Ignore duplicates in case another node has just added the
+                // same value.
+                try (final PreparedStatement ps = connection.prepareStatement(INSERT_DICT)) {
+                    ps.setString(1, value);
+                    ps.executeUpdate();
+                }
+                id = selectId(connection, value);
+                if (id == null) {
+                    throw new SQLException("Unable to add '" + value + "' to the stat key dictionary");
+                }
+            }
+            dictionary.put(value, id);
+        }
+        return id;
+    }
+
+    private static Integer selectId(final Connection connection, final String value) throws SQLException {
+        try (final PreparedStatement ps = connection.prepareStatement(SELECT_DICT_ID)) {
+            ps.setString(1, value);
+            try (final ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            }
+        }
+        return null;
+    }
+
+    static class KeyParts {
+        private final long id;
+        private final String statName;
+        private final short mask;
+        private final List<String> tags;
+        private final List<String> values;
+
+        KeyParts(final long id, final String statName, final short mask, final List<String> tags,
+                 final List<String> values) {
+            this.id = id;
+            this.statName = statName;
+            this.mask = mask;
+            this.tags = tags;
+            this.values = values;
+        }
+
+        long getId() {
+            return id;
+        }
+
+        String getStatName() {
+            return statName;
+        }
+
+        short getMask() {
+            return mask;
+        }
+
+        List<String> getTags() {
+            return tags;
+        }
+
+        List<String> getValues() {
+            return values;
+        }
+    }
+}
@@ -38,6 +38,8 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 @Transactional
@@ -192,60 +194,42 @@ public class SQLStatisticAggregationTransactionHelper {
             .append("AND SSK.ID IS NULL")
             .toString();
 
-    // grab the oldest n records from SVS and aggregate those records with the
-    // right time range
-    // then outer join them to any existing SV records and add the values
-    // then insert or update the values back into SV
+    // aggregate the marked records in SVS within the right time range and
+    // add the values to any existing SV records, only touching the SV records
+    // that have new values
     // relies on SV having a unique key index on FK_SQL_STAT_KEY_ID, TIME_MS,
     // PRES, VAL_TP
     private static final String STAGE1_UPSERT = new StringBuilder()
             .append("INSERT INTO SQL_STAT_VAL (FK_SQL_STAT_KEY_ID, TIME_MS, PRES, VAL_TP, VAL, CT) ")
             .append("SELECT ")
             .append("   AGG.FK_SQL_STAT_KEY_ID,  ")
-            .append("   AGG.TIME_MS,  ")
+            .append("   AGG.TIME_MS_RND,  ")
             .append("   AGG.PRES,  ")
             .append("   AGG.VAL_TP,  ")
             .append("   AGG.VAL,  ")
             .append("   AGG.CT ")
             .append("FROM ( ")
-            .append("   SELECT ")
-            .append("       SSVT.FK_SQL_STAT_KEY_ID as FK_SQL_STAT_KEY_ID, ")
-            .append("       SSVT.TIME_MS_RND as TIME_MS, ")
-            .append("       SSVT.PRES as PRES, ")
-            .append("       SSVT.VAL_TP as VAL_TP, ")
-            .append("       COALESCE(SSVT.VAL,0) + COALESCE(SSV.VAL, 0) as VAL, ")
-            .append("       COALESCE(SSVT.CT,0) + COALESCE(SSV.CT, 0) as CT ")
-            .append("   FROM ( ")
-            .append("       SELECT  ")
-            .append("           ROUND(SSVS.TIME_MS, ?) AS TIME_MS_RND,  ")
-            .append("           ? as PRES, ")
-            .append("           ? as VAL_TP, ")
-            .append("           SUM(SSVS.VAL) as VAL, ")
-            .append("           SUM(CASE SSVS.VAL_TP WHEN " + StatisticType.COUNT.getPrimitiveValue() + " THEN SSVS.VAL ELSE 1 END) as CT, ")
-            .append("           SSK.ID as FK_SQL_STAT_KEY_ID ")
-            .append("       FROM SQL_STAT_VAL_SRC SSVS  ")
-            .append("       JOIN SQL_STAT_KEY SSK ON (SSK.NAME = SSVS.NAME)  ")
-            .append("       WHERE SSVS.TIME_MS < ?  ")
-            .append("       AND SSVS.VAL_TP = ?  ")
-            .append("       AND SSVS.PROCESSING = 1  ")
-            .append("       GROUP BY FK_SQL_STAT_KEY_ID, TIME_MS_RND, VAL_TP, PRES ")
-            .append("       HAVING COUNT(*) > 0 ")
-            .append("   ) SSVT ")
-            .append("   LEFT JOIN SQL_STAT_VAL SSV ON (")
-            .append("       SSV.FK_SQL_STAT_KEY_ID = SSVT.FK_SQL_STAT_KEY_ID AND ")
-            .append("       SSV.TIME_MS = SSVT.TIME_MS_RND AND ")
-            .append("       SSV.PRES = SSVT.PRES AND SSV.VAL_TP = SSVT.VAL_TP")
-            .append("   ) ")
+            .append("   SELECT  ")
+            .append("       ROUND(SSVS.TIME_MS, ?) AS TIME_MS_RND,  ")
+            .append("       ? as PRES, ")
+            .append("       ? as VAL_TP, ")
+            .append("       SUM(SSVS.VAL) as VAL, ")
+            .append("       SUM(CASE SSVS.VAL_TP WHEN " + StatisticType.COUNT.getPrimitiveValue() + " THEN SSVS.VAL ELSE 1 END) as CT, ")
+            .append("       SSK.ID as FK_SQL_STAT_KEY_ID ")
+            .append("   FROM SQL_STAT_VAL_SRC SSVS  ")
+            .append("   JOIN SQL_STAT_KEY SSK ON (SSK.NAME = SSVS.NAME)  ")
+            .append("   WHERE SSVS.TIME_MS < ?  ")
+            .append("   AND SSVS.VAL_TP = ?  ")
+            .append("   AND SSVS.PROCESSING = 1  ")
+            .append("   GROUP BY FK_SQL_STAT_KEY_ID, TIME_MS_RND, VAL_TP, PRES ")
+            .append("   HAVING COUNT(*) > 0 ")
             .append(") AGG ")
             .append("WHERE AGG.CT > 0 ")
             .append("ON DUPLICATE KEY UPDATE ")
-            .append("   VAL = AGG.VAL, ")
-            .append("   CT = AGG.CT ")
+            .append("   VAL = SQL_STAT_VAL.VAL + AGG.VAL, ")
+            .append("   CT = SQL_STAT_VAL.CT + AGG.CT ")
             .toString();
 
-    //TODO The last line of the above sql "CT = AGG.CT" causes the upsert to never update wehn run against mysql 5.7
-    //but works fine on 5.5. and 5.6
-
     private static final String STAGE1_AGGREGATE_DELETE_SOURCE = new StringBuilder()
             .append("DELETE FROM SQL_STAT_VAL_SRC ")
             .append("WHERE PROCESSING = 1 ")
@@ -253,7 +237,7 @@ public class SQLStatisticAggregationTransactionHelper {
             .append("AND VAL_TP = ?")
             .toString();
 
-    // Find if records exist in STAT_VAL older than a given age for a given
+    // Find if records exist in STAT_VAL in a given time range for a given
     // precision
     private static final String STAGE2_FIND_ROWS_TO_MOVE = new StringBuilder()
             .append("SELECT ")
@@ -261,63 +245,48 @@ public class SQLStatisticAggregationTransactionHelper {
             .append("       SELECT ")
             .append("           NULL ")
             .append("       FROM SQL_STAT_VAL SSV")
-            .append("       WHERE SSV.TIME_MS < ? ")
+            .append("       WHERE SSV.TIME_MS >= ? ")
+            .append("       AND SSV.TIME_MS < ? ")
             .append("       AND SSV.PRES = ? ") // old PRES
             .append("       AND SSV.VAL_TP = ? ")
             .append("   ) ").toString();
 
-    // Copy stats from one precision to a coarser precision, aggregating them
-    // with any stats
-    // in the target precision if there are any
+    // Copy stats in a time range from one precision to a coarser precision,
+    // adding them to any stats already in the target precision. Only the
+    // target records that have new values are touched.
     private static final String STAGE2_UPSERT = new StringBuilder()
             .append("INSERT INTO SQL_STAT_VAL (FK_SQL_STAT_KEY_ID, TIME_MS, PRES, VAL_TP, VAL, CT) ")
             .append("SELECT ")
             .append("   AGG.FK_SQL_STAT_KEY_ID,  ")
-            .append("   AGG.TIME_MS,  ")
+            .append("   AGG.TIME_MS_RND,  ")
             .append("   ? as PRES,  ") // target pres
             .append("   ? as VAL_TP,  ")
             .append("   AGG.VAL AS VAL,  ")
             .append("   AGG.CT AS CT ")
             .append("FROM ( ")
             .append("   SELECT ")
-            .append("       FK_SQL_STAT_KEY_ID,  ")
-            .append("       TIME_MS,  ")
-            .append("       SUM(VAL) AS VAL,  ")
-            .append("       SUM(CT) AS CT ")
-            .append("   FROM ( ")
-            .append("       SELECT ") // existing values at correct precision
-            .append("           SSVO.TIME_MS, ")
-            .append("           SSVO.VAL, ")
-            .append("           SSVO.CT, ")
-            .append("           SSVO.FK_SQL_STAT_KEY_ID ")
-            .append("       FROM SQL_STAT_VAL SSVO ")
-            .append("       WHERE SSVO.PRES = ? ") // target pres
-            .append("       AND SSVO.VAL_TP = ? ")
-            .append("       AND SSVO.TIME_MS <= ROUND(?, ?) ") // only pick up records up to the point we are interested in
-            .append("       UNION ALL ")
-            .append("       SELECT ")
-            .append("           ROUND(SSVN.TIME_MS, ?) AS TIME_MS, ") // target pres, e.g. -9
-            .append("           SSVN.VAL AS VAL, ")
-            .append("           SSVN.CT AS CT, ")
-            .append("           SSVN.FK_SQL_STAT_KEY_ID AS FK_SQL_STAT_KEY_ID ")
-            .append("       FROM SQL_STAT_VAL SSVN ")
-            .append("       WHERE SSVN.TIME_MS < ? ") // stat age threshold to change precision
-            .append("       AND SSVN.PRES = ? ") // old PRES
-            .append("       AND SSVN.VAL_TP = ? ")
-            .append("       GROUP BY FK_SQL_STAT_KEY_ID, TIME_MS ")
-            .append("   ) ROUNDED ")
-            .append("   GROUP BY FK_SQL_STAT_KEY_ID, TIME_MS ")
+            .append("       SSVN.FK_SQL_STAT_KEY_ID AS FK_SQL_STAT_KEY_ID, ")
+            .append("       ROUND(SSVN.TIME_MS, ?) AS TIME_MS_RND, ") // target pres, e.g. -9
+            .append("       SUM(SSVN.VAL) AS VAL, ")
+            .append("       SUM(SSVN.CT) AS CT ")
+            .append("   FROM SQL_STAT_VAL SSVN ")
+            .append("   WHERE SSVN.TIME_MS >= ? ") // last threshold this precision was moved up to
+            .append("   AND SSVN.TIME_MS < ? ") // stat age threshold to change precision
+            .append("   AND SSVN.PRES = ? ") // old PRES
+            .append("   AND SSVN.VAL_TP = ? ")
+            .append("   GROUP BY FK_SQL_STAT_KEY_ID, TIME_MS_RND ")
             .append(") AGG ")
             .append("ON DUPLICATE KEY UPDATE ")
-            .append("   VAL = AGG.VAL, ")
-            .append("   CT = AGG.CT ")
+            .append("   VAL = SQL_STAT_VAL.VAL + AGG.VAL, ")
+            .append("   CT = SQL_STAT_VAL.CT + AGG.CT ")
             .toString();
 
     // Delete records from STAT_VAL older than a certain threshold for a given
     // precision
     private static final String STAGE2_AGGREGATE_DELETE_OLD_PRECISION = new StringBuilder()
             .append("DELETE FROM SQL_STAT_VAL ")
-            .append("WHERE TIME_MS < ? ")
+            .append("WHERE TIME_MS >= ? ")
+            .append("AND TIME_MS < ? ")
             .append("AND PRES = ? ")
             .append("AND VAL_TP = ?")
             .toString();
@@ -354,6 +323,18 @@ public class SQLStatisticAggregationTransactionHelper {
         return result;
     }
 
+    protected int doEncodeNewKeys(final Connection connection, final TaskMonitor taskMonitor, final String prefix)
+            throws SQLException {
+        final LogExecutionTime time = new LogExecutionTime();
+
+        taskMonitor.info("%s\n Encoding new keys", prefix);
+
+        final int count = SQLStatKeyEncoder.encodeNewKeys(connection);
+
+        logDebug("doEncodeNewKeys - %s - %s in %s", prefix, ModelStringUtil.formatCsv(count), time);
+        return count;
+    }
+
     public static final byte MONTH_PRECISION = (byte) Math.floor(Math.log10(MS_MONTH));
     public static final byte DAY_PRECISION = (byte) Math.floor(Math.log10(MS_DAY));
     public static final byte HOUR_PRECISION = (byte) Math.floor(Math.log10(MS_HOUR));
@@ -389,6 +370,12 @@ public class SQLStatisticAggregationTransactionHelper {
 
     };
 
+    /**
+     * The time that stats were last moved out of the finer precision of each
+     * level.
+     */
+    private final Map<AggregateConfig, Long> stage2Thresholds = new ConcurrentHashMap<>();
+
     public AggregateConfig[] getAggregateConfig() {
         return aggregateConfig;
     }
@@ -491,6 +478,9 @@ public class SQLStatisticAggregationTransactionHelper {
             // Fill the STAT_KEY table with any new Keys
             doAggregateSQL_Update(connection, taskMonitor, AGGREGATE, STAGE1_AGGREGATE_SOURCE_KEY, null);
 
+            // Dictionary encode the new keys so searches can find them
+            doEncodeNewKeys(connection, taskMonitor, AGGREGATE);
+
             // Stage 1 is about handling values in the source table that are
             // implied to be precision 0 and aggregating them into SQL_STAT_VAL
             // at the correct precision for their age.
@@ -570,7 +560,12 @@ public class SQLStatisticAggregationTransactionHelper {
                 // if statement to ignore the case of DEFAULT->DEFAULT where
                 // there is nothing to roll up
                 if (targetPrecision != lastPrecision) {
-                    final String newPrefix = prefix + " Existing " + level.getValueType() + " < "
+                    // only look at the stats that have become too old for
+                    // their precision since the last pass
+                    final long fromMs = getStage2FromMs(level, aggregateToMs);
+
+                    final String newPrefix = prefix + " Existing " + level.getValueType() + " "
+                            + DateUtil.createNormalDateTimeString(fromMs) + " - "
                             + DateUtil.createNormalDateTimeString(aggregateToMs) + " P=" + level.getLastPrecision()
                             + ">" + level.getPrecision() + " (Size " + bucketSizeStr + ")";
 
@@ -581,18 +576,17 @@ public class SQLStatisticAggregationTransactionHelper {
                     // just that there are more than zero. This stops the upsert
                     // from changing rows for no reason.
                     final long rowsExist = doLongSelect(connection, taskMonitor, newPrefix, STAGE2_FIND_ROWS_TO_MOVE,
-                            Arrays.asList(aggregateToMs, lastPrecision, valueType));
+                            Arrays.asList(fromMs, aggregateToMs, lastPrecision, valueType));
 
                     if (rowsExist == 1) {
-                        // Find any stats that are too old for their current
-                        // precision and roll them up into a
-                        // coarser precision, aggregating with existing stats if
+                        // Find any stats that have become too old for their
+                        // current precision and roll them up into a
+                        // coarser precision, adding them to existing stats if
                         // required. Does an update or
                         // insert depending on if the target precision has a
                         // record or not.
                         final int upsertCount = doAggregateSQL_Update(connection, taskMonitor, newPrefix, STAGE2_UPSERT,
-                                Arrays.asList(targetPrecision, valueType, targetPrecision, valueType,
-                                        aggregateToMs, targetSqlPrecision, targetSqlPrecision, aggregateToMs,
+                                Arrays.asList(targetPrecision, valueType, targetSqlPrecision, fromMs, aggregateToMs,
                                         lastPrecision, valueType));
 
                         if (upsertCount > 0) {
@@ -600,11 +594,13 @@ public class SQLStatisticAggregationTransactionHelper {
                             // into the new precision
                             doAggregateSQL_Update(connection, taskMonitor, newPrefix,
                                     STAGE2_AGGREGATE_DELETE_OLD_PRECISION,
-                                    Arrays.asList(aggregateToMs, lastPrecision, valueType));
+                                    Arrays.asList(fromMs, aggregateToMs, lastPrecision, valueType));
                         }
                     } else {
                         LOGGER.debug("No rows to move");
                     }
+
+                    stage2Thresholds.put(level, aggregateToMs);
                 }
             }
         } finally {
@@ -612,6 +608,25 @@ public class SQLStatisticAggregationTransactionHelper {
         }
     }
 
+    /**
+     * Stage 1 only puts stats into a finer precision if they are newer than
+     * the threshold for moving them to a coarser one, so once a pass has moved
+     * everything older than the threshold the next pass only has to look at
+     * the stats that have aged past it since. Stage 1 may have run on another
+     * node with a clock that is slightly behind ours so we go back one target
+     * bucket before the last threshold to pick up any stats it wrote there. We
+     * start from the beginning of time if we haven't done a pass yet or the
+     * time has gone backwards.
+     */
+    private long getStage2FromMs(final AggregateConfig level, final long aggregateToMs) {
+        final Long lastAggregateToMs = stage2Thresholds.get(level);
+        if (lastAggregateToMs == null || lastAggregateToMs > aggregateToMs) {
+            return 0;
+        }
+        final long bucketSize = (long) Math.pow(10, level.getPrecision());
+        return Math.max(0, lastAggregateToMs - bucketSize);
+    }
+
     protected boolean isMySqlDialect() {
         return stroomDatabaseInfo.isMysql();
     }
@@ -633,6 +648,8 @@ public class SQLStatisticAggregationTransactionHelper {
             statement.execute(sql);
             statement.close();
 
+            stage2Thresholds.clear();
+
             LOGGER.debug("Truncated table %s in %sms", tableName, logExecutionTime.getDuration());
 
         } catch (final SQLException sqlException) {
@@ -650,6 +667,8 @@ public class SQLStatisticAggregationTransactionHelper {
             statement.execute(sql);
             statement.close();
 
+            stage2Thresholds.clear();
+
             LOGGER.debug("Cleared table %s in %sms", tableName, logExecutionTime.getDuration());
 
         } catch (final SQLException sqlException) {
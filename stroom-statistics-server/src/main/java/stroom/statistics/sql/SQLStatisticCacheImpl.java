@@ -25,10 +25,22 @@ import stroom.util.shared.VoidResult;
 import stroom.util.spring.StroomShutdown;
 import stroom.util.spring.StroomSimpleCronSchedule;
 
-import javax.annotation.Resource;
-import java.util.concurrent.LinkedBlockingQueue;
+import javax.inject.Inject;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Accumulates statistic values in memory until there are enough of them to be
+ * worth writing to the database.
+ * <p>
+ * Values are added to one of several stripes, each with its own lock and map,
+ * so that producers don't all queue behind one lock. A producer that finds its
+ * stripe busy moves on to the next one rather than waiting. On flush the
+ * stripes are switched out and merged into a single map which is written by a
+ * flush task. Several flushes can be in flight at once; producers only wait
+ * for one to finish once the cache holds more than twice the flush size.
+ */
 @Component
 public class SQLStatisticCacheImpl implements SQLStatisticCache {
     private static final StroomLogger LOGGER = StroomLogger.getLogger(SQLStatisticCacheImpl.class);
@@ -39,43 +51,76 @@ public class SQLStatisticCacheImpl implements SQLStatisticCache {
      */
     private static final int DEFAULT_MAX_SIZE = 1000000;
 
-    @Resource
-    private TaskManager taskManager;
-
-    private volatile SQLStatisticAggregateMap map = new SQLStatisticAggregateMap();
-    private final ReentrantLock mapLock = new ReentrantLock();
-    // private final ReentrantLock flushLock = new ReentrantLock();
-    private final LinkedBlockingQueue<SQLStatisticAggregateMap> flushQueue = new LinkedBlockingQueue<>(1);
+    /**
+     * The number of flush tasks that can be writing to the database at once.
+     */
+    private static final int DEFAULT_MAX_FLUSHES = 2;
 
+    private final TaskManager taskManager;
+    private final Stripe[] stripes;
+    private final AtomicInteger size = new AtomicInteger();
+    private final Semaphore flushPermits;
+    private final int maxFlushes;
     private final int maxSize;
+    private final SQLStatisticCacheStatistics statistics = new SQLStatisticCacheStatistics();
 
-    public SQLStatisticCacheImpl() {
-        this(DEFAULT_MAX_SIZE);
+    @Inject
+    public SQLStatisticCacheImpl(final TaskManager taskManager) {
+        this(taskManager, DEFAULT_MAX_SIZE, Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_FLUSHES);
     }
 
-    public SQLStatisticCacheImpl(final int maxSize) {
+    SQLStatisticCacheImpl(final TaskManager taskManager, final int maxSize, final int stripeCount,
+                          final int maxFlushes) {
+        this.taskManager = taskManager;
         this.maxSize = maxSize;
+        this.maxFlushes = maxFlushes;
+        this.flushPermits = new Semaphore(maxFlushes);
+
+        // Use a power of two so we can pick a stripe with a mask.
+        int count = 1;
+        while (count < stripeCount) {
+            count <<= 1;
+        }
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
     }
 
     @Override
     public void add(final SQLStatisticAggregateMap aggregateMap) {
-        mapLock.lock();
-        try {
-            // If we need to flush then switch out the map.
-            if (this.map.size() > maxSize) {
-                final SQLStatisticAggregateMap flushMap = this.map;
-                // Switch out the current map under lock.
-                LOGGER.debug("add() - Switch out the current map under lock. %s", flushMap);
-
-                this.map = aggregateMap;
+        final int mask = stripes.length - 1;
+        final int home = (int) Thread.currentThread().getId() & mask;
 
-                // Try a non-blocking flush
-                doFlush(false, flushMap);
+        // Use the first stripe we can lock without waiting, falling back to
+        // waiting for our own stripe if they are all busy.
+        Stripe stripe = null;
+        for (int i = 0; i < stripes.length && stripe == null; i++) {
+            final Stripe candidate = stripes[(home + i) & mask];
+            if (candidate.lock.tryLock()) {
+                stripe = candidate;
             } else {
-                this.map.add(aggregateMap);
+                statistics.recordContended();
             }
+        }
+        if (stripe == null) {
+            stripe = stripes[home];
+            stripe.lock.lock();
+        }
+
+        final int added;
+        try {
+            final int before = stripe.map.size();
+            stripe.map.add(aggregateMap);
+            added = stripe.map.size() - before;
+            size.addAndGet(added);
         } finally {
-            mapLock.unlock();
+            stripe.lock.unlock();
+        }
+        statistics.recordAdded(added);
+
+        if (size.get() > maxSize) {
+            flush(false);
         }
     }
 
@@ -85,61 +130,109 @@ public class SQLStatisticCacheImpl implements SQLStatisticCache {
     }
 
     public void flush(final boolean block) {
-        SQLStatisticAggregateMap flushMap = null;
+        if (!flushPermits.tryAcquire()) {
+            if (!block && size.get() <= maxSize * 2) {
+                // The flushes in flight will make room soon enough so carry on
+                // adding to the current stripes.
+                LOGGER.debug("flush() - Skipped as %s flushes are in progress", maxFlushes);
+                return;
+            }
 
-        mapLock.lock();
-        try {
-            // Switch out the current map under lock.
-            flushMap = this.map;
-            this.map = new SQLStatisticAggregateMap();
-        } finally {
-            mapLock.unlock();
+            // Wait for a flush to complete to keep memory use bounded.
+            final long startTime = System.currentTimeMillis();
+            flushPermits.acquireUninterruptibly();
+            statistics.recordBlocked(System.currentTimeMillis() - startTime);
         }
 
-        if (flushMap.size() > 0) {
-            // Flush the original map.
-            doFlush(block, flushMap);
+        final SwitchedOut switchedOut = switchOut();
+        if (switchedOut.count > 0) {
+            // Flush the merged map.
+            doFlush(block, switchedOut.map, switchedOut.count);
+        } else {
+            flushPermits.release();
         }
     }
 
-    private void doFlush(final boolean block, final SQLStatisticAggregateMap flushMap) {
-        try {
-            LOGGER.debug("doFlush() - Locking %s", flushMap);
-
-            flushQueue.put(flushMap);
-            if (block) {
-                try {
-                    taskManager.exec(new SQLStatisticFlushTask(flushMap));
-                } finally {
-                    flushQueue.poll();
-                }
+    /**
+     * Switch out the maps of all stripes and merge them together.
+     */
+    private SwitchedOut switchOut() {
+        SQLStatisticAggregateMap flushMap = null;
+        int count = 0;
+        for (final Stripe stripe : stripes) {
+            final SQLStatisticAggregateMap map;
+            stripe.lock.lock();
+            try {
+                map = stripe.map;
+                stripe.map = new SQLStatisticAggregateMap();
+                size.addAndGet(-map.size());
+            } finally {
+                stripe.lock.unlock();
+            }
+            count += map.size();
 
+            if (flushMap == null) {
+                flushMap = map;
             } else {
-                // Flush the original map.
-                taskManager.execAsync(new SQLStatisticFlushTask(flushMap), new TaskCallbackAdaptor<VoidResult>() {
-                    @Override
-                    public void onSuccess(final VoidResult result) {
-                        LOGGER.debug("doFlush() - Unlocking");
-                        flushQueue.poll();
-                    }
-
-                    @Override
-                    public void onFailure(final Throwable t) {
-                        LOGGER.error("doFlush() - Unlocking", t);
-                        flushQueue.poll();
-                    }
-                });
+                flushMap.add(map);
             }
+        }
+        LOGGER.debug("switchOut() - Switched out %s", flushMap);
+        return new SwitchedOut(flushMap, count);
+    }
+
+    /**
+     * Flush the map, the caller must hold a flush permit which is released
+     * when the flush completes. The count is the number of stripe values that
+     * were merged into the map so that the flushed and dropped counts are in
+     * the same units as the added count.
+     */
+    private void doFlush(final boolean block, final SQLStatisticAggregateMap flushMap, final int count) {
+        final long startTime = System.currentTimeMillis();
+
+        if (block) {
+            try {
+                taskManager.exec(new SQLStatisticFlushTask(flushMap));
+                statistics.recordFlushed(count, System.currentTimeMillis() - startTime);
+            } catch (final RuntimeException e) {
+                statistics.recordDropped(count);
+                throw e;
+            } finally {
+                flushPermits.release();
+            }
+
+        } else {
+            taskManager.execAsync(new SQLStatisticFlushTask(flushMap), new TaskCallbackAdaptor<VoidResult>() {
+                @Override
+                public void onSuccess(final VoidResult result) {
+                    LOGGER.debug("doFlush() - Releasing");
+                    statistics.recordFlushed(count, System.currentTimeMillis() - startTime);
+                    flushPermits.release();
+                }
 
-        } catch (final InterruptedException e) {
-            LOGGER.fatal("doFlush() - No expecting InterruptedException", e);
+                @Override
+                public void onFailure(final Throwable t) {
+                    LOGGER.error("doFlush() - Releasing, %s values have not been written", count, t);
+                    statistics.recordDropped(count);
+                    flushPermits.release();
+                }
+            });
         }
     }
 
+    SQLStatisticCacheStatistics getStatistics() {
+        return statistics;
+    }
+
     @StroomShutdown
     public void shutdown() {
         // Do a final blocking flush.
         flush(true);
+
+        // Wait for any other flushes to complete.
+        flushPermits.acquireUninterruptibly(maxFlushes);
+        flushPermits.release(maxFlushes);
+        LOGGER.info("shutdown() - SQL statistic cache statistics\n%s", statistics);
     }
 
     @StroomSimpleCronSchedule(cron = "0,10,20,30,40,50 * *")
@@ -147,5 +240,21 @@ public class SQLStatisticCacheImpl implements SQLStatisticCache {
     public void execute() {
         // Kick off a flush
         flush(false);
+        LOGGER.debug("execute() - SQL statistic cache statistics\n%s", statistics);
+    }
+
+    private static class SwitchedOut {
+        private final SQLStatisticAggregateMap map;
+        private final int count;
+
+        SwitchedOut(final SQLStatisticAggregateMap map, final int count) {
+            this.map = map;
+            this.count = count;
+        }
+    }
+
+    private static class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private SQLStatisticAggregateMap map = new SQLStatisticAggregateMap();
     }
 }
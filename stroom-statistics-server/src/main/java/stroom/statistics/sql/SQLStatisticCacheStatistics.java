@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.statistics.sql;
+
+import stroom.util.concurrent.DurationHistogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts of the values that pass through the {@link SQLStatisticCacheImpl} so
+ * that we can see whether producers are being held up waiting for flushes and
+ * whether any values have been lost because a flush failed. A value is an
+ * entry in the map of one of the stripes, so once everything has been flushed
+ * the added count equals the flushed count plus the dropped count.
+ */
+class SQLStatisticCacheStatistics {
+    private final AtomicLong added = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong contended = new AtomicLong();
+    private final DurationHistogram blocked = new DurationHistogram();
+    private final DurationHistogram flushDuration = new DurationHistogram();
+
+    void recordAdded(final long count) {
+        added.addAndGet(count);
+    }
+
+    void recordFlushed(final long count, final long durationMs) {
+        flushed.addAndGet(count);
+        flushDuration.record(durationMs);
+    }
+
+    void recordDropped(final long count) {
+        dropped.addAndGet(count);
+    }
+
+    /**
+     * Record that a producer found its stripe locked and had to use another.
+     */
+    void recordContended() {
+        contended.incrementAndGet();
+    }
+
+    /**
+     * Record that a producer had to wait for a flush to complete.
+     */
+    void recordBlocked(final long durationMs) {
+        blocked.record(durationMs);
+    }
+
+    long getAdded() {
+        return added.get();
+    }
+
+    long getFlushed() {
+        return flushed.get();
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    long getContended() {
+        return contended.get();
+    }
+
+    DurationHistogram getBlocked() {
+        return blocked;
+    }
+
+    DurationHistogram getFlushDuration() {
+        return flushDuration;
+    }
+
+    @Override
+    public String toString() {
+        return "added=" + added + ", flushed=" + flushed + ", dropped=" + dropped + ", contended=" + contended +
+                "\nblocked:        " + blocked +
+                "\nflush duration: " + flushDuration;
+    }
+}
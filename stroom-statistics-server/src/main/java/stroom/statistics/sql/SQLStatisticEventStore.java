@@ -36,6 +36,7 @@ import stroom.statistics.common.StatisticTag;
 import stroom.statistics.common.exception.StatisticsEventValidationException;
 import stroom.statistics.common.rollup.RollUpBitMask;
 import stroom.statistics.server.common.AbstractStatistics;
+import stroom.statistics.server.common.StatisticQueryPlan;
 import stroom.statistics.shared.StatisticStore;
 import stroom.statistics.shared.StatisticStoreEntity;
 import stroom.statistics.shared.StatisticType;
@@ -54,6 +55,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -81,32 +83,43 @@ public class SQLStatisticEventStore extends AbstractStatistics {
      */
     private static final long DEFAULT_AGE_MS_THRESHOLD = TimeUnit.MINUTES.toMillis(5);
 
+    private static final String TIME_BUCKET = "TIME_BUCKET";
+    private static final String PRECISION_GROUP = "PRES_GRP";
+
     // @formatter:off
+    // Values at or finer than the bucket precision are summed into buckets,
+    // coarser values don't fit exactly into a bucket so are returned as they
+    // are
     private static final String STAT_QUERY_SKELETON = "" + "select " + "K." + SQLStatisticNames.NAME + ", " + "V."
-            + SQLStatisticNames.PRECISION + ", " + "V." + SQLStatisticNames.TIME_MS + ", " + "V."
-            + SQLStatisticNames.VALUE_TYPE + ", " + "V." + SQLStatisticNames.VALUE + ", " + "V."
-            + SQLStatisticNames.COUNT + " " + "FROM " + SQLStatisticNames.SQL_STATISTIC_KEY_TABLE_NAME + " K " + "JOIN "
+            + SQLStatisticNames.VALUE_TYPE + ", "
+            + "CASE WHEN V." + SQLStatisticNames.PRECISION + " <= ? THEN FLOOR(V." + SQLStatisticNames.TIME_MS
+            + " / ?) * ? ELSE V." + SQLStatisticNames.TIME_MS + " END AS " + TIME_BUCKET + ", "
+            + "CASE WHEN V." + SQLStatisticNames.PRECISION + " <= ? THEN -1 ELSE V." + SQLStatisticNames.PRECISION
+            + " END AS " + PRECISION_GROUP + ", "
+            + "SUM(V." + SQLStatisticNames.VALUE + ") AS " + SQLStatisticNames.VALUE + ", "
+            + "SUM(V." + SQLStatisticNames.COUNT + ") AS " + SQLStatisticNames.COUNT + " "
+            + "FROM " + SQLStatisticNames.SQL_STATISTIC_KEY_TABLE_NAME + " K " + "JOIN "
             + SQLStatisticNames.SQL_STATISTIC_VALUE_TABLE_NAME + " V ON (K." + SQLStatisticNames.ID + " = V."
-            + SQLStatisticNames.SQL_STATISTIC_KEY_FOREIGN_KEY + ") " + "WHERE K." + SQLStatisticNames.NAME + " LIKE ? "
-            + "AND K." + SQLStatisticNames.NAME + " REGEXP ? " + "AND V." + SQLStatisticNames.TIME_MS + " >= ? "
+            + SQLStatisticNames.SQL_STATISTIC_KEY_FOREIGN_KEY + ") " + "WHERE K." + SQLStatisticNames.NAME_ID + " = ? "
+            + "AND K." + SQLStatisticNames.MASK + " = ? " + "AND V." + SQLStatisticNames.TIME_MS + " >= ? "
             + "AND V." + SQLStatisticNames.TIME_MS + " < ?";
 
+    private static final String STAT_QUERY_GROUP_BY = " GROUP BY K." + SQLStatisticNames.ID + ", K."
+            + SQLStatisticNames.NAME + ", V." + SQLStatisticNames.VALUE_TYPE + ", " + TIME_BUCKET + ", "
+            + PRECISION_GROUP;
+
     // @formatter:on
     /**
-     * SQL for testing querying the stat/tag names
-     * <p>
-     * create table test (name varchar(255)) ENGINE=InnoDB DEFAULT
-     * CHARSET=latin1;
-     * <p>
-     * insert into test values ('StatName1');
-     * <p>
-     * insert into test values ('StatName2¬Tag1¬Val1¬Tag2¬Val2');
-     * <p>
-     * insert into test values ('StatName2¬Tag2¬Val2¬Tag1¬Val1');
+     * Keys are found using the dictionary ids of the stat name and the tags
+     * and values in the filter terms (see {@link SQLStatKeyEncoder}) and the
+     * values are summed into time buckets chosen by the
+     * {@link StatisticQueryPlan}, e.g.
      * <p>
-     * select * from test where name REGEXP '^StatName1(¬|$)';
-     * <p>
-     * select * from test where name REGEXP '¬Tag1¬Val1(¬|$)';
+     * select ... sum(V.VAL), sum(V.CT) from SQL_STAT_KEY K join SQL_STAT_VAL V
+     * on (K.ID = V.FK_SQL_STAT_KEY_ID) where K.NAME_ID = 1 and K.MASK = 0 and
+     * ... and exists (select null from SQL_STAT_KEY_TAG KT where
+     * KT.FK_SQL_STAT_KEY_ID = K.ID and KT.TAG_ID = 2 and KT.VAL_ID = 3) group
+     * by K.ID, K.NAME, V.VAL_TP, TIME_BUCKET, PRES_GRP
      */
 
     private long poolAgeMsThreshold = DEFAULT_AGE_MS_THRESHOLD;
@@ -335,9 +348,11 @@ public class SQLStatisticEventStore extends AbstractStatistics {
     }
 
     @Override
-    public StatisticDataSet searchStatisticsData(final Search search, final StatisticStoreEntity dataSource) {
+    public StatisticDataSet searchStatisticsData(final Search search, final StatisticStoreEntity dataSource,
+                                                 final Set<String> requestedFieldNames) {
         final FindEventCriteria criteria = buildCriteria(search, dataSource);
-        return performStatisticQuery(dataSource, criteria);
+        final StatisticQueryPlan queryPlan = buildQueryPlan(criteria, dataSource, requestedFieldNames);
+        return performStatisticQuery(dataSource, criteria, queryPlan);
     }
 
     @Override
@@ -374,15 +389,20 @@ public class SQLStatisticEventStore extends AbstractStatistics {
     }
 
     private StatisticDataSet performStatisticQuery(final StatisticStoreEntity dataSource,
-                                                   final FindEventCriteria criteria) {
+                                                   final FindEventCriteria criteria, final StatisticQueryPlan queryPlan) {
         final Set<StatisticDataPoint> dataPoints = new HashSet<StatisticDataPoint>();
 
-        // TODO need to fingure out how we get the precision
+        final long bucketMs = queryPlan.getInterval().columnInterval();
         final StatisticDataSet statisticDataSet = new StatisticDataSet(dataSource.getName(),
-                dataSource.getStatisticType(), 1000L, dataPoints);
+                dataSource.getStatisticType(), bucketMs, dataPoints);
 
         try (Connection connection = statisticsDataSource.getConnection()) {
-            try (PreparedStatement ps = buildSearchPreparedStatement(dataSource, criteria, connection)) {
+            try (PreparedStatement ps = buildSearchPreparedStatement(dataSource, criteria, queryPlan,
+                    connection)) {
+                if (ps == null) {
+                    // the stat has no keys yet
+                    return statisticDataSet;
+                }
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
                         final StatisticType statisticType = StatisticType.PRIMITIVE_VALUE_CONVERTER
@@ -390,12 +410,13 @@ public class SQLStatisticEventStore extends AbstractStatistics {
 
                         final List<StatisticTag> statisticTags = extractStatisticTagsFromColumn(
                                 rs.getString(SQLStatisticNames.NAME));
-                        final long timeMs = rs.getLong(SQLStatisticNames.TIME_MS);
+                        final long timeMs = rs.getLong(TIME_BUCKET);
 
                         // the precision in the table represents the number of zeros
                         // of millisecond precision, e.g.
-                        // 6=1,000,000ms
-                        final long precisionMs = (long) Math.pow(10, rs.getInt(SQLStatisticNames.PRECISION));
+                        // 6=1,000,000ms, values that were bucketed have no precision
+                        final int precision = rs.getInt(PRECISION_GROUP);
+                        final long precisionMs = precision == -1 ? bucketMs : (long) Math.pow(10, precision);
 
                         StatisticDataPoint statisticDataPoint;
 
@@ -458,23 +479,65 @@ public class SQLStatisticEventStore extends AbstractStatistics {
         return statisticTags;
     }
 
-    private PreparedStatement buildSearchPreparedStatement(final StatisticStoreEntity dataSource,
-                                                           final FindEventCriteria criteria, final Connection connection) throws SQLException {
-        final RollUpBitMask rollUpBitMask = AbstractStatistics.buildRollUpBitMaskFromCriteria(criteria, dataSource);
+    /**
+     * Stored values cover 10^PRES ms so they can only be summed into a time
+     * bucket if that divides the bucket exactly, e.g. a day is made up of
+     * whole 10^5 ms periods but not whole 10^6 or 10^7 ms ones. Values with a
+     * coarser precision straddle buckets so are returned at their own
+     * precision instead.
+     *
+     * @return The coarsest precision whose values fit exactly into buckets of
+     * the supplied size.
+     */
+    static int getBucketPrecision(final long bucketMs) {
+        int precision = 0;
+        long scale = 10;
+        while (scale <= bucketMs && bucketMs % scale == 0) {
+            precision++;
+            scale *= 10;
+        }
+        return precision;
+    }
 
-        final String statNameWithMask = dataSource.getName() + rollUpBitMask.asHexString();
+    /**
+     * @return The search statement or null if the stat name is not in the
+     * dictionary so there is nothing to find.
+     */
+    private PreparedStatement buildSearchPreparedStatement(final StatisticStoreEntity dataSource,
+                                                           final FindEventCriteria criteria,
+                                                           final StatisticQueryPlan queryPlan,
+                                                           final Connection connection) throws SQLException {
+        final RollUpBitMask rollUpBitMask = queryPlan.getRollUpBitMask();
+        final long bucketMs = queryPlan.getInterval().columnInterval();
+        final int bucketPrecision = getBucketPrecision(bucketMs);
+
+        final String statName = SQLStatKey.cleanText(dataSource.getName());
+
+        // translate the stat name, tags and values into dictionary ids up
+        // front so the query only has to deal with ids
+        final Set<String> dictionaryValues = new HashSet<>();
+        dictionaryValues.add(statName);
+        SQLTagValueWhereClauseConverter.collectDictionaryValues(criteria.getFilterTermsTree(), dictionaryValues);
+        final Map<String, Integer> dictionary = SQLStatKeyEncoder.lookupIds(connection, dictionaryValues);
+
+        final Integer statNameId = dictionary.get(statName);
+        if (statNameId == null) {
+            return null;
+        }
 
-        final List<String> bindVariables = new ArrayList<>();
+        final List<Object> bindVariables = new ArrayList<>();
 
         String sqlQuery = STAT_QUERY_SKELETON + " ";
 
         final String whereClause = SQLTagValueWhereClauseConverter
-                .buildTagValueWhereClause(criteria.getFilterTermsTree(), bindVariables);
+                .buildTagValueWhereClause(criteria.getFilterTermsTree(), dictionary, bindVariables);
 
         if (whereClause != null && whereClause.length() != 0) {
             sqlQuery += " AND " + whereClause;
         }
 
+        sqlQuery += STAT_QUERY_GROUP_BY;
+
         final int maxResults = propertyService.getIntProperty(PROP_KEY_SQL_SEARCH_MAX_RESULTS, 100000);
         sqlQuery += " LIMIT " + maxResults;
 
@@ -483,19 +546,20 @@ public class SQLStatisticEventStore extends AbstractStatistics {
         final PreparedStatement ps = connection.prepareStatement(sqlQuery);
         int position = 1;
 
-        // do a like on the name first so we can hit the index before doing the
-        // slow regex matches
-        ps.setString(position++, statNameWithMask + "%");
-        // regex to match on the stat name which is always at the start of the
-        // string and either has a
-        ps.setString(position++, "^" + statNameWithMask + "(" + SQLStatisticConstants.NAME_SEPARATOR + "|$)");
+        ps.setInt(position++, bucketPrecision);
+        ps.setLong(position++, bucketMs);
+        ps.setLong(position++, bucketMs);
+        ps.setInt(position++, bucketPrecision);
+
+        ps.setInt(position++, statNameId);
+        ps.setShort(position++, rollUpBitMask.asShort());
 
         // set the start/end dates
         ps.setLong(position++, criteria.getPeriod().getFromMs());
         ps.setLong(position++, criteria.getPeriod().getToMs());
 
-        for (final String bindVariable : bindVariables) {
-            ps.setString(position++, bindVariable);
+        for (final Object bindVariable : bindVariables) {
+            ps.setObject(position++, bindVariable);
         }
 
         return ps;
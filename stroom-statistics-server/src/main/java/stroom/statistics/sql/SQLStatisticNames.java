@@ -32,6 +32,13 @@ public class SQLStatisticNames {
 
     public static final String SQL_STATISTIC_KEY_FOREIGN_KEY = FK_PREFIX + SQL_STATISTIC_KEY_TABLE_NAME + ID_SUFFIX;
 
+    public static final String SQL_STATISTIC_KEY_TAG_TABLE_NAME = SQL_STATISTIC_KEY_TABLE_NAME + SEP + "TAG";
+
+    public static final String SQL_STATISTIC_DICTIONARY_TABLE_NAME =
+            SQLNameConstants.SQL + SEP +
+            SQLNameConstants.STATISTIC + SEP +
+            SQLNameConstants.DICTIONARY;
+
     public static final String SQL_STATISTIC_VALUE_TABLE_NAME =
             SQLNameConstants.SQL + SEP +
             SQLNameConstants.STATISTIC + SEP +
@@ -60,4 +67,9 @@ public class SQLStatisticNames {
     public static final String VALUE_TYPE = SQLNameConstants.VALUE + SQLNameConstants.TYPE_SUFFIX;
 
     public static final String PRECISION = SQLNameConstants.PRECISION;
+
+    public static final String NAME_ID = NAME + ID_SUFFIX;
+    public static final String MASK = "MASK";
+    public static final String TAG_ID = "TAG" + ID_SUFFIX;
+    public static final String VALUE_ID = SQLNameConstants.VALUE + ID_SUFFIX;
 }
@@ -18,13 +18,14 @@ package stroom.statistics.sql;
 
 import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import stroom.statistics.common.FilterOperationMode;
 import stroom.statistics.common.FilterTermsTree;
 import stroom.statistics.common.FilterTermsTree.OperatorNode;
 import stroom.statistics.common.FilterTermsTree.TermNode;
 import stroom.statistics.common.PrintableNode;
-import stroom.util.sql.SQLSafe;
 
 public class SQLTagValueWhereClauseConverter {
     // map to provide a lookup from the FilterOperationMode enum to the SQL
@@ -38,27 +39,57 @@ public class SQLTagValueWhereClauseConverter {
         OPERATOR_TO_SQL_TERM_MAP.put(FilterOperationMode.NOT, "NOT");
     }
 
+    /**
+     * Build a where clause that matches the tags of the SQL_STAT_KEY rows
+     * (aliased as K) using the dictionary ids of the tags and values in the
+     * filter terms.
+     *
+     * @param dictionary
+     *            The dictionary ids of the tags and values, see
+     *            {@link #collectDictionaryValues(FilterTermsTree, Set)}.
+     */
     public static String buildTagValueWhereClause(final FilterTermsTree filterTermsTree,
-            final List<String> bindVariables) {
+            final Map<String, Integer> dictionary, final List<Object> bindVariables) {
         final StringBuilder whereClause = new StringBuilder("");
 
         if (filterTermsTree != null && filterTermsTree.getRootNode() != null) {
-            convertNode(filterTermsTree.getRootNode(), whereClause, bindVariables);
+            convertNode(filterTermsTree.getRootNode(), whereClause, dictionary, bindVariables);
         }
 
         return whereClause.toString();
     }
 
+    /**
+     * Add the tags and values of all the terms in the tree to the supplied set
+     * in the form they are held in the dictionary.
+     */
+    public static void collectDictionaryValues(final FilterTermsTree filterTermsTree, final Set<String> values) {
+        if (filterTermsTree != null && filterTermsTree.getRootNode() != null) {
+            collectDictionaryValues(filterTermsTree.getRootNode(), values);
+        }
+    }
+
+    private static void collectDictionaryValues(final PrintableNode node, final Set<String> values) {
+        if (node instanceof TermNode) {
+            values.add(SQLStatKey.cleanText(((TermNode) node).getTag()));
+            values.add(SQLStatKey.cleanTagValue(((TermNode) node).getValue()));
+        } else if (node instanceof OperatorNode) {
+            for (final PrintableNode child : ((OperatorNode) node).getChildren()) {
+                collectDictionaryValues(child, values);
+            }
+        }
+    }
+
     /**
      * Recursive method to build up a where clause string (and associated list
      * of bind variables) from a tree of {@link PrintableNode} objects
      */
     private static void convertNode(final PrintableNode oldNode, final StringBuilder whereClause,
-            final List<String> bindVariables) {
+            final Map<String, Integer> dictionary, final List<Object> bindVariables) {
         if (oldNode instanceof TermNode) {
-            convertTermNode((TermNode) oldNode, whereClause, bindVariables);
+            convertTermNode((TermNode) oldNode, whereClause, dictionary, bindVariables);
         } else if (oldNode instanceof OperatorNode) {
-            convertOperatorNode((OperatorNode) oldNode, whereClause, bindVariables);
+            convertOperatorNode((OperatorNode) oldNode, whereClause, dictionary, bindVariables);
 
         } else {
             throw new RuntimeException(
@@ -67,32 +98,29 @@ public class SQLTagValueWhereClauseConverter {
     }
 
     private static void convertTermNode(final TermNode oldNode, final StringBuilder whereClause,
-            final List<String> bindVariables) {
-        final String valueString = oldNode.getValue();
-
-        final String cleanedValue;
-
-        if (valueString == null || valueString.isEmpty()) {
-            cleanedValue = SQLStatisticConstants.NULL_VALUE_STRING;
-        } else {
-            cleanedValue = SQLSafe.cleanRegexpTerm(valueString);
+            final Map<String, Integer> dictionary, final List<Object> bindVariables) {
+        final Integer tagId = dictionary.get(SQLStatKey.cleanText(oldNode.getTag()));
+        final Integer valueId = dictionary.get(SQLStatKey.cleanTagValue(oldNode.getValue()));
+
+        if (tagId == null || valueId == null) {
+            // the tag or value has never been seen so no key can match
+            whereClause.append(" 1 = 0 ");
+            return;
         }
-        // construct something like:
-        // sql: ' name REGEXP ?'
-        // bind: '¬Tag1¬Val1(¬|$)'
-        // which equates to: ' name REGEXP '¬Tag1¬Val1(¬|$)' '
-
-        whereClause.append(" " + SQLStatisticNames.NAME + " REGEXP ? ");
 
-        final String regexTerm = SQLStatisticConstants.NAME_SEPARATOR + oldNode.getTag()
-                + SQLStatisticConstants.NAME_SEPARATOR + cleanedValue + "($|" + SQLStatisticConstants.NAME_SEPARATOR
-                + ")";
-
-        bindVariables.add(regexTerm);
+        // construct something like:
+        // sql: ' EXISTS (SELECT ... WHERE ... TAG_ID = ? AND VAL_ID = ?) '
+        // bind: 12, 34
+        whereClause.append(" EXISTS (SELECT NULL FROM " + SQLStatisticNames.SQL_STATISTIC_KEY_TAG_TABLE_NAME
+                + " KT WHERE KT." + SQLStatisticNames.SQL_STATISTIC_KEY_FOREIGN_KEY + " = K." + SQLStatisticNames.ID
+                + " AND KT." + SQLStatisticNames.TAG_ID + " = ? AND KT." + SQLStatisticNames.VALUE_ID + " = ?) ");
+
+        bindVariables.add(tagId);
+        bindVariables.add(valueId);
     }
 
     private static void convertOperatorNode(final FilterTermsTree.OperatorNode oldNode, final StringBuilder whereClause,
-            final List<String> bindVariables) {
+            final Map<String, Integer> dictionary, final List<Object> bindVariables) {
         if (oldNode.getChildren().size() < 1) {
             throw new RuntimeException("Operator node cannot have no children");
         }
@@ -103,7 +131,7 @@ public class SQLTagValueWhereClauseConverter {
             }
             // should get something like ' NOT (.......) '
             whereClause.append(" " + OPERATOR_TO_SQL_TERM_MAP.get(oldNode.getFilterOperationMode()) + " (");
-            convertNode(oldNode.getChildren().get(0), whereClause, bindVariables);
+            convertNode(oldNode.getChildren().get(0), whereClause, dictionary, bindVariables);
             whereClause.append(" ) ");
 
         } else {
@@ -113,7 +141,7 @@ public class SQLTagValueWhereClauseConverter {
             whereClause.append(" ( ");
             int i = 1;
             for (final PrintableNode oldChild : oldNode.getChildren()) {
-                convertNode(oldChild, whereClause, bindVariables);
+                convertNode(oldChild, whereClause, dictionary, bindVariables);
 
                 if (i != oldNode.getChildren().size()) {
                     // not the last child so add the operator in between
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.statistics.sql.db.migration.mysql;
+
+import org.flywaydb.core.api.migration.jdbc.JdbcMigration;
+import stroom.statistics.sql.SQLStatKeyEncoder;
+import stroom.util.logging.StroomLogger;
+
+import java.sql.Connection;
+
+/**
+ * Dictionary encode all of the existing SQL_STAT_KEY rows so that they can be
+ * found by searches.
+ */
+public class V5_0_0_61__Encode_Stat_Keys implements JdbcMigration {
+    private static final StroomLogger LOGGER = StroomLogger.getLogger(V5_0_0_61__Encode_Stat_Keys.class);
+
+    @Override
+    public void migrate(final Connection connection) throws Exception {
+        LOGGER.info("Starting stat key encoding");
+
+        final int count = SQLStatKeyEncoder.encodeNewKeys(connection);
+
+        LOGGER.info("Finished stat key encoding, encoded " + count + " keys");
+    }
+}
@@ -0,0 +1,30 @@
+-- Dictionary encode the SQL_STAT_KEY names so that searches can find keys by
+-- id rather than by pattern matching the composite NAME column.
+
+--
+-- Table structure for table sql_stat_dict
+--
+CREATE TABLE SQL_STAT_DICT (
+  ID 				int(11) auto_increment PRIMARY KEY,
+  VAL 				varchar(766) NOT NULL,
+  UNIQUE 			(VAL)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
+--
+-- The stat name and roll up mask of each key, populated by the aggregation
+-- process for new keys and V5_0_0_61 for existing ones
+--
+ALTER TABLE SQL_STAT_KEY ADD COLUMN NAME_ID int(11) DEFAULT NULL;
+ALTER TABLE SQL_STAT_KEY ADD COLUMN MASK smallint(6) DEFAULT NULL;
+CREATE INDEX SQL_STAT_KEY_NAME_ID_MASK ON SQL_STAT_KEY (NAME_ID, MASK);
+
+--
+-- Table structure for table sql_stat_key_tag
+--
+CREATE TABLE SQL_STAT_KEY_TAG (
+  FK_SQL_STAT_KEY_ID	bigint(20) NOT NULL,
+  TAG_ID				int(11) NOT NULL,
+  VAL_ID				int(11) NOT NULL,
+  PRIMARY KEY (TAG_ID, VAL_ID, FK_SQL_STAT_KEY_ID),
+  CONSTRAINT 			SQL_STAT_KEY_TAG_FK_STAT_KEY_ID FOREIGN KEY (FK_SQL_STAT_KEY_ID) REFERENCES SQL_STAT_KEY (ID) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
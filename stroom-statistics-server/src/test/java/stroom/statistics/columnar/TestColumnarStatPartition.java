@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.statistics.columnar;
+
+import org.junit.Assert;
+import org.junit.Test;
+import stroom.statistics.shared.EventStoreTimeIntervalEnum;
+import stroom.streamstore.server.fs.FileSystemUtil;
+import stroom.util.test.StroomUnitTest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class TestColumnarStatPartition extends StroomUnitTest {
+    private static final String[] TAG_NAMES = new String[]{"T1", "T2"};
+    private static final long HOUR_MS = EventStoreTimeIntervalEnum.HOUR.columnInterval();
+
+    @Test
+    public void testSegmentRoundTrip() throws IOException {
+        final Path file = getRootDir().resolve(ColumnarStatSegment.getFileName(1));
+        Files.createDirectories(file.getParent());
+
+        final ColumnarStatAggregateMap aggregateMap = new ColumnarStatAggregateMap(TAG_NAMES);
+        aggregateMap.get(key(HOUR_MS, "A", null)).addCount(3);
+        aggregateMap.get(key(2 * HOUR_MS, null, "B")).addValue(1.5);
+        aggregateMap.get(key(2 * HOUR_MS, null, "B")).addValue(4.5);
+
+        final ColumnarStatSegment written = ColumnarStatSegment.write(file, 1, 1, aggregateMap);
+        Assert.assertEquals(2, written.getRowCount());
+
+        final ColumnarStatSegment segment = ColumnarStatSegment.readHeader(file);
+        Assert.assertArrayEquals(TAG_NAMES, segment.getTagNames());
+        Assert.assertTrue(segment.overlaps(HOUR_MS, HOUR_MS + 1));
+        Assert.assertFalse(segment.overlaps(3 * HOUR_MS, 4 * HOUR_MS));
+
+        final ColumnarStatAggregateMap read = segment.read();
+        Assert.assertEquals(2, read.size());
+        Assert.assertEquals(3, read.get(key(HOUR_MS, "A", null)).getCount());
+        final ColumnarStatAggregate value = read.get(key(2 * HOUR_MS, null, "B"));
+        Assert.assertEquals(2, value.getCount());
+        Assert.assertEquals(6, value.getValue(), 0);
+        Assert.assertEquals(1.5, value.getMinValue(), 0);
+        Assert.assertEquals(4.5, value.getMaxValue(), 0);
+    }
+
+    @Test
+    public void testAppendAndCompact() throws IOException {
+        final ColumnarStatPartition partition = ColumnarStatPartition.create(getRootDir(), "uuid",
+                EventStoreTimeIntervalEnum.HOUR, 0);
+
+        for (int i = 0; i < 5; i++) {
+            final ColumnarStatAggregateMap aggregateMap = new ColumnarStatAggregateMap(TAG_NAMES);
+            aggregateMap.get(key(HOUR_MS, "A", "B")).addCount(1);
+            aggregateMap.get(key(HOUR_MS * i, "A", null)).addCount(1);
+            partition.append(aggregateMap);
+        }
+        Assert.assertEquals(5, partition.getSegments().size());
+        Assert.assertFalse(partition.compact(5));
+        Assert.assertTrue(partition.compact(2));
+
+        Assert.assertEquals(1, partition.getSegments().size());
+        Assert.assertEquals(6, partition.getSegments().get(0).getSeq());
+
+        final ColumnarStatAggregateMap read = partition.read(TAG_NAMES, 0, 5 * HOUR_MS);
+        Assert.assertEquals(6, read.size());
+        Assert.assertEquals(5, read.get(key(HOUR_MS, "A", "B")).getCount());
+        Assert.assertEquals(1, read.get(key(2 * HOUR_MS, "A", null)).getCount());
+
+        // Values appended after compaction are still read.
+        final ColumnarStatAggregateMap aggregateMap = new ColumnarStatAggregateMap(TAG_NAMES);
+        aggregateMap.get(key(HOUR_MS, "A", "B")).addCount(1);
+        partition.append(aggregateMap);
+        Assert.assertEquals(6, partition.read(TAG_NAMES, 0, 5 * HOUR_MS).get(key(HOUR_MS, "A", "B")).getCount());
+    }
+
+    @Test
+    public void testReadWithChangedTags() throws IOException {
+        final ColumnarStatPartition partition = ColumnarStatPartition.create(getRootDir(), "uuid",
+                EventStoreTimeIntervalEnum.HOUR, 0);
+        final ColumnarStatAggregateMap aggregateMap = new ColumnarStatAggregateMap(TAG_NAMES);
+        aggregateMap.get(key(HOUR_MS, "A", "B")).addCount(1);
+        partition.append(aggregateMap);
+
+        final ColumnarStatAggregateMap read = partition.read(new String[]{"T0", "T2"}, 0, 5 * HOUR_MS);
+        Assert.assertEquals(1, read.get(new ColumnarStatKey(HOUR_MS, (short) 0, new String[]{null, "B"}))
+                .getCount());
+    }
+
+    @Test
+    public void testDeleteOlderThan() throws IOException {
+        final Path rootDir = getRootDir();
+        final long rowKeyInterval = EventStoreTimeIntervalEnum.HOUR.rowKeyInterval();
+        for (int i = 0; i < 3; i++) {
+            final ColumnarStatAggregateMap aggregateMap = new ColumnarStatAggregateMap(TAG_NAMES);
+            aggregateMap.get(key(rowKeyInterval * i, "A", "B")).addCount(1);
+            ColumnarStatPartition.create(rootDir, "uuid", EventStoreTimeIntervalEnum.HOUR, rowKeyInterval * i)
+                    .append(aggregateMap);
+        }
+
+        Assert.assertEquals(2, ColumnarStatPartition.deleteOlderThan(rootDir, rowKeyInterval * 2 + 1));
+        Assert.assertEquals(1, ColumnarStatPartition
+                .create(rootDir, "uuid", EventStoreTimeIntervalEnum.HOUR, rowKeyInterval * 2).getSegments().size());
+        Assert.assertEquals(0, ColumnarStatPartition
+                .create(rootDir, "uuid", EventStoreTimeIntervalEnum.HOUR, 0).getSegments().size());
+    }
+
+    @Test
+    public void testReadTagValues() throws IOException {
+        final Path rootDir = getRootDir();
+        final ColumnarStatAggregateMap aggregateMap = new ColumnarStatAggregateMap(TAG_NAMES);
+        aggregateMap.get(key(HOUR_MS, "apple", "pear")).addCount(1);
+        aggregateMap.get(key(HOUR_MS, "banana", null)).addCount(1);
+        ColumnarStatPartition.create(rootDir, "uuid1", EventStoreTimeIntervalEnum.DAY, 0).append(aggregateMap);
+
+        final ColumnarStatAggregateMap other = new ColumnarStatAggregateMap(new String[]{"T2"});
+        other.get(new ColumnarStatKey(HOUR_MS, (short) 0, new String[]{"plum"})).addCount(1);
+        ColumnarStatPartition.create(rootDir, "uuid2", EventStoreTimeIntervalEnum.DAY, 0).append(other);
+
+        // Only the day partitions are read.
+        final ColumnarStatAggregateMap hour = new ColumnarStatAggregateMap(TAG_NAMES);
+        hour.get(key(HOUR_MS, "cherry", null)).addCount(1);
+        ColumnarStatPartition.create(rootDir, "uuid1", EventStoreTimeIntervalEnum.HOUR, 0).append(hour);
+
+        final Set<String> t1 = new TreeSet<>();
+        ColumnarStatPartition.readTagValues(rootDir, "T1", null, t1);
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("apple", "banana")), t1);
+
+        final Set<String> t2 = new TreeSet<>();
+        ColumnarStatPartition.readTagValues(rootDir, "T2", "p", t2);
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("pear", "plum")), t2);
+
+        final Set<String> t3 = new TreeSet<>();
+        ColumnarStatPartition.readTagValues(rootDir, "T3", null, t3);
+        Assert.assertTrue(t3.isEmpty());
+    }
+
+    private Path getRootDir() throws IOException {
+        final Path dir = getCurrentTestDir().toPath().resolve("columnar");
+        FileSystemUtil.deleteDirectory(dir.toFile());
+        return dir;
+    }
+
+    private ColumnarStatKey key(final long timeMs, final String t1, final String t2) {
+        return new ColumnarStatKey(timeMs, (short) 0, new String[]{t1, t2});
+    }
+}
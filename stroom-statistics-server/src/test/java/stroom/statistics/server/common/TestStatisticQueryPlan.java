@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.statistics.server.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+import stroom.entity.shared.Period;
+import stroom.statistics.common.FilterTermsTree;
+import stroom.statistics.common.FindEventCriteria;
+import stroom.statistics.shared.CustomRollUpMask;
+import stroom.statistics.shared.EventStoreTimeIntervalEnum;
+import stroom.statistics.shared.StatisticField;
+import stroom.statistics.shared.StatisticRollUpType;
+import stroom.statistics.shared.StatisticStoreEntity;
+import stroom.statistics.shared.StatisticsDataSourceData;
+import stroom.util.test.StroomUnitTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+public class TestStatisticQueryPlan extends StroomUnitTest {
+    private static final String TAG1 = "tag1";
+    private static final String TAG2 = "tag2";
+    private static final String TAG3 = "tag3";
+    private static final long DAY_MS = EventStoreTimeIntervalEnum.DAY.columnInterval();
+
+    @Test
+    public void testRollUpUnusedTags() {
+        final StatisticQueryPlan plan = StatisticQueryPlan.create(criteria(DAY_MS, TAG2),
+                dataSource(StatisticRollUpType.ALL), new HashSet<>(Arrays.asList(TAG1)), 1000);
+
+        // tag2 is filtered on and tag1 is returned so only tag3 can be rolled up
+        Assert.assertEquals(Collections.singleton(TAG3), plan.getRolledUpFieldNames());
+        Assert.assertEquals(Collections.singleton(2), plan.getRollUpBitMask().getTagPositions());
+    }
+
+    @Test
+    public void testNoRollUpWithoutRequestedFields() {
+        final StatisticQueryPlan plan = StatisticQueryPlan.create(criteria(DAY_MS, null),
+                dataSource(StatisticRollUpType.ALL), null, 1000);
+
+        Assert.assertTrue(plan.getRolledUpFieldNames().isEmpty());
+        Assert.assertEquals(0, plan.getRollUpBitMask().asShort());
+    }
+
+    @Test
+    public void testCustomRollUp() {
+        // Only tag1 is used, the custom masks are [], [1,2] and [0,1,2] so the
+        // best is [1,2].
+        final StatisticQueryPlan plan = StatisticQueryPlan.create(criteria(DAY_MS, TAG1),
+                dataSource(StatisticRollUpType.CUSTOM), Collections.emptySet(), 1000);
+
+        Assert.assertEquals(new HashSet<>(Arrays.asList(TAG2, TAG3)), plan.getRolledUpFieldNames());
+    }
+
+    @Test
+    public void testInterval() {
+        final StatisticStoreEntity dataSource = dataSource(StatisticRollUpType.NONE);
+        dataSource.setPrecision(EventStoreTimeIntervalEnum.SECOND.columnInterval());
+
+        Assert.assertEquals(EventStoreTimeIntervalEnum.SECOND,
+                StatisticQueryPlan.create(criteria(1000 * 1000, null), dataSource, null, 1000).getInterval());
+        Assert.assertEquals(EventStoreTimeIntervalEnum.HOUR,
+                StatisticQueryPlan.create(criteria(DAY_MS, null), dataSource, null, 1000).getInterval());
+        Assert.assertEquals(EventStoreTimeIntervalEnum.DAY,
+                StatisticQueryPlan.create(criteria(DAY_MS * 100, null), dataSource, null, 10).getInterval());
+
+        // Never finer than the precision of the statistic.
+        dataSource.setPrecision(EventStoreTimeIntervalEnum.HOUR.columnInterval());
+        Assert.assertEquals(EventStoreTimeIntervalEnum.HOUR,
+                StatisticQueryPlan.create(criteria(1000, null), dataSource, null, 1000).getInterval());
+    }
+
+    private FindEventCriteria criteria(final long periodMs, final String filterTag) {
+        final FilterTermsTree filterTermsTree = filterTag == null ? FilterTermsTree.emptyTree()
+                : new FilterTermsTree(new FilterTermsTree.TermNode(filterTag, "value"));
+        return FindEventCriteria.instance(new Period(0L, periodMs), "MyStat", filterTermsTree);
+    }
+
+    private StatisticStoreEntity dataSource(final StatisticRollUpType rollUpType) {
+        final List<StatisticField> fields = new ArrayList<>();
+        fields.add(new StatisticField(TAG1));
+        fields.add(new StatisticField(TAG2));
+        fields.add(new StatisticField(TAG3));
+
+        final StatisticsDataSourceData data = new StatisticsDataSourceData();
+        data.setStatisticFields(fields);
+        data.addCustomRollUpMask(new CustomRollUpMask(new ArrayList<>()));
+        data.addCustomRollUpMask(new CustomRollUpMask(Arrays.asList(1, 2)));
+        data.addCustomRollUpMask(new CustomRollUpMask(Arrays.asList(0, 1, 2)));
+
+        final StatisticStoreEntity dataSource = new StatisticStoreEntity();
+        dataSource.setStatisticDataSourceDataObject(data);
+        dataSource.setRollUpType(rollUpType);
+        return dataSource;
+    }
+}
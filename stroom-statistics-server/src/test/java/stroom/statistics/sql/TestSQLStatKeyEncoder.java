@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.statistics.sql;
+
+import org.junit.Assert;
+import org.junit.Test;
+import stroom.statistics.common.RollUpBitMaskUtil;
+import stroom.statistics.common.StatisticTag;
+import stroom.statistics.common.rollup.RollUpBitMask;
+import stroom.util.test.StroomUnitTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TestSQLStatKeyEncoder extends StroomUnitTest {
+    @Test
+    public void testParseTags() {
+        final List<StatisticTag> tags = new ArrayList<>();
+        tags.add(new StatisticTag("T1", "T1V"));
+        tags.add(new StatisticTag("T2", null));
+        tags.add(new StatisticTag("T3", RollUpBitMask.ROLL_UP_TAG_VALUE));
+        final SQLStatKey statKey = new SQLStatKey(1234L, "MyStatName", tags);
+
+        final SQLStatKeyEncoder.KeyParts parts = SQLStatKeyEncoder.parse(1, statKey.getName());
+
+        Assert.assertEquals("MyStatName", parts.getStatName());
+        Assert.assertEquals(RollUpBitMaskUtil.fromSortedTagList(tags).asShort(), parts.getMask());
+        Assert.assertEquals(Arrays.asList("T1", "T2", "T3"), parts.getTags());
+        Assert.assertEquals(Arrays.asList("T1V", SQLStatisticConstants.NULL_VALUE_STRING,
+                RollUpBitMask.ROLL_UP_TAG_VALUE), parts.getValues());
+    }
+
+    @Test
+    public void testParseNoTags() {
+        final SQLStatKey statKey = new SQLStatKey(1234L, "MyStatName", Collections.emptyList());
+
+        final SQLStatKeyEncoder.KeyParts parts = SQLStatKeyEncoder.parse(1, statKey.getName());
+
+        Assert.assertEquals("MyStatName", parts.getStatName());
+        Assert.assertEquals(0, parts.getMask());
+        Assert.assertEquals(0, parts.getTags().size());
+    }
+
+    @Test
+    public void testParseInvalid() {
+        // odd number of tag tokens
+        Assert.assertNull(SQLStatKeyEncoder.parse(1, "MyStatName0000" + SQLStatisticConstants.NAME_SEPARATOR + "T1")
+                .getStatName());
+        // no mask
+        Assert.assertNull(SQLStatKeyEncoder.parse(1, "AB").getStatName());
+    }
+}
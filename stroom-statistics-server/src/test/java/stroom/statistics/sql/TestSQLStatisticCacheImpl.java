@@ -0,0 +1,265 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.statistics.sql;
+
+import org.apache.commons.lang.mutable.MutableLong;
+import org.junit.Assert;
+import org.junit.Test;
+import stroom.entity.shared.BaseResultList;
+import stroom.statistics.common.RolledUpStatisticEvent;
+import stroom.statistics.common.StatisticEvent;
+import stroom.statistics.common.exception.StatisticsEventValidationException;
+import stroom.task.server.TaskCallback;
+import stroom.task.server.TaskManager;
+import stroom.task.server.ThreadPoolStatistics;
+import stroom.task.shared.FindTaskCriteria;
+import stroom.task.shared.FindTaskProgressCriteria;
+import stroom.task.shared.TaskProgress;
+import stroom.util.shared.Task;
+import stroom.util.shared.TaskId;
+import stroom.util.shared.ThreadPool;
+import stroom.util.test.StroomUnitTest;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+public class TestSQLStatisticCacheImpl extends StroomUnitTest {
+    private static final long TIME_MS = 101_000L;
+    private static final long WAIT_MS = TimeUnit.SECONDS.toMillis(10);
+
+    @Test
+    public void testConcurrentAdd() throws InterruptedException {
+        final StubTaskManager taskManager = new StubTaskManager(true);
+        final SQLStatisticCacheImpl cache = new SQLStatisticCacheImpl(taskManager, 10, 4, 2);
+
+        final int threadCount = 8;
+        final int addsPerThread = 1000;
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            final Thread thread = new Thread(() -> {
+                for (int j = 0; j < addsPerThread; j++) {
+                    cache.add(createMap("stat" + (j % 20), 1));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join(WAIT_MS);
+            Assert.assertFalse(thread.isAlive());
+        }
+        cache.flush(true);
+
+        // Every added value must have been written.
+        Assert.assertEquals(threadCount * addsPerThread, taskManager.getFlushedCount());
+
+        final SQLStatisticCacheStatistics statistics = cache.getStatistics();
+        Assert.assertEquals(0, statistics.getDropped());
+        Assert.assertEquals(statistics.getAdded(), statistics.getFlushed());
+    }
+
+    @Test
+    public void testBlockedWhenFlushesInProgress() throws InterruptedException {
+        final StubTaskManager taskManager = new StubTaskManager(false);
+        final SQLStatisticCacheImpl cache = new SQLStatisticCacheImpl(taskManager, 1, 1, 2);
+
+        // Start two flushes that don't complete so both permits are held.
+        for (int i = 0; i < 2; i++) {
+            cache.add(createMap("stat" + (i * 2), 1));
+            cache.add(createMap("stat" + (i * 2 + 1), 1));
+        }
+        Assert.assertEquals(2, taskManager.getPendingCount());
+
+        // The cache can grow to twice the max size before producers wait.
+        cache.add(createMap("stat4", 1));
+        cache.add(createMap("stat5", 1));
+        final Thread producer = new Thread(() -> cache.add(createMap("stat6", 1)));
+        producer.start();
+        producer.join(200);
+        Assert.assertTrue(producer.isAlive());
+        Assert.assertEquals(0, cache.getStatistics().getBlocked().getCount());
+
+        // Completing a flush lets the producer carry on and flush.
+        taskManager.completeNext();
+        producer.join(WAIT_MS);
+        Assert.assertFalse(producer.isAlive());
+        Assert.assertEquals(1, cache.getStatistics().getBlocked().getCount());
+        Assert.assertEquals(2, taskManager.getPendingCount());
+
+        taskManager.completeAll();
+        Assert.assertEquals(7, taskManager.getFlushedCount());
+    }
+
+    @Test
+    public void testShutdownWaitsForFlushes() throws InterruptedException {
+        final StubTaskManager taskManager = new StubTaskManager(false);
+        final SQLStatisticCacheImpl cache = new SQLStatisticCacheImpl(taskManager, 1, 1, 2);
+
+        cache.add(createMap("stat1", 1));
+        cache.add(createMap("stat2", 1));
+        Assert.assertEquals(1, taskManager.getPendingCount());
+        cache.add(createMap("stat3", 1));
+
+        final Thread shutdown = new Thread(cache::shutdown);
+        shutdown.start();
+        shutdown.join(200);
+
+        // The remaining value has been written but shutdown is still waiting
+        // for the flush in flight.
+        Assert.assertTrue(shutdown.isAlive());
+        Assert.assertEquals(1, taskManager.getFlushedCount());
+
+        taskManager.completeAll();
+        shutdown.join(WAIT_MS);
+        Assert.assertFalse(shutdown.isAlive());
+        Assert.assertEquals(3, taskManager.getFlushedCount());
+        Assert.assertEquals(cache.getStatistics().getAdded(), cache.getStatistics().getFlushed());
+    }
+
+    private SQLStatisticAggregateMap createMap(final String statName, final long count) {
+        final SQLStatisticAggregateMap aggregateMap = new SQLStatisticAggregateMap();
+        try {
+            aggregateMap.addRolledUpEvent(new RolledUpStatisticEvent(StatisticEvent.createCount(TIME_MS, statName,
+                    Collections.emptyList(), count)), 1_000L);
+        } catch (final StatisticsEventValidationException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        return aggregateMap;
+    }
+
+    /**
+     * Records the counts of the flushed maps. Asynchronous flushes either
+     * complete straight away or wait until the test completes them.
+     */
+    private static class StubTaskManager implements TaskManager {
+        private final boolean completeAsync;
+        private final Deque<Runnable> pending = new ArrayDeque<>();
+        private long flushedCount;
+
+        StubTaskManager(final boolean completeAsync) {
+            this.completeAsync = completeAsync;
+        }
+
+        @Override
+        public <R> R exec(final Task<R> task) {
+            flushed(task);
+            return null;
+        }
+
+        @Override
+        public <R> void execAsync(final Task<R> task, final TaskCallback<R> callback) {
+            final Runnable runnable = () -> {
+                flushed(task);
+                callback.onSuccess(null);
+            };
+            if (completeAsync) {
+                runnable.run();
+            } else {
+                synchronized (this) {
+                    pending.add(runnable);
+                }
+            }
+        }
+
+        void completeNext() {
+            final Runnable runnable;
+            synchronized (this) {
+                runnable = pending.poll();
+            }
+            runnable.run();
+        }
+
+        void completeAll() {
+            while (getPendingCount() > 0) {
+                completeNext();
+            }
+        }
+
+        synchronized int getPendingCount() {
+            return pending.size();
+        }
+
+        synchronized long getFlushedCount() {
+            return flushedCount;
+        }
+
+        private synchronized void flushed(final Task<?> task) {
+            for (final Entry<SQLStatKey, MutableLong> entry : ((SQLStatisticFlushTask) task).getMap()
+                    .countEntrySet()) {
+                flushedCount += entry.getValue().longValue();
+            }
+        }
+
+        @Override
+        public void startup() {
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public <R> void execAsync(final Task<R> task) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <R> void execAsync(final Task<R> task, final ThreadPool threadPool) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <R> void execAsync(final Task<R> task, final TaskCallback<R> callback, final ThreadPool threadPool) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Task<?> getTaskById(final TaskId taskId) {
+            return null;
+        }
+
+        @Override
+        public BaseResultList<TaskProgress> terminate(final FindTaskCriteria criteria, final boolean kill) {
+            return null;
+        }
+
+        @Override
+        public List<ThreadPoolStatistics> getThreadPoolStatistics() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public int getCurrentTaskCount() {
+            return 0;
+        }
+
+        @Override
+        public BaseResultList<TaskProgress> find(final FindTaskProgressCriteria criteria) {
+            return null;
+        }
+
+        @Override
+        public FindTaskProgressCriteria createCriteria() {
+            return null;
+        }
+    }
+}
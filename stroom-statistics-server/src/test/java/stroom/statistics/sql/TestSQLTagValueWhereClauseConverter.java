@@ -18,7 +18,11 @@ package stroom.statistics.sql;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 
 import org.junit.Assert;
@@ -37,9 +41,9 @@ import stroom.util.test.StroomUnitTest;
 public class TestSQLTagValueWhereClauseConverter extends StroomUnitTest {
     private static class Result {
         private final String whereClause;
-        private final List<String> bindVariables;
+        private final List<Object> bindVariables;
 
-        public Result(final String whereClause, final List<String> bindVariables) {
+        public Result(final String whereClause, final List<Object> bindVariables) {
             this.whereClause = whereClause;
             this.bindVariables = bindVariables;
         }
@@ -48,7 +52,7 @@ public class TestSQLTagValueWhereClauseConverter extends StroomUnitTest {
             return whereClause;
         }
 
-        public List<String> getBindVariables() {
+        public List<Object> getBindVariables() {
             return bindVariables;
         }
     }
@@ -70,7 +74,8 @@ public class TestSQLTagValueWhereClauseConverter extends StroomUnitTest {
 
         final Result result = convertAndDump(tree);
 
-        checkExpectedBinds(1, result);
+        checkExpectedBinds(2, result);
+        Assert.assertEquals(Arrays.asList((Object) 1, 2), result.getBindVariables());
     }
 
     @Test
@@ -83,8 +88,9 @@ public class TestSQLTagValueWhereClauseConverter extends StroomUnitTest {
 
         final Result result = convertAndDump(tree);
 
-        checkExpectedBinds(2, result);
-        checkExpectedOperatorCount(1, "AND", result);
+        checkExpectedBinds(4, result);
+        // each term matches its tag id AND its value id
+        checkExpectedOperatorCount(1 + 2 * 2, "AND", result);
     }
 
     @Test
@@ -102,11 +108,36 @@ public class TestSQLTagValueWhereClauseConverter extends StroomUnitTest {
 
         final Result result = convertAndDump(tree);
 
-        checkExpectedBinds(3, result);
-        checkExpectedOperatorCount(2, "AND", result);
+        checkExpectedBinds(6, result);
+        checkExpectedOperatorCount(2 + 3 * 2, "AND", result);
         checkExpectedOperatorCount(1, "NOT", result);
     }
 
+    @Test
+    public void testUnknownValue() {
+        final PrintableNode termNode1 = new TermNode("Tag1", "Tag1Val1");
+        final PrintableNode termNode2 = new TermNode("Tag2", "UnknownVal");
+        final OperatorNode opNode = new OperatorNode(FilterOperationMode.OR, Arrays.asList(termNode1, termNode2));
+
+        final FilterTermsTree tree = new FilterTermsTree(opNode);
+
+        final Result result = convertAndDump(tree);
+
+        // a value that isn't in the dictionary can't match any key
+        checkExpectedBinds(2, result);
+        checkExpectedOperatorCount(1, " 1 = 0 ", result);
+    }
+
+    @Test
+    public void testNullValue() {
+        final FilterTermsTree tree = new FilterTermsTree(new TermNode("Tag1", null));
+
+        final Set<String> values = new HashSet<>();
+        SQLTagValueWhereClauseConverter.collectDictionaryValues(tree, values);
+
+        Assert.assertEquals(new HashSet<>(Arrays.asList("Tag1", SQLStatisticConstants.NULL_VALUE_STRING)), values);
+    }
+
     private void checkExpectedBinds(final int expectedCount, final Result result) {
         Assert.assertEquals(expectedCount, result.getBindVariables().size());
         Assert.assertEquals(expectedCount, getNumOfOccurrences(result.getWhereClause(), "?"));
@@ -117,15 +148,27 @@ public class TestSQLTagValueWhereClauseConverter extends StroomUnitTest {
     }
 
     private Result convertAndDump(final FilterTermsTree tree) {
-        final List<String> bindVariables = new ArrayList<>();
+        final Set<String> values = new HashSet<>();
+        SQLTagValueWhereClauseConverter.collectDictionaryValues(tree, values);
+
+        // give every known value an id in the order they appear
+        final Map<String, Integer> dictionary = new HashMap<>();
+        for (final String value : Arrays.asList("Tag1", "Tag1Val1", "Tag2", "Tag2Val1", "Tag3", "Tag3Val1")) {
+            if (values.contains(value)) {
+                dictionary.put(value, dictionary.size() + 1);
+            }
+        }
+
+        final List<Object> bindVariables = new ArrayList<>();
 
-        final String whereClause = SQLTagValueWhereClauseConverter.buildTagValueWhereClause(tree, bindVariables);
+        final String whereClause = SQLTagValueWhereClauseConverter.buildTagValueWhereClause(tree, dictionary,
+                bindVariables);
         String sql = whereClause;
 
         System.out.println(whereClause);
 
         int i = 1;
-        for (final String bindVariable : bindVariables) {
+        for (final Object bindVariable : bindVariables) {
             System.out.println("bind " + i + ": " + bindVariable);
             i++;
 
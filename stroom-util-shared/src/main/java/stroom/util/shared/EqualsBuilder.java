@@ -16,6 +16,8 @@
 
 package stroom.util.shared;
 
+import java.util.Arrays;
+
 /**
  * A GWT friendly version of commons EqualsBuilder.
  */
@@ -117,6 +119,15 @@ public class EqualsBuilder {
         return this;
     }
 
+    public EqualsBuilder append(final int[] lhs, final int[] rhs) {
+        if (!isEquals) {
+            return this;
+        }
+
+        isEquals = Arrays.equals(lhs, rhs);
+        return this;
+    }
+
     public boolean isEquals() {
         return isEquals;
     }
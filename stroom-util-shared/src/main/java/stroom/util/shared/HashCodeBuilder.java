@@ -16,6 +16,8 @@
 
 package stroom.util.shared;
 
+import java.util.Arrays;
+
 /**
  * A GWT friendly version of commons HashCodeBuilder.
  */
@@ -66,6 +68,10 @@ public class HashCodeBuilder {
         hashCode = hashCode * 31 + (value ? 0 : 1);
     }
 
+    public void append(final int[] value) {
+        hashCode = hashCode * 31 + Arrays.hashCode(value);
+    }
+
     public int toHashCode() {
         return hashCode;
     }
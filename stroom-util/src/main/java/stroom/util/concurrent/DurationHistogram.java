@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.util.concurrent;
+
+import stroom.util.shared.ModelStringUtil;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of durations in milliseconds. Durations are recorded
+ * into buckets whose upper bounds are powers of two so that percentiles can be
+ * estimated cheaply without holding on to every recorded value.
+ */
+public class DurationHistogram {
+    // Bucket 0 holds durations of 0ms, bucket n holds durations up to 2^(n-1)ms
+    // and the final bucket holds everything longer.
+    private static final int BUCKET_COUNT = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(final long durationMs) {
+        final long duration = Math.max(0, durationMs);
+        buckets.incrementAndGet(getBucket(duration));
+        count.incrementAndGet();
+        total.addAndGet(duration);
+
+        long currentMax = max.get();
+        while (duration > currentMax && !max.compareAndSet(currentMax, duration)) {
+            currentMax = max.get();
+        }
+    }
+
+    private static int getBucket(final long duration) {
+        if (duration == 0) {
+            return 0;
+        }
+        final int bucket = 65 - Long.numberOfLeadingZeros(duration - 1);
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    private static long getUpperBound(final int bucket) {
+        if (bucket == 0) {
+            return 0;
+        }
+        return 1L << (bucket - 1);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getTotal() {
+        return total.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getMean() {
+        final long c = count.get();
+        if (c == 0) {
+            return 0;
+        }
+        return total.get() / c;
+    }
+
+    /**
+     * Estimate the duration below which the supplied percentage of recorded
+     * durations fall. The estimate is the upper bound of the bucket that
+     * contains the percentile so will never be more than twice the true value.
+     */
+    public long getPercentile(final double percent) {
+        final long c = count.get();
+        if (c == 0) {
+            return 0;
+        }
+
+        final long target = Math.max(1, (long) Math.ceil(c * percent / 100D));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return Math.min(getUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() +
+                ", mean=" + ModelStringUtil.formatDurationString(getMean()) +
+                ", p50=" + ModelStringUtil.formatDurationString(getPercentile(50)) +
+                ", p95=" + ModelStringUtil.formatDurationString(getPercentile(95)) +
+                ", p99=" + ModelStringUtil.formatDurationString(getPercentile(99)) +
+                ", max=" + ModelStringUtil.formatDurationString(getMax());
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.util.thread;
+
+import stroom.util.logging.StroomLogger;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual threads are only available on newer JVMs so this class looks them up
+ * reflectively allowing Stroom to still be built for and run on older JVMs.
+ */
+public final class VirtualThreadUtil {
+    private static final StroomLogger LOGGER = StroomLogger.getLogger(VirtualThreadUtil.class);
+
+    private VirtualThreadUtil() {
+        // Utility class so hide constructor.
+    }
+
+    /**
+     * Create a thread factory that creates virtual threads named with the
+     * supplied prefix followed by an incrementing number.
+     *
+     * @return A virtual thread factory or null if the running JVM does not
+     * support virtual threads.
+     */
+    public static ThreadFactory createThreadFactory(final String prefix) {
+        try {
+            final Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            final Object builder = ofVirtual.invoke(null);
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            final Method name = builderClass.getMethod("name", String.class, long.class);
+            final Object namedBuilder = name.invoke(builder, prefix, 1L);
+            final Method factory = builderClass.getMethod("factory");
+            return (ThreadFactory) factory.invoke(namedBuilder);
+        } catch (final NoSuchMethodException | ClassNotFoundException e) {
+            LOGGER.debug("createThreadFactory() - Virtual threads are not supported by this JVM");
+        } catch (final Exception e) {
+            LOGGER.warn("createThreadFactory() - Unable to create virtual thread factory: %s", e.getMessage());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.util.concurrent;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import stroom.util.test.StroomJUnit4ClassRunner;
+
+@RunWith(StroomJUnit4ClassRunner.class)
+public class TestDurationHistogram {
+    @Test
+    public void testEmpty() {
+        final DurationHistogram histogram = new DurationHistogram();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getMean());
+        Assert.assertEquals(0, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void testPercentiles() {
+        final DurationHistogram histogram = new DurationHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        Assert.assertEquals(100, histogram.getCount());
+        Assert.assertEquals(5050, histogram.getTotal());
+        Assert.assertEquals(50, histogram.getMean());
+        Assert.assertEquals(100, histogram.getMax());
+
+        // Percentiles are bucket upper bounds so are at most double the true value.
+        Assert.assertEquals(64, histogram.getPercentile(50));
+        Assert.assertEquals(100, histogram.getPercentile(95));
+        Assert.assertEquals(1, histogram.getPercentile(1));
+    }
+
+    @Test
+    public void testNegativeAndLarge() {
+        final DurationHistogram histogram = new DurationHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        Assert.assertEquals(2, histogram.getCount());
+        Assert.assertEquals(0, histogram.getPercentile(50));
+        Assert.assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+    }
+}